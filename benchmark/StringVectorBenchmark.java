@@ -0,0 +1,104 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.BaseVariableWidthViewVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.ViewVarCharVector;
+
+/**
+ * Compares filling {@code Utf8} and {@code Utf8View} vectors the way the gateway converters do:
+ * one {@code setSafe(row, bytes, start, length)} per cell, starting from default-sized buffers.
+ */
+public final class StringVectorBenchmark {
+    private static final int DEFAULT_ROWS = 1_000_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0].replace("_", "")) : DEFAULT_ROWS;
+
+        Column[] columns = {
+                new Column("orderstatus (1 B)", values(rows, 1, 1)),
+                new Column("orderpriority (8-15 B)", values(rows, 8, 15)),
+                new Column("clerk (15 B)", values(rows, 15, 15)),
+                new Column("comment (19-78 B)", values(rows, 19, 78)),
+        };
+
+        System.out.printf("%-24s %-10s %12s %14s%n", "Column", "Layout", "Mrows/s", "Bytes/row");
+        try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE)) {
+            for (Column column : columns) {
+                for (Layout layout : Layout.values()) {
+                    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                        fill(layout, column.values, allocator);
+                    }
+                    long nanos = 0;
+                    long bytes = 0;
+                    for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                        long t0 = System.nanoTime();
+                        bytes = fill(layout, column.values, allocator);
+                        nanos += System.nanoTime() - t0;
+                    }
+                    double rowsPerSecond = (double) rows * MEASURED_ROUNDS / (nanos / 1e9);
+                    System.out.printf("%-24s %-10s %12.1f %14.1f%n",
+                            column.name, layout, rowsPerSecond / 1e6, (double) bytes / rows);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills a fresh vector and returns the bytes it holds from the allocator.
+     */
+    private static long fill(Layout layout, byte[][] values, BufferAllocator allocator) {
+        try (FieldVector vector = layout.create(allocator)) {
+            vector.allocateNew();
+            for (int row = 0; row < values.length; row++) {
+                byte[] value = values[row];
+                if (vector instanceof BaseVariableWidthViewVector view) {
+                    view.setSafe(row, value, 0, value.length);
+                } else {
+                    ((BaseVariableWidthVector) vector).setSafe(row, value, 0, value.length);
+                }
+            }
+            vector.setValueCount(values.length);
+            return allocator.getAllocatedMemory();
+        }
+    }
+
+    private static byte[][] values(int rows, int minLength, int maxLength) {
+        Random random = new Random(42);
+        byte[][] values = new byte[rows][];
+        for (int row = 0; row < rows; row++) {
+            int length = minLength + random.nextInt(maxLength - minLength + 1);
+            StringBuilder value = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                value.append((char) ('a' + random.nextInt(26)));
+            }
+            values[row] = value.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    private enum Layout {
+        UTF8 {
+            @Override
+            FieldVector create(BufferAllocator allocator) {
+                return new VarCharVector("s", allocator);
+            }
+        },
+        UTF8_VIEW {
+            @Override
+            FieldVector create(BufferAllocator allocator) {
+                return new ViewVarCharVector("s", allocator);
+            }
+        };
+
+        abstract FieldVector create(BufferAllocator allocator);
+    }
+
+    private record Column(String name, byte[][] values) {}
+}
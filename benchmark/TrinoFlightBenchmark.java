@@ -4,6 +4,7 @@ import java.util.List;
 
 import org.apache.arrow.flight.FlightClient;
 import org.apache.arrow.flight.FlightDescriptor;
+import org.apache.arrow.flight.FlightEndpoint;
 import org.apache.arrow.flight.FlightInfo;
 import org.apache.arrow.flight.FlightStream;
 import org.apache.arrow.flight.Location;
@@ -47,17 +48,20 @@ public final class TrinoFlightBenchmark {
             int columns = info.getSchema().getFields().size();
             List<List<String>> sampleRows = new ArrayList<>();
 
-            try (FlightStream stream = client.getStream(info.getEndpoints().get(0).getTicket())) {
-                while (stream.next()) {
-                    VectorSchemaRoot root = stream.getRoot();
-                    int batchRows = root.getRowCount();
-                    rows += batchRows;
-
-                    if (sampleN > 0 && sampleRows.size() < sampleN) {
-                        int remaining = sampleN - sampleRows.size();
-                        int toTake = Math.min(remaining, batchRows);
-                        for (int rowIndex = 0; rowIndex < toTake; rowIndex++) {
-                            sampleRows.add(readRowStrings(root, columns, rowIndex));
+            printKv("Endpoints", info.getEndpoints().size());
+            for (FlightEndpoint flightEndpoint : info.getEndpoints()) {
+                try (FlightStream stream = client.getStream(flightEndpoint.getTicket())) {
+                    while (stream.next()) {
+                        VectorSchemaRoot root = stream.getRoot();
+                        int batchRows = root.getRowCount();
+                        rows += batchRows;
+
+                        if (sampleN > 0 && sampleRows.size() < sampleN) {
+                            int remaining = sampleN - sampleRows.size();
+                            int toTake = Math.min(remaining, batchRows);
+                            for (int rowIndex = 0; rowIndex < toTake; rowIndex++) {
+                                sampleRows.add(readRowStrings(root, columns, rowIndex));
+                            }
                         }
                     }
                 }
@@ -0,0 +1,71 @@
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import io.github.koszti.trinoarrowgateway.convert.SpooledRowsToArrowConverter;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * Measures the heap the gateway's spooled-segment converter allocates per row for VARCHAR-heavy rows shaped like
+ * {@code tpch.orders} (status, clerk, comment with non-ASCII text). Writing straight from the parser's text buffer
+ * should keep this well below the ~100 bytes/row a {@code String} plus two byte arrays per cell would cost.
+ */
+public final class VarcharAllocationBenchmark {
+    private static final int DEFAULT_ROWS = 200_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final int BATCH_SIZE = 4096;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0].replace("_", "")) : DEFAULT_ROWS;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            System.err.println("Thread allocation accounting is not available on this JVM");
+            System.exit(1);
+        }
+
+        Schema schema = new Schema(List.of(
+                new Field("orderkey", FieldType.nullable(new ArrowType.Int(64, true)), null),
+                new Field("orderstatus", FieldType.nullable(new ArrowType.Utf8()), null),
+                new Field("clerk", FieldType.nullable(new ArrowType.Utf8()), null),
+                new Field("comment", FieldType.nullable(new ArrowType.Utf8()), null)
+        ));
+        byte[] payload = payload(rows);
+
+        try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE)) {
+            SpooledRowsToArrowConverter converter = new SpooledRowsToArrowConverter(allocator);
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                converter.convertStreaming(new ByteArrayInputStream(payload), schema, BATCH_SIZE, ArrowRecordBatch::close);
+            }
+            long nanos = 0;
+            long bytes = 0;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                long before = threads.getCurrentThreadAllocatedBytes();
+                long t0 = System.nanoTime();
+                converter.convertStreaming(new ByteArrayInputStream(payload), schema, BATCH_SIZE, ArrowRecordBatch::close);
+                nanos += System.nanoTime() - t0;
+                bytes += threads.getCurrentThreadAllocatedBytes() - before;
+            }
+            double rowsPerSecond = (double) rows * MEASURED_ROUNDS / (nanos / 1e9);
+            System.out.printf("%-10s %12s %16s%n", "Rows", "Mrows/s", "Heap bytes/row");
+            System.out.printf("%-10d %12.1f %16.1f%n", rows, rowsPerSecond / 1e6, (double) bytes / rows / MEASURED_ROUNDS);
+        }
+    }
+
+    private static byte[] payload(int rows) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < rows; i++) {
+            json.append(i == 0 ? "" : ",")
+                    .append("[").append(i).append(", \"O\", \"Clerk#0000009").append(i % 100)
+                    .append("\", \"furiously regular deposits sleep — ünïcødé ").append(i).append("\"]");
+        }
+        return json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
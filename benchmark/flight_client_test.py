@@ -2,6 +2,7 @@ import os
 import sys
 import json
 import time
+from concurrent.futures import ThreadPoolExecutor
 
 import pyarrow as pa
 import pyarrow.flight as fl
@@ -33,12 +34,27 @@ def main():
     print_kv("Elapsed", format_elapsed(t1 - t0))
     print_kv("Schema", schema_summary(info.schema))
 
-    ticket = info.endpoints[0].ticket
+    endpoints = info.endpoints
+    print_kv("Endpoints", len(endpoints))
+
+    # FLIGHT_RESULT_ORDER=unordered lets the gateway emit batches from whichever segment is ready first.
+    result_order = os.getenv("FLIGHT_RESULT_ORDER", "ordered")
+    print_kv("Result order", result_order)
+    options = fl.FlightCallOptions(headers=[(b"x-gateway-result-order", result_order.encode("utf-8"))])
+
+    def read_endpoint(ep):
+        # One client (and gRPC connection) per endpoint so streams are pulled in parallel.
+        with fl.FlightClient(endpoint) as ep_client:
+            return ep_client.do_get(ep.ticket, options).read_all()
 
     print_section("Action: do_get + read_all")
     t2 = time.perf_counter()
-    reader = client.do_get(ticket)
-    table = reader.read_all()
+    if len(endpoints) == 1:
+        tables = [client.do_get(endpoints[0].ticket, options).read_all()]
+    else:
+        with ThreadPoolExecutor(max_workers=len(endpoints)) as pool:
+            tables = list(pool.map(read_endpoint, endpoints))
+    table = pa.concat_tables(tables)
     table = table.combine_chunks()
     t3 = time.perf_counter()
     print_kv("Elapsed", format_elapsed(t3 - t2))
@@ -2,6 +2,7 @@ package io.github.koszti.trinoarrowgateway;
 
 import io.github.koszti.trinoarrowgateway.config.GatewayConversionProperties;
 import io.github.koszti.trinoarrowgateway.config.GatewayFlightProperties;
+import io.github.koszti.trinoarrowgateway.config.GatewaySpoolProperties;
 import io.github.koszti.trinoarrowgateway.config.GatewayTrinoProperties;
 
 import org.springframework.boot.SpringApplication;
@@ -12,7 +13,8 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 @EnableConfigurationProperties({
 		GatewayTrinoProperties.class,
 		GatewayFlightProperties.class,
-		GatewayConversionProperties.class
+		GatewayConversionProperties.class,
+		GatewaySpoolProperties.class
 })
 public class TrinoArrowGatewayApplication {
 
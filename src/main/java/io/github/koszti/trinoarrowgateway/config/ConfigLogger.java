@@ -14,13 +14,16 @@ public class ConfigLogger
     private final GatewayTrinoProperties trinoProps;
     private final GatewayConversionProperties convProps;
     private final GatewayFlightProperties flightProps;
+    private final GatewaySpoolProperties spoolProps;
 
     public ConfigLogger(GatewayTrinoProperties trinoProps,
             GatewayConversionProperties convProps,
-            GatewayFlightProperties flightProps) {
+            GatewayFlightProperties flightProps,
+            GatewaySpoolProperties spoolProps) {
         this.trinoProps = trinoProps;
         this.convProps = convProps;
         this.flightProps = flightProps;
+        this.spoolProps = spoolProps;
     }
 
     @Override
@@ -29,11 +32,35 @@ public class ConfigLogger
         log.info("Trino base URL      : {}", trinoProps.getBaseUrl());
         log.info("Trino user          : {}", trinoProps.getUser());
         log.info("Trino data encoding : {}", trinoProps.getQueryDataEncoding());
+        log.info("Incremental results : {}", trinoProps.isIncrementalResults());
         log.info("Flight bind         : {}:{}", flightProps.getBindHost(), flightProps.getPort());
         log.info("Flight advertise    : {}:{}", flightProps.getAdvertiseHost(), flightProps.getPort());
+        log.info("Endpoints per query : {}", flightProps.getEndpointsPerQuery());
         log.info("Conversion threads  : {}", convProps.getParallelism());
         log.info("Arrow batch size    : {}", convProps.getBatchSize());
+        log.info("Arrow batch bytes   : {}", convProps.getBatchBytes());
+        log.info("Coalesce batches    : {}", convProps.isCoalesceBatches());
+        log.info("Async downloads     : {}", convProps.isAsyncDownloads());
         log.info("In-flight segments  : {}", convProps.getMaxInFlightSegments());
         log.info("Batch buffer/segment: {}", convProps.getMaxBufferedBatchesPerSegment());
+        log.info("Conversion engine   : {}", convProps.getEngine());
+        log.info("Row decoder         : {}", convProps.getRowDecoder());
+        log.info("Split chunk bytes   : {}", convProps.getSplitChunkBytes());
+        log.info("String vector type  : {}", convProps.getStringType());
+        log.info("Dictionary encoding : {} (max {} values, results up to {} rows)", convProps.getDictionaryEncoding(),
+                convProps.getDictionaryMaxValues(), convProps.getDictionarySampleRows());
+        log.info("Buffer pool max     : {} bytes", convProps.getBufferPoolMaxBytes());
+        log.info("Spool transport     : {} (http2 {})", spoolProps.getTransport(), spoolProps.isHttp2());
+        log.info("Spool connections   : {} total, {} per host, idle {}", spoolProps.getMaxConnections(),
+                spoolProps.getMaxConnectionsPerHost(), spoolProps.getIdleTimeout());
+        log.info("Spool timeouts      : connect {}, download {}, ack {}", spoolProps.getConnectTimeout(),
+                spoolProps.getDownloadTimeout(), spoolProps.getAckTimeout());
+        log.info("Ranged downloads    : from {} bytes, {} bytes per range", spoolProps.getRangedDownloadThresholdBytes(),
+                spoolProps.getRangedDownloadPartBytes());
+        log.info("Hedged downloads    : max {} per query, after p{} (min {}, floor {} bytes/s)", spoolProps.getHedgeMaxPerQuery(),
+                spoolProps.getHedgePercentile(), spoolProps.getHedgeMinDelay(), spoolProps.getHedgeMinBytesPerSecond());
+        log.info("Download retries    : {} (backoff {} up to {})", spoolProps.getDownloadRetries(),
+                spoolProps.getRetryInitialBackoff(), spoolProps.getRetryMaxBackoff());
+        log.info("Background acks     : {} in flight, {} retries", spoolProps.getAckConcurrency(), spoolProps.getAckRetries());
     }
 }
@@ -2,6 +2,7 @@ package io.github.koszti.trinoarrowgateway.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -10,8 +11,19 @@ import java.util.concurrent.Executors;
 public class ConversionExecutorConfig {
 
     @Bean(destroyMethod = "shutdown")
+    @Primary
     public ExecutorService conversionExecutor(GatewayConversionProperties props) {
         int threads = Math.max(1, props.getParallelism());
         return Executors.newFixedThreadPool(threads);
     }
+
+    /**
+     * Converts chunks of split segments. Separate from {@link #conversionExecutor} because segment tasks
+     * block waiting for their chunks.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService segmentSplitExecutor(GatewayConversionProperties props) {
+        int threads = Math.max(1, props.getParallelism());
+        return Executors.newFixedThreadPool(threads);
+    }
 }
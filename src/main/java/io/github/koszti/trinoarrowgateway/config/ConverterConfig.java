@@ -1,15 +1,26 @@
 package io.github.koszti.trinoarrowgateway.config;
 
+import io.github.koszti.trinoarrowgateway.convert.SegmentSplitting;
 import io.github.koszti.trinoarrowgateway.convert.SpooledRowsToArrowConverter;
 import org.apache.arrow.memory.BufferAllocator;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.ExecutorService;
+
 @Configuration
 public class ConverterConfig {
 
     @Bean
-    public SpooledRowsToArrowConverter spooledRowsToArrowConverter(BufferAllocator allocator) {
-        return new SpooledRowsToArrowConverter(allocator);
+    public SpooledRowsToArrowConverter spooledRowsToArrowConverter(BufferAllocator allocator,
+            GatewayConversionProperties conversionProps,
+            @Qualifier("segmentSplitExecutor") ExecutorService segmentSplitExecutor) {
+        return new SpooledRowsToArrowConverter(allocator,
+                conversionProps.getEngine(),
+                conversionProps.getRowDecoder(),
+                new SegmentSplitting(segmentSplitExecutor,
+                        conversionProps.getSplitChunkBytes(),
+                        conversionProps.getParallelism()));
     }
 }
@@ -1,5 +1,9 @@
 package io.github.koszti.trinoarrowgateway.config;
 
+import io.github.koszti.trinoarrowgateway.convert.ConversionEngine;
+import io.github.koszti.trinoarrowgateway.convert.DictionaryEncodingMode;
+import io.github.koszti.trinoarrowgateway.convert.RowDecoderMode;
+import io.github.koszti.trinoarrowgateway.convert.StringVectorType;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @ConfigurationProperties(prefix = "gateway.conversion")
@@ -15,6 +19,26 @@ public class GatewayConversionProperties {
      */
     private int batchSize = 1024;
 
+    /**
+     * Target Arrow bytes per record batch. When positive, the rows per batch adapt to the row width observed
+     * in each stream, and {@link #batchSize} only applies while nothing is known about the row width.
+     * 0 uses {@link #batchSize} rows for every batch.
+     */
+    private long batchBytes = 0;
+
+    /**
+     * Merge consecutive batches smaller than half the batch size (or half of {@link #batchBytes}), such as segment
+     * tail batches, into full-size batches before sending them.
+     */
+    private boolean coalesceBatches = true;
+
+    /**
+     * Download spooled segments with the asynchronous HTTP client, so no conversion thread waits on the network;
+     * each segment is converted once its body has been received. {@code false} converts while streaming the body
+     * on a conversion thread.
+     */
+    private boolean asyncDownloads = true;
+
     /**
      * Maximum number of spooled segments processed concurrently.
      * Defaults to {@link #parallelism}.
@@ -27,6 +51,55 @@ public class GatewayConversionProperties {
      */
     private int maxBufferedBatchesPerSegment = 4;
 
+    /**
+     * How rows are written into Arrow vectors: {@code generated} emits a decoder class specialized
+     * for each result schema, {@code interpreted} dispatches on the column type for every cell.
+     */
+    private RowDecoderMode rowDecoder = RowDecoderMode.GENERATED;
+
+    /**
+     * Parser for the segment payload: {@code jackson} or {@code bytes} (hand-written UTF-8 scanner).
+     */
+    private ConversionEngine engine = ConversionEngine.JACKSON;
+
+    /**
+     * Target chunk size in bytes for splitting large decompressed segments at row boundaries.
+     * Segments of at least two chunks are converted in parallel, chunk by chunk, and emitted in order.
+     * 0 disables splitting.
+     */
+    private int splitChunkBytes = 4 * 1024 * 1024;
+
+    /**
+     * Arrow type for VARCHAR and CHAR columns: {@code utf8} or {@code utf8-view}.
+     */
+    private StringVectorType stringType = StringVectorType.UTF8;
+
+    /**
+     * {@code auto} dictionary-encodes VARCHAR columns with few distinct values in streams of at most
+     * {@link #dictionarySampleRows} rows. Dictionaries cannot change once a stream has started, so they are only
+     * built from a complete result; longer streams are sent without dictionaries. Streams with a {@code utf8}
+     * column hold back their first batch until they complete or reach {@link #dictionarySampleRows} rows.
+     */
+    private DictionaryEncodingMode dictionaryEncoding = DictionaryEncodingMode.OFF;
+
+    /**
+     * Maximum number of distinct values for a column to be dictionary-encoded.
+     */
+    private int dictionaryMaxValues = 256;
+
+    /**
+     * Rows a stream holds back in {@code auto} dictionary mode to see whether the whole result fits; a stream that
+     * completes within them is dictionary-encoded. This is the largest result that can be encoded, and the delay
+     * before the first batch of any longer result; raising it holds more converted batches in memory per stream.
+     */
+    private long dictionarySampleRows = 65_536;
+
+    /**
+     * Maximum bytes of released Arrow buffer memory kept for reuse by later batches of the same buffer sizes.
+     * 0 disables the pool.
+     */
+    private long bufferPoolMaxBytes = 256L * 1024 * 1024;
+
     public int getParallelism() {
         return parallelism;
     }
@@ -43,6 +116,30 @@ public class GatewayConversionProperties {
         this.batchSize = batchSize;
     }
 
+    public long getBatchBytes() {
+        return Math.max(0, batchBytes);
+    }
+
+    public void setBatchBytes(long batchBytes) {
+        this.batchBytes = batchBytes;
+    }
+
+    public boolean isCoalesceBatches() {
+        return coalesceBatches;
+    }
+
+    public void setCoalesceBatches(boolean coalesceBatches) {
+        this.coalesceBatches = coalesceBatches;
+    }
+
+    public boolean isAsyncDownloads() {
+        return asyncDownloads;
+    }
+
+    public void setAsyncDownloads(boolean asyncDownloads) {
+        this.asyncDownloads = asyncDownloads;
+    }
+
     public int getMaxInFlightSegments() {
         if (maxInFlightSegments == null) {
             return Math.max(1, parallelism);
@@ -61,4 +158,68 @@ public class GatewayConversionProperties {
     public void setMaxBufferedBatchesPerSegment(int maxBufferedBatchesPerSegment) {
         this.maxBufferedBatchesPerSegment = maxBufferedBatchesPerSegment;
     }
+
+    public RowDecoderMode getRowDecoder() {
+        return rowDecoder;
+    }
+
+    public void setRowDecoder(RowDecoderMode rowDecoder) {
+        this.rowDecoder = rowDecoder;
+    }
+
+    public ConversionEngine getEngine() {
+        return engine;
+    }
+
+    public void setEngine(ConversionEngine engine) {
+        this.engine = engine;
+    }
+
+    public int getSplitChunkBytes() {
+        return Math.max(0, splitChunkBytes);
+    }
+
+    public void setSplitChunkBytes(int splitChunkBytes) {
+        this.splitChunkBytes = splitChunkBytes;
+    }
+
+    public StringVectorType getStringType() {
+        return stringType;
+    }
+
+    public void setStringType(StringVectorType stringType) {
+        this.stringType = stringType;
+    }
+
+    public DictionaryEncodingMode getDictionaryEncoding() {
+        return dictionaryEncoding;
+    }
+
+    public void setDictionaryEncoding(DictionaryEncodingMode dictionaryEncoding) {
+        this.dictionaryEncoding = dictionaryEncoding;
+    }
+
+    public int getDictionaryMaxValues() {
+        return Math.max(1, dictionaryMaxValues);
+    }
+
+    public void setDictionaryMaxValues(int dictionaryMaxValues) {
+        this.dictionaryMaxValues = dictionaryMaxValues;
+    }
+
+    public long getDictionarySampleRows() {
+        return Math.max(1, dictionarySampleRows);
+    }
+
+    public void setDictionarySampleRows(long dictionarySampleRows) {
+        this.dictionarySampleRows = dictionarySampleRows;
+    }
+
+    public long getBufferPoolMaxBytes() {
+        return Math.max(0, bufferPoolMaxBytes);
+    }
+
+    public void setBufferPoolMaxBytes(long bufferPoolMaxBytes) {
+        this.bufferPoolMaxBytes = bufferPoolMaxBytes;
+    }
 }
@@ -27,6 +27,13 @@ public class GatewayFlightProperties {
      */
     private int port = 31337;
 
+    /**
+     * Number of FlightEndpoints a finished query's spooled segments are grouped into.
+     * Each endpoint gets its own ticket, so clients can pull several streams in parallel.
+     * 1 keeps a single endpoint for the whole result.
+     */
+    private int endpointsPerQuery = 1;
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -58,5 +65,13 @@ public class GatewayFlightProperties {
     public void setPort(int port) {
         this.port = port;
     }
+
+    public int getEndpointsPerQuery() {
+        return Math.max(1, endpointsPerQuery);
+    }
+
+    public void setEndpointsPerQuery(int endpointsPerQuery) {
+        this.endpointsPerQuery = endpointsPerQuery;
+    }
 }
 
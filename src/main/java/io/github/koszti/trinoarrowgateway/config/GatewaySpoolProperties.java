@@ -0,0 +1,261 @@
+package io.github.koszti.trinoarrowgateway.config;
+
+import io.github.koszti.trinoarrowgateway.spool.SpoolTransport;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "gateway.spool")
+public class GatewaySpoolProperties {
+
+    /**
+     * HTTP client for spooled segment downloads and acks: {@code apache} (pooled) or {@code jdk}.
+     */
+    private SpoolTransport transport = SpoolTransport.APACHE;
+
+    /**
+     * Maximum number of open connections to the spooling storage (apache only).
+     */
+    private int maxConnections = 128;
+
+    /**
+     * Maximum number of open connections per storage host (apache only).
+     */
+    private int maxConnectionsPerHost = 64;
+
+    /**
+     * Idle pooled connections are closed after this long (apache only).
+     */
+    private Duration idleTimeout = Duration.ofSeconds(60);
+
+    /**
+     * Negotiate HTTP/2 with storage that supports it (via ALPN over TLS); otherwise HTTP/1.1 is used.
+     */
+    private boolean http2 = true;
+
+    /**
+     * Timeout for establishing a connection.
+     */
+    private Duration connectTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Timeout for a segment download response.
+     */
+    private Duration downloadTimeout = Duration.ofMinutes(5);
+
+    /**
+     * Timeout for a segment ack response.
+     */
+    private Duration ackTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Segments of at least this many bytes (as reported by Trino) are downloaded with concurrent HTTP
+     * {@code Range} requests of {@link #rangedDownloadPartBytes} each. 0 disables ranged downloads.
+     */
+    private long rangedDownloadThresholdBytes = 32L * 1024 * 1024;
+
+    /**
+     * Size of each range of a ranged segment download.
+     */
+    private int rangedDownloadPartBytes = 8 * 1024 * 1024;
+
+    /**
+     * Maximum number of hedged (duplicate) segment requests per query stream. 0 disables hedging.
+     */
+    private int hedgeMaxPerQuery = 4;
+
+    /**
+     * A download still running after this percentile (0-100) of the recent download durations is hedged.
+     */
+    private double hedgePercentile = 95;
+
+    /**
+     * Lower bound of the hedging deadline.
+     */
+    private Duration hedgeMinDelay = Duration.ofMillis(100);
+
+    /**
+     * Throughput floor: a segment is not hedged before it could have been downloaded at this rate, so large
+     * segments are not hedged just for being larger than usual. 0 disables the floor.
+     */
+    private long hedgeMinBytesPerSecond = 4L * 1024 * 1024;
+
+    /**
+     * Retries per segment download after connection errors and transient HTTP statuses (5xx, 408, 429); an
+     * interrupted body is resumed from the last byte read. No retry starts after the segment's {@code expiresAt}.
+     * 0 disables retries.
+     */
+    private int downloadRetries = 3;
+
+    /**
+     * Wait before the first retry; doubled for each further retry.
+     */
+    private Duration retryInitialBackoff = Duration.ofMillis(200);
+
+    /**
+     * Upper bound of the wait between retries.
+     */
+    private Duration retryMaxBackoff = Duration.ofSeconds(5);
+
+    /**
+     * Maximum number of segment acks in flight; acks are sent in the background, off the conversion threads.
+     */
+    private int ackConcurrency = 16;
+
+    /**
+     * Retries per ack after connection errors and transient HTTP statuses, with the download retry backoff.
+     */
+    private int ackRetries = 5;
+
+    public SpoolTransport getTransport() {
+        return transport;
+    }
+
+    public void setTransport(SpoolTransport transport) {
+        this.transport = transport;
+    }
+
+    public int getMaxConnections() {
+        return Math.max(1, maxConnections);
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return Math.max(1, Math.min(maxConnectionsPerHost, getMaxConnections()));
+    }
+
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getDownloadTimeout() {
+        return downloadTimeout;
+    }
+
+    public void setDownloadTimeout(Duration downloadTimeout) {
+        this.downloadTimeout = downloadTimeout;
+    }
+
+    public Duration getAckTimeout() {
+        return ackTimeout;
+    }
+
+    public void setAckTimeout(Duration ackTimeout) {
+        this.ackTimeout = ackTimeout;
+    }
+
+    public long getRangedDownloadThresholdBytes() {
+        return Math.max(0, rangedDownloadThresholdBytes);
+    }
+
+    public void setRangedDownloadThresholdBytes(long rangedDownloadThresholdBytes) {
+        this.rangedDownloadThresholdBytes = rangedDownloadThresholdBytes;
+    }
+
+    public int getRangedDownloadPartBytes() {
+        return Math.max(1, rangedDownloadPartBytes);
+    }
+
+    public void setRangedDownloadPartBytes(int rangedDownloadPartBytes) {
+        this.rangedDownloadPartBytes = rangedDownloadPartBytes;
+    }
+
+    public int getHedgeMaxPerQuery() {
+        return Math.max(0, hedgeMaxPerQuery);
+    }
+
+    public void setHedgeMaxPerQuery(int hedgeMaxPerQuery) {
+        this.hedgeMaxPerQuery = hedgeMaxPerQuery;
+    }
+
+    public double getHedgePercentile() {
+        return Math.max(0, Math.min(100, hedgePercentile));
+    }
+
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public Duration getHedgeMinDelay() {
+        return hedgeMinDelay;
+    }
+
+    public void setHedgeMinDelay(Duration hedgeMinDelay) {
+        this.hedgeMinDelay = hedgeMinDelay;
+    }
+
+    public long getHedgeMinBytesPerSecond() {
+        return Math.max(0, hedgeMinBytesPerSecond);
+    }
+
+    public void setHedgeMinBytesPerSecond(long hedgeMinBytesPerSecond) {
+        this.hedgeMinBytesPerSecond = hedgeMinBytesPerSecond;
+    }
+
+    public int getDownloadRetries() {
+        return Math.max(0, downloadRetries);
+    }
+
+    public void setDownloadRetries(int downloadRetries) {
+        this.downloadRetries = downloadRetries;
+    }
+
+    public Duration getRetryInitialBackoff() {
+        return retryInitialBackoff;
+    }
+
+    public void setRetryInitialBackoff(Duration retryInitialBackoff) {
+        this.retryInitialBackoff = retryInitialBackoff;
+    }
+
+    public Duration getRetryMaxBackoff() {
+        return retryMaxBackoff;
+    }
+
+    public void setRetryMaxBackoff(Duration retryMaxBackoff) {
+        this.retryMaxBackoff = retryMaxBackoff;
+    }
+
+    public int getAckConcurrency() {
+        return Math.max(1, ackConcurrency);
+    }
+
+    public void setAckConcurrency(int ackConcurrency) {
+        this.ackConcurrency = ackConcurrency;
+    }
+
+    public int getAckRetries() {
+        return Math.max(0, ackRetries);
+    }
+
+    public void setAckRetries(int ackRetries) {
+        this.ackRetries = ackRetries;
+    }
+}
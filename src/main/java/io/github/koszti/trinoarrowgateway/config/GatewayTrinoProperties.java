@@ -21,6 +21,13 @@ public class GatewayTrinoProperties {
      */
     private String queryDataEncoding = "json+zstd";
 
+    /**
+     * Return the query handle as soon as the result columns are known and keep collecting
+     * spooled segments in the background, so streaming can overlap with Trino execution.
+     * When false, segments are collected until the query reaches FINISHED.
+     */
+    private boolean incrementalResults = false;
+
     public String getBaseUrl() {
         return baseUrl;
     }
@@ -44,4 +51,12 @@ public class GatewayTrinoProperties {
     public void setQueryDataEncoding(String queryDataEncoding) {
         this.queryDataEncoding = queryDataEncoding;
     }
+
+    public boolean isIncrementalResults() {
+        return incrementalResults;
+    }
+
+    public void setIncrementalResults(boolean incrementalResults) {
+        this.incrementalResults = incrementalResults;
+    }
 }
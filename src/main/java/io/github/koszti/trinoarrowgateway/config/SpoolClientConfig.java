@@ -0,0 +1,87 @@
+package io.github.koszti.trinoarrowgateway.config;
+
+import io.github.koszti.trinoarrowgateway.spool.ApacheSegmentTransport;
+import io.github.koszti.trinoarrowgateway.spool.HttpSpooledSegmentClient;
+import io.github.koszti.trinoarrowgateway.spool.JdkSegmentTransport;
+import io.github.koszti.trinoarrowgateway.spool.SegmentAcker;
+import io.github.koszti.trinoarrowgateway.spool.SegmentTransport;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class SpoolClientConfig {
+
+    @Bean(destroyMethod = "close")
+    public SegmentTransport segmentTransport(GatewaySpoolProperties spoolProps) {
+        return switch (spoolProps.getTransport()) {
+            case JDK -> new JdkSegmentTransport(spoolProps);
+            case APACHE -> new ApacheSegmentTransport(spoolProps);
+        };
+    }
+
+    @Bean(destroyMethod = "close")
+    public HttpSpooledSegmentClient httpSpooledSegmentClient(SegmentTransport segmentTransport,
+            GatewaySpoolProperties spoolProps) {
+        return new HttpSpooledSegmentClient(segmentTransport, spoolProps);
+    }
+
+    @Bean
+    MeterBinder spoolHedgeMetrics(HttpSpooledSegmentClient httpSpooledSegmentClient) {
+        return registry -> {
+            FunctionCounter.builder("gateway.spool.hedges", httpSpooledSegmentClient, HttpSpooledSegmentClient::hedges)
+                    .description("Duplicate requests issued for straggling segment downloads")
+                    .register(registry);
+            FunctionCounter.builder("gateway.spool.hedge.wins", httpSpooledSegmentClient, HttpSpooledSegmentClient::hedgeWins)
+                    .description("Hedged segment requests that completed before the original request")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    MeterBinder spoolAckMetrics(HttpSpooledSegmentClient httpSpooledSegmentClient) {
+        SegmentAcker acker = httpSpooledSegmentClient.acker();
+        return registry -> {
+            FunctionTimer.builder("gateway.spool.acks", acker, SegmentAcker::acks, SegmentAcker::ackNanos, TimeUnit.NANOSECONDS)
+                    .description("Successful segment acks and their round-trip time")
+                    .register(registry);
+            FunctionCounter.builder("gateway.spool.ack.retries", acker, SegmentAcker::retries)
+                    .description("Segment ack requests retried after a transient failure")
+                    .register(registry);
+            FunctionCounter.builder("gateway.spool.ack.failures", acker, SegmentAcker::failures)
+                    .description("Segment acks given up on; the segments stay in storage until they expire")
+                    .register(registry);
+            Gauge.builder("gateway.spool.ack.pending", acker, SegmentAcker::pending)
+                    .description("Segment acks queued, in flight or waiting for a retry")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Connection pool gauges; only the Apache transport exposes its pool.
+     */
+    @Bean
+    MeterBinder spoolConnectionMetrics(SegmentTransport segmentTransport) {
+        return registry -> {
+            if (segmentTransport instanceof ApacheSegmentTransport transport) {
+                Gauge.builder("gateway.spool.connections", transport, ApacheSegmentTransport::leasedConnections)
+                        .tag("state", "leased")
+                        .description("Spooling storage connections serving a request")
+                        .register(registry);
+                Gauge.builder("gateway.spool.connections", transport, ApacheSegmentTransport::availableConnections)
+                        .tag("state", "available")
+                        .description("Idle kept-alive spooling storage connections")
+                        .register(registry);
+                Gauge.builder("gateway.spool.connections", transport, ApacheSegmentTransport::pendingConnections)
+                        .tag("state", "pending")
+                        .description("Spooling storage requests waiting for a connection")
+                        .register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,198 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BaseIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryHashTable;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.apache.arrow.vector.util.Text;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Dictionary-encodes low-cardinality VARCHAR columns of a stream, deciding per column from all of its batches.
+ * <p>
+ * Arrow Flight sends dictionaries once, when the stream starts, and the Java implementation cannot send
+ * dictionary deltas or replacements afterwards. A dictionary built from a sample could therefore meet a value it
+ * does not contain, so the dictionaries are only ever built from the complete result: every value a batch can
+ * hold is in its column's dictionary.
+ * <p>
+ * Not thread-safe; used from the thread that writes the stream.
+ */
+public final class AdaptiveDictionaryEncoder implements AutoCloseable {
+
+    private final VectorSchemaRoot root;
+    private final DictionaryProvider.MapDictionaryProvider provider;
+    private final DictionaryHashTable[] lookups;
+    private final List<Dictionary> dictionaries;
+
+    private AdaptiveDictionaryEncoder(VectorSchemaRoot root,
+            DictionaryHashTable[] lookups,
+            List<Dictionary> dictionaries) {
+        this.root = root;
+        this.lookups = lookups;
+        this.dictionaries = dictionaries;
+        this.provider = new DictionaryProvider.MapDictionaryProvider(dictionaries.toArray(Dictionary[]::new));
+    }
+
+    /**
+     * Whether {@code schema} has a column {@link #forResult} could dictionary-encode: a plain {@code Utf8} column.
+     */
+    public static boolean canEncode(Schema schema) {
+        return schema.getFields().stream().anyMatch(AdaptiveDictionaryEncoder::isCandidate);
+    }
+
+    private static boolean isCandidate(Field field) {
+        return field.getType().getTypeID() == ArrowType.ArrowTypeID.Utf8 && field.getDictionary() == null;
+    }
+
+    /**
+     * Picks the VARCHAR columns of {@code batches} with at most {@code maxValues} distinct values, each repeated
+     * at least twice on average, and builds their dictionaries. {@code batches} must be the complete result, with
+     * the same schema, so that later encoding cannot meet an unknown value.
+     *
+     * @return the encoder, or null if no column qualifies
+     */
+    public static AdaptiveDictionaryEncoder forResult(List<VectorSchemaRoot> batches, int maxValues,
+            BufferAllocator allocator) {
+        Objects.requireNonNull(batches, "batches must not be null");
+        if (batches.isEmpty()) {
+            return null;
+        }
+        Schema schema = batches.get(0).getSchema();
+        List<Field> fields = schema.getFields();
+        long rows = batches.stream().mapToLong(VectorSchemaRoot::getRowCount).sum();
+        List<Field> encodedFields = new ArrayList<>(fields.size());
+        DictionaryHashTable[] lookups = new DictionaryHashTable[fields.size()];
+        List<Dictionary> dictionaries = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                Set<Text> values = isCandidate(field)
+                        ? distinctValues(batches, i, (int) Math.min(maxValues, rows / 2))
+                        : null;
+                if (values == null || values.isEmpty()) {
+                    encodedFields.add(field);
+                    continue;
+                }
+                Dictionary dictionary = buildDictionary(field, values, dictionaries.size(), allocator);
+                dictionaries.add(dictionary);
+                lookups[i] = new DictionaryHashTable(dictionary.getVector());
+                DictionaryEncoding encoding = dictionary.getEncoding();
+                encodedFields.add(new Field(field.getName(),
+                        new FieldType(field.isNullable(), encoding.getIndexType(), encoding, field.getMetadata()),
+                        null));
+            }
+        } catch (RuntimeException e) {
+            dictionaries.forEach(d -> d.getVector().close());
+            throw e;
+        }
+
+        if (dictionaries.isEmpty()) {
+            return null;
+        }
+        VectorSchemaRoot root = VectorSchemaRoot.create(new Schema(encodedFields, schema.getCustomMetadata()), allocator);
+        return new AdaptiveDictionaryEncoder(root, lookups, dictionaries);
+    }
+
+    /**
+     * Returns null if column {@code column} of the batches has more than {@code limit} distinct non-null values.
+     */
+    private static Set<Text> distinctValues(List<VectorSchemaRoot> batches, int column, int limit) {
+        Set<Text> values = new LinkedHashSet<>();
+        for (VectorSchemaRoot batch : batches) {
+            VarCharVector vector = (VarCharVector) batch.getVector(column);
+            for (int row = 0; row < batch.getRowCount(); row++) {
+                if (vector.isNull(row)) {
+                    continue;
+                }
+                if (values.add(vector.getObject(row)) && values.size() > limit) {
+                    return null;
+                }
+            }
+        }
+        return values;
+    }
+
+    private static Dictionary buildDictionary(Field field, Set<Text> values, long id, BufferAllocator allocator) {
+        VarCharVector vector = new VarCharVector(field.getName(), allocator);
+        try {
+            vector.allocateNew(values.size());
+            int index = 0;
+            for (Text value : values) {
+                vector.setSafe(index++, value);
+            }
+            vector.setValueCount(values.size());
+        } catch (RuntimeException e) {
+            vector.close();
+            throw e;
+        }
+        int bitWidth = values.size() <= Byte.MAX_VALUE ? 8 : values.size() <= Short.MAX_VALUE ? 16 : 32;
+        return new Dictionary(vector, new DictionaryEncoding(id, false, new ArrowType.Int(bitWidth, true)));
+    }
+
+    /**
+     * Root holding the encoded batch; its schema references the dictionaries of {@link #getProvider()}.
+     */
+    public VectorSchemaRoot getRoot() {
+        return root;
+    }
+
+    public DictionaryProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Moves the contents of {@code plain} (one of the batches the encoder was built from) into {@link #getRoot()},
+     * replacing dictionary columns by their indices. {@code plain}'s vectors are left empty.
+     */
+    public void encode(VectorSchemaRoot plain) {
+        int rows = plain.getRowCount();
+        for (int i = 0; i < lookups.length; i++) {
+            FieldVector source = plain.getVector(i);
+            FieldVector target = root.getVector(i);
+            if (lookups[i] == null) {
+                source.makeTransferPair(target).transfer();
+                continue;
+            }
+            target.clear();
+            target.setInitialCapacity(rows);
+            target.allocateNew();
+            BaseIntVector indices = (BaseIntVector) target;
+            for (int row = 0; row < rows; row++) {
+                if (source.isNull(row)) {
+                    continue;
+                }
+                int index = lookups[i].getIndex(row, source);
+                if (index < 0) {
+                    throw new IllegalStateException("Column " + source.getName()
+                            + " has a value outside the dictionary built from the result");
+                }
+                indices.setWithPossibleTruncate(row, index);
+            }
+            source.clear();
+        }
+        root.setRowCount(rows);
+    }
+
+    @Override
+    public void close() {
+        root.close();
+        for (Dictionary dictionary : dictionaries) {
+            dictionary.getVector().close();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Initial vector capacities for the record batches of one query, so batches fill without {@code setSafe}
+ * reallocations.
+ * <p>
+ * A batch is allocated for {@code min(batchSize, rows left in the segment)} rows when Trino reported the
+ * segment's {@code rowsCount}. Variable-width columns are sized with the average bytes per value seen in the
+ * previous batches of the query (plus some headroom); until a column has been seen, the segment's JSON bytes
+ * per row spread over the columns serve as the estimate. Thread-safe: segments of a query are converted in
+ * parallel and all of them feed the same averages.
+ * <p>
+ * With a target batch size in bytes, the rows per batch follow the Arrow bytes per row of the batches seen so
+ * far instead of the fixed row count, so narrow results get large batches and wide ones small batches. Before
+ * the first batch, the segment's JSON bytes per row serve as the estimate.
+ */
+public final class BatchCapacityEstimator {
+    /** Bytes per value Arrow assumes for variable-width vectors when nothing better is known. */
+    static final double DEFAULT_BYTES_PER_VALUE = 8;
+    /** Learned averages are scaled up so that batches somewhat above the average still fit. */
+    static final double HEADROOM = 1.25;
+    /** Upper bound on rows per byte-targeted batch, for results of (almost) only nulls. */
+    static final int MAX_BATCH_ROWS = 1 << 20;
+
+    private final int columns;
+    private final AtomicLongArray dataBytes;
+    private final AtomicLongArray values;
+    private final long targetBatchBytes;
+    private final AtomicLong batchBytes = new AtomicLong();
+    private final AtomicLong batchRows = new AtomicLong();
+
+    public BatchCapacityEstimator(Schema schema) {
+        this(schema, 0);
+    }
+
+    /**
+     * @param targetBatchBytes Arrow bytes per batch to aim for, or 0 for a fixed number of rows per batch
+     */
+    public BatchCapacityEstimator(Schema schema, long targetBatchBytes) {
+        this.targetBatchBytes = Math.max(0, targetBatchBytes);
+        this.columns = schema.getFields().size();
+        this.dataBytes = new AtomicLongArray(columns);
+        this.values = new AtomicLongArray(columns);
+    }
+
+    /**
+     * Returns the sizing for one segment.
+     *
+     * @param rowsCount   rows in the segment, or null if unknown
+     * @param segmentSize size of the segment's JSON in bytes, or null if unknown; for a compressed segment, the
+     *                    uncompressed size, since compressed bytes per row would undersize every column
+     */
+    public Segment forSegment(Long rowsCount, Long segmentSize) {
+        double bytesPerValue = DEFAULT_BYTES_PER_VALUE;
+        double bytesPerRow = 0;
+        if (rowsCount != null && rowsCount > 0 && segmentSize != null && segmentSize > 0 && columns > 0) {
+            bytesPerRow = (double) segmentSize / rowsCount;
+            bytesPerValue = Math.max(DEFAULT_BYTES_PER_VALUE, bytesPerRow / columns);
+        }
+        return new Segment(rowsCount != null && rowsCount >= 0 ? rowsCount : -1, bytesPerValue, bytesPerRow);
+    }
+
+    /**
+     * Expected bytes per value of a variable-width column.
+     */
+    double bytesPerValue(int column, double fallback) {
+        long n = values.get(column);
+        return n == 0 ? fallback : HEADROOM * dataBytes.get(column) / n;
+    }
+
+    /**
+     * Rows of the next batch: {@code batchSize} without a byte target, otherwise the byte target divided by the
+     * Arrow bytes per row seen so far (or {@code fallbackBytesPerRow} until a batch is seen; {@code batchSize}
+     * if that is unknown as well).
+     */
+    int batchRows(int batchSize, double fallbackBytesPerRow) {
+        if (targetBatchBytes == 0) {
+            return batchSize;
+        }
+        long rows = batchRows.get();
+        double bytesPerRow = rows > 0 ? (double) batchBytes.get() / rows : fallbackBytesPerRow;
+        if (bytesPerRow <= 0) {
+            return batchSize;
+        }
+        return (int) Math.max(1, Math.min(MAX_BATCH_ROWS, targetBatchBytes / bytesPerRow));
+    }
+
+    /**
+     * Sizing state of one segment. Not thread-safe; used by the thread converting the segment.
+     */
+    public final class Segment {
+        private final double fallbackBytesPerValue;
+        /** JSON bytes per row of the segment, or 0 if unknown. */
+        private final double fallbackBytesPerRow;
+        /** Rows of the segment not yet converted, or -1 if unknown. */
+        private long remainingRows;
+
+        private Segment(long remainingRows, double fallbackBytesPerValue, double fallbackBytesPerRow) {
+            this.remainingRows = remainingRows;
+            this.fallbackBytesPerValue = fallbackBytesPerValue;
+            this.fallbackBytesPerRow = fallbackBytesPerRow;
+        }
+
+        /**
+         * Sizing for a chunk of this segment converted on its own; the rows per chunk are unknown.
+         */
+        Segment chunk() {
+            return new Segment(-1, fallbackBytesPerValue, fallbackBytesPerRow);
+        }
+
+        /**
+         * Rows to put into the next batch, given the configured rows per batch.
+         */
+        int batchRows(int batchSize) {
+            return BatchCapacityEstimator.this.batchRows(batchSize, fallbackBytesPerRow);
+        }
+
+        /**
+         * Sets the initial capacity of every vector for the next batch and allocates the root.
+         */
+        void allocate(VectorSchemaRoot root, int batchSize) {
+            // Once the reported rows are used up, expect nothing more; should more rows come, setSafe still grows the vectors.
+            int rows = remainingRows >= 0 ? (int) Math.max(1, Math.min(batchSize, remainingRows)) : batchSize;
+            List<FieldVector> vectors = root.getFieldVectors();
+            for (int i = 0; i < vectors.size(); i++) {
+                FieldVector vector = vectors.get(i);
+                if (vector instanceof BaseVariableWidthVector variableWidth) {
+                    variableWidth.setInitialCapacity(rows, bytesPerValue(i, fallbackBytesPerValue));
+                } else {
+                    vector.setInitialCapacity(rows);
+                }
+            }
+            root.allocateNew();
+        }
+
+        /**
+         * Records a filled batch; its row count must already be set.
+         */
+        void completed(VectorSchemaRoot root) {
+            int rowCount = root.getRowCount();
+            if (remainingRows >= 0) {
+                remainingRows = Math.max(0, remainingRows - rowCount);
+            }
+            List<FieldVector> vectors = root.getFieldVectors();
+            long bytes = 0;
+            for (int i = 0; i < vectors.size(); i++) {
+                FieldVector vector = vectors.get(i);
+                if (vector instanceof BaseVariableWidthVector variableWidth) {
+                    dataBytes.addAndGet(i, variableWidth.getStartOffset(rowCount));
+                    values.addAndGet(i, rowCount);
+                }
+                bytes += vector.getBufferSize();
+            }
+            if (targetBatchBytes > 0 && rowCount > 0) {
+                batchBytes.addAndGet(bytes);
+                batchRows.addAndGet(rowCount);
+            }
+        }
+    }
+}
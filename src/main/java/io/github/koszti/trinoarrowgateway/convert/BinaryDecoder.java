@@ -0,0 +1,255 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decodes Trino's text forms of binary values into reusable byte buffers: base64 VARBINARY,
+ * UUID ({@code 8-4-4-4-12} hex) and IPADDRESS (IPv4 dotted quad or IPv6, stored as 16 bytes with IPv4
+ * addresses IPv4-mapped, like Trino does). No {@code String} or per-cell {@code byte[]} is allocated.
+ * Not thread-safe; each row decoder or reader owns one.
+ */
+final class BinaryDecoder {
+    private static final byte[] BASE64 = new byte[128];
+
+    static {
+        Arrays.fill(BASE64, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private byte[] buffer = new byte[256];
+    private final byte[] bytes16 = new byte[16];
+    private byte[] scratch = new byte[64];
+
+    /**
+     * Returns the buffer holding the bytes written by the last {@link #decodeBase64} call.
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int decodeBase64(char[] chars, int offset, int length) throws IOException {
+        return decodeBase64(copy(chars, offset, length), 0, length);
+    }
+
+    /**
+     * Decodes padded base64 in {@code s[from, to)} into {@link #buffer()}.
+     *
+     * @return number of bytes written
+     */
+    int decodeBase64(byte[] s, int from, int to) throws IOException {
+        int length = to - from;
+        if (length % 4 != 0) {
+            throw malformed("base64", s, from, to);
+        }
+        int padding = length == 0 ? 0 : (s[to - 1] == '=' ? 1 : 0) + (s[to - 2] == '=' ? 1 : 0);
+        int decoded = length / 4 * 3 - padding;
+        if (buffer.length < decoded) {
+            buffer = new byte[Math.max(decoded, buffer.length * 2)];
+        }
+        byte[] out = buffer;
+        int o = 0;
+        int end = to - (padding > 0 ? 4 : 0);
+        int i = from;
+        for (; i < end; i += 4) {
+            int bits = sextet(s, i, from, to) << 18 | sextet(s, i + 1, from, to) << 12
+                    | sextet(s, i + 2, from, to) << 6 | sextet(s, i + 3, from, to);
+            out[o++] = (byte) (bits >> 16);
+            out[o++] = (byte) (bits >> 8);
+            out[o++] = (byte) bits;
+        }
+        if (padding > 0) {
+            int bits = sextet(s, i, from, to) << 18 | sextet(s, i + 1, from, to) << 12;
+            out[o++] = (byte) (bits >> 16);
+            if (padding == 1) {
+                bits |= sextet(s, i + 2, from, to) << 6;
+                out[o++] = (byte) (bits >> 8);
+            }
+        }
+        return o;
+    }
+
+    byte[] parseUuid(char[] chars, int offset, int length) throws IOException {
+        return parseUuid(copy(chars, offset, length), 0, length);
+    }
+
+    /**
+     * Parses a UUID in {@code s[from, to)} into a reused 16-byte array, most significant byte first.
+     */
+    byte[] parseUuid(byte[] s, int from, int to) throws IOException {
+        if (to - from != 36 || s[from + 8] != '-' || s[from + 13] != '-' || s[from + 18] != '-' || s[from + 23] != '-') {
+            throw malformed("UUID", s, from, to);
+        }
+        int o = 0;
+        for (int i = from; i < to; i++) {
+            if (s[i] == '-') {
+                continue;
+            }
+            int high = hex(s[i]);
+            int low = hex(s[++i]);
+            if (high < 0 || low < 0) {
+                throw malformed("UUID", s, from, to);
+            }
+            bytes16[o++] = (byte) (high << 4 | low);
+        }
+        return bytes16;
+    }
+
+    byte[] parseIpAddress(char[] chars, int offset, int length) throws IOException {
+        return parseIpAddress(copy(chars, offset, length), 0, length);
+    }
+
+    /**
+     * Parses an IPv4 or IPv6 address in {@code s[from, to)} into a reused 16-byte array in network order.
+     * IPv4 addresses are stored IPv4-mapped ({@code ::ffff:a.b.c.d}).
+     */
+    byte[] parseIpAddress(byte[] s, int from, int to) throws IOException {
+        byte[] out = bytes16;
+        Arrays.fill(out, (byte) 0);
+        int colon = from;
+        while (colon < to && s[colon] != ':') {
+            colon++;
+        }
+        if (colon == to) {
+            out[10] = (byte) 0xff;
+            out[11] = (byte) 0xff;
+            parseIpv4(s, from, to, out, 12);
+            return out;
+        }
+
+        int w = 0;
+        int gapAt = -1;
+        int i = from;
+        if (to - i >= 2 && s[i] == ':' && s[i + 1] == ':') {
+            gapAt = 0;
+            i += 2;
+        }
+        while (i < to) {
+            int start = i;
+            boolean dotted = false;
+            while (i < to && s[i] != ':') {
+                dotted |= s[i] == '.';
+                i++;
+            }
+            if (dotted) {
+                // Embedded IPv4 tail, e.g. ::ffff:1.2.3.4
+                if (i != to || w > 12) {
+                    throw malformed("IP address", s, from, to);
+                }
+                parseIpv4(s, start, i, out, w);
+                w += 4;
+                break;
+            }
+            int group = hexGroup(s, start, i);
+            if (group < 0 || w > 14) {
+                throw malformed("IP address", s, from, to);
+            }
+            out[w++] = (byte) (group >> 8);
+            out[w++] = (byte) group;
+            if (i == to) {
+                break;
+            }
+            i++;
+            if (i < to && s[i] == ':') {
+                if (gapAt >= 0) {
+                    throw malformed("IP address", s, from, to);
+                }
+                gapAt = w;
+                i++;
+            } else if (i == to) {
+                throw malformed("IP address", s, from, to);
+            }
+        }
+        if (gapAt >= 0) {
+            if (w == 16) {
+                throw malformed("IP address", s, from, to);
+            }
+            int shift = 16 - w;
+            System.arraycopy(out, gapAt, out, gapAt + shift, w - gapAt);
+            Arrays.fill(out, gapAt, gapAt + shift, (byte) 0);
+        } else if (w != 16) {
+            throw malformed("IP address", s, from, to);
+        }
+        return out;
+    }
+
+    private static void parseIpv4(byte[] s, int from, int to, byte[] out, int at) throws IOException {
+        int i = from;
+        for (int octet = 0; octet < 4; octet++) {
+            if (octet > 0) {
+                if (i >= to || s[i] != '.') {
+                    throw malformed("IP address", s, from, to);
+                }
+                i++;
+            }
+            int start = i;
+            int value = 0;
+            while (i < to && s[i] >= '0' && s[i] <= '9' && i - start < 3) {
+                value = value * 10 + (s[i++] - '0');
+            }
+            if (i == start || value > 255) {
+                throw malformed("IP address", s, from, to);
+            }
+            out[at + octet] = (byte) value;
+        }
+        if (i != to) {
+            throw malformed("IP address", s, from, to);
+        }
+    }
+
+    private static int hexGroup(byte[] s, int from, int to) {
+        if (to - from < 1 || to - from > 4) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = hex(s[i]);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private static int hex(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static int sextet(byte[] s, int at, int from, int to) throws IOException {
+        byte b = s[at];
+        int value = b >= 0 ? BASE64[b] : -1;
+        if (value < 0) {
+            throw malformed("base64", s, from, to);
+        }
+        return value;
+    }
+
+    private byte[] copy(char[] chars, int offset, int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            char c = chars[offset + i];
+            scratch[i] = c < 0x80 ? (byte) c : (byte) '?';
+        }
+        return scratch;
+    }
+
+    private static IOException malformed(String what, byte[] s, int from, int to) {
+        return new IOException("Invalid " + what + " '" + new String(s, from, to - from, StandardCharsets.UTF_8) + "'");
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.Decimal256Vector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.FixedSizeBinaryVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeMicroVector;
+import org.apache.arrow.vector.TimeMilliVector;
+import org.apache.arrow.vector.TimeNanoVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.ViewVarCharVector;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.MapVector;
+import org.apache.arrow.vector.complex.StructVector;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+
+import java.util.List;
+
+/**
+ * Arrow column shapes the row decoders know how to write, with the matching vector class
+ * and {@link ColumnWriters} method.
+ */
+enum ColumnKind {
+    BIGINT(BigIntVector.class, "writeBigInt", null),
+    INT(IntVector.class, "writeInt", null),
+    SMALLINT(SmallIntVector.class, "writeSmallInt", null),
+    TINYINT(TinyIntVector.class, "writeTinyInt", null),
+    FLOAT8(Float8Vector.class, "writeFloat8", null),
+    FLOAT4(Float4Vector.class, "writeFloat4", null),
+    UTF8(VarCharVector.class, "writeUtf8", Utf8Encoder.class),
+    UTF8_VIEW(ViewVarCharVector.class, "writeUtf8View", Utf8Encoder.class),
+    BIT(BitVector.class, "writeBit", null),
+    DATE_DAY(DateDayVector.class, "writeDateDay", Utf8Encoder.class),
+    // Timestamps with and without time zone share a kind; the zone, if any, is part of the value text.
+    TIMESTAMP_MILLI(TimeStampVector.class, "writeTimestampMilli", TimestampParser.class),
+    TIMESTAMP_MICRO(TimeStampVector.class, "writeTimestampMicro", TimestampParser.class),
+    TIMESTAMP_NANO(TimeStampVector.class, "writeTimestampNano", TimestampParser.class),
+    DECIMAL128(DecimalVector.class, "writeDecimal", DecimalParser.class),
+    DECIMAL256(Decimal256Vector.class, "writeDecimal256", DecimalParser.class),
+    VARBINARY(VarBinaryVector.class, "writeVarBinary", BinaryDecoder.class),
+    UUID(FixedSizeBinaryVector.class, "writeUuid", BinaryDecoder.class),
+    IPADDRESS(FixedSizeBinaryVector.class, "writeIpAddress", BinaryDecoder.class),
+    TIME_MILLI(TimeMilliVector.class, "writeTimeMilli", TimestampParser.class),
+    TIME_MICRO(TimeMicroVector.class, "writeTimeMicro", TimestampParser.class),
+    TIME_NANO(TimeNanoVector.class, "writeTimeNano", TimestampParser.class),
+    // Nested columns are written through a NestedValueWriter built for the column's vector tree.
+    LIST(ListVector.class, "writeNested", null),
+    MAP(MapVector.class, "writeNested", null),
+    STRUCT(StructVector.class, "writeNested", null);
+
+    private final Class<? extends FieldVector> vectorClass;
+    private final String writerMethod;
+    private final Class<?> helperClass;
+
+    ColumnKind(Class<? extends FieldVector> vectorClass, String writerMethod, Class<?> helperClass) {
+        this.vectorClass = vectorClass;
+        this.writerMethod = writerMethod;
+        this.helperClass = helperClass;
+    }
+
+    Class<? extends FieldVector> vectorClass() {
+        return vectorClass;
+    }
+
+    String writerMethod() {
+        return writerMethod;
+    }
+
+    /**
+     * Type of the per-decoder helper ({@link Utf8Encoder}, {@link TimestampParser}, ...) the writer takes
+     * before the row index, or null if it takes none.
+     */
+    Class<?> helperClass() {
+        return helperClass;
+    }
+
+    /**
+     * Whether the column is an ARRAY, MAP or ROW written by a {@link NestedValueWriter}.
+     */
+    boolean nested() {
+        return this == LIST || this == MAP || this == STRUCT;
+    }
+
+    /**
+     * Units per second of a timestamp or time kind.
+     */
+    int unitsPerSecond() {
+        return switch (this) {
+            case TIMESTAMP_MILLI, TIME_MILLI -> 1_000;
+            case TIMESTAMP_MICRO, TIME_MICRO -> 1_000_000;
+            case TIMESTAMP_NANO, TIME_NANO -> 1_000_000_000;
+            default -> throw new IllegalStateException(this + " is not a timestamp or time");
+        };
+    }
+
+    /**
+     * Returns the kind for the field, or null if the field's type, or the type of any of its children,
+     * is not supported.
+     */
+    static ColumnKind of(Field field) {
+        ArrowType type = field.getType();
+        return switch (type.getTypeID()) {
+            case Int -> switch (((ArrowType.Int) type).getBitWidth()) {
+                case 64 -> BIGINT;
+                case 32 -> INT;
+                case 16 -> SMALLINT;
+                case 8 -> TINYINT;
+                default -> null;
+            };
+            case FloatingPoint -> switch (((ArrowType.FloatingPoint) type).getPrecision()) {
+                case DOUBLE -> FLOAT8;
+                case SINGLE -> FLOAT4;
+                default -> null;
+            };
+            case Utf8 -> UTF8;
+            case Utf8View -> UTF8_VIEW;
+            case Bool -> BIT;
+            case Date -> ((ArrowType.Date) type).getUnit() == DateUnit.DAY ? DATE_DAY : null;
+            case Decimal -> switch (((ArrowType.Decimal) type).getBitWidth()) {
+                case 128 -> DECIMAL128;
+                case 256 -> DECIMAL256;
+                default -> null;
+            };
+            case Binary -> VARBINARY;
+            case FixedSizeBinary -> ((ArrowType.FixedSizeBinary) type).getByteWidth() != 16 ? null
+                    : switch (String.valueOf(field.getMetadata().get(SpooledRowsToArrowConverter.TRINO_TYPE_METADATA))) {
+                        case "uuid" -> UUID;
+                        case "ipaddress" -> IPADDRESS;
+                        default -> null;
+                    };
+            case Time -> switch (((ArrowType.Time) type).getUnit()) {
+                case MILLISECOND -> TIME_MILLI;
+                case MICROSECOND -> TIME_MICRO;
+                case NANOSECOND -> TIME_NANO;
+                default -> null;
+            };
+            case Timestamp -> switch (((ArrowType.Timestamp) type).getUnit()) {
+                case MILLISECOND -> TIMESTAMP_MILLI;
+                case MICROSECOND -> TIMESTAMP_MICRO;
+                case NANOSECOND -> TIMESTAMP_NANO;
+                default -> null;
+            };
+            case List -> of(field.getChildren().get(0)) != null ? LIST : null;
+            case Map -> {
+                List<Field> entry = field.getChildren().get(0).getChildren();
+                ColumnKind key = of(entry.get(0));
+                // Keys arrive as JSON object member names, so they must be scalars.
+                yield key != null && !key.nested() && of(entry.get(1)) != null ? MAP : null;
+            }
+            case Struct -> field.getChildren().stream().allMatch(child -> of(child) != null) ? STRUCT : null;
+            default -> null;
+        };
+    }
+}
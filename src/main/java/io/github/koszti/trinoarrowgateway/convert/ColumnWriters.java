@@ -0,0 +1,340 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.Decimal256Vector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FixedSizeBinaryVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeMicroVector;
+import org.apache.arrow.vector.TimeMilliVector;
+import org.apache.arrow.vector.TimeNanoVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.ViewVarCharVector;
+
+import java.io.IOException;
+
+/**
+ * Typed per-column write steps shared by the interpreted and the generated {@link RowDecoder}s.
+ * <p>
+ * Each method reads the next value token of the current row and writes it at {@code rowIndex}.
+ * It returns false if the row ended instead (short row), in which case the row's END_ARRAY was consumed.
+ */
+final class ColumnWriters {
+    private ColumnWriters() {}
+
+    static boolean writeBigInt(JsonParser parser, BigIntVector vector, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            vector.setSafe(rowIndex, parser.getLongValue());
+        }
+        return true;
+    }
+
+    static boolean writeInt(JsonParser parser, IntVector vector, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            vector.setSafe(rowIndex, (int) parser.getLongValue());
+        }
+        return true;
+    }
+
+    static boolean writeSmallInt(JsonParser parser, SmallIntVector vector, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            vector.setSafe(rowIndex, (short) parser.getLongValue());
+        }
+        return true;
+    }
+
+    static boolean writeTinyInt(JsonParser parser, TinyIntVector vector, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            vector.setSafe(rowIndex, (byte) parser.getLongValue());
+        }
+        return true;
+    }
+
+    static boolean writeFloat8(JsonParser parser, Float8Vector vector, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else if (token == JsonToken.VALUE_STRING) {
+            // NaN and +/-Infinity are written as strings.
+            vector.setSafe(rowIndex, Double.parseDouble(parser.getText()));
+        } else {
+            vector.setSafe(rowIndex, parser.getDoubleValue());
+        }
+        return true;
+    }
+
+    static boolean writeFloat4(JsonParser parser, Float4Vector vector, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else if (token == JsonToken.VALUE_STRING) {
+            // NaN and +/-Infinity are written as strings.
+            vector.setSafe(rowIndex, Float.parseFloat(parser.getText()));
+        } else {
+            vector.setSafe(rowIndex, parser.getFloatValue());
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the parser's text buffer straight into {@code encoder}'s scratch bytes, so no {@code String}
+     * or per-cell {@code byte[]} is allocated.
+     */
+    static boolean writeUtf8(JsonParser parser, VarCharVector vector, Utf8Encoder encoder, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            int len = encoder.encode(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            vector.setSafe(rowIndex, encoder.buffer(), 0, len);
+        }
+        return true;
+    }
+
+    static boolean writeUtf8View(JsonParser parser, ViewVarCharVector vector, Utf8Encoder encoder, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            int len = encoder.encode(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            vector.setSafe(rowIndex, encoder.buffer(), 0, len);
+        }
+        return true;
+    }
+
+    static boolean writeBit(JsonParser parser, BitVector vector, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            vector.setSafe(rowIndex, parser.getBooleanValue() ? 1 : 0);
+        }
+        return true;
+    }
+
+    static boolean writeDateDay(JsonParser parser, DateDayVector vector, Utf8Encoder encoder, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            int len = encoder.encode(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            vector.setSafe(rowIndex, Utf8Values.parseDate(encoder.buffer(), 0, len));
+        }
+        return true;
+    }
+
+    static boolean writeTimestampMilli(JsonParser parser, TimeStampVector vector, TimestampParser timestamps, int rowIndex)
+            throws IOException {
+        return writeTimestamp(parser, vector, timestamps, rowIndex, 1_000);
+    }
+
+    static boolean writeTimestampMicro(JsonParser parser, TimeStampVector vector, TimestampParser timestamps, int rowIndex)
+            throws IOException {
+        return writeTimestamp(parser, vector, timestamps, rowIndex, 1_000_000);
+    }
+
+    static boolean writeTimestampNano(JsonParser parser, TimeStampVector vector, TimestampParser timestamps, int rowIndex)
+            throws IOException {
+        return writeTimestamp(parser, vector, timestamps, rowIndex, 1_000_000_000);
+    }
+
+    private static boolean writeTimestamp(JsonParser parser, TimeStampVector vector, TimestampParser timestamps,
+            int rowIndex, int unitsPerSecond) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            vector.setSafe(rowIndex, timestamps.parse(parser.getTextCharacters(), parser.getTextOffset(),
+                    parser.getTextLength(), unitsPerSecond));
+        }
+        return true;
+    }
+
+    static boolean writeDecimal(JsonParser parser, DecimalVector vector, DecimalParser decimals, int rowIndex)
+            throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            decimals.write(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength(), vector, rowIndex);
+        }
+        return true;
+    }
+
+    static boolean writeDecimal256(JsonParser parser, Decimal256Vector vector, DecimalParser decimals, int rowIndex)
+            throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            decimals.write(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength(), vector, rowIndex);
+        }
+        return true;
+    }
+
+    static boolean writeVarBinary(JsonParser parser, VarBinaryVector vector, BinaryDecoder binary, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            int len = binary.decodeBase64(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            vector.setSafe(rowIndex, binary.buffer(), 0, len);
+        }
+        return true;
+    }
+
+    static boolean writeUuid(JsonParser parser, FixedSizeBinaryVector vector, BinaryDecoder binary, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            vector.setSafe(rowIndex, binary.parseUuid(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+        }
+        return true;
+    }
+
+    static boolean writeIpAddress(JsonParser parser, FixedSizeBinaryVector vector, BinaryDecoder binary, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            vector.setSafe(rowIndex,
+                    binary.parseIpAddress(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+        }
+        return true;
+    }
+
+    static boolean writeTimeMilli(JsonParser parser, TimeMilliVector vector, TimestampParser timestamps, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            vector.setSafe(rowIndex, (int) timestamps.parseTime(parser.getTextCharacters(), parser.getTextOffset(),
+                    parser.getTextLength(), 1_000));
+        }
+        return true;
+    }
+
+    static boolean writeTimeMicro(JsonParser parser, TimeMicroVector vector, TimestampParser timestamps, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            vector.setSafe(rowIndex, timestamps.parseTime(parser.getTextCharacters(), parser.getTextOffset(),
+                    parser.getTextLength(), 1_000_000));
+        }
+        return true;
+    }
+
+    static boolean writeTimeNano(JsonParser parser, TimeNanoVector vector, TimestampParser timestamps, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(rowIndex);
+        } else {
+            vector.setSafe(rowIndex, timestamps.parseTime(parser.getTextCharacters(), parser.getTextOffset(),
+                    parser.getTextLength(), 1_000_000_000));
+        }
+        return true;
+    }
+
+    /**
+     * Writes an ARRAY, MAP or ROW value through the column's writer tree.
+     */
+    static boolean writeNested(JsonParser parser, NestedValueWriter writer, int rowIndex) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        writer.write(parser, token, rowIndex);
+        return true;
+    }
+
+    /**
+     * Consumes the END_ARRAY of a row whose columns were all written.
+     */
+    static void endRow(JsonParser parser) throws IOException {
+        JsonToken end = parser.nextToken();
+        if (end != JsonToken.END_ARRAY) {
+            throw new IOException("Expected END_ARRAY after row values, got " + end);
+        }
+    }
+}
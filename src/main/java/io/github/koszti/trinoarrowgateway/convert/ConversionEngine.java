@@ -0,0 +1,22 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+/**
+ * Parser used to read Trino's array-of-arrays row payload.
+ */
+public enum ConversionEngine {
+    /**
+     * General-purpose Jackson streaming parser.
+     */
+    JACKSON,
+    /**
+     * Hand-written scanner over the raw UTF-8 bytes that parses values straight into Arrow vectors.
+     * Schemas with column types it does not support use {@link #JACKSON}.
+     */
+    BYTES,
+    /**
+     * Two-phase parser: a structural index of the payload is built with the Vector API
+     * ({@code jdk.incubator.vector}), then column values are materialized from the indexed offsets.
+     * Uses {@link #BYTES} when the incubator module is not enabled.
+     */
+    SIMD
+}
@@ -0,0 +1,202 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import org.apache.arrow.vector.Decimal256Vector;
+import org.apache.arrow.vector.DecimalVector;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Parses Trino's DECIMAL text ({@code [-]digits[.digits]}, as a JSON string or number) into the unscaled value
+ * of a {@link DecimalVector} or {@link Decimal256Vector} without allocating {@code BigDecimal}/{@code BigInteger}.
+ * <p>
+ * Values with up to 18 significant digits go through {@code setSafe(int, long)}; longer ones are accumulated
+ * in 64-bit limbs and written as two's-complement big-endian bytes. Fewer fractional digits than the column
+ * scale are padded; extra fractional digits must be zeros. Not thread-safe; each row decoder or reader owns one.
+ */
+final class DecimalParser {
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final long[] POWERS_OF_TEN = new long[MAX_LONG_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /** Unsigned magnitude, least significant limb first. */
+    private final long[] limbs = new long[4];
+    private int limbCount;
+    /** Digits not yet folded into {@link #limbs}. */
+    private long chunk;
+    private int chunkDigits;
+    private final byte[] bytes128 = new byte[16];
+    private final byte[] bytes256 = new byte[32];
+    private byte[] scratch = new byte[64];
+
+    void write(char[] chars, int offset, int length, DecimalVector vector, int rowIndex) throws IOException {
+        write(copy(chars, offset, length), 0, length, vector, rowIndex);
+    }
+
+    void write(char[] chars, int offset, int length, Decimal256Vector vector, int rowIndex) throws IOException {
+        write(copy(chars, offset, length), 0, length, vector, rowIndex);
+    }
+
+    void write(byte[] s, int from, int to, DecimalVector vector, int rowIndex) throws IOException {
+        if (parse(s, from, to, vector.getPrecision(), vector.getScale(), 2)) {
+            vector.setSafe(rowIndex, limbs[0]);
+        } else {
+            vector.setBigEndianSafe(rowIndex, toBigEndian(bytes128, negative(s, from)));
+        }
+    }
+
+    void write(byte[] s, int from, int to, Decimal256Vector vector, int rowIndex) throws IOException {
+        if (parse(s, from, to, vector.getPrecision(), vector.getScale(), 4)) {
+            vector.setSafe(rowIndex, limbs[0]);
+        } else {
+            vector.setBigEndianSafe(rowIndex, toBigEndian(bytes256, negative(s, from)));
+        }
+    }
+
+    /**
+     * Parses {@code s[from, to)} scaled to {@code scale} into {@link #limbs}.
+     *
+     * @return true if the signed value fits in a long and is held in {@code limbs[0]}
+     */
+    private boolean parse(byte[] s, int from, int to, int precision, int scale, int maxLimbs) throws IOException {
+        int i = from;
+        if (i < to && (s[i] == '-' || s[i] == '+')) {
+            i++;
+        }
+        Arrays.fill(limbs, 0);
+        limbCount = 0;
+        chunk = 0;
+        chunkDigits = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+        boolean anyDigit = false;
+        for (; i < to; i++) {
+            byte b = s[i];
+            if (b == '.' && !point) {
+                point = true;
+                continue;
+            }
+            if (b < '0' || b > '9') {
+                throw malformed(s, from, to);
+            }
+            anyDigit = true;
+            if (point) {
+                if (fractionDigits == scale) {
+                    if (b != '0') {
+                        throw new IOException("Decimal '" + text(s, from, to) + "' has more than " + scale + " fractional digits");
+                    }
+                    continue;
+                }
+                fractionDigits++;
+            }
+            // Leading zeros do not count against the precision.
+            if (digits > 0 || b != '0') {
+                digits++;
+                appendDigit(b - '0', maxLimbs, s, from, to);
+            }
+        }
+        if (!anyDigit) {
+            throw malformed(s, from, to);
+        }
+        if (digits > 0) {
+            for (; fractionDigits < scale; fractionDigits++) {
+                digits++;
+                appendDigit(0, maxLimbs, s, from, to);
+            }
+        }
+        if (digits > precision) {
+            throw new IOException("Decimal '" + text(s, from, to) + "' exceeds precision " + precision);
+        }
+        if (limbCount == 0) {
+            limbs[0] = negative(s, from) ? -chunk : chunk;
+            return true;
+        }
+        if (chunkDigits > 0) {
+            mulAdd(POWERS_OF_TEN[chunkDigits], chunk, maxLimbs, s, from, to);
+        }
+        return false;
+    }
+
+    private void appendDigit(int digit, int maxLimbs, byte[] s, int from, int to) throws IOException {
+        chunk = chunk * 10 + digit;
+        if (++chunkDigits == MAX_LONG_DIGITS) {
+            mulAdd(POWERS_OF_TEN[MAX_LONG_DIGITS], chunk, maxLimbs, s, from, to);
+            chunk = 0;
+            chunkDigits = 0;
+        }
+    }
+
+    /**
+     * {@code limbs = limbs * multiplier + addend}.
+     */
+    private void mulAdd(long multiplier, long addend, int maxLimbs, byte[] s, int from, int to) throws IOException {
+        long carry = addend;
+        for (int i = 0; i < limbCount; i++) {
+            long low = limbs[i] * multiplier;
+            long high = Math.unsignedMultiplyHigh(limbs[i], multiplier);
+            long sum = low + carry;
+            if (Long.compareUnsigned(sum, low) < 0) {
+                high++;
+            }
+            limbs[i] = sum;
+            carry = high;
+        }
+        if (carry != 0) {
+            if (limbCount == maxLimbs) {
+                throw new IOException("Decimal '" + text(s, from, to) + "' does not fit in " + maxLimbs * 64 + " bits");
+            }
+            limbs[limbCount++] = carry;
+        }
+    }
+
+    /**
+     * Writes the two's complement of the (possibly negated) magnitude into {@code out}, most significant byte first.
+     */
+    private byte[] toBigEndian(byte[] out, boolean negative) {
+        long carry = negative ? 1 : 0;
+        for (int limb = 0; limb < out.length / 8; limb++) {
+            long value = limbs[limb];
+            if (negative) {
+                value = ~value + carry;
+                carry = carry != 0 && value == 0 ? 1 : 0;
+            }
+            int at = out.length - 8 * (limb + 1);
+            for (int b = 7; b >= 0; b--) {
+                out[at + b] = (byte) value;
+                value >>>= 8;
+            }
+        }
+        return out;
+    }
+
+    private byte[] copy(char[] chars, int offset, int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            char c = chars[offset + i];
+            scratch[i] = c < 0x80 ? (byte) c : (byte) '?';
+        }
+        return scratch;
+    }
+
+    private static boolean negative(byte[] s, int from) {
+        return s[from] == '-';
+    }
+
+    private static IOException malformed(byte[] s, int from, int to) {
+        return new IOException("Invalid decimal '" + text(s, from, to) + "'");
+    }
+
+    private static String text(byte[] s, int from, int to) {
+        return new String(s, from, to - from, StandardCharsets.UTF_8);
+    }
+}
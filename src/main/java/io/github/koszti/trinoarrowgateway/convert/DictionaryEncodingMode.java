@@ -0,0 +1,17 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+/**
+ * Whether low-cardinality VARCHAR columns are sent dictionary-encoded.
+ */
+public enum DictionaryEncodingMode {
+    /**
+     * Send every column as converted.
+     */
+    OFF,
+    /**
+     * Dictionary-encode VARCHAR columns with few distinct values in streams short enough to be held back
+     * completely before they start; longer streams are delayed by the held back rows and sent plain. See
+     * {@link AdaptiveDictionaryEncoder}.
+     */
+    AUTO
+}
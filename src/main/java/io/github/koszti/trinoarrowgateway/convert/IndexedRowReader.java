@@ -0,0 +1,291 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.Decimal256Vector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.FixedSizeBinaryVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeMicroVector;
+import org.apache.arrow.vector.TimeMilliVector;
+import org.apache.arrow.vector.TimeNanoVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.ViewVarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Field;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Two-phase {@link RowReader}: the whole payload is read and indexed with {@link StructuralIndex}, then rows
+ * are materialized by walking the structural positions. Every value is the trimmed byte range between two
+ * consecutive structural characters, so no byte is examined by a scalar tokenizer.
+ * <p>
+ * Supports the same {@link ColumnKind}s as {@link Utf8RowReader}.
+ */
+final class IndexedRowReader implements RowReader {
+
+    private final InputStream in;
+    private final FieldVector[] vectors;
+    private final ColumnKind[] kinds;
+    private byte[] data;
+    private StructuralIndex index;
+    private int next;
+    private byte[] scratch = new byte[256];
+    private final TimestampParser timestamps = new TimestampParser();
+    private final DecimalParser decimals = new DecimalParser();
+    private final BinaryDecoder binary = new BinaryDecoder();
+    private boolean finished;
+
+    IndexedRowReader(InputStream in, VectorSchemaRoot root) {
+        this.in = in;
+        List<Field> fields = root.getSchema().getFields();
+        this.vectors = new FieldVector[fields.size()];
+        this.kinds = new ColumnKind[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            vectors[i] = root.getVector(i);
+            kinds[i] = ColumnKind.of(fields.get(i));
+            if (kinds[i] == null || kinds[i].nested()) {
+                throw new IllegalArgumentException("Unsupported Arrow type " + fields.get(i).getType()
+                        + " for field " + fields.get(i).getName());
+            }
+        }
+    }
+
+    @Override
+    public boolean readRow(int rowIndex) throws IOException {
+        if (finished) {
+            return false;
+        }
+        int prev;
+        if (index == null) {
+            if (!open()) {
+                return false;
+            }
+            prev = position(0);
+            next = 1;
+            if (charAt(next) == ']') {
+                expectBlank(prev + 1, position(next));
+                finished = true;
+                return false;
+            }
+        } else {
+            // next points at the separator after the previous row.
+            expectBlank(position(next - 1) + 1, position(next));
+            int c = charAt(next);
+            if (c == ']') {
+                finished = true;
+                return false;
+            }
+            if (c != ',') {
+                throw malformed("',' or ']' after row", next);
+            }
+            prev = position(next);
+            next++;
+        }
+        if (charAt(next) != '[') {
+            throw malformed("'[' for row", next);
+        }
+        expectBlank(prev + 1, position(next));
+        prev = position(next);
+        next++;
+
+        int col = 0;
+        while (true) {
+            int at = position(next);
+            int c = data[at];
+            if (c == '[') {
+                throw malformed("value", next);
+            }
+            int from = trimStart(prev + 1, at);
+            int to = trimEnd(from, at);
+            next++;
+            if (from == to) {
+                if (c == ']' && col == 0) {
+                    // Empty row; all columns stay null.
+                    return true;
+                }
+                throw malformed("value", next - 1);
+            }
+            if (col == vectors.length) {
+                throw malformed("']' after row values", next - 1);
+            }
+            writeValue(col++, rowIndex, from, to);
+            if (c == ']') {
+                // Columns missing from a short row stay null.
+                return true;
+            }
+            prev = at;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean open() throws IOException {
+        data = in.readAllBytes();
+        index = StructuralIndex.build(data, data.length);
+        if (index.count() == 0) {
+            expectBlank(0, data.length);
+            finished = true;
+            return false;
+        }
+        if (data[position(0)] != '[') {
+            throw malformed("'[' for rows", 0);
+        }
+        expectBlank(0, position(0));
+        return true;
+    }
+
+    private void writeValue(int col, int rowIndex, int from, int to) throws IOException {
+        FieldVector vector = vectors[col];
+        if (to - from == 4 && data[from] == 'n' && data[from + 1] == 'u' && data[from + 2] == 'l' && data[from + 3] == 'l') {
+            vector.setNull(rowIndex);
+            return;
+        }
+        switch (kinds[col]) {
+            case BIGINT -> ((BigIntVector) vector).setSafe(rowIndex, Utf8Values.parseLong(data, from, to));
+            case INT -> ((IntVector) vector).setSafe(rowIndex, (int) Utf8Values.parseLong(data, from, to));
+            case SMALLINT -> ((SmallIntVector) vector).setSafe(rowIndex, (short) Utf8Values.parseLong(data, from, to));
+            case TINYINT -> ((TinyIntVector) vector).setSafe(rowIndex, (byte) Utf8Values.parseLong(data, from, to));
+            case FLOAT8 -> ((Float8Vector) vector).setSafe(rowIndex, parseDouble(from, to));
+            case FLOAT4 -> ((Float4Vector) vector).setSafe(rowIndex, (float) parseDouble(from, to));
+            case UTF8, UTF8_VIEW -> {
+                int start = from + 1;
+                int end = stringEnd(from, to);
+                if (!index.hasBackslash(start, end)) {
+                    writeString(col, rowIndex, data, start, end - start);
+                } else {
+                    if (scratch.length < end - start) {
+                        scratch = new byte[Math.max(end - start, scratch.length * 2)];
+                    }
+                    int len = Utf8Values.unescape(data, start, end, scratch);
+                    writeString(col, rowIndex, scratch, 0, len);
+                }
+            }
+            case BIT -> ((BitVector) vector).setSafe(rowIndex, parseBoolean(from, to) ? 1 : 0);
+            case DATE_DAY -> ((DateDayVector) vector).setSafe(rowIndex, Utf8Values.parseDate(data, from + 1, stringEnd(from, to)));
+            case TIMESTAMP_MILLI, TIMESTAMP_MICRO, TIMESTAMP_NANO -> ((TimeStampVector) vector).setSafe(rowIndex,
+                    timestamps.parse(data, from + 1, stringEnd(from, to), kinds[col].unitsPerSecond()));
+            case DECIMAL128 -> {
+                if (data[from] == '"') {
+                    decimals.write(data, from + 1, stringEnd(from, to), (DecimalVector) vector, rowIndex);
+                } else {
+                    decimals.write(data, from, to, (DecimalVector) vector, rowIndex);
+                }
+            }
+            case DECIMAL256 -> {
+                if (data[from] == '"') {
+                    decimals.write(data, from + 1, stringEnd(from, to), (Decimal256Vector) vector, rowIndex);
+                } else {
+                    decimals.write(data, from, to, (Decimal256Vector) vector, rowIndex);
+                }
+            }
+            case VARBINARY -> {
+                int len = binary.decodeBase64(data, from + 1, stringEnd(from, to));
+                ((VarBinaryVector) vector).setSafe(rowIndex, binary.buffer(), 0, len);
+            }
+            case UUID -> ((FixedSizeBinaryVector) vector).setSafe(rowIndex, binary.parseUuid(data, from + 1, stringEnd(from, to)));
+            case IPADDRESS -> ((FixedSizeBinaryVector) vector).setSafe(rowIndex,
+                    binary.parseIpAddress(data, from + 1, stringEnd(from, to)));
+            case TIME_MILLI -> ((TimeMilliVector) vector).setSafe(rowIndex,
+                    (int) timestamps.parseTime(data, from + 1, stringEnd(from, to), 1_000));
+            case TIME_MICRO -> ((TimeMicroVector) vector).setSafe(rowIndex,
+                    timestamps.parseTime(data, from + 1, stringEnd(from, to), 1_000_000));
+            case TIME_NANO -> ((TimeNanoVector) vector).setSafe(rowIndex,
+                    timestamps.parseTime(data, from + 1, stringEnd(from, to), 1_000_000_000));
+        }
+    }
+
+    private double parseDouble(int from, int to) throws IOException {
+        if (data[from] == '"') {
+            // NaN and +/-Infinity are written as strings.
+            return Utf8Values.parseDoubleSlow(data, from + 1, stringEnd(from, to));
+        }
+        return Utf8Values.parseDouble(data, from, to);
+    }
+
+    private void writeString(int col, int rowIndex, byte[] bytes, int start, int length) {
+        if (kinds[col] == ColumnKind.UTF8_VIEW) {
+            ((ViewVarCharVector) vectors[col]).setSafe(rowIndex, bytes, start, length);
+        } else {
+            ((VarCharVector) vectors[col]).setSafe(rowIndex, bytes, start, length);
+        }
+    }
+
+    private boolean parseBoolean(int from, int to) throws IOException {
+        int len = to - from;
+        if (len == 4 && data[from] == 't' && data[from + 1] == 'r' && data[from + 2] == 'u' && data[from + 3] == 'e') {
+            return true;
+        }
+        if (len == 5 && data[from] == 'f' && data[from + 1] == 'a' && data[from + 2] == 'l' && data[from + 3] == 's'
+                && data[from + 4] == 'e') {
+            return false;
+        }
+        throw new IOException("Expected boolean at byte offset " + from + ", got '" + text(from, to) + "'");
+    }
+
+    private int stringEnd(int from, int to) throws IOException {
+        if (to - from < 2 || data[from] != '"' || data[to - 1] != '"') {
+            throw new IOException("Expected string at byte offset " + from + ", got '" + text(from, to) + "'");
+        }
+        return to - 1;
+    }
+
+    private int trimStart(int from, int to) {
+        while (from < to && isWhitespace(data[from])) {
+            from++;
+        }
+        return from;
+    }
+
+    private int trimEnd(int from, int to) {
+        while (to > from && isWhitespace(data[to - 1])) {
+            to--;
+        }
+        return to;
+    }
+
+    private void expectBlank(int from, int to) throws IOException {
+        if (trimStart(from, to) != to) {
+            throw new IOException("Unexpected content at byte offset " + from + ": '" + text(from, to) + "'");
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private int position(int i) throws IOException {
+        if (i >= index.count()) {
+            throw new IOException("Unexpected end of input");
+        }
+        return index.position(i);
+    }
+
+    private int charAt(int i) throws IOException {
+        return data[position(i)];
+    }
+
+    private String text(int from, int to) {
+        return new String(data, from, Math.min(to, from + 64) - from, StandardCharsets.UTF_8);
+    }
+
+    private IOException malformed(String expected, int structural) throws IOException {
+        int at = position(structural);
+        return new IOException("Expected " + expected + " at byte offset " + at + ", got '" + (char) data[at] + "'");
+    }
+}
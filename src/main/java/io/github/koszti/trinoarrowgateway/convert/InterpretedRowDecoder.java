@@ -0,0 +1,107 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.Decimal256Vector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.FixedSizeBinaryVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeMicroVector;
+import org.apache.arrow.vector.TimeMilliVector;
+import org.apache.arrow.vector.TimeNanoVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.ViewVarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Field;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Row decoder that dispatches on the column kind for every cell.
+ * Used when a generated decoder is disabled or cannot be built for a schema.
+ */
+final class InterpretedRowDecoder implements RowDecoder {
+
+    private final List<Field> fields;
+    private final FieldVector[] vectors;
+    private final ColumnKind[] kinds;
+    private final Utf8Encoder utf8 = new Utf8Encoder();
+    private final TimestampParser timestamps = new TimestampParser();
+    private final DecimalParser decimals = new DecimalParser();
+    private final BinaryDecoder binary = new BinaryDecoder();
+    private final NestedValueWriter[] nested;
+
+    InterpretedRowDecoder(VectorSchemaRoot root) {
+        this.fields = root.getSchema().getFields();
+        this.vectors = new FieldVector[fields.size()];
+        this.kinds = new ColumnKind[fields.size()];
+        this.nested = new NestedValueWriter[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            vectors[i] = root.getVector(i);
+            kinds[i] = ColumnKind.of(fields.get(i));
+            if (kinds[i] != null && kinds[i].nested()) {
+                nested[i] = NestedValueWriter.create(vectors[i]);
+            }
+        }
+    }
+
+    @Override
+    public void decodeRow(JsonParser parser, int rowIndex) throws IOException {
+        for (int colIndex = 0; colIndex < vectors.length; colIndex++) {
+            ColumnKind kind = kinds[colIndex];
+            FieldVector vector = vectors[colIndex];
+            if (kind == null) {
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.END_ARRAY) {
+                    return;
+                }
+                if (token != JsonToken.VALUE_NULL) {
+                    Field field = fields.get(colIndex);
+                    throw new IOException("Unsupported Arrow type " + field.getType() + " for field " + field.getName());
+                }
+                vector.setNull(rowIndex);
+                continue;
+            }
+            boolean written = switch (kind) {
+                case BIGINT -> ColumnWriters.writeBigInt(parser, (BigIntVector) vector, rowIndex);
+                case INT -> ColumnWriters.writeInt(parser, (IntVector) vector, rowIndex);
+                case SMALLINT -> ColumnWriters.writeSmallInt(parser, (SmallIntVector) vector, rowIndex);
+                case TINYINT -> ColumnWriters.writeTinyInt(parser, (TinyIntVector) vector, rowIndex);
+                case FLOAT8 -> ColumnWriters.writeFloat8(parser, (Float8Vector) vector, rowIndex);
+                case FLOAT4 -> ColumnWriters.writeFloat4(parser, (Float4Vector) vector, rowIndex);
+                case UTF8 -> ColumnWriters.writeUtf8(parser, (VarCharVector) vector, utf8, rowIndex);
+                case UTF8_VIEW -> ColumnWriters.writeUtf8View(parser, (ViewVarCharVector) vector, utf8, rowIndex);
+                case BIT -> ColumnWriters.writeBit(parser, (BitVector) vector, rowIndex);
+                case DATE_DAY -> ColumnWriters.writeDateDay(parser, (DateDayVector) vector, utf8, rowIndex);
+                case TIMESTAMP_MILLI -> ColumnWriters.writeTimestampMilli(parser, (TimeStampVector) vector, timestamps, rowIndex);
+                case TIMESTAMP_MICRO -> ColumnWriters.writeTimestampMicro(parser, (TimeStampVector) vector, timestamps, rowIndex);
+                case TIMESTAMP_NANO -> ColumnWriters.writeTimestampNano(parser, (TimeStampVector) vector, timestamps, rowIndex);
+                case DECIMAL128 -> ColumnWriters.writeDecimal(parser, (DecimalVector) vector, decimals, rowIndex);
+                case DECIMAL256 -> ColumnWriters.writeDecimal256(parser, (Decimal256Vector) vector, decimals, rowIndex);
+                case VARBINARY -> ColumnWriters.writeVarBinary(parser, (VarBinaryVector) vector, binary, rowIndex);
+                case UUID -> ColumnWriters.writeUuid(parser, (FixedSizeBinaryVector) vector, binary, rowIndex);
+                case IPADDRESS -> ColumnWriters.writeIpAddress(parser, (FixedSizeBinaryVector) vector, binary, rowIndex);
+                case TIME_MILLI -> ColumnWriters.writeTimeMilli(parser, (TimeMilliVector) vector, timestamps, rowIndex);
+                case TIME_MICRO -> ColumnWriters.writeTimeMicro(parser, (TimeMicroVector) vector, timestamps, rowIndex);
+                case TIME_NANO -> ColumnWriters.writeTimeNano(parser, (TimeNanoVector) vector, timestamps, rowIndex);
+                case LIST, MAP, STRUCT -> ColumnWriters.writeNested(parser, nested[colIndex], rowIndex);
+            };
+            if (!written) {
+                // Short row; remaining columns are null.
+                return;
+            }
+        }
+        ColumnWriters.endRow(parser);
+    }
+}
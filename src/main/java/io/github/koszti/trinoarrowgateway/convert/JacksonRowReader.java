@@ -0,0 +1,56 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * {@link RowReader} backed by a Jackson streaming parser and a {@link RowDecoder}.
+ */
+final class JacksonRowReader implements RowReader {
+
+    private final JsonParser parser;
+    private final RowDecoder rowDecoder;
+    private boolean started;
+    private boolean finished;
+
+    JacksonRowReader(JsonParser parser, RowDecoder rowDecoder) {
+        this.parser = parser;
+        this.rowDecoder = rowDecoder;
+    }
+
+    @Override
+    public boolean readRow(int rowIndex) throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (!started) {
+            started = true;
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                finished = true;
+                return false;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new IOException("Expected START_ARRAY for rows, got " + token);
+            }
+        }
+
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            finished = true;
+            return false;
+        }
+        if (token != JsonToken.START_ARRAY) {
+            throw new IOException("Expected START_ARRAY for row, got " + token);
+        }
+        rowDecoder.decodeRow(parser, rowIndex);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
@@ -0,0 +1,211 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.Decimal256Vector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.FixedSizeBinaryVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeMicroVector;
+import org.apache.arrow.vector.TimeMilliVector;
+import org.apache.arrow.vector.TimeNanoVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.ViewVarCharVector;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.MapVector;
+import org.apache.arrow.vector.complex.StructVector;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Streams nested Trino values from a {@link JsonParser} into a vector tree: ARRAY (a JSON array) into a
+ * {@link ListVector}, MAP (a JSON object) into a {@link MapVector} and ROW (a JSON array of field values) into a
+ * {@link StructVector}, recursing into children of any depth.
+ * <p>
+ * One writer node is built per vector of a column's tree when the decoder is created, so per value there is
+ * only the kind dispatch of the node; values go straight from parser tokens into the child vectors, without
+ * an intermediate tree. MAP keys arrive as JSON member names and are parsed from their text.
+ * Not thread-safe; each row decoder owns the writers of its columns.
+ */
+final class NestedValueWriter {
+    private final FieldVector vector;
+    private final ColumnKind kind;
+    private final NestedValueWriter[] children;
+    private final Helpers helpers;
+
+    private NestedValueWriter(FieldVector vector, Helpers helpers) {
+        this.vector = vector;
+        this.kind = ColumnKind.of(vector.getField());
+        if (kind == null) {
+            throw new IllegalArgumentException("Unsupported Arrow type " + vector.getField().getType()
+                    + " for field " + vector.getField().getName());
+        }
+        this.helpers = helpers;
+        List<FieldVector> childVectors = switch (kind) {
+            case LIST -> List.of(((ListVector) vector).getDataVector());
+            // Key and value of the non-null "entries" struct.
+            case MAP -> ((StructVector) ((MapVector) vector).getDataVector()).getChildrenFromFields();
+            case STRUCT -> ((StructVector) vector).getChildrenFromFields();
+            default -> List.of();
+        };
+        this.children = new NestedValueWriter[childVectors.size()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = new NestedValueWriter(childVectors.get(i), helpers);
+        }
+    }
+
+    /**
+     * Builds the writer tree for a top-level ARRAY, MAP or ROW column.
+     */
+    static NestedValueWriter create(FieldVector vector) {
+        return new NestedValueWriter(vector, new Helpers());
+    }
+
+    /**
+     * Writes the value whose first token, {@code token}, the parser is positioned at, into {@code index}.
+     */
+    void write(JsonParser parser, JsonToken token, int index) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            vector.setNull(index);
+            return;
+        }
+        switch (kind) {
+            case LIST -> writeList(parser, token, index);
+            case MAP -> writeMap(parser, token, index);
+            case STRUCT -> writeStruct(parser, token, index);
+            default -> writeScalar(parser, token, index);
+        }
+    }
+
+    private void writeList(JsonParser parser, JsonToken token, int index) throws IOException {
+        expect(JsonToken.START_ARRAY, token);
+        ListVector list = (ListVector) vector;
+        NestedValueWriter element = children[0];
+        int offset = list.startNewValue(index);
+        int size = 0;
+        for (JsonToken next = parser.nextToken(); next != JsonToken.END_ARRAY; next = parser.nextToken()) {
+            element.write(parser, next, offset + size++);
+        }
+        list.endValue(index, size);
+    }
+
+    private void writeMap(JsonParser parser, JsonToken token, int index) throws IOException {
+        expect(JsonToken.START_OBJECT, token);
+        MapVector map = (MapVector) vector;
+        StructVector entries = (StructVector) map.getDataVector();
+        NestedValueWriter key = children[0];
+        NestedValueWriter value = children[1];
+        int offset = map.startNewValue(index);
+        int size = 0;
+        for (JsonToken next = parser.nextToken(); next != JsonToken.END_OBJECT; next = parser.nextToken()) {
+            int entry = offset + size++;
+            entries.setIndexDefined(entry);
+            key.writeScalar(parser, next, entry);
+            value.write(parser, parser.nextToken(), entry);
+        }
+        map.endValue(index, size);
+    }
+
+    private void writeStruct(JsonParser parser, JsonToken token, int index) throws IOException {
+        expect(JsonToken.START_ARRAY, token);
+        ((StructVector) vector).setIndexDefined(index);
+        for (NestedValueWriter field : children) {
+            JsonToken next = parser.nextToken();
+            if (next == JsonToken.END_ARRAY) {
+                throw new IOException("Expected " + children.length + " values for row field " + vector.getField().getName());
+            }
+            field.write(parser, next, index);
+        }
+        expect(JsonToken.END_ARRAY, parser.nextToken());
+    }
+
+    /**
+     * Writes a scalar value token, or a FIELD_NAME token holding a map key.
+     */
+    private void writeScalar(JsonParser parser, JsonToken token, int index) throws IOException {
+        switch (kind) {
+            case BIGINT -> ((BigIntVector) vector).setSafe(index, longValue(parser, token));
+            case INT -> ((IntVector) vector).setSafe(index, (int) longValue(parser, token));
+            case SMALLINT -> ((SmallIntVector) vector).setSafe(index, (short) longValue(parser, token));
+            case TINYINT -> ((TinyIntVector) vector).setSafe(index, (byte) longValue(parser, token));
+            case FLOAT8 -> ((Float8Vector) vector).setSafe(index, doubleValue(parser, token));
+            case FLOAT4 -> ((Float4Vector) vector).setSafe(index, (float) doubleValue(parser, token));
+            case UTF8 -> {
+                int len = helpers.utf8.encode(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                ((VarCharVector) vector).setSafe(index, helpers.utf8.buffer(), 0, len);
+            }
+            case UTF8_VIEW -> {
+                int len = helpers.utf8.encode(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                ((ViewVarCharVector) vector).setSafe(index, helpers.utf8.buffer(), 0, len);
+            }
+            case BIT -> ((BitVector) vector).setSafe(index,
+                    (token == JsonToken.FIELD_NAME ? Boolean.parseBoolean(parser.getText()) : parser.getBooleanValue()) ? 1 : 0);
+            case DATE_DAY -> {
+                int len = helpers.utf8.encode(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                ((DateDayVector) vector).setSafe(index, Utf8Values.parseDate(helpers.utf8.buffer(), 0, len));
+            }
+            case TIMESTAMP_MILLI, TIMESTAMP_MICRO, TIMESTAMP_NANO -> ((TimeStampVector) vector).setSafe(index,
+                    helpers.timestamps.parse(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength(),
+                            kind.unitsPerSecond()));
+            case DECIMAL128 -> helpers.decimals.write(parser.getTextCharacters(), parser.getTextOffset(),
+                    parser.getTextLength(), (DecimalVector) vector, index);
+            case DECIMAL256 -> helpers.decimals.write(parser.getTextCharacters(), parser.getTextOffset(),
+                    parser.getTextLength(), (Decimal256Vector) vector, index);
+            case VARBINARY -> {
+                int len = helpers.binary.decodeBase64(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                ((VarBinaryVector) vector).setSafe(index, helpers.binary.buffer(), 0, len);
+            }
+            case UUID -> ((FixedSizeBinaryVector) vector).setSafe(index,
+                    helpers.binary.parseUuid(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+            case IPADDRESS -> ((FixedSizeBinaryVector) vector).setSafe(index,
+                    helpers.binary.parseIpAddress(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+            case TIME_MILLI -> ((TimeMilliVector) vector).setSafe(index, (int) timeValue(parser));
+            case TIME_MICRO -> ((TimeMicroVector) vector).setSafe(index, timeValue(parser));
+            case TIME_NANO -> ((TimeNanoVector) vector).setSafe(index, timeValue(parser));
+            case LIST, MAP, STRUCT -> throw new IllegalStateException(kind + " is not a scalar");
+        }
+    }
+
+    private long timeValue(JsonParser parser) throws IOException {
+        return helpers.timestamps.parseTime(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength(),
+                kind.unitsPerSecond());
+    }
+
+    private static long longValue(JsonParser parser, JsonToken token) throws IOException {
+        return token == JsonToken.FIELD_NAME ? Long.parseLong(parser.getText()) : parser.getLongValue();
+    }
+
+    private static double doubleValue(JsonParser parser, JsonToken token) throws IOException {
+        // Map keys, NaN and +/-Infinity are written as strings.
+        return token == JsonToken.FIELD_NAME || token == JsonToken.VALUE_STRING
+                ? Double.parseDouble(parser.getText())
+                : parser.getDoubleValue();
+    }
+
+    private void expect(JsonToken expected, JsonToken actual) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Expected " + expected + " for field " + vector.getField().getName() + ", got " + actual);
+        }
+    }
+
+    /**
+     * Text decoders shared by the nodes of one column's tree.
+     */
+    private static final class Helpers {
+        final Utf8Encoder utf8 = new Utf8Encoder();
+        final TimestampParser timestamps = new TimestampParser();
+        final DecimalParser decimals = new DecimalParser();
+        final BinaryDecoder binary = new BinaryDecoder();
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import java.util.Arrays;
+
+/**
+ * Finds top-level row boundaries in a {@code [[...],[...],...]} payload.
+ */
+final class RowBoundaries {
+    private RowBoundaries() {}
+
+    /**
+     * Splits the rows of {@code data} into consecutive chunks of at least {@code chunkBytes} (the last one may be
+     * shorter). Chunk {@code i} spans {@code data[result[2i], result[2i + 1])}: whole rows separated by commas,
+     * without the outer brackets.
+     *
+     * @return the chunk bounds, or null if the payload is not a well-formed array of rows
+     */
+    static int[] split(byte[] data, int chunkBytes) {
+        int n = data.length;
+        int i = 0;
+        while (i < n && isWhitespace(data[i])) {
+            i++;
+        }
+        if (i == n || data[i] != '[') {
+            return null;
+        }
+        i++;
+
+        int[] bounds = new int[16];
+        int count = 0;
+        int depth = 0;
+        int chunkStart = -1;
+        int rowEnd = -1;
+        for (; i < n; i++) {
+            byte b = data[i];
+            if (b == '"') {
+                // Skip the string, honoring escapes.
+                for (i++; i < n && data[i] != '"'; i++) {
+                    if (data[i] == '\\') {
+                        i++;
+                    }
+                }
+                if (i >= n) {
+                    return null;
+                }
+            } else if (b == '[') {
+                if (depth == 0 && chunkStart < 0) {
+                    chunkStart = i;
+                }
+                depth++;
+            } else if (b == ']') {
+                if (depth == 0) {
+                    if (chunkStart >= 0) {
+                        if (count + 2 > bounds.length) {
+                            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                        }
+                        bounds[count++] = chunkStart;
+                        bounds[count++] = rowEnd;
+                    }
+                    return Arrays.copyOf(bounds, count);
+                }
+                depth--;
+                if (depth == 0) {
+                    rowEnd = i + 1;
+                    if (rowEnd - chunkStart >= chunkBytes) {
+                        if (count + 2 > bounds.length) {
+                            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                        }
+                        bounds[count++] = chunkStart;
+                        bounds[count++] = rowEnd;
+                        chunkStart = -1;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
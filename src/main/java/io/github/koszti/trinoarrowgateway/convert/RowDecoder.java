@@ -0,0 +1,18 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * Writes one Trino row into the vectors of a {@link org.apache.arrow.vector.VectorSchemaRoot}.
+ * Instances are bound to a single root and are not thread-safe.
+ */
+interface RowDecoder {
+
+    /**
+     * Decodes one row. The parser is positioned at the row's START_ARRAY; on return the row's END_ARRAY
+     * has been consumed. Columns missing from a short row are left null.
+     */
+    void decodeRow(JsonParser parser, int rowIndex) throws IOException;
+}
@@ -0,0 +1,215 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import com.fasterxml.jackson.core.JsonParser;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.ClassHierarchyResolver;
+import java.lang.classfile.Label;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.ConstantDescs;
+import java.lang.constant.MethodTypeDesc;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates {@link RowDecoder}s for a result schema.
+ * <p>
+ * In {@link RowDecoderMode#GENERATED} mode a hidden class is emitted per distinct sequence of {@link ColumnKind}s
+ * with the ClassFile API. It keeps one typed field per column and decodes a row as a straight-line sequence of
+ * {@link ColumnWriters} calls, so there is no per-cell type dispatch and every call site is monomorphic. The
+ * bytecode depends on nothing but the column kinds, so generated classes are cached by that shape: schemas that
+ * differ only in column names (or in the element types of nested columns) share a class. At most
+ * {@link #MAX_GENERATED_SHAPES} classes are generated, so ad-hoc queries cannot grow Metaspace without bound;
+ * further shapes, and schemas with unsupported column types, use {@link InterpretedRowDecoder}.
+ */
+final class RowDecoderFactory {
+    private static final Logger log = LoggerFactory.getLogger(RowDecoderFactory.class);
+
+    private static final ClassDesc CD_GENERATED =
+            ClassDesc.of(RowDecoderFactory.class.getPackageName() + ".GeneratedRowDecoder");
+    private static final ClassDesc CD_ROW_DECODER = ClassDesc.of(RowDecoder.class.getName());
+    private static final ClassDesc CD_COLUMN_WRITERS = ClassDesc.of(ColumnWriters.class.getName());
+    private static final ClassDesc CD_JSON_PARSER = ClassDesc.of(JsonParser.class.getName());
+    private static final ClassDesc CD_ROOT = ClassDesc.of(VectorSchemaRoot.class.getName());
+    private static final ClassDesc CD_FIELD_VECTOR = ClassDesc.of(FieldVector.class.getName());
+    private static final ClassDesc CD_NESTED_WRITER = ClassDesc.of(NestedValueWriter.class.getName());
+
+    /** Upper bound on generated (and never unloaded) decoder classes. */
+    static final int MAX_GENERATED_SHAPES = 1024;
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(void.class, VectorSchemaRoot.class);
+
+    private final RowDecoderMode mode;
+    private final Map<List<ColumnKind>, Optional<MethodHandle>> constructors = new ConcurrentHashMap<>();
+
+    RowDecoderFactory(RowDecoderMode mode) {
+        this.mode = Objects.requireNonNull(mode, "mode must not be null");
+    }
+
+    RowDecoder create(VectorSchemaRoot root) {
+        List<ColumnKind> shape = mode == RowDecoderMode.GENERATED ? shape(root.getSchema()) : null;
+        if (shape != null) {
+            Optional<MethodHandle> constructor = constructors.get(shape);
+            if (constructor == null) {
+                constructor = constructors.size() < MAX_GENERATED_SHAPES
+                        ? constructors.computeIfAbsent(shape, this::generate)
+                        : Optional.empty();
+            }
+            if (constructor.isPresent()) {
+                try {
+                    return (RowDecoder) constructor.get().invokeExact(root);
+                } catch (Throwable t) {
+                    throw new IllegalStateException("Failed to instantiate generated row decoder", t);
+                }
+            }
+        }
+        return new InterpretedRowDecoder(root);
+    }
+
+    /**
+     * The column kinds of {@code schema}, or null if a column has no generated writer.
+     */
+    private static List<ColumnKind> shape(Schema schema) {
+        List<Field> fields = schema.getFields();
+        ColumnKind[] kinds = new ColumnKind[fields.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = ColumnKind.of(fields.get(i));
+            if (kinds[i] == null) {
+                log.debug("Using interpreted row decoder; unsupported type {} for field {}",
+                        fields.get(i).getType(), fields.get(i).getName());
+                return null;
+            }
+        }
+        return List.of(kinds);
+    }
+
+    private Optional<MethodHandle> generate(List<ColumnKind> shape) {
+        try {
+            byte[] bytes = emit(shape.toArray(ColumnKind[]::new));
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            MethodHandle constructor = lookup.findConstructor(lookup.lookupClass(), CONSTRUCTOR_TYPE)
+                    .asType(MethodType.methodType(RowDecoder.class, VectorSchemaRoot.class));
+            return Optional.of(constructor);
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            log.warn("Failed to generate row decoder for columns {}; using interpreted decoder", shape, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Emits the equivalent of:
+     * <pre>
+     *   final class GeneratedRowDecoder implements RowDecoder {
+     *       private final BigIntVector v0; private final VarCharVector v1; ...
+     *       private final NestedValueWriter v2;   // ARRAY, MAP and ROW columns hold their writer tree
+     *       private final Utf8Encoder h0;   // one per helper class the writers need
+     *       GeneratedRowDecoder(VectorSchemaRoot root) {
+     *           v0 = (BigIntVector) root.getVector(0); ...
+     *           v2 = NestedValueWriter.create(root.getVector(2));
+     *           h0 = new Utf8Encoder();
+     *       }
+     *       public void decodeRow(JsonParser p, int row) {
+     *           if (!ColumnWriters.writeBigInt(p, v0, row)) return;
+     *           if (!ColumnWriters.writeUtf8(p, v1, h0, row)) return;
+     *           if (!ColumnWriters.writeNested(p, v2, row)) return;
+     *           ...
+     *           ColumnWriters.endRow(p);
+     *       }
+     *   }
+     * </pre>
+     */
+    private static byte[] emit(ColumnKind[] kinds) {
+        ClassDesc[] vectorDescs = new ClassDesc[kinds.length];
+        // Helper class -> field name, in first-use order.
+        Map<Class<?>, String> helperFields = new LinkedHashMap<>();
+        for (int i = 0; i < kinds.length; i++) {
+            vectorDescs[i] = kinds[i].nested() ? CD_NESTED_WRITER : ClassDesc.of(kinds[i].vectorClass().getName());
+            Class<?> helper = kinds[i].helperClass();
+            if (helper != null && !helperFields.containsKey(helper)) {
+                helperFields.put(helper, "h" + helperFields.size());
+            }
+        }
+        ClassFile classFile = ClassFile.of(ClassFile.ClassHierarchyResolverOption.of(
+                ClassHierarchyResolver.ofClassLoading(RowDecoderFactory.class.getClassLoader())));
+
+        return classFile.build(CD_GENERATED, clb -> {
+            clb.withFlags(ClassFile.ACC_FINAL | ClassFile.ACC_SUPER);
+            clb.withInterfaceSymbols(CD_ROW_DECODER);
+            for (int i = 0; i < kinds.length; i++) {
+                clb.withField("v" + i, vectorDescs[i], ClassFile.ACC_PRIVATE | ClassFile.ACC_FINAL);
+            }
+            helperFields.forEach((helper, name) ->
+                    clb.withField(name, desc(helper), ClassFile.ACC_PRIVATE | ClassFile.ACC_FINAL));
+
+            clb.withMethodBody(ConstantDescs.INIT_NAME, MethodTypeDesc.of(ConstantDescs.CD_void, CD_ROOT), 0, cob -> {
+                cob.aload(0);
+                cob.invokespecial(ConstantDescs.CD_Object, ConstantDescs.INIT_NAME, ConstantDescs.MTD_void);
+                for (int i = 0; i < kinds.length; i++) {
+                    cob.aload(0);
+                    cob.aload(1);
+                    cob.loadConstant(i);
+                    cob.invokevirtual(CD_ROOT, "getVector", MethodTypeDesc.of(CD_FIELD_VECTOR, ConstantDescs.CD_int));
+                    if (kinds[i].nested()) {
+                        cob.invokestatic(CD_NESTED_WRITER, "create", MethodTypeDesc.of(CD_NESTED_WRITER, CD_FIELD_VECTOR));
+                    } else {
+                        cob.checkcast(vectorDescs[i]);
+                    }
+                    cob.putfield(CD_GENERATED, "v" + i, vectorDescs[i]);
+                }
+                helperFields.forEach((helper, name) -> {
+                    cob.aload(0);
+                    cob.new_(desc(helper));
+                    cob.dup();
+                    cob.invokespecial(desc(helper), ConstantDescs.INIT_NAME, ConstantDescs.MTD_void);
+                    cob.putfield(CD_GENERATED, name, desc(helper));
+                });
+                cob.return_();
+            });
+
+            clb.withMethodBody("decodeRow", MethodTypeDesc.of(ConstantDescs.CD_void, CD_JSON_PARSER, ConstantDescs.CD_int),
+                    ClassFile.ACC_PUBLIC, cob -> {
+                        Label shortRow = cob.newLabel();
+                        for (int i = 0; i < kinds.length; i++) {
+                            cob.aload(1);
+                            cob.aload(0);
+                            cob.getfield(CD_GENERATED, "v" + i, vectorDescs[i]);
+                            MethodTypeDesc writerType;
+                            Class<?> helper = kinds[i].helperClass();
+                            if (helper != null) {
+                                cob.aload(0);
+                                cob.getfield(CD_GENERATED, helperFields.get(helper), desc(helper));
+                                writerType = MethodTypeDesc.of(ConstantDescs.CD_boolean,
+                                        CD_JSON_PARSER, vectorDescs[i], desc(helper), ConstantDescs.CD_int);
+                            } else {
+                                writerType = MethodTypeDesc.of(ConstantDescs.CD_boolean,
+                                        CD_JSON_PARSER, vectorDescs[i], ConstantDescs.CD_int);
+                            }
+                            cob.iload(2);
+                            cob.invokestatic(CD_COLUMN_WRITERS, kinds[i].writerMethod(), writerType);
+                            cob.ifeq(shortRow);
+                        }
+                        cob.aload(1);
+                        cob.invokestatic(CD_COLUMN_WRITERS, "endRow", MethodTypeDesc.of(ConstantDescs.CD_void, CD_JSON_PARSER));
+                        cob.labelBinding(shortRow);
+                        cob.return_();
+                    });
+        });
+    }
+
+    private static ClassDesc desc(Class<?> type) {
+        return ClassDesc.of(type.getName());
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+/**
+ * How rows are written into Arrow vectors.
+ */
+public enum RowDecoderMode {
+    /**
+     * Generate a decoder class specialized for each result schema; falls back to
+     * {@link #INTERPRETED} for schemas it cannot handle.
+     */
+    GENERATED,
+    /**
+     * Dispatch on the column type for every cell.
+     */
+    INTERPRETED
+}
@@ -0,0 +1,17 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the rows of one segment payload into the vectors of a {@link org.apache.arrow.vector.VectorSchemaRoot}.
+ */
+interface RowReader extends Closeable {
+
+    /**
+     * Decodes the next row at {@code rowIndex}.
+     *
+     * @return false once the payload has no more rows
+     */
+    boolean readRow(int rowIndex) throws IOException;
+}
@@ -0,0 +1,34 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Intra-segment parallelism: decompressed segments of at least two chunks are split at row boundaries into
+ * chunks of about {@code chunkBytes}, which are converted on {@code executor} and emitted in order.
+ *
+ * @param executor runs chunk conversions; must not be the executor the converter is called from
+ * @param chunkBytes target chunk size in bytes; 0 disables splitting
+ * @param maxChunksInFlight maximum number of chunks of one segment converted (or buffered) ahead of the consumer
+ */
+public record SegmentSplitting(Executor executor, int chunkBytes, int maxChunksInFlight) {
+
+    public static final SegmentSplitting DISABLED = new SegmentSplitting(null, 0, 1);
+
+    public SegmentSplitting {
+        if (chunkBytes < 0) {
+            throw new IllegalArgumentException("chunkBytes must not be negative");
+        }
+        maxChunksInFlight = Math.max(1, maxChunksInFlight);
+    }
+
+    public boolean enabled() {
+        return executor != null && chunkBytes > 0;
+    }
+
+    /**
+     * Segments shorter than this are converted sequentially.
+     */
+    int thresholdBytes() {
+        return (int) Math.min(2L * chunkBytes, Integer.MAX_VALUE - 8);
+    }
+}
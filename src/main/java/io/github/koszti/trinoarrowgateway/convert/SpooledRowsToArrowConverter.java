@@ -1,24 +1,30 @@
 package io.github.koszti.trinoarrowgateway.convert;
 
 import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonToken;
 import org.apache.arrow.memory.BufferAllocator;
-import org.apache.arrow.vector.FieldVector;
 import org.apache.arrow.vector.VectorSchemaRoot;
 import org.apache.arrow.vector.VectorUnloader;
 import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
-import org.apache.arrow.vector.types.pojo.ArrowType;
-import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.time.LocalDate;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 /**
@@ -32,15 +38,56 @@ import java.util.function.Consumer;
  *   ]
  * </pre>
  * <p>
+ * Rows are read by the configured {@link ConversionEngine}. Large segments can be split at row boundaries
+ * and converted in parallel, see {@link SegmentSplitting}.
+ * <p>
  * Note: decoding (e.g. zstd) is handled by the caller.
  */
 public class SpooledRowsToArrowConverter {
+    private static final Logger log = LoggerFactory.getLogger(SpooledRowsToArrowConverter.class);
+
+    /**
+     * Field metadata key holding the Trino type of columns whose Arrow type alone does not say how to parse them
+     * ({@code uuid} and {@code ipaddress}, both {@code FixedSizeBinary(16)}).
+     */
+    public static final String TRINO_TYPE_METADATA = "trino.type";
+
+    private static final byte[] CHUNK_OPEN = {'['};
+    private static final byte[] CHUNK_CLOSE = {']'};
+
+    private static final boolean VECTOR_API_AVAILABLE =
+            ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
 
     private final BufferAllocator allocator;
     private final JsonFactory jsonFactory = new JsonFactory();
+    private final ConversionEngine engine;
+    private final RowDecoderFactory rowDecoderFactory;
+    private final SegmentSplitting splitting;
 
     public SpooledRowsToArrowConverter(BufferAllocator allocator) {
+        this(allocator, ConversionEngine.JACKSON, RowDecoderMode.GENERATED);
+    }
+
+    public SpooledRowsToArrowConverter(BufferAllocator allocator,
+            ConversionEngine engine,
+            RowDecoderMode rowDecoderMode) {
+        this(allocator, engine, rowDecoderMode, SegmentSplitting.DISABLED);
+    }
+
+    public SpooledRowsToArrowConverter(BufferAllocator allocator,
+            ConversionEngine engine,
+            RowDecoderMode rowDecoderMode,
+            SegmentSplitting splitting) {
+        this.splitting = Objects.requireNonNull(splitting, "splitting must not be null");
         this.allocator = Objects.requireNonNull(allocator, "allocator must not be null");
+        Objects.requireNonNull(engine, "engine must not be null");
+        if (engine == ConversionEngine.SIMD && !VECTOR_API_AVAILABLE) {
+            log.warn("Conversion engine {} needs --add-modules jdk.incubator.vector; using {}",
+                    ConversionEngine.SIMD, ConversionEngine.BYTES);
+            engine = ConversionEngine.BYTES;
+        }
+        this.engine = engine;
+        this.rowDecoderFactory = new RowDecoderFactory(rowDecoderMode);
     }
 
     public List<ArrowRecordBatch> convert(InputStream inputStream,
@@ -55,117 +102,229 @@ public class SpooledRowsToArrowConverter {
             Schema schema,
             int batchSize,
             Consumer<ArrowRecordBatch> consumer) throws IOException {
+        convertStreaming(inputStream, schema, batchSize, null, consumer);
+    }
+
+    /**
+     * Like {@link #convertStreaming(InputStream, Schema, int, Consumer)}, with each batch's vectors pre-sized
+     * by {@code capacity} (null for Arrow's default capacities), which also picks the rows per batch when it
+     * targets a byte size.
+     */
+    public void convertStreaming(InputStream inputStream,
+            Schema schema,
+            int batchSize,
+            BatchCapacityEstimator.Segment capacity,
+            Consumer<ArrowRecordBatch> consumer) throws IOException {
         Objects.requireNonNull(inputStream, "inputStream must not be null");
         Objects.requireNonNull(schema, "schema must not be null");
         Objects.requireNonNull(consumer, "consumer must not be null");
 
-        try (JsonParser parser = jsonFactory.createParser(inputStream);
-                VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
-            VectorUnloader unloader = new VectorUnloader(root);
-            root.allocateNew();
-
-            JsonToken token = parser.nextToken();
-            if (token == null) {
-                return;
+        if (splitting.enabled()) {
+            int threshold = splitting.thresholdBytes();
+            byte[] head = inputStream.readNBytes(threshold);
+            if (head.length < threshold) {
+                inputStream = new ByteArrayInputStream(head);
+            } else {
+                byte[] rest = inputStream.readAllBytes();
+                byte[] payload = Arrays.copyOf(head, Math.addExact(head.length, rest.length));
+                System.arraycopy(rest, 0, payload, head.length, rest.length);
+                int[] chunks = RowBoundaries.split(payload, splitting.chunkBytes());
+                if (chunks != null && chunks.length > 2) {
+                    convertChunks(payload, chunks, schema, batchSize, capacity, consumer);
+                    return;
+                }
+                // Single chunk, or malformed: let the sequential path convert it (and report errors).
+                inputStream = new ByteArrayInputStream(payload);
             }
+        }
+        convertSequential(inputStream, schema, batchSize, capacity, consumer);
+    }
 
-            if (token != JsonToken.START_ARRAY) {
-                throw new IOException("Expected START_ARRAY for rows, got " + token);
-            }
+    private void convertSequential(InputStream inputStream,
+            Schema schema,
+            int batchSize,
+            BatchCapacityEstimator.Segment capacity,
+            Consumer<ArrowRecordBatch> consumer) throws IOException {
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator);
+                RowReader reader = openReader(inputStream, root)) {
+            VectorUnloader unloader = new VectorUnloader(root);
+            int batchRows = allocate(root, capacity, batchSize);
 
             int rowIndex = 0;
-
-            while (true) {
-                token = parser.nextToken();
-                if (token == JsonToken.END_ARRAY) {
-                    break;
-                }
-                if (token != JsonToken.START_ARRAY) {
-                    throw new IOException("Expected START_ARRAY for row, got " + token);
-                }
-
-                writeRow(parser, rowIndex, schema, root);
+            while (reader.readRow(rowIndex)) {
                 rowIndex++;
 
-                if (rowIndex == batchSize) {
-                    root.setRowCount(rowIndex);
-                    consumer.accept(unloader.getRecordBatch());
+                if (rowIndex == batchRows) {
+                    emit(root, capacity, unloader, rowIndex, consumer);
                     root.clear();
-                    root.allocateNew();
+                    batchRows = allocate(root, capacity, batchSize);
                     rowIndex = 0;
                 }
             }
 
             if (rowIndex > 0) {
-                root.setRowCount(rowIndex);
-                consumer.accept(unloader.getRecordBatch());
+                emit(root, capacity, unloader, rowIndex, consumer);
             }
         }
     }
 
-    private void writeRow(JsonParser parser,
-            int rowIndex,
+    /**
+     * Allocates the root for the next batch and returns the number of rows that batch should hold.
+     */
+    private static int allocate(VectorSchemaRoot root, BatchCapacityEstimator.Segment capacity, int batchSize) {
+        if (capacity == null) {
+            root.allocateNew();
+            return batchSize;
+        }
+        int batchRows = capacity.batchRows(batchSize);
+        capacity.allocate(root, batchRows);
+        return batchRows;
+    }
+
+    private static void emit(VectorSchemaRoot root,
+            BatchCapacityEstimator.Segment capacity,
+            VectorUnloader unloader,
+            int rowCount,
+            Consumer<ArrowRecordBatch> consumer) {
+        root.setRowCount(rowCount);
+        if (capacity != null) {
+            capacity.completed(root);
+        }
+        consumer.accept(unloader.getRecordBatch());
+    }
+
+    /**
+     * Converts each chunk into its own batches on the split executor, keeping at most
+     * {@link SegmentSplitting#maxChunksInFlight()} chunks ahead of the consumer, and emits them in chunk order.
+     */
+    private void convertChunks(byte[] payload,
+            int[] chunks,
             Schema schema,
-            VectorSchemaRoot root) throws IOException {
-        // parser is positioned at START_ARRAY of the row.
-        List<Field> fields = schema.getFields();
-
-        for (int colIndex = 0; colIndex < fields.size(); colIndex++) {
-            JsonToken valueToken = parser.nextToken();
-            if (valueToken == JsonToken.END_ARRAY) {
-                // Short row; remaining columns are null.
-                break;
+            int batchSize,
+            BatchCapacityEstimator.Segment capacity,
+            Consumer<ArrowRecordBatch> consumer) throws IOException {
+        ArrayDeque<Chunk> pending = new ArrayDeque<>();
+        // Set once the segment fails; chunks still converting then close their batches and stop.
+        AtomicBoolean abandoned = new AtomicBoolean();
+        int next = 0;
+        boolean success = false;
+        try {
+            while (next < chunks.length || !pending.isEmpty()) {
+                while (next < chunks.length && pending.size() < splitting.maxChunksInFlight()) {
+                    int from = chunks[next];
+                    int to = chunks[next + 1];
+                    next += 2;
+                    AtomicBoolean started = new AtomicBoolean();
+                    FutureTask<List<ArrowRecordBatch>> task = new FutureTask<>(() -> started.compareAndSet(false, true)
+                            ? convertChunk(payload, from, to, schema, batchSize, capacity != null ? capacity.chunk() : null, abandoned)
+                            : List.of());
+                    pending.addLast(new Chunk(task, started));
+                    splitting.executor().execute(task);
+                }
+                List<ArrowRecordBatch> batches = await(pending.removeFirst().task());
+                for (int i = 0; i < batches.size(); i++) {
+                    try {
+                        consumer.accept(batches.get(i));
+                    } catch (RuntimeException e) {
+                        batches.subList(i + 1, batches.size()).forEach(ArrowRecordBatch::close);
+                        throw e;
+                    }
+                }
             }
+            success = true;
+        } finally {
+            if (!success) {
+                discard(pending, abandoned);
+            }
+        }
+    }
 
-            Field field = fields.get(colIndex);
-            FieldVector vector = root.getVector(field.getName());
-            if (vector == null) {
-                throw new IOException("Missing vector for field: " + field.getName());
+    private List<ArrowRecordBatch> convertChunk(byte[] payload,
+            int from,
+            int to,
+            Schema schema,
+            int batchSize,
+            BatchCapacityEstimator.Segment capacity,
+            AtomicBoolean abandoned) throws IOException {
+        InputStream chunk = new SequenceInputStream(Collections.enumeration(List.of(
+                new ByteArrayInputStream(CHUNK_OPEN),
+                new ByteArrayInputStream(payload, from, to - from),
+                new ByteArrayInputStream(CHUNK_CLOSE))));
+        List<ArrowRecordBatch> batches = new ArrayList<>();
+        try {
+            convertSequential(chunk, schema, batchSize, capacity, batch -> {
+                batches.add(batch);
+                if (abandoned.get()) {
+                    throw new CancellationException("Segment conversion abandoned");
+                }
+            });
+            return batches;
+        } catch (IOException | RuntimeException e) {
+            batches.forEach(ArrowRecordBatch::close);
+            throw e;
+        }
+    }
+
+    private static List<ArrowRecordBatch> await(FutureTask<List<ArrowRecordBatch>> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while converting segment chunks");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
             }
+            throw new IOException("Segment chunk conversion failed", cause);
+        }
+    }
 
-            if (valueToken == JsonToken.VALUE_NULL) {
-                vector.setNull(rowIndex);
+    /**
+     * Releases the batches of chunks that will not be emitted. Chunks that have not started are claimed so they
+     * never run; running ones stop at their next batch, and are awaited (even if this thread is interrupted) so
+     * whatever they return can be closed.
+     */
+    private static void discard(Collection<Chunk> pending, AtomicBoolean abandoned) {
+        abandoned.set(true);
+        boolean interrupted = false;
+        for (Chunk chunk : pending) {
+            if (chunk.started().compareAndSet(false, true)) {
                 continue;
             }
-
-            ArrowType type = field.getType();
-            switch (type.getTypeID()) {
-                case Int -> {
-                    ArrowType.Int intType = (ArrowType.Int) type;
-                    long v = parser.getLongValue();
-                    if (intType.getBitWidth() == 64) {
-                        ((org.apache.arrow.vector.BigIntVector) vector).setSafe(rowIndex, v);
-                    } else if (intType.getBitWidth() == 32) {
-                        ((org.apache.arrow.vector.IntVector) vector).setSafe(rowIndex, (int) v);
-                    } else {
-                        throw new IOException("Unsupported INT bitWidth: " + intType.getBitWidth() + " for " + field.getName());
-                    }
-                }
-                case FloatingPoint -> {
-                    double v = parser.getDoubleValue();
-                    ((org.apache.arrow.vector.Float8Vector) vector).setSafe(rowIndex, v);
-                }
-                case Utf8 -> {
-                    String s = parser.getValueAsString();
-                    ((org.apache.arrow.vector.VarCharVector) vector).setSafe(rowIndex, s.getBytes(StandardCharsets.UTF_8));
-                }
-                case Bool -> {
-                    boolean b = parser.getBooleanValue();
-                    ((org.apache.arrow.vector.BitVector) vector).setSafe(rowIndex, b ? 1 : 0);
-                }
-                case Date -> {
-                    String s = parser.getValueAsString();
-                    long days = LocalDate.parse(s).toEpochDay();
-                    ((org.apache.arrow.vector.DateDayVector) vector).setSafe(rowIndex, (int) days);
+            while (true) {
+                try {
+                    chunk.task().get().forEach(ArrowRecordBatch::close);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // The chunk closed its own batches.
+                    break;
                 }
-                default -> throw new IOException("Unsupported Arrow type " + type + " for field " + field.getName());
             }
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A chunk conversion submitted to the split executor; {@code started} is claimed by whichever comes first,
+     * the conversion or {@link #discard}.
+     */
+    private record Chunk(FutureTask<List<ArrowRecordBatch>> task, AtomicBoolean started) {
+    }
 
-        // consume the END_ARRAY for the row
-        JsonToken end = parser.nextToken();
-        if (end != JsonToken.END_ARRAY) {
-            throw new IOException("Expected END_ARRAY after row values, got " + end);
+    private RowReader openReader(InputStream inputStream, VectorSchemaRoot root) throws IOException {
+        if (engine != ConversionEngine.JACKSON && Utf8RowReader.supports(root.getSchema())) {
+            return engine == ConversionEngine.SIMD
+                    ? new IndexedRowReader(inputStream, root)
+                    : new Utf8RowReader(inputStream, root);
         }
+        return new JacksonRowReader(jsonFactory.createParser(inputStream), rowDecoderFactory.create(root));
     }
 }
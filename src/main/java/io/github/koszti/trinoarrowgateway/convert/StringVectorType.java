@@ -0,0 +1,16 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+/**
+ * Arrow type used for Trino VARCHAR and CHAR columns.
+ */
+public enum StringVectorType {
+    /**
+     * {@code Utf8}: an offsets buffer plus one contiguous data buffer.
+     */
+    UTF8,
+    /**
+     * {@code Utf8View}: 16-byte views that hold strings of up to 12 bytes inline and reference
+     * data buffers for longer ones. Needs a client that understands Arrow view types (Arrow 16+).
+     */
+    UTF8_VIEW
+}
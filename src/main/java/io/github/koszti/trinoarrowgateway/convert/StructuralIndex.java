@@ -0,0 +1,149 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Positions of the structural characters ({@code [ ] ,} outside of strings) of a JSON payload,
+ * found 64 bytes at a time with the Vector API.
+ * <p>
+ * Per block, vector compares produce 64-bit masks of quotes, backslashes and structural characters.
+ * Escaped characters are removed from the quote mask, a prefix-XOR of the remaining quotes yields the
+ * in-string mask, and the structural mask minus the in-string mask is appended to {@link #position(int)}.
+ * Escape and in-string state are carried across blocks. The backslash masks are kept so strings without
+ * escapes can be copied verbatim.
+ */
+final class StructuralIndex {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED.length() <= 64
+            ? ByteVector.SPECIES_PREFERRED
+            : ByteVector.SPECIES_512;
+    private static final int LANES = SPECIES.length();
+    private static final int BLOCK = 64;
+
+    private final int[] positions;
+    private final int count;
+    private final long[] backslashes;
+
+    private StructuralIndex(int[] positions, int count, long[] backslashes) {
+        this.positions = positions;
+        this.count = count;
+        this.backslashes = backslashes;
+    }
+
+    static StructuralIndex build(byte[] data, int length) throws IOException {
+        int blocks = (length + BLOCK - 1) / BLOCK;
+        long[] backslashes = new long[blocks];
+        int[] positions = new int[Math.max(16, length / 8)];
+        int count = 0;
+        boolean escapeCarry = false;
+        long inStringCarry = 0;
+        byte[] tail = new byte[BLOCK];
+
+        for (int block = 0; block < blocks; block++) {
+            int base = block * BLOCK;
+            byte[] src = data;
+            int offset = base;
+            if (base + BLOCK > length) {
+                Arrays.fill(tail, (byte) ' ');
+                System.arraycopy(data, base, tail, 0, length - base);
+                src = tail;
+                offset = 0;
+            }
+
+            long quote = 0;
+            long backslash = 0;
+            long structural = 0;
+            for (int j = 0; j < BLOCK; j += LANES) {
+                ByteVector v = ByteVector.fromArray(SPECIES, src, offset + j);
+                quote |= v.eq((byte) '"').toLong() << j;
+                backslash |= v.eq((byte) '\\').toLong() << j;
+                structural |= v.eq((byte) ',').or(v.eq((byte) '[')).or(v.eq((byte) ']')).toLong() << j;
+            }
+            backslashes[block] = backslash;
+
+            // A backslash escapes the next byte unless it is itself escaped.
+            long escaped = 0;
+            long pending = backslash;
+            if (escapeCarry) {
+                escaped = 1L;
+                pending &= ~1L;
+                escapeCarry = false;
+            }
+            while (pending != 0) {
+                int i = Long.numberOfTrailingZeros(pending);
+                if (i == BLOCK - 1) {
+                    escapeCarry = true;
+                    break;
+                }
+                escaped |= 1L << (i + 1);
+                pending &= ~(3L << i);
+            }
+
+            long inString = prefixXor(quote & ~escaped) ^ inStringCarry;
+            inStringCarry = inString >> 63;
+            structural &= ~inString;
+
+            int needed = count + Long.bitCount(structural);
+            if (needed > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(needed, positions.length * 2));
+            }
+            while (structural != 0) {
+                positions[count++] = base + Long.numberOfTrailingZeros(structural);
+                structural &= structural - 1;
+            }
+        }
+        if (inStringCarry != 0) {
+            throw new IOException("Unexpected end of input inside string");
+        }
+        return new StructuralIndex(positions, count, backslashes);
+    }
+
+    /**
+     * Bit i of the result is the XOR of bits 0..i of {@code x}: set from an opening quote up to, but excluding,
+     * the closing quote.
+     */
+    private static long prefixXor(long x) {
+        x ^= x << 1;
+        x ^= x << 2;
+        x ^= x << 4;
+        x ^= x << 8;
+        x ^= x << 16;
+        x ^= x << 32;
+        return x;
+    }
+
+    int count() {
+        return count;
+    }
+
+    int position(int i) {
+        return positions[i];
+    }
+
+    /**
+     * True if {@code data[from, to)} contains a backslash.
+     */
+    boolean hasBackslash(int from, int to) {
+        if (from >= to) {
+            return false;
+        }
+        int first = from / BLOCK;
+        int last = (to - 1) / BLOCK;
+        for (int block = first; block <= last; block++) {
+            long mask = backslashes[block];
+            if (block == first) {
+                mask &= -1L << (from % BLOCK);
+            }
+            if (block == last) {
+                mask &= -1L >>> (BLOCK - 1 - (to - 1) % BLOCK);
+            }
+            if (mask != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,229 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+/**
+ * Parses Trino's TIMESTAMP and TIMESTAMP WITH TIME ZONE text ({@code yyyy-MM-dd HH:mm:ss[.f…][ zone]}) into
+ * epoch units, and TIME text ({@code HH:mm:ss[.f…]}) into units since midnight, without allocating per cell.
+ * <p>
+ * Timestamps without a zone are read as UTC. Zones are resolved through a small cache keyed by the zone text;
+ * for region zones each cache entry also remembers the offset of the last daylight-saving period it hit, so
+ * the {@link ZoneRules} lookup only runs when a value falls outside it. Fractions beyond nanoseconds are truncated.
+ * Not thread-safe; each row decoder or reader owns one.
+ */
+final class TimestampParser {
+    private static final int ZONE_CACHE_SIZE = 16;
+    private static final int NANOS_PER_SECOND = 1_000_000_000;
+
+    private final Zone[] zones = new Zone[ZONE_CACHE_SIZE];
+    private int zoneCount;
+    private int nextEviction;
+    private Zone lastZone;
+    private byte[] scratch = new byte[64];
+    /** End of the time of day parsed by the last {@link #parseTimeOfDay} call. */
+    private int timeEnd;
+
+    /**
+     * Parses {@code chars[offset, offset + length)}; see {@link #parse(byte[], int, int, int)}.
+     */
+    long parse(char[] chars, int offset, int length, int unitsPerSecond) throws IOException {
+        return parse(copy(chars, offset, length), 0, length, unitsPerSecond);
+    }
+
+    /**
+     * Parses {@code s[from, to)} into units of {@code 1 / unitsPerSecond} seconds since the epoch.
+     *
+     * @param unitsPerSecond 1000, 1_000_000 or 1_000_000_000
+     */
+    long parse(byte[] s, int from, int to, int unitsPerSecond) throws IOException {
+        int dateEnd = from;
+        while (dateEnd < to && s[dateEnd] != ' ') {
+            dateEnd++;
+        }
+        if (dateEnd == to) {
+            throw malformed(s, from, to);
+        }
+        long epochDay = Utf8Values.parseDate(s, from, dateEnd);
+        long nanoOfDay = parseTimeOfDay(s, dateEnd + 1, to, from);
+        int i = timeEnd;
+
+        long epochSecond = epochDay * 86_400 + nanoOfDay / NANOS_PER_SECOND;
+        if (i < to) {
+            if (s[i] != ' ' || i + 1 == to) {
+                throw malformed(s, from, to);
+            }
+            epochSecond = zone(s, i + 1, to).toEpochSecond(epochSecond);
+        }
+        try {
+            return Math.addExact(Math.multiplyExact(epochSecond, unitsPerSecond),
+                    nanoOfDay % NANOS_PER_SECOND / (NANOS_PER_SECOND / unitsPerSecond));
+        } catch (ArithmeticException e) {
+            throw new IOException("Timestamp out of range: '" + new String(s, from, to - from, StandardCharsets.UTF_8) + "'", e);
+        }
+    }
+
+    long parseTime(char[] chars, int offset, int length, int unitsPerSecond) throws IOException {
+        return parseTime(copy(chars, offset, length), 0, length, unitsPerSecond);
+    }
+
+    /**
+     * Parses a TIME value {@code HH:mm:ss[.f…]} in {@code s[from, to)} into units of {@code 1 / unitsPerSecond}
+     * seconds since midnight.
+     */
+    long parseTime(byte[] s, int from, int to, int unitsPerSecond) throws IOException {
+        long nanoOfDay = parseTimeOfDay(s, from, to, from);
+        if (timeEnd != to) {
+            throw malformed(s, from, to);
+        }
+        return nanoOfDay / (NANOS_PER_SECOND / unitsPerSecond);
+    }
+
+    /**
+     * Parses {@code HH:mm:ss[.f…]} starting at {@code t} and sets {@link #timeEnd} to the index after it.
+     * {@code from} is the start of the whole value, for error messages.
+     */
+    private long parseTimeOfDay(byte[] s, int t, int to, int from) throws IOException {
+        if (to - t < 8 || s[t + 2] != ':' || s[t + 5] != ':') {
+            throw malformed(s, from, to);
+        }
+        int hour = twoDigits(s, t);
+        int minute = twoDigits(s, t + 3);
+        int second = twoDigits(s, t + 6);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            throw malformed(s, from, to);
+        }
+        int i = t + 8;
+        long nanos = 0;
+        if (i < to && s[i] == '.') {
+            i++;
+            int digits = 0;
+            for (; i < to && s[i] >= '0' && s[i] <= '9'; i++, digits++) {
+                if (digits < 9) {
+                    nanos = nanos * 10 + (s[i] - '0');
+                }
+            }
+            if (digits == 0) {
+                throw malformed(s, from, to);
+            }
+            for (; digits < 9; digits++) {
+                nanos *= 10;
+            }
+        }
+        timeEnd = i;
+        return (hour * 3_600L + minute * 60 + second) * NANOS_PER_SECOND + nanos;
+    }
+
+    private Zone zone(byte[] s, int from, int to) throws IOException {
+        if (lastZone != null && lastZone.matches(s, from, to)) {
+            return lastZone;
+        }
+        for (int i = 0; i < zoneCount; i++) {
+            if (zones[i].matches(s, from, to)) {
+                lastZone = zones[i];
+                return lastZone;
+            }
+        }
+        String id = new String(s, from, to - from, StandardCharsets.UTF_8);
+        ZoneRules rules;
+        try {
+            rules = ZoneId.of(id).getRules();
+        } catch (DateTimeException e) {
+            throw new IOException("Unknown time zone '" + id + "'", e);
+        }
+        Zone zone = new Zone(Arrays.copyOfRange(s, from, to), rules);
+        if (zoneCount < ZONE_CACHE_SIZE) {
+            zones[zoneCount++] = zone;
+        } else {
+            zones[nextEviction] = zone;
+            nextEviction = (nextEviction + 1) % ZONE_CACHE_SIZE;
+        }
+        lastZone = zone;
+        return zone;
+    }
+
+    private byte[] copy(char[] chars, int offset, int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            char c = chars[offset + i];
+            scratch[i] = c < 0x80 ? (byte) c : (byte) '?';
+        }
+        return scratch;
+    }
+
+    private static int twoDigits(byte[] s, int at) {
+        int high = s[at] - '0';
+        int low = s[at + 1] - '0';
+        if (high < 0 || high > 9 || low < 0 || low > 9) {
+            return -1;
+        }
+        return high * 10 + low;
+    }
+
+    private static IOException malformed(byte[] s, int from, int to) {
+        return new IOException("Invalid timestamp '" + new String(s, from, to - from, StandardCharsets.UTF_8) + "'");
+    }
+
+    /**
+     * A cached zone. {@code [windowStart, windowEnd)} is a range of local epoch seconds known to map to
+     * {@code windowOffset} unambiguously; it is empty until the first lookup.
+     */
+    private static final class Zone {
+        private final byte[] name;
+        private final ZoneRules rules;
+        private long windowStart = 1;
+        private long windowEnd;
+        private int windowOffset;
+
+        Zone(byte[] name, ZoneRules rules) {
+            this.name = name;
+            this.rules = rules;
+            if (rules.isFixedOffset()) {
+                windowStart = Long.MIN_VALUE;
+                windowEnd = Long.MAX_VALUE;
+                windowOffset = rules.getOffset(Instant.EPOCH).getTotalSeconds();
+            }
+        }
+
+        boolean matches(byte[] s, int from, int to) {
+            return Arrays.equals(name, 0, name.length, s, from, to);
+        }
+
+        long toEpochSecond(long localEpochSecond) {
+            if (localEpochSecond >= windowStart && localEpochSecond < windowEnd) {
+                return localEpochSecond - windowOffset;
+            }
+            // Gaps and overlaps resolve like ZonedDateTime.of: the offset before the transition.
+            LocalDateTime local = LocalDateTime.ofEpochSecond(localEpochSecond, 0, ZoneOffset.UTC);
+            ZoneOffset offset = rules.getOffset(local);
+            long epochSecond = localEpochSecond - offset.getTotalSeconds();
+            cacheWindow(localEpochSecond, epochSecond, offset.getTotalSeconds());
+            return epochSecond;
+        }
+
+        private void cacheWindow(long localEpochSecond, long epochSecond, int offset) {
+            Instant instant = Instant.ofEpochSecond(epochSecond);
+            ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+            ZoneOffsetTransition next = rules.nextTransition(instant);
+            long start = previous == null ? Long.MIN_VALUE : previous.toEpochSecond()
+                    + Math.max(previous.getOffsetBefore().getTotalSeconds(), previous.getOffsetAfter().getTotalSeconds());
+            long end = next == null ? Long.MAX_VALUE : next.toEpochSecond()
+                    + Math.min(next.getOffsetBefore().getTotalSeconds(), next.getOffsetAfter().getTotalSeconds());
+            if (localEpochSecond >= start && localEpochSecond < end) {
+                windowStart = start;
+                windowEnd = end;
+                windowOffset = offset;
+            }
+        }
+    }
+}
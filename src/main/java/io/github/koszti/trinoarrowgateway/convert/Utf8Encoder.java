@@ -0,0 +1,51 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+/**
+ * Encodes UTF-16 text into a reusable UTF-8 buffer, so string cells can be written into a
+ * {@link org.apache.arrow.vector.VarCharVector} without allocating a {@code String} or {@code byte[]} per cell.
+ * Not thread-safe; each row decoder owns one.
+ */
+final class Utf8Encoder {
+
+    private byte[] buffer = new byte[256];
+
+    /**
+     * Returns the buffer holding the bytes written by the last {@link #encode} call.
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Encodes {@code chars[offset, offset + length)} into {@link #buffer()}. Unpaired surrogates are written
+     * as {@code '?'}, like {@link String#getBytes(java.nio.charset.Charset)} does.
+     *
+     * @return number of bytes written
+     */
+    int encode(char[] chars, int offset, int length) {
+        int maxBytes = length * 3;
+        if (buffer.length < maxBytes) {
+            buffer = new byte[Math.max(maxBytes, buffer.length * 2)];
+        }
+        byte[] out = buffer;
+        int pos = 0;
+        int i = offset;
+        int end = offset + length;
+        while (i < end && chars[i] < 0x80) {
+            out[pos++] = (byte) chars[i++];
+        }
+        while (i < end) {
+            char c = chars[i++];
+            if (c < 0x80) {
+                out[pos++] = (byte) c;
+            } else if (!Character.isSurrogate(c)) {
+                pos = Utf8Values.putCodePoint(out, pos, c);
+            } else if (Character.isHighSurrogate(c) && i < end && Character.isLowSurrogate(chars[i])) {
+                pos = Utf8Values.putCodePoint(out, pos, Character.toCodePoint(c, chars[i++]));
+            } else {
+                out[pos++] = '?';
+            }
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,442 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.Decimal256Vector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.FixedSizeBinaryVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeMicroVector;
+import org.apache.arrow.vector.TimeMilliVector;
+import org.apache.arrow.vector.TimeNanoVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.ViewVarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link RowReader} that scans the raw UTF-8 bytes of Trino's {@code [[v1,v2,...],...]} payload.
+ * <p>
+ * The payload shape and the column types are known up front, so there is no token model: numbers are parsed
+ * straight into {@code long}/{@code double}, strings are unescaped into a reusable byte buffer and copied into
+ * the vector without building a {@code String}. Only the value shapes Trino emits for the supported
+ * {@link ColumnKind}s are accepted.
+ */
+final class Utf8RowReader implements RowReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+
+    private final InputStream in;
+    private final FieldVector[] vectors;
+    private final ColumnKind[] kinds;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private long consumed;
+    private byte[] scratch = new byte[256];
+    private final TimestampParser timestamps = new TimestampParser();
+    private final DecimalParser decimals = new DecimalParser();
+    private final BinaryDecoder binary = new BinaryDecoder();
+    private boolean started;
+    private boolean finished;
+
+    Utf8RowReader(InputStream in, VectorSchemaRoot root) {
+        this.in = in;
+        List<Field> fields = root.getSchema().getFields();
+        this.vectors = new FieldVector[fields.size()];
+        this.kinds = new ColumnKind[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            vectors[i] = root.getVector(i);
+            kinds[i] = ColumnKind.of(fields.get(i));
+            if (kinds[i] == null || kinds[i].nested()) {
+                throw new IllegalArgumentException("Unsupported Arrow type " + fields.get(i).getType()
+                        + " for field " + fields.get(i).getName());
+            }
+        }
+    }
+
+    /**
+     * Whether all columns are scalars of a supported kind. Nested columns are left to the Jackson engine.
+     */
+    static boolean supports(Schema schema) {
+        return schema.getFields().stream().allMatch(field -> {
+            ColumnKind kind = ColumnKind.of(field);
+            return kind != null && !kind.nested();
+        });
+    }
+
+    @Override
+    public boolean readRow(int rowIndex) throws IOException {
+        if (finished) {
+            return false;
+        }
+        int c = nextNonWhitespace();
+        if (!started) {
+            started = true;
+            if (c < 0) {
+                finished = true;
+                return false;
+            }
+            if (c != '[') {
+                throw malformed("'[' for rows", c);
+            }
+            c = nextNonWhitespace();
+            if (c == ']') {
+                finished = true;
+                return false;
+            }
+        } else {
+            if (c == ']') {
+                finished = true;
+                return false;
+            }
+            if (c != ',') {
+                throw malformed("',' or ']' after row", c);
+            }
+            c = nextNonWhitespace();
+        }
+        if (c != '[') {
+            throw malformed("'[' for row", c);
+        }
+        readColumns(rowIndex);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readColumns(int rowIndex) throws IOException {
+        int c = nextNonWhitespace();
+        if (c == ']') {
+            return;
+        }
+        for (int col = 0; ; col++) {
+            if (col == vectors.length) {
+                throw malformed("']' after row values", c);
+            }
+            readValue(col, rowIndex, c);
+            c = nextNonWhitespace();
+            if (c == ']') {
+                // Columns missing from a short row stay null.
+                return;
+            }
+            if (c != ',') {
+                throw malformed("',' or ']' after value", c);
+            }
+            c = nextNonWhitespace();
+        }
+    }
+
+    private void readValue(int col, int rowIndex, int c) throws IOException {
+        FieldVector vector = vectors[col];
+        if (c == 'n') {
+            expectLiteral("ull");
+            vector.setNull(rowIndex);
+            return;
+        }
+        switch (kinds[col]) {
+            case BIGINT -> ((BigIntVector) vector).setSafe(rowIndex, readLong(c));
+            case INT -> ((IntVector) vector).setSafe(rowIndex, (int) readLong(c));
+            case SMALLINT -> ((SmallIntVector) vector).setSafe(rowIndex, (short) readLong(c));
+            case TINYINT -> ((TinyIntVector) vector).setSafe(rowIndex, (byte) readLong(c));
+            case FLOAT8 -> ((Float8Vector) vector).setSafe(rowIndex, readDouble(c));
+            case FLOAT4 -> ((Float4Vector) vector).setSafe(rowIndex, (float) readDouble(c));
+            case UTF8 -> {
+                int len = readString(c);
+                ((VarCharVector) vector).setSafe(rowIndex, scratch, 0, len);
+            }
+            case UTF8_VIEW -> {
+                int len = readString(c);
+                ((ViewVarCharVector) vector).setSafe(rowIndex, scratch, 0, len);
+            }
+            case BIT -> ((BitVector) vector).setSafe(rowIndex, readBoolean(c) ? 1 : 0);
+            case DATE_DAY -> ((DateDayVector) vector).setSafe(rowIndex, readDate(c));
+            case TIMESTAMP_MILLI, TIMESTAMP_MICRO, TIMESTAMP_NANO -> {
+                int len = readString(c);
+                ((TimeStampVector) vector).setSafe(rowIndex,
+                        timestamps.parse(scratch, 0, len, kinds[col].unitsPerSecond()));
+            }
+            case DECIMAL128 -> {
+                int len = c == '"' ? readString(c) : readNumber(c);
+                decimals.write(scratch, 0, len, (DecimalVector) vector, rowIndex);
+            }
+            case DECIMAL256 -> {
+                int len = c == '"' ? readString(c) : readNumber(c);
+                decimals.write(scratch, 0, len, (Decimal256Vector) vector, rowIndex);
+            }
+            case VARBINARY -> {
+                int len = readString(c);
+                len = binary.decodeBase64(scratch, 0, len);
+                ((VarBinaryVector) vector).setSafe(rowIndex, binary.buffer(), 0, len);
+            }
+            case UUID -> {
+                int len = readString(c);
+                ((FixedSizeBinaryVector) vector).setSafe(rowIndex, binary.parseUuid(scratch, 0, len));
+            }
+            case IPADDRESS -> {
+                int len = readString(c);
+                ((FixedSizeBinaryVector) vector).setSafe(rowIndex, binary.parseIpAddress(scratch, 0, len));
+            }
+            case TIME_MILLI -> {
+                int len = readString(c);
+                ((TimeMilliVector) vector).setSafe(rowIndex, (int) timestamps.parseTime(scratch, 0, len, 1_000));
+            }
+            case TIME_MICRO -> {
+                int len = readString(c);
+                ((TimeMicroVector) vector).setSafe(rowIndex, timestamps.parseTime(scratch, 0, len, 1_000_000));
+            }
+            case TIME_NANO -> {
+                int len = readString(c);
+                ((TimeNanoVector) vector).setSafe(rowIndex, timestamps.parseTime(scratch, 0, len, 1_000_000_000));
+            }
+        }
+    }
+
+    private long readLong(int c) throws IOException {
+        boolean negative = c == '-';
+        if (negative) {
+            c = next();
+        }
+        if (c < '0' || c > '9') {
+            throw malformed("integer", c);
+        }
+        // Accumulate negatively so Long.MIN_VALUE does not overflow.
+        long limitValue = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyMin = limitValue / 10;
+        long result = -(c - '0');
+        while (true) {
+            int b = peek();
+            if (b < '0' || b > '9') {
+                if (b == '.' || b == 'e' || b == 'E') {
+                    throw malformed("integer", b);
+                }
+                break;
+            }
+            pos++;
+            int digit = b - '0';
+            if (result < multiplyMin || (result *= 10) < limitValue + digit) {
+                throw new IOException("Numeric value out of range of long at byte offset " + offset());
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    private double readDouble(int c) throws IOException {
+        if (c == '"') {
+            // NaN and +/-Infinity are written as strings.
+            int len = readString(c);
+            return Utf8Values.parseDoubleSlow(scratch, 0, len);
+        }
+        int len = readNumber(c);
+        return Utf8Values.parseDouble(scratch, 0, len);
+    }
+
+    /**
+     * Copies the characters of a JSON number starting with {@code c} into {@link #scratch}.
+     *
+     * @return number of bytes written
+     */
+    private int readNumber(int c) throws IOException {
+        int len = 0;
+        scratch[len++] = (byte) c;
+        while (true) {
+            int b = peek();
+            if ((b >= '0' && b <= '9') || b == '.' || b == 'e' || b == 'E' || b == '-' || b == '+') {
+                ensureScratch(len + 1);
+                scratch[len++] = (byte) b;
+                pos++;
+            } else {
+                return len;
+            }
+        }
+    }
+
+    private boolean readBoolean(int c) throws IOException {
+        if (c == 't') {
+            expectLiteral("rue");
+            return true;
+        }
+        if (c == 'f') {
+            expectLiteral("alse");
+            return false;
+        }
+        throw malformed("boolean", c);
+    }
+
+    private int readDate(int c) throws IOException {
+        int len = readString(c);
+        return Utf8Values.parseDate(scratch, 0, len);
+    }
+
+    /**
+     * Reads a string value (opening quote already consumed) into {@link #scratch} as UTF-8.
+     *
+     * @return number of bytes written
+     */
+    private int readString(int c) throws IOException {
+        if (c != '"') {
+            throw malformed("string", c);
+        }
+        int len = 0;
+        while (true) {
+            if (pos >= limit && !fill()) {
+                throw new IOException("Unexpected end of input inside string");
+            }
+            byte[] b = buf;
+            int start = pos;
+            int end = limit;
+            int p = start;
+            while (p < end && b[p] != '"' && b[p] != '\\') {
+                p++;
+            }
+            int n = p - start;
+            if (n > 0) {
+                ensureScratch(len + n);
+                System.arraycopy(b, start, scratch, len, n);
+                len += n;
+            }
+            pos = p;
+            if (p == end) {
+                continue;
+            }
+            pos++;
+            if (b[p] == '"') {
+                return len;
+            }
+            len = readEscape(len);
+        }
+    }
+
+    private int readEscape(int len) throws IOException {
+        int c = next();
+        int codeUnit = switch (c) {
+            case '"', '\\', '/' -> c;
+            case 'b' -> '\b';
+            case 'f' -> '\f';
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            case 't' -> '\t';
+            case 'u' -> readHex4();
+            default -> throw malformed("escape character", c);
+        };
+        int codePoint = codeUnit;
+        if (Character.isHighSurrogate((char) codeUnit)) {
+            if (peek() == '\\') {
+                pos++;
+                int u = next();
+                if (u != 'u') {
+                    throw malformed("low surrogate escape", u);
+                }
+                int low = readHex4();
+                codePoint = Character.isLowSurrogate((char) low) ? Character.toCodePoint((char) codeUnit, (char) low) : -1;
+                if (codePoint < 0) {
+                    // Unpaired surrogate followed by another escape: emit both like String#getBytes would.
+                    len = appendCodePoint(len, '?');
+                    codePoint = Character.isSurrogate((char) low) ? '?' : low;
+                }
+            } else {
+                codePoint = '?';
+            }
+        } else if (Character.isLowSurrogate((char) codeUnit)) {
+            codePoint = '?';
+        }
+        return appendCodePoint(len, codePoint);
+    }
+
+    private int readHex4() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int c = next();
+            int d = Character.digit(c, 16);
+            if (d < 0) {
+                throw malformed("hex digit", c);
+            }
+            value = (value << 4) | d;
+        }
+        return value;
+    }
+
+    private int appendCodePoint(int len, int cp) {
+        ensureScratch(len + 4);
+        return Utf8Values.putCodePoint(scratch, len, cp);
+    }
+
+    private void expectLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            int c = next();
+            if (c != rest.charAt(i)) {
+                throw malformed("literal", c);
+            }
+        }
+    }
+
+    private void ensureScratch(int capacity) {
+        if (capacity > scratch.length) {
+            scratch = Arrays.copyOf(scratch, Math.max(capacity, scratch.length * 2));
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            int c = next();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+    }
+
+    private int next() throws IOException {
+        if (pos >= limit && !fill()) {
+            return -1;
+        }
+        return buf[pos++] & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (pos >= limit && !fill()) {
+            return -1;
+        }
+        return buf[pos] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        int n;
+        do {
+            n = in.read(buf, 0, buf.length);
+        } while (n == 0);
+        if (n < 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    private long offset() {
+        return consumed + pos;
+    }
+
+    private IOException malformed(String expected, int actual) {
+        String found = actual < 0 ? "end of input" : "'" + (char) actual + "'";
+        return new IOException("Expected " + expected + " at byte offset " + offset() + ", got " + found);
+    }
+}
@@ -0,0 +1,274 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Parsers for JSON scalar values held as UTF-8 bytes, shared by the byte-level {@link RowReader}s.
+ */
+final class Utf8Values {
+    private Utf8Values() {}
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Parses a JSON integer in {@code s[from, to)}.
+     */
+    static long parseLong(byte[] s, int from, int to) throws IOException {
+        int i = from;
+        boolean negative = i < to && s[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == to) {
+            throw malformed("integer", s, from, to);
+        }
+        // Accumulate negatively so Long.MIN_VALUE does not overflow.
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyMin = limit / 10;
+        long result = 0;
+        for (; i < to; i++) {
+            int digit = s[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw malformed("integer", s, from, to);
+            }
+            if (result < multiplyMin || (result *= 10) < limit + digit) {
+                throw new IOException("Numeric value out of range of long: " + text(s, from, to));
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parses a JSON number in {@code s[from, to)}.
+     * <p>
+     * Exact for up to 15 significant digits and a decimal exponent within +/-22, where both the mantissa
+     * and the power of ten are exactly representable; anything else goes through {@link Double#parseDouble}.
+     */
+    static double parseDouble(byte[] s, int from, int to) throws IOException {
+        int i = from;
+        boolean negative = i < to && s[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        int start = i;
+        for (; i < to && s[i] >= '0' && s[i] <= '9'; i++) {
+            if (digits > 0 || s[i] != '0') {
+                digits++;
+            }
+            mantissa = mantissa * 10 + (s[i] - '0');
+        }
+        if (i == start) {
+            return parseDoubleSlow(s, from, to);
+        }
+        if (i < to && s[i] == '.') {
+            i++;
+            for (; i < to && s[i] >= '0' && s[i] <= '9'; i++) {
+                if (digits > 0 || s[i] != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (s[i] - '0');
+                scale--;
+            }
+        }
+        int exponent = 0;
+        if (i < to && (s[i] == 'e' || s[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (s[i] == '+' || s[i] == '-')) {
+                negativeExponent = s[i] == '-';
+                i++;
+            }
+            int exponentDigits = 0;
+            for (; i < to && s[i] >= '0' && s[i] <= '9'; i++) {
+                exponent = exponent * 10 + (s[i] - '0');
+                if (++exponentDigits > 4) {
+                    return parseDoubleSlow(s, from, to);
+                }
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        int power = scale + exponent;
+        if (i != to || digits > 15 || power < -22 || power > 22) {
+            return parseDoubleSlow(s, from, to);
+        }
+        double value = mantissa;
+        value = power >= 0 ? value * POWERS_OF_TEN[power] : value / POWERS_OF_TEN[-power];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a double that may also be one of the quoted forms ({@code NaN}, {@code Infinity}).
+     */
+    static double parseDoubleSlow(byte[] s, int from, int to) throws IOException {
+        String text = text(s, from, to);
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed double '" + text + "'", e);
+        }
+    }
+
+    /**
+     * Parses an ISO {@code yyyy-MM-dd} date in {@code s[from, to)} into days since the epoch.
+     */
+    static int parseDate(byte[] s, int from, int to) throws IOException {
+        if (to - from == 10 && s[from + 4] == '-' && s[from + 7] == '-') {
+            int year = digits(s, from, 4);
+            int month = digits(s, from + 5, 2);
+            int day = digits(s, from + 8, 2);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+                    throw new IOException("Invalid date '" + text(s, from, to) + "'");
+                }
+                return epochDay(year, month, day);
+            }
+        }
+        // Years outside 0000-9999 and other unusual shapes.
+        try {
+            return (int) LocalDate.parse(text(s, from, to)).toEpochDay();
+        } catch (DateTimeException e) {
+            throw new IOException("Invalid date '" + text(s, from, to) + "'", e);
+        }
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeapYear(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * Days since 1970-01-01 of a valid date with a year in 0-9999; same arithmetic as {@link LocalDate#toEpochDay()}.
+     */
+    private static int epochDay(int year, int month, int day) {
+        int days = 365 * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        days += (367 * month - 362) / 12 + day - 1;
+        if (month > 2) {
+            days -= isLeapYear(year) ? 1 : 2;
+        }
+        return days - 719_528;
+    }
+
+    private static int digits(byte[] s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int d = s[i] - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    /**
+     * Unescapes the contents of a JSON string (without the surrounding quotes) into {@code dst}.
+     * Unescaping never grows the input, so {@code dst} needs at most {@code to - from} bytes.
+     *
+     * @return number of bytes written
+     */
+    static int unescape(byte[] s, int from, int to, byte[] dst) throws IOException {
+        int len = 0;
+        int i = from;
+        while (i < to) {
+            byte b = s[i++];
+            if (b != '\\') {
+                dst[len++] = b;
+                continue;
+            }
+            if (i == to) {
+                throw malformed("escape", s, from, to);
+            }
+            int c = s[i++];
+            int codePoint = switch (c) {
+                case '"', '\\', '/' -> c;
+                case 'b' -> '\b';
+                case 'f' -> '\f';
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                case 't' -> '\t';
+                case 'u' -> {
+                    int unit = hex4(s, i, to);
+                    i += 4;
+                    if (Character.isHighSurrogate((char) unit) && i + 6 <= to && s[i] == '\\' && s[i + 1] == 'u') {
+                        int low = hex4(s, i + 2, to);
+                        if (Character.isLowSurrogate((char) low)) {
+                            i += 6;
+                            yield Character.toCodePoint((char) unit, (char) low);
+                        }
+                    }
+                    // Unpaired surrogates become '?', as String#getBytes would write them.
+                    yield Character.isSurrogate((char) unit) ? '?' : unit;
+                }
+                default -> throw malformed("escape", s, from, to);
+            };
+            len = putCodePoint(dst, len, codePoint);
+        }
+        return len;
+    }
+
+    private static int hex4(byte[] s, int from, int to) throws IOException {
+        if (from + 4 > to) {
+            throw malformed("\\u escape", s, from, to);
+        }
+        int value = 0;
+        for (int i = from; i < from + 4; i++) {
+            int d = Character.digit(s[i], 16);
+            if (d < 0) {
+                throw malformed("hex digit", s, from, to);
+            }
+            value = (value << 4) | d;
+        }
+        return value;
+    }
+
+    /**
+     * Writes {@code cp} as UTF-8 at {@code dst[at]}; the caller guarantees room for four bytes.
+     *
+     * @return the index after the written bytes
+     */
+    static int putCodePoint(byte[] dst, int at, int cp) {
+        if (cp < 0x80) {
+            dst[at++] = (byte) cp;
+        } else if (cp < 0x800) {
+            dst[at++] = (byte) (0xC0 | (cp >> 6));
+            dst[at++] = (byte) (0x80 | (cp & 0x3F));
+        } else if (cp < 0x10000) {
+            dst[at++] = (byte) (0xE0 | (cp >> 12));
+            dst[at++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            dst[at++] = (byte) (0x80 | (cp & 0x3F));
+        } else {
+            dst[at++] = (byte) (0xF0 | (cp >> 18));
+            dst[at++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            dst[at++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            dst[at++] = (byte) (0x80 | (cp & 0x3F));
+        }
+        return at;
+    }
+
+    private static String text(byte[] s, int from, int to) {
+        return new String(s, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    private static IOException malformed(String expected, byte[] s, int from, int to) {
+        return new IOException("Expected " + expected + ", got '" + text(s, from, to) + "'");
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.koszti.trinoarrowgateway.flight;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.apache.arrow.vector.util.VectorSchemaRootAppender;
+
+import java.util.function.Consumer;
+
+/**
+ * Merges consecutive small batches, such as the tail batch of every segment and the batches of Trino's small
+ * initial segments, into batches of about the configured size before they are sent.
+ * <p>
+ * A batch below half the target (rows, or body bytes with a byte target) is appended to a pending batch, which
+ * is sent once it reaches the target. Larger batches are sent as they are, after whatever is pending, so they
+ * are never copied and the order of rows is kept. Not thread-safe; used by the DoGet drain loop.
+ */
+final class BatchCoalescer implements AutoCloseable {
+    private final long target;
+    private final boolean bytes;
+    private final VectorSchemaRoot incoming;
+    private final VectorLoader loader;
+    private final VectorSchemaRoot pending;
+    private final VectorUnloader unloader;
+    private long pendingSize;
+
+    /**
+     * @param targetRows  rows per batch, used without a byte target
+     * @param targetBytes body bytes per batch, or 0 to coalesce by rows
+     */
+    BatchCoalescer(Schema schema, BufferAllocator allocator, int targetRows, long targetBytes) {
+        this.bytes = targetBytes > 0;
+        this.target = bytes ? targetBytes : targetRows;
+        this.incoming = VectorSchemaRoot.create(schema, allocator);
+        this.loader = new VectorLoader(incoming);
+        this.pending = VectorSchemaRoot.create(schema, allocator);
+        this.unloader = new VectorUnloader(pending);
+        pending.allocateNew();
+    }
+
+    /**
+     * Whether batches of {@code schema} can be merged; Arrow cannot append view vectors.
+     */
+    static boolean supports(Schema schema) {
+        return schema.getFields().stream().noneMatch(BatchCoalescer::hasViewType);
+    }
+
+    private static boolean hasViewType(Field field) {
+        ArrowType type = field.getType();
+        return type instanceof ArrowType.Utf8View || type instanceof ArrowType.BinaryView
+                || field.getChildren().stream().anyMatch(BatchCoalescer::hasViewType);
+    }
+
+    /**
+     * Sends {@code batch} to {@code sink}, possibly merged with the batches before or after it. The caller keeps
+     * ownership of (and closes) {@code batch}; batches handed to {@code sink} are closed after it returns.
+     */
+    void add(ArrowRecordBatch batch, Consumer<ArrowRecordBatch> sink) {
+        long size = bytes ? batch.computeBodyLength() : batch.getLength();
+        if (size * 2 >= target) {
+            flush(sink);
+            sink.accept(batch);
+            return;
+        }
+        loader.load(batch);
+        VectorSchemaRootAppender.append(false, pending, incoming);
+        incoming.clear();
+        pendingSize += size;
+        if (pendingSize >= target) {
+            flush(sink);
+        }
+    }
+
+    /**
+     * Sends the pending rows, if any.
+     */
+    void flush(Consumer<ArrowRecordBatch> sink) {
+        if (pending.getRowCount() == 0) {
+            return;
+        }
+        try (ArrowRecordBatch merged = unloader.getRecordBatch()) {
+            sink.accept(merged);
+        }
+        pending.clear();
+        pending.allocateNew();
+        pendingSize = 0;
+    }
+
+    @Override
+    public void close() {
+        incoming.close();
+        pending.close();
+    }
+}
@@ -0,0 +1,227 @@
+package io.github.koszti.trinoarrowgateway.flight;
+
+import org.apache.arrow.memory.AllocationManager;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Arrow {@link AllocationManager.Factory} that recycles released memory for later allocations of the same size.
+ * <p>
+ * Every record batch allocates a fresh set of vector buffers, and the set is freed once Flight has written the
+ * batch and the last reference to it is gone. Batches of one schema and batch size ask for the same buffer sizes, so
+ * instead of freeing, the memory is parked in a free list per size and handed to the next allocation of that size.
+ * That covers every schema and batch size without tracking either: a buffer is reused by whichever batch needs its
+ * size next. Arrow rounds requests below its chunk size (16 MiB by default) up to powers of two, so those sizes fall
+ * into few lists; larger buffers keep their exact size and are only reused by an allocation of the same size.
+ * Arrow zeroes validity and offset buffers when vectors are allocated, so recycled memory needs no clearing.
+ * <p>
+ * At most {@code maxPooledBytes} are kept idle. When a released buffer does not fit, the oldest idle buffers of the
+ * least recently used other sizes are freed to make room, so the pool follows the sizes the current workload asks
+ * for instead of keeping those of earlier schemas; a buffer that still does not fit is freed. Thread-safe; memory
+ * released while the pool closes is freed rather than pooled.
+ */
+final class BufferPool implements AllocationManager.Factory, AutoCloseable {
+    private final long maxPooledBytes;
+    private final BufferAllocator backing = new RootAllocator(Long.MAX_VALUE);
+    private final Map<Long, SizeClass> free = new ConcurrentHashMap<>();
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicLong pooledBuffers = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    /** Held shared while parking a buffer and exclusively while closing, so nothing is parked after the drain. */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    BufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    @Override
+    public AllocationManager create(BufferAllocator accountingAllocator, long size) {
+        SizeClass sizeClass = free.get(size);
+        ArrowBuf memory = sizeClass != null ? sizeClass.take() : null;
+        if (memory != null) {
+            pooledBytes.addAndGet(-size);
+            pooledBuffers.decrementAndGet();
+            hits.increment();
+        } else {
+            memory = backing.buffer(size);
+            misses.increment();
+        }
+        return new PooledAllocation(accountingAllocator, memory, size);
+    }
+
+    @Override
+    public ArrowBuf empty() {
+        return backing.getEmpty();
+    }
+
+    private void release(ArrowBuf memory, long size) {
+        closeLock.readLock().lock();
+        try {
+            if (!closed && reserve(size)) {
+                free.computeIfAbsent(size, SizeClass::new).park(memory);
+                return;
+            }
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        memory.close();
+    }
+
+    /**
+     * Counts a buffer of {@code size} as idle if it fits under {@code maxPooledBytes}, evicting idle buffers of other
+     * sizes until it does. The counters are raised before the buffer is parked and lowered after it is taken, so the
+     * gauges never go negative.
+     */
+    private boolean reserve(long size) {
+        if (size > maxPooledBytes) {
+            return false;
+        }
+        while (pooledBytes.addAndGet(size) > maxPooledBytes) {
+            pooledBytes.addAndGet(-size);
+            if (!evictLeastRecentlyUsed(size)) {
+                return false;
+            }
+        }
+        pooledBuffers.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Frees the oldest idle buffer of the least recently used size other than {@code keep}; returns false if there
+     * is none.
+     */
+    private boolean evictLeastRecentlyUsed(long keep) {
+        while (true) {
+            SizeClass oldest = null;
+            for (SizeClass sizeClass : free.values()) {
+                if (sizeClass.size != keep && !sizeClass.buffers.isEmpty()
+                        && (oldest == null || sizeClass.lastUsed - oldest.lastUsed < 0)) {
+                    oldest = sizeClass;
+                }
+            }
+            if (oldest == null) {
+                return false;
+            }
+            ArrowBuf victim = oldest.buffers.pollLast();
+            if (victim != null) {
+                pooledBytes.addAndGet(-oldest.size);
+                pooledBuffers.decrementAndGet();
+                evictions.increment();
+                victim.close();
+                return true;
+            }
+            // Taken by a concurrent allocation; look again.
+        }
+    }
+
+    /** Allocations served from recycled memory. */
+    long hits() {
+        return hits.sum();
+    }
+
+    /** Allocations that needed new memory. */
+    long misses() {
+        return misses.sum();
+    }
+
+    /** Idle buffers freed to make room for a released buffer of another size. */
+    long evictions() {
+        return evictions.sum();
+    }
+
+    /** Bytes currently idle in the pool. */
+    long pooledBytes() {
+        return pooledBytes.get();
+    }
+
+    /** Buffers currently idle in the pool. */
+    long pooledBuffers() {
+        return pooledBuffers.get();
+    }
+
+    /**
+     * Frees the idle memory. Must be called after the allocators using this factory are closed.
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        for (SizeClass sizeClass : free.values()) {
+            for (ArrowBuf memory = sizeClass.buffers.pollFirst(); memory != null; memory = sizeClass.buffers.pollFirst()) {
+                pooledBytes.addAndGet(-sizeClass.size);
+                pooledBuffers.decrementAndGet();
+                memory.close();
+            }
+        }
+        backing.close();
+    }
+
+    /**
+     * The idle buffers of one size, most recently parked first, and when the size was last allocated or released.
+     */
+    private static final class SizeClass {
+        final long size;
+        final Deque<ArrowBuf> buffers = new ConcurrentLinkedDeque<>();
+        volatile long lastUsed = System.nanoTime();
+
+        SizeClass(long size) {
+            this.size = size;
+        }
+
+        ArrowBuf take() {
+            lastUsed = System.nanoTime();
+            return buffers.pollFirst();
+        }
+
+        void park(ArrowBuf memory) {
+            lastUsed = System.nanoTime();
+            buffers.addFirst(memory);
+        }
+    }
+
+    /**
+     * One allocation of an Arrow ledger, backed by a pooled buffer of the backing allocator.
+     */
+    private final class PooledAllocation extends AllocationManager {
+        private final ArrowBuf memory;
+        private final long size;
+
+        private PooledAllocation(BufferAllocator accountingAllocator, ArrowBuf memory, long size) {
+            super(accountingAllocator);
+            this.memory = memory;
+            this.size = size;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        protected long memoryAddress() {
+            return memory.memoryAddress();
+        }
+
+        @Override
+        protected void release0() {
+            release(memory, size);
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package io.github.koszti.trinoarrowgateway.flight;
 
+import io.github.koszti.trinoarrowgateway.config.GatewayConversionProperties;
 import io.github.koszti.trinoarrowgateway.config.GatewayFlightProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import jakarta.annotation.PreDestroy;
 import org.apache.arrow.flight.FlightServer;
 import org.apache.arrow.flight.Location;
+
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.memory.RootAllocator;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -16,9 +21,44 @@ public class FlightServerConfig {
     private FlightServer flightServer;
 
     @Bean(destroyMethod = "close")
-    public BufferAllocator rootAllocator() {
+    BufferPool bufferPool(GatewayConversionProperties conversionProps) {
+        return new BufferPool(conversionProps.getBufferPoolMaxBytes());
+    }
+
+    @Bean(destroyMethod = "close")
+    public BufferAllocator rootAllocator(GatewayConversionProperties conversionProps, BufferPool bufferPool) {
         // For now, max memory. Later we can make this configurable.
-        return new RootAllocator(Long.MAX_VALUE);
+        if (conversionProps.getBufferPoolMaxBytes() == 0) {
+            return new RootAllocator(Long.MAX_VALUE);
+        }
+        return new RootAllocator(RootAllocator.configBuilder()
+                .allocationManagerFactory(bufferPool)
+                .maxAllocation(Long.MAX_VALUE)
+                .build());
+    }
+
+    @Bean
+    MeterBinder bufferPoolMetrics(BufferPool bufferPool) {
+        return registry -> {
+            FunctionCounter.builder("gateway.buffer.pool.requests", bufferPool, BufferPool::hits)
+                    .tag("result", "hit")
+                    .description("Arrow buffer allocations served from recycled memory")
+                    .register(registry);
+            FunctionCounter.builder("gateway.buffer.pool.requests", bufferPool, BufferPool::misses)
+                    .tag("result", "miss")
+                    .description("Arrow buffer allocations that needed new memory")
+                    .register(registry);
+            FunctionCounter.builder("gateway.buffer.pool.evictions", bufferPool, BufferPool::evictions)
+                    .description("Idle Arrow buffers freed to make room for buffers of another size")
+                    .register(registry);
+            Gauge.builder("gateway.buffer.pool.bytes", bufferPool, BufferPool::pooledBytes)
+                    .baseUnit("bytes")
+                    .description("Memory idle in the Arrow buffer pool")
+                    .register(registry);
+            Gauge.builder("gateway.buffer.pool.buffers", bufferPool, BufferPool::pooledBuffers)
+                    .description("Buffers idle in the Arrow buffer pool")
+                    .register(registry);
+        };
     }
 
     @Bean
@@ -29,6 +69,7 @@ public class FlightServerConfig {
         Location location = Location.forGrpcInsecure(flightProps.getBindHost(), flightProps.getPort());
 
         this.flightServer = FlightServer.builder(allocator, location, producer)
+                .middleware(RequestHeadersMiddleware.KEY, new RequestHeadersMiddleware.Factory())
                 .build();
         flightServer.start();
         return flightServer;
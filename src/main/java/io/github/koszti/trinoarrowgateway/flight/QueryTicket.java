@@ -0,0 +1,69 @@
+package io.github.koszti.trinoarrowgateway.flight;
+
+import org.apache.arrow.flight.Ticket;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Flight ticket payload: a Trino query id, optionally restricted to a contiguous range of spooled segments.
+ * <p>
+ * Encoded as {@code <queryId>} for the whole result, or {@code <queryId>:<fromSegment>:<toSegment>}
+ * (end exclusive) for a range. Trino query ids never contain ':'.
+ */
+public record QueryTicket(String queryId, int fromSegment, int toSegment) {
+
+    /**
+     * {@link #toSegment()} value meaning "up to the last segment of the query".
+     */
+    public static final int ALL_SEGMENTS = -1;
+
+    public QueryTicket {
+        Objects.requireNonNull(queryId, "queryId must not be null");
+        if (fromSegment < 0 || (toSegment != ALL_SEGMENTS && toSegment <= fromSegment)) {
+            throw new IllegalArgumentException("Invalid segment range [" + fromSegment + ", " + toSegment + ")");
+        }
+    }
+
+    public static QueryTicket forQuery(String queryId) {
+        return new QueryTicket(queryId, 0, ALL_SEGMENTS);
+    }
+
+    public static QueryTicket forSegments(String queryId, int fromSegment, int toSegment) {
+        return new QueryTicket(queryId, fromSegment, toSegment);
+    }
+
+    public boolean isWholeQuery() {
+        return fromSegment == 0 && toSegment == ALL_SEGMENTS;
+    }
+
+    public boolean contains(int segmentIndex) {
+        return segmentIndex >= fromSegment && (toSegment == ALL_SEGMENTS || segmentIndex < toSegment);
+    }
+
+    public Ticket toTicket() {
+        String encoded = isWholeQuery() ? queryId : queryId + ":" + fromSegment + ":" + toSegment;
+        return new Ticket(encoded.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static QueryTicket parse(Ticket ticket) {
+        String raw = new String(ticket.getBytes(), StandardCharsets.UTF_8);
+        String[] parts = raw.split(":", -1);
+        if (parts.length == 1) {
+            return forQuery(raw);
+        }
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed ticket: " + raw);
+        }
+        try {
+            return forSegments(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed ticket: " + raw, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return isWholeQuery() ? queryId : queryId + "[" + fromSegment + ".." + toSegment + ")";
+    }
+}
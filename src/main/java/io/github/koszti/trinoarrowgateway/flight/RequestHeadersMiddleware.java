@@ -0,0 +1,48 @@
+package io.github.koszti.trinoarrowgateway.flight;
+
+import org.apache.arrow.flight.CallHeaders;
+import org.apache.arrow.flight.CallInfo;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightServerMiddleware;
+import org.apache.arrow.flight.RequestContext;
+
+/**
+ * Exposes the incoming call headers to {@link TrinoFlightProducer}, which uses them for per-request options.
+ */
+public class RequestHeadersMiddleware implements FlightServerMiddleware {
+
+    public static final FlightServerMiddleware.Key<RequestHeadersMiddleware> KEY =
+            FlightServerMiddleware.Key.of("trino-arrow-gateway-request-headers");
+
+    private final CallHeaders headers;
+
+    private RequestHeadersMiddleware(CallHeaders headers) {
+        this.headers = headers;
+    }
+
+    /**
+     * Returns the first value of the given header, or null if absent.
+     */
+    public String get(String name) {
+        return headers.get(name);
+    }
+
+    @Override
+    public void onBeforeSendingHeaders(CallHeaders outgoingHeaders) {
+    }
+
+    @Override
+    public void onCallCompleted(CallStatus status) {
+    }
+
+    @Override
+    public void onCallErrored(Throwable err) {
+    }
+
+    public static class Factory implements FlightServerMiddleware.Factory<RequestHeadersMiddleware> {
+        @Override
+        public RequestHeadersMiddleware onCallStarted(CallInfo info, CallHeaders incomingHeaders, RequestContext context) {
+            return new RequestHeadersMiddleware(incomingHeaders);
+        }
+    }
+}
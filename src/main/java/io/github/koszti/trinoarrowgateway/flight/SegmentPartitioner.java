@@ -0,0 +1,49 @@
+package io.github.koszti.trinoarrowgateway.flight;
+
+import io.github.koszti.trinoarrowgateway.trino.TrinoQueryHandle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Groups the spooled segments of a finished query into contiguous ranges, one per Flight endpoint.
+ * <p>
+ * Ranges are balanced by {@code segmentSize} when Trino reports it for every segment, otherwise by segment count.
+ * Concatenating the ranges in order yields the original row order.
+ */
+final class SegmentPartitioner {
+    private SegmentPartitioner() {}
+
+    static List<QueryTicket> partition(String queryId,
+            List<TrinoQueryHandle.TrinoSpoolSegment> segments,
+            int partitions) {
+        int n = segments.size();
+        int k = Math.min(partitions, n);
+        if (k <= 1) {
+            return List.of(QueryTicket.forQuery(queryId));
+        }
+
+        long[] prefix = new long[n + 1];
+        boolean sized = segments.stream().allMatch(s -> s.segmentSize() != null && s.segmentSize() > 0);
+        for (int i = 0; i < n; i++) {
+            prefix[i + 1] = prefix[i] + (sized ? segments.get(i).segmentSize() : 1L);
+        }
+        long total = prefix[n];
+
+        List<QueryTicket> tickets = new ArrayList<>(k);
+        int from = 0;
+        for (int group = 1; group < k; group++) {
+            long target = total * group / k;
+            int to = from + 1;
+            while (to < n && prefix[to] < target) {
+                to++;
+            }
+            // Leave at least one segment for every remaining group.
+            to = Math.min(to, n - (k - group));
+            tickets.add(QueryTicket.forSegments(queryId, from, to));
+            from = to;
+        }
+        tickets.add(QueryTicket.forSegments(queryId, from, n));
+        return tickets;
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.koszti.trinoarrowgateway.flight;
+
+import io.github.koszti.trinoarrowgateway.convert.AdaptiveDictionaryEncoder;
+import io.github.koszti.trinoarrowgateway.convert.DictionaryEncodingMode;
+import org.apache.arrow.flight.FlightProducer;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes converted batches to a DoGet stream.
+ * <p>
+ * With {@link DictionaryEncodingMode#AUTO} the stream is started lazily, since dictionaries must be sent with the
+ * schema and cannot change afterwards: batches are held back until the stream completes or
+ * {@code dictionarySampleRows} rows have arrived. A stream that completes within that window is sent with the
+ * dictionaries of all its batches, so no value can be missing from them; a longer stream is sent as it is, and its
+ * first batch reaches the client only after those rows have been converted. Otherwise, and for schemas without a
+ * column that could be encoded, the stream starts immediately with the query schema.
+ * <p>
+ * With a {@link BatchCoalescer}, small consecutive batches are merged before they are sent.
+ */
+final class StreamEmitter implements AutoCloseable {
+
+    private final BufferAllocator allocator;
+    private final FlightProducer.ServerStreamListener listener;
+    private final int dictionaryMaxValues;
+    private final long dictionarySampleRows;
+    /** Batches held back until the stream starts. */
+    private final List<VectorSchemaRoot> held = new ArrayList<>();
+    private long heldRows;
+    private final VectorSchemaRoot root;
+    private final VectorLoader loader;
+    private final BatchCoalescer coalescer;
+    private AdaptiveDictionaryEncoder dictionaryEncoder;
+    private boolean started;
+
+    StreamEmitter(Schema schema,
+            BufferAllocator allocator,
+            FlightProducer.ServerStreamListener listener,
+            DictionaryEncodingMode dictionaryMode,
+            int dictionaryMaxValues,
+            long dictionarySampleRows,
+            BatchCoalescer coalescer) {
+        this.allocator = allocator;
+        this.listener = listener;
+        this.dictionaryMaxValues = dictionaryMaxValues;
+        this.dictionarySampleRows = dictionarySampleRows;
+        this.root = VectorSchemaRoot.create(schema, allocator);
+        this.loader = new VectorLoader(root);
+        this.coalescer = coalescer;
+        if (dictionaryMode == DictionaryEncodingMode.OFF || !AdaptiveDictionaryEncoder.canEncode(schema)) {
+            start();
+        }
+    }
+
+    /**
+     * Sends the batch; the caller keeps ownership of (and closes) {@code batch}.
+     */
+    void emit(ArrowRecordBatch batch) {
+        if (coalescer != null) {
+            coalescer.add(batch, this::send);
+        } else {
+            send(batch);
+        }
+    }
+
+    private void send(ArrowRecordBatch batch) {
+        if (started) {
+            write(batch);
+            return;
+        }
+        VectorSchemaRoot copy = VectorSchemaRoot.create(root.getSchema(), allocator);
+        held.add(copy);
+        // Loading retains the batch's buffers, so the copy outlives the caller closing the batch.
+        new VectorLoader(copy).load(batch);
+        heldRows += batch.getLength();
+        if (heldRows >= dictionarySampleRows) {
+            startWithHeldBatches(false);
+        }
+    }
+
+    private void write(ArrowRecordBatch batch) {
+        root.clear();
+        loader.load(batch);
+        if (dictionaryEncoder != null) {
+            dictionaryEncoder.encode(root);
+        }
+        listener.putNext();
+    }
+
+    void completed() {
+        if (coalescer != null) {
+            coalescer.flush(this::send);
+        }
+        if (!started) {
+            startWithHeldBatches(true);
+        }
+        listener.completed();
+    }
+
+    /**
+     * Starts the stream, with dictionaries if {@code complete} (the held batches are the whole result), and sends
+     * the held batches.
+     */
+    private void startWithHeldBatches(boolean complete) {
+        if (complete) {
+            dictionaryEncoder = AdaptiveDictionaryEncoder.forResult(held, dictionaryMaxValues, allocator);
+        }
+        start();
+        while (!held.isEmpty()) {
+            try (VectorSchemaRoot copy = held.remove(0);
+                    ArrowRecordBatch batch = new VectorUnloader(copy).getRecordBatch()) {
+                write(batch);
+            }
+        }
+    }
+
+    private void start() {
+        if (dictionaryEncoder != null) {
+            listener.start(dictionaryEncoder.getRoot(), dictionaryEncoder.getProvider());
+        } else {
+            listener.start(root);
+        }
+        started = true;
+    }
+
+    @Override
+    public void close() {
+        if (coalescer != null) {
+            coalescer.close();
+        }
+        if (dictionaryEncoder != null) {
+            dictionaryEncoder.close();
+        }
+        held.forEach(VectorSchemaRoot::close);
+        held.clear();
+        root.close();
+    }
+}
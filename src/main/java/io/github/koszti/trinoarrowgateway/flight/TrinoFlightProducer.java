@@ -3,14 +3,18 @@ package io.github.koszti.trinoarrowgateway.flight;
 import io.github.koszti.trinoarrowgateway.config.GatewayTrinoProperties;
 import io.github.koszti.trinoarrowgateway.config.GatewayConversionProperties;
 import io.github.koszti.trinoarrowgateway.config.GatewayFlightProperties;
+import io.github.koszti.trinoarrowgateway.convert.BatchCapacityEstimator;
 import io.github.koszti.trinoarrowgateway.convert.SpooledRowsToArrowConverter;
 import io.github.koszti.trinoarrowgateway.spool.HttpSpooledSegmentClient;
 import io.github.koszti.trinoarrowgateway.trino.QueryRegistry;
+import io.github.koszti.trinoarrowgateway.trino.SpoolSegmentSource;
 import io.github.koszti.trinoarrowgateway.trino.TrinoClient;
 import io.github.koszti.trinoarrowgateway.trino.TrinoQueryHandle;
 import io.github.koszti.trinoarrowgateway.trino.exception.TrinoQueryFailedException;
 import io.github.koszti.trinoarrowgateway.trino.exception.TrinoRequestRejectedException;
 import io.github.koszti.trinoarrowgateway.trino.exception.TrinoUnavailableException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.luben.zstd.ZstdInputStream;
 import org.apache.arrow.flight.CallStatus;
 import org.apache.arrow.flight.FlightDescriptor;
@@ -20,12 +24,12 @@ import org.apache.arrow.flight.FlightProducer;
 import org.apache.arrow.flight.FlightRuntimeException;
 import org.apache.arrow.flight.Location;
 import org.apache.arrow.flight.NoOpFlightProducer;
+import org.apache.arrow.flight.PollInfo;
 import org.apache.arrow.flight.Ticket;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.vector.types.pojo.Schema;
-import org.apache.arrow.vector.VectorLoader;
-import org.apache.arrow.vector.VectorSchemaRoot;
 import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.ipc.message.IpcOption;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -34,14 +38,24 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ByteArrayInputStream;
 import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
-import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
 
 /**
@@ -54,6 +68,17 @@ import java.util.concurrent.Semaphore;
 @Component
 public class TrinoFlightProducer extends NoOpFlightProducer {
     private static final Logger log = LoggerFactory.getLogger(TrinoFlightProducer.class);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * First element of the path descriptor handed out by {@link #pollFlightInfo} for follow-up polls.
+     */
+    static final String POLL_DESCRIPTOR_PREFIX = "trino-query";
+
+    /**
+     * DoGet request header selecting the result order: {@code ordered} (default) or {@code unordered}.
+     */
+    static final String RESULT_ORDER_HEADER = "x-gateway-result-order";
 
     private final BufferAllocator allocator;
     private final Location location;
@@ -64,7 +89,6 @@ public class TrinoFlightProducer extends NoOpFlightProducer {
     private final SpooledRowsToArrowConverter spooledRowsToArrowConverter;
     private final ExecutorService conversionExecutor;
     private final GatewayConversionProperties conversionProps;
-    @SuppressWarnings("unused")
     private final GatewayFlightProperties flightProps;
 
     public TrinoFlightProducer(BufferAllocator allocator,
@@ -114,7 +138,116 @@ public class TrinoFlightProducer extends NoOpFlightProducer {
 
     private record SegmentPipe(TrinoQueryHandle.TrinoSpoolSegment segment,
             BlockingQueue<SegmentItem> queue,
-            Future<?> future) {}
+            SegmentWork work) {}
+
+    /**
+     * The steps processing one segment: a conversion task, or with asynchronous downloads a task starting the
+     * download, the download itself and the conversion task run when it completes. Cancelling cancels (and
+     * interrupts) the current step and any later one.
+     */
+    private static final class SegmentWork {
+        private Future<?> current;
+        private boolean cancelled;
+
+        /**
+         * Makes {@code next} the current step; returns false (and cancels it) if the work is already cancelled.
+         */
+        synchronized boolean step(Future<?> next) {
+            if (cancelled) {
+                next.cancel(true);
+                return false;
+            }
+            current = next;
+            return true;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (current != null) {
+                current.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * A segment's place in the order its stream hands conversions to the executor. Conversions block once their
+     * segment's queue is full, and an ordered stream only drains its head segment; if conversions were submitted as
+     * downloads complete, later segments could hold every executor thread while the head's conversion waited
+     * behind them. Submitting them in segment order means the head is always taken from the executor queue first.
+     */
+    private static final class ConversionTurn {
+        private final CompletableFuture<Void> previous;
+        private final CompletableFuture<Void> passed = new CompletableFuture<>();
+
+        ConversionTurn(CompletableFuture<Void> previous) {
+            this.previous = previous;
+        }
+
+        /**
+         * Runs {@code submit} once every earlier segment has passed its turn, then passes this one.
+         */
+        void submit(Runnable submit) {
+            previous.whenComplete((ignored, failure) -> {
+                try {
+                    submit.run();
+                } finally {
+                    pass();
+                }
+            });
+        }
+
+        /**
+         * Lets later segments submit their conversions when this one needs no turn: it converts on its own task,
+         * or failed before converting.
+         */
+        void pass() {
+            passed.complete(null);
+        }
+    }
+
+    /**
+     * Bounds the segments of a stream processed at once without blocking a thread for a permit: segments
+     * waiting for one are queued in arrival order and started by the release of an earlier segment.
+     */
+    private static final class SegmentPermits {
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private int available;
+
+        SegmentPermits(int permits) {
+            this.available = permits;
+        }
+
+        /**
+         * Runs {@code start} now if a permit is available, otherwise when one is released.
+         */
+        void acquire(Runnable start) {
+            synchronized (this) {
+                if (available == 0) {
+                    waiting.add(start);
+                    return;
+                }
+                available--;
+            }
+            start.run();
+        }
+
+        void release() {
+            Runnable next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    available++;
+                    return;
+                }
+            }
+            next.run();
+        }
+    }
+
+    /**
+     * Marks the end of the segment feed (the query finished or failed).
+     */
+    private static final SegmentPipe END_OF_SEGMENTS = new SegmentPipe(null, null, null);
 
     private static void put(BlockingQueue<SegmentItem> queue, SegmentItem item) {
         try {
@@ -125,6 +258,46 @@ public class TrinoFlightProducer extends NoOpFlightProducer {
         }
     }
 
+    /**
+     * Enqueues an item and, in unordered mode, signals the drain loop that some pipe has data ready.
+     */
+    private static void put(BlockingQueue<SegmentItem> queue, Semaphore ready, SegmentItem item) {
+        put(queue, item);
+        if (ready != null) {
+            ready.release();
+        }
+    }
+
+    /**
+     * Per-request result ordering, selected via the {@value #RESULT_ORDER_HEADER} DoGet header.
+     */
+    enum ResultOrder {
+        /** Batches are emitted in segment order (default). */
+        ORDERED,
+        /** Batches are emitted from whichever segment has data ready; avoids head-of-line blocking. */
+        UNORDERED;
+
+        static ResultOrder fromHeader(String value) {
+            if (value == null || value.isBlank()) {
+                return ORDERED;
+            }
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "ordered" -> ORDERED;
+                case "unordered" -> UNORDERED;
+                default -> throw new IllegalArgumentException(
+                        "Invalid " + RESULT_ORDER_HEADER + " header: " + value + " (supported: ordered, unordered)");
+            };
+        }
+    }
+
+    private static ResultOrder resultOrder(FlightProducer.CallContext context) {
+        if (context == null) {
+            return ResultOrder.ORDERED;
+        }
+        RequestHeadersMiddleware headers = context.getMiddleware(RequestHeadersMiddleware.KEY);
+        return ResultOrder.fromHeader(headers != null ? headers.get(RESULT_ORDER_HEADER) : null);
+    }
+
     private static boolean isJsonEncoding(String encoding) {
         return encoding == null || encoding.isBlank() || "json".equalsIgnoreCase(encoding);
     }
@@ -133,6 +306,10 @@ public class TrinoFlightProducer extends NoOpFlightProducer {
         return "json+zstd".equalsIgnoreCase(encoding);
     }
 
+    private static boolean isSupportedEncoding(String encoding) {
+        return isJsonEncoding(encoding) || isJsonZstdEncoding(encoding);
+    }
+
     private static InputStream maybeDecodeZstd(InputStream raw, boolean zstdPreferred) throws IOException {
         if (!zstdPreferred) {
             return raw;
@@ -195,6 +372,11 @@ public class TrinoFlightProducer extends NoOpFlightProducer {
         return CallStatus.INTERNAL.withDescription(msg).withCause(t).toRuntimeException();
     }
 
+    private static String noSpooledSegmentsMessage(String queryId) {
+        return "Trino did not return spooled segments for queryId=" + queryId +
+                ". Ensure Trino spooling is enabled and X-Trino-Query-Data-Encoding requests spooling.";
+    }
+
     private static String unsupportedEncodingMessage(String encoding) {
         return "Unsupported Trino spooled encoding: " + encoding + " (supported: json, json+zstd)";
     }
@@ -210,56 +392,170 @@ public class TrinoFlightProducer extends NoOpFlightProducer {
         String sql = new String(cmd, StandardCharsets.UTF_8);
         log.info("getFlightInfo: received SQL: {}", sql);
 
+        TrinoQueryHandle handle = submit(sql, false);
+
+        Schema schema = handle.getArrowSchema();
+
+        // Tickets encode the Trino queryId, optionally restricted to a range of segments.
+        // Segments of an incrementally submitted query are not known yet, so it always gets a single endpoint.
+        SpoolSegmentSource source = handle.getSegmentSource();
+        List<QueryTicket> tickets = source.isDone()
+                ? SegmentPartitioner.partition(handle.getQueryId(), source.snapshot(), flightProps.getEndpointsPerQuery())
+                : List.of(QueryTicket.forQuery(handle.getQueryId()));
+
+        List<FlightEndpoint> endpoints = tickets.stream()
+                .map(t -> new FlightEndpoint(t.toTicket(), location))
+                .toList();
+
+        return new FlightInfo(
+                schema,
+                descriptor,
+                endpoints,
+                /* bytes */ -1,
+                /* records */ -1
+        );
+    }
+
+    /**
+     * Long-running query support: the first call (SQL command descriptor) submits the query incrementally and
+     * returns right away; follow-up calls use the returned path descriptor. Every response lists one endpoint
+     * per spooled segment published so far, so clients can start DoGet on them while Trino is still running.
+     */
+    @Override
+    public PollInfo pollFlightInfo(FlightProducer.CallContext context,
+            FlightDescriptor descriptor) {
+        TrinoQueryHandle handle;
+        if (descriptor.isCommand()) {
+            String sql = new String(descriptor.getCommand(), StandardCharsets.UTF_8);
+            log.info("pollFlightInfo: received SQL: {}", sql);
+            handle = submit(sql, true);
+        } else {
+            List<String> path = descriptor.getPath();
+            if (path.size() != 2 || !POLL_DESCRIPTOR_PREFIX.equals(path.get(0))) {
+                throw CallStatus.INVALID_ARGUMENT
+                        .withDescription("Expected a SQL command or a [" + POLL_DESCRIPTOR_PREFIX + ", <queryId>] path descriptor")
+                        .toRuntimeException();
+            }
+            handle = queryRegistry.get(path.get(1));
+            if (handle == null) {
+                throw CallStatus.NOT_FOUND.withDescription("Unknown queryId: " + path.get(1)).toRuntimeException();
+            }
+        }
+
+        SpoolSegmentSource source = handle.getSegmentSource();
+        Throwable failure = source.getFailure();
+        if (failure != null) {
+            throw toSubmissionFailure(failure);
+        }
+
+        // Read completion before the snapshot: if done, the snapshot is guaranteed to be complete.
+        boolean done = source.isDone();
+        List<TrinoQueryHandle.TrinoSpoolSegment> segments = source.snapshot();
+
+        List<FlightEndpoint> endpoints = new ArrayList<>(segments.size());
+        long rows = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            endpoints.add(new FlightEndpoint(QueryTicket.forSegments(handle.getQueryId(), i, i + 1).toTicket(), location));
+            Long rowsCount = segments.get(i).rowsCount();
+            rows += rowsCount != null ? rowsCount : 0;
+        }
+
+        TrinoQueryHandle.TrinoQueryProgress progress = source.getProgress();
+        FlightInfo info = new FlightInfo(
+                handle.getArrowSchema(),
+                descriptor,
+                endpoints,
+                /* bytes */ -1,
+                /* records */ done ? rows : -1,
+                /* ordered */ true,
+                IpcOption.DEFAULT,
+                progressMetadata(progress, segments.size(), rows, done));
+
+        FlightDescriptor next = done ? null : FlightDescriptor.path(POLL_DESCRIPTOR_PREFIX, handle.getQueryId());
+        return new PollInfo(info, next, progressFraction(progress, done), null);
+    }
+
+    private TrinoQueryHandle submit(String sql, boolean incremental) {
         TrinoQueryHandle handle;
         try {
-            handle = trinoClient.submitQuery(sql);
-        } catch (TrinoRequestRejectedException e) {
+            handle = incremental ? trinoClient.submitQueryIncremental(sql) : trinoClient.submitQuery(sql);
+        } catch (Exception e) {
+            throw toSubmissionFailure(e);
+        }
+        queryRegistry.register(handle);
+        return handle;
+    }
+
+    private static FlightRuntimeException toSubmissionFailure(Throwable t) {
+        if (t instanceof TrinoRequestRejectedException e) {
             String msg = "Trino rejected query submission (HTTP " + e.getStatusCode() + "): " + e.getMessage();
             log.info("Flight SQL rejected by Trino: {}", msg);
-            throw CallStatus.INVALID_ARGUMENT.withDescription(msg).withCause(e).toRuntimeException();
-        } catch (TrinoQueryFailedException e) {
+            return CallStatus.INVALID_ARGUMENT.withDescription(msg).withCause(e).toRuntimeException();
+        } else if (t instanceof TrinoQueryFailedException e) {
             String msg = "Trino query failed (queryId=" + e.getQueryId() + "): " + e.getMessage();
             log.info("Flight SQL failed: {}", msg);
-            throw CallStatus.INVALID_ARGUMENT.withDescription(msg).withCause(e).toRuntimeException();
-        } catch (IllegalArgumentException e) {
+            return CallStatus.INVALID_ARGUMENT.withDescription(msg).withCause(e).toRuntimeException();
+        } else if (t instanceof IllegalArgumentException e) {
             String msg = "Unsupported query result schema: " + e.getMessage();
             log.info("Flight SQL schema unsupported: {}", msg);
-            throw CallStatus.INVALID_ARGUMENT.withDescription(msg).withCause(e).toRuntimeException();
-        } catch (TrinoUnavailableException e) {
+            return CallStatus.INVALID_ARGUMENT.withDescription(msg).withCause(e).toRuntimeException();
+        } else if (t instanceof TrinoUnavailableException e) {
             String msg = String.format(
                     "Trino is unavailable at %s. Start Trino or update gateway.trino.base-url.",
                     e.getBaseUrl());
             log.warn("Unable to submit query to Trino for Flight request: {}", msg, e);
-            throw CallStatus.UNAVAILABLE.withDescription(msg).withCause(e).toRuntimeException();
-        } catch (Exception e) {
-            String msg = "Unexpected error while submitting query to Trino: " + e.getMessage();
-            log.warn(msg, e);
-            throw CallStatus.INTERNAL.withDescription(msg).withCause(e).toRuntimeException();
+            return CallStatus.UNAVAILABLE.withDescription(msg).withCause(e).toRuntimeException();
         }
-        queryRegistry.register(handle);
-
-        Schema schema = handle.getArrowSchema();
+        String msg = "Unexpected error while submitting query to Trino: " + t.getMessage();
+        log.warn(msg, t);
+        return CallStatus.INTERNAL.withDescription(msg).withCause(t).toRuntimeException();
+    }
 
-        // Ticket encodes the Trino queryId
-        Ticket ticket = new Ticket(handle.getQueryId().getBytes(StandardCharsets.UTF_8));
-        FlightEndpoint endpoint = new FlightEndpoint(ticket, location);
+    private static Double progressFraction(TrinoQueryHandle.TrinoQueryProgress progress, boolean done) {
+        if (done) {
+            return 1.0;
+        }
+        if (progress == null || progress.progressPercentage() == null) {
+            return null;
+        }
+        return Math.max(0.0, Math.min(1.0, progress.progressPercentage() / 100.0));
+    }
 
-        return new FlightInfo(
-                schema,
-                descriptor,
-                Collections.singletonList(endpoint),
-                /* bytes */ -1,
-                /* records */ -1
-        );
+    /**
+     * Small JSON document carried in FlightInfo.app_metadata so pollers can show Trino progress.
+     */
+    private static byte[] progressMetadata(TrinoQueryHandle.TrinoQueryProgress progress,
+            int segments,
+            long segmentRows,
+            boolean done) {
+        String state = progress != null && progress.state() != null ? progress.state() : (done ? "FINISHED" : "UNKNOWN");
+        Long processedRows = progress != null ? progress.processedRows() : null;
+        try {
+            return OBJECT_MAPPER.writeValueAsBytes(new ProgressMetadata(state, processedRows, segments, segmentRows));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
+    /**
+     * JSON app metadata of a {@link #pollFlightInfo} response.
+     */
+    private record ProgressMetadata(String state, Long processedRows, int segments, long segmentRows) {}
+
     @Override
     public void getStream(FlightProducer.CallContext context,
             Ticket ticket,
             FlightProducer.ServerStreamListener listener)
     {
-        String queryId = new String(ticket.getBytes(), StandardCharsets.UTF_8);
-        log.info("getStream: queryId={}", queryId);
+        QueryTicket queryTicket;
+        try {
+            queryTicket = QueryTicket.parse(ticket);
+        } catch (IllegalArgumentException e) {
+            fail(listener, CallStatus.INVALID_ARGUMENT, e.getMessage());
+            return;
+        }
+        String queryId = queryTicket.queryId();
+        log.info("getStream: ticket={}", queryTicket);
 
         TrinoQueryHandle handle = queryRegistry.get(queryId);
         if (handle == null) {
@@ -268,22 +564,30 @@ public class TrinoFlightProducer extends NoOpFlightProducer {
         }
 
         Schema schema = handle.getArrowSchema();
+        SpoolSegmentSource source = handle.getSegmentSource();
 
-        if (handle.getSpoolSegments().isEmpty()) {
-            String msg = "Trino did not return spooled segments for queryId=" + queryId +
-                    ". Ensure Trino spooling is enabled and X-Trino-Query-Data-Encoding requests spooling.";
-            fail(listener, CallStatus.INVALID_ARGUMENT, msg);
+        // Incrementally submitted queries may not have published any segment yet; that is checked while streaming.
+        if (source.isDone() && source.getFailure() == null && source.size() == 0) {
+            fail(listener, CallStatus.INVALID_ARGUMENT, noSpooledSegmentsMessage(queryId));
             return;
         }
 
         String encoding = handle.getSpoolEncoding();
-        if (!isJsonEncoding(encoding) && !isJsonZstdEncoding(encoding)) {
+        if (!isSupportedEncoding(encoding)) {
             fail(listener, CallStatus.INVALID_ARGUMENT, unsupportedEncodingMessage(encoding));
             return;
         }
 
+        ResultOrder order;
         try {
-            streamSpooledSegments(handle, schema, encoding, listener);
+            order = resultOrder(context);
+        } catch (IllegalArgumentException e) {
+            fail(listener, CallStatus.INVALID_ARGUMENT, e.getMessage());
+            return;
+        }
+
+        try {
+            streamSpooledSegments(handle, queryTicket, order, schema, listener);
         } catch (Throwable t) {
             log.warn("getStream failed for queryId={}: {}", queryId, safeMessage(t), t);
             listener.error(toStreamFailure(queryId, t));
@@ -291,91 +595,330 @@ public class TrinoFlightProducer extends NoOpFlightProducer {
     }
 
     private void streamSpooledSegments(TrinoQueryHandle handle,
+            QueryTicket queryTicket,
+            ResultOrder order,
             Schema schema,
-            String encoding,
             FlightProducer.ServerStreamListener listener) throws Exception {
-        int batchSize = conversionProps.getBatchSize();
         int maxInFlightSegments = conversionProps.getMaxInFlightSegments();
         int maxBufferedBatchesPerSegment = conversionProps.getMaxBufferedBatchesPerSegment();
 
-        Semaphore inFlight = new Semaphore(maxInFlightSegments);
-        boolean isJsonZstd = isJsonZstdEncoding(encoding);
-
-        try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
-            VectorLoader loader = new VectorLoader(root);
-            listener.start(root);
-
-            List<SegmentPipe> pipes = handle.getSpoolSegments().stream()
-                    .map(segment -> {
-                        BlockingQueue<SegmentItem> queue = new ArrayBlockingQueue<>(maxBufferedBatchesPerSegment);
-
-                        Future<?> future = conversionExecutor.submit(() -> {
-                            boolean acquired = false;
-                            try {
-                                inFlight.acquire();
-                                acquired = true;
-
-                                URI uri = segment.uri();
-                                URI ackUri = segment.ackUri();
-                                var headers = segment.headers();
-                                byte[] inlineData = segment.inlineData();
-
-                                if (inlineData != null) {
-                                    try (InputStream raw = new ByteArrayInputStream(inlineData);
-                                            InputStream decoded = maybeDecodeZstd(raw, isJsonZstd)) {
-                                        spooledRowsToArrowConverter.convertStreaming(decoded, schema, batchSize,
-                                                batch -> put(queue, SegmentItem.batch(batch)));
-                                    }
-                                } else {
-                                    try (HttpSpooledSegmentClient.FetchedSegment fetched = spooledSegmentClient.fetch(uri, ackUri, headers)) {
-                                        try (InputStream decoded = maybeDecodeZstd(fetched.body(), isJsonZstd)) {
-                                            spooledRowsToArrowConverter.convertStreaming(decoded, schema, batchSize,
-                                                    batch -> put(queue, SegmentItem.batch(batch)));
-                                        }
-                                    }
-                                }
-
-                                if (inlineData == null) {
-                                    spooledSegmentClient.ack(ackUri, headers);
-                                }
-                                put(queue, SegmentItem.end());
-                            } catch (Throwable t) {
-                                Throwable wrapped = t;
-                                try {
-                                    wrapped = new RuntimeException(
-                                            "Spooled segment processing failed (uri=" + segment.uri() + "): " + safeMessage(t),
-                                            t);
-                                } catch (Exception ignored) {
-                                }
-                                put(queue, SegmentItem.error(wrapped));
-                                put(queue, SegmentItem.end());
-                            } finally {
-                                if (acquired) {
-                                    inFlight.release();
-                                }
-                            }
-                        });
-
-                        return new SegmentPipe(segment, queue, future);
-                    })
-                    .toList();
+        SegmentPermits inFlight = new SegmentPermits(maxInFlightSegments);
+        SpoolSegmentSource source = handle.getSegmentSource();
+        // Shared by all segments of the stream, so each batch is sized from the ones converted before it.
+        BatchCapacityEstimator capacities = new BatchCapacityEstimator(schema, conversionProps.getBatchBytes());
+        HttpSpooledSegmentClient.HedgeBudget hedgeBudget = spooledSegmentClient.newHedgeBudget();
+
+        BatchCoalescer coalescer = conversionProps.isCoalesceBatches() && BatchCoalescer.supports(schema)
+                ? new BatchCoalescer(schema, allocator, conversionProps.getBatchSize(), conversionProps.getBatchBytes())
+                : null;
+
+        try (StreamEmitter emitter = new StreamEmitter(schema, allocator, listener,
+                conversionProps.getDictionaryEncoding(), conversionProps.getDictionaryMaxValues(),
+                conversionProps.getDictionarySampleRows(), coalescer)) {
+
+            // Segments are turned into pipes as soon as they are published, so download/conversion of
+            // later segments overlaps with draining earlier ones (and with Trino still running).
+            BlockingQueue<SegmentPipe> feed = new LinkedBlockingQueue<>();
+            Queue<SegmentPipe> pipes = new ConcurrentLinkedQueue<>();
+            // Unordered mode: one permit per enqueued item or feed event, so the drain loop can wait on all pipes at once.
+            Semaphore ready = order == ResultOrder.UNORDERED ? new Semaphore(0) : null;
+            SpoolSegmentSource.Listener subscription = new SpoolSegmentSource.Listener() {
+                // Unordered streams drain every segment, so their conversions need no turns.
+                private CompletableFuture<Void> previousTurn = CompletableFuture.completedFuture(null);
+
+                @Override
+                public void onSegment(int index, TrinoQueryHandle.TrinoSpoolSegment segment) {
+                    if (!queryTicket.contains(index)) {
+                        return;
+                    }
+                    BlockingQueue<SegmentItem> queue = new ArrayBlockingQueue<>(maxBufferedBatchesPerSegment);
+                    SegmentWork work = new SegmentWork();
+                    SegmentPipe pipe = new SegmentPipe(segment, queue, work);
+                    ConversionTurn turn = new ConversionTurn(previousTurn);
+                    if (order == ResultOrder.ORDERED) {
+                        previousTurn = turn.passed;
+                    }
+                    pipes.add(pipe);
+                    // Publish the pipe before the worker can enqueue anything into it.
+                    addToFeed(pipe);
+                    inFlight.acquire(() -> execute(work,
+                            () -> processSegment(handle, schema, segment, capacities, hedgeBudget, queue, ready, inFlight, work, turn)));
+                    if (index == queryTicket.toSegment() - 1) {
+                        // Last segment of a range ticket; no need to wait for the rest of the query.
+                        addToFeed(END_OF_SEGMENTS);
+                    }
+                }
+
+                @Override
+                public void onComplete() {
+                    addToFeed(END_OF_SEGMENTS);
+                }
+
+                @Override
+                public void onFailure(Throwable failure) {
+                    addToFeed(END_OF_SEGMENTS);
+                }
+
+                private void addToFeed(SegmentPipe pipe) {
+                    feed.add(pipe);
+                    if (ready != null) {
+                        ready.release();
+                    }
+                }
+            };
+            source.subscribe(subscription);
 
             try {
-                for (SegmentPipe pipe : pipes) {
-                    drainSegmentPipe(pipe, root, loader, listener);
+                int drained = order == ResultOrder.UNORDERED
+                        ? drainUnordered(feed, ready, emitter)
+                        : drainOrdered(feed, emitter);
+
+                source.unsubscribe(subscription);
+
+                Throwable failure = source.getFailure();
+                if (failure != null && drained < expectedSegments(queryTicket)) {
+                    throw new RuntimeException(
+                            "Trino query " + handle.getQueryId() + " failed while streaming results: " + safeMessage(failure),
+                            failure);
+                }
+                if (!queryTicket.isWholeQuery() && drained < expectedSegments(queryTicket)) {
+                    throw CallStatus.NOT_FOUND
+                            .withDescription("Ticket " + queryTicket + " references segments beyond the "
+                                    + source.size() + " segments of queryId=" + handle.getQueryId())
+                            .toRuntimeException();
+                }
+                if (drained == 0) {
+                    throw CallStatus.INVALID_ARGUMENT
+                            .withDescription(noSpooledSegmentsMessage(handle.getQueryId()))
+                            .toRuntimeException();
                 }
-                listener.completed();
+                emitter.completed();
             } catch (Exception e) {
+                // Stop creating pipes for segments that are still being published before cancelling.
+                source.unsubscribe(subscription);
                 cancelAndDrain(pipes);
                 throw e;
             }
         }
     }
 
+    private static int expectedSegments(QueryTicket queryTicket) {
+        return queryTicket.toSegment() == QueryTicket.ALL_SEGMENTS
+                ? Integer.MAX_VALUE
+                : queryTicket.toSegment() - queryTicket.fromSegment();
+    }
+
+    /**
+     * Runs {@code step} of {@code work} on the conversion executor, unless the work is cancelled.
+     */
+    private void execute(SegmentWork work, Runnable step) {
+        FutureTask<Void> task = new FutureTask<>(step, null);
+        if (work.step(task)) {
+            conversionExecutor.execute(task);
+        }
+    }
+
+    private void processSegment(TrinoQueryHandle handle,
+            Schema schema,
+            TrinoQueryHandle.TrinoSpoolSegment segment,
+            BatchCapacityEstimator capacities,
+            HttpSpooledSegmentClient.HedgeBudget hedgeBudget,
+            BlockingQueue<SegmentItem> queue,
+            Semaphore ready,
+            SegmentPermits inFlight,
+            SegmentWork work,
+            ConversionTurn turn) {
+        boolean release = true;
+        boolean async = conversionProps.isAsyncDownloads();
+        if (!async) {
+            // Segment tasks start in segment order and convert on their own thread.
+            turn.pass();
+        }
+        try {
+            // Read per segment: in incremental mode the encoding is only known once Trino publishes data.
+            String encoding = handle.getSpoolEncoding();
+            if (!isSupportedEncoding(encoding)) {
+                throw new IllegalStateException(unsupportedEncodingMessage(encoding));
+            }
+            boolean isJsonZstd = isJsonZstdEncoding(encoding);
+
+            URI uri = segment.uri();
+            URI ackUri = segment.ackUri();
+            var headers = segment.headers();
+            byte[] inlineData = segment.inlineData();
+            // Compressed bytes per row say little about the JSON; Trino reports the uncompressed size alongside.
+            BatchCapacityEstimator.Segment capacity = capacities.forSegment(segment.rowsCount(),
+                    isJsonZstd ? segment.uncompressedSize() : segment.segmentSize());
+
+            if (inlineData != null && !async) {
+                try (InputStream raw = new ByteArrayInputStream(inlineData)) {
+                    convert(raw, isJsonZstd, schema, capacity, queue, ready);
+                }
+                put(queue, ready, SegmentItem.end());
+            } else if (inlineData != null) {
+                // Waits for its turn like a downloaded segment, so it cannot hold a thread an earlier segment needs.
+                release = false;
+                turn.submit(() -> execute(work, () -> convertDownloaded(segment, new ByteArrayInputStream(inlineData),
+                        null, null, isJsonZstd, schema, capacity, queue, ready, inFlight)));
+            } else if (async) {
+                // No thread waits for the body; the permit is released once the downloaded segment is converted.
+                CompletableFuture<HttpSpooledSegmentClient.FetchedSegment> download =
+                        spooledSegmentClient.fetchAsync(uri, ackUri, headers, segment.segmentSize(), hedgeBudget,
+                                segment.expiration());
+                if (work.step(download)) {
+                    release = false;
+                    download.whenComplete((fetched, failure) -> turn.submit(() -> execute(work, () -> convertDownloaded(
+                            segment, fetched == null ? null : fetched.body(), ackUri, failure,
+                            isJsonZstd, schema, capacity, queue, ready, inFlight))));
+                }
+            } else {
+                try (HttpSpooledSegmentClient.FetchedSegment fetched = spooledSegmentClient.fetch(uri, ackUri, headers,
+                        segment.segmentSize(), segment.expiration())) {
+                    convert(fetched.body(), isJsonZstd, schema, capacity, queue, ready);
+                }
+                spooledSegmentClient.acker().submit(ackUri, headers);
+                put(queue, ready, SegmentItem.end());
+            }
+        } catch (Throwable t) {
+            failSegment(segment, queue, ready, t);
+        } finally {
+            if (release) {
+                turn.pass();
+                inFlight.release();
+            }
+        }
+    }
+
+    /**
+     * Converts and acks a segment downloaded with {@link HttpSpooledSegmentClient#fetchAsync}, or converts an
+     * inline segment's data (no {@code ackUri}) in its turn.
+     */
+    private void convertDownloaded(TrinoQueryHandle.TrinoSpoolSegment segment,
+            InputStream body,
+            URI ackUri,
+            Throwable failure,
+            boolean isJsonZstd,
+            Schema schema,
+            BatchCapacityEstimator.Segment capacity,
+            BlockingQueue<SegmentItem> queue,
+            Semaphore ready,
+            SegmentPermits inFlight) {
+        try {
+            if (failure != null) {
+                throw failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            }
+            try (body) {
+                convert(body, isJsonZstd, schema, capacity, queue, ready);
+            }
+            spooledSegmentClient.acker().submit(ackUri, segment.headers());
+            put(queue, ready, SegmentItem.end());
+        } catch (Throwable t) {
+            failSegment(segment, queue, ready, t);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private void convert(InputStream raw,
+            boolean isJsonZstd,
+            Schema schema,
+            BatchCapacityEstimator.Segment capacity,
+            BlockingQueue<SegmentItem> queue,
+            Semaphore ready) throws IOException {
+        try (InputStream decoded = maybeDecodeZstd(raw, isJsonZstd)) {
+            spooledRowsToArrowConverter.convertStreaming(decoded, schema, conversionProps.getBatchSize(), capacity,
+                    batch -> put(queue, ready, SegmentItem.batch(batch)));
+        }
+    }
+
+    private static void failSegment(TrinoQueryHandle.TrinoSpoolSegment segment,
+            BlockingQueue<SegmentItem> queue,
+            Semaphore ready,
+            Throwable t) {
+        Throwable wrapped = t;
+        try {
+            wrapped = new RuntimeException(
+                    "Spooled segment processing failed (uri=" + segment.uri() + "): " + safeMessage(t),
+                    t);
+        } catch (Exception ignored) {
+        }
+        put(queue, ready, SegmentItem.error(wrapped));
+        put(queue, ready, SegmentItem.end());
+    }
+
+    private static int drainOrdered(BlockingQueue<SegmentPipe> feed,
+            StreamEmitter emitter) throws Exception {
+        int drained = 0;
+        while (true) {
+            SegmentPipe pipe = feed.take();
+            if (pipe == END_OF_SEGMENTS) {
+                return drained;
+            }
+            drainSegmentPipe(pipe, emitter);
+            drained++;
+        }
+    }
+
+    /**
+     * Emits batches from whichever segment has data ready, so one slow download does not stall the others.
+     * <p>
+     * Every enqueued item and every feed event releases one {@code ready} permit and each iteration consumes one,
+     * so the loop only blocks when no pipe has data. Pipes are published to the feed before their worker starts,
+     * which keeps the permit count at least equal to the number of queued items after each feed poll.
+     */
+    private static int drainUnordered(BlockingQueue<SegmentPipe> feed,
+            Semaphore ready,
+            StreamEmitter emitter) throws Exception {
+        List<SegmentPipe> active = new ArrayList<>();
+        boolean feedDone = false;
+        int drained = 0;
+        int cursor = 0;
+
+        while (true) {
+            SegmentPipe next;
+            while ((next = feed.poll()) != null) {
+                if (next == END_OF_SEGMENTS) {
+                    feedDone = true;
+                } else {
+                    active.add(next);
+                }
+            }
+            if (feedDone && active.isEmpty()) {
+                return drained;
+            }
+
+            ready.acquire();
+
+            // Round-robin so a fast segment cannot starve the others.
+            for (int n = 0; n < active.size(); n++) {
+                int i = (cursor + n) % active.size();
+                SegmentPipe pipe = active.get(i);
+                SegmentItem item = pipe.queue.poll();
+                if (item == null) {
+                    continue;
+                }
+                if (item.error != null) {
+                    throw new RuntimeException(
+                            "Spooled segment failed (uri=" + pipe.segment.uri() + "): " + safeMessage(item.error),
+                            item.error);
+                }
+                if (item.end) {
+                    active.remove(i);
+                    drained++;
+                    cursor = i;
+                } else {
+                    try (ArrowRecordBatch batch = item.batch) {
+                        emitter.emit(batch);
+                    }
+                    cursor = i + 1;
+                }
+                break;
+            }
+        }
+    }
+
     private static void drainSegmentPipe(SegmentPipe pipe,
-            VectorSchemaRoot root,
-            VectorLoader loader,
-            FlightProducer.ServerStreamListener listener) throws Exception {
+            StreamEmitter emitter) throws Exception {
         while (true) {
             SegmentItem item = pipe.queue.take();
             if (item.error != null) {
@@ -387,16 +930,14 @@ public class TrinoFlightProducer extends NoOpFlightProducer {
                 return;
             }
             try (ArrowRecordBatch batch = item.batch) {
-                root.clear();
-                loader.load(batch);
-                listener.putNext();
+                emitter.emit(batch);
             }
         }
     }
 
-    private static void cancelAndDrain(List<SegmentPipe> pipes) {
+    private static void cancelAndDrain(Collection<SegmentPipe> pipes) {
         for (SegmentPipe pipe : pipes) {
-            pipe.future.cancel(true);
+            pipe.work.cancel();
             pipe.queue.forEach(it -> {
                 if (it != null && it.batch != null) {
                     try {
@@ -0,0 +1,204 @@
+package io.github.koszti.trinoarrowgateway.spool;
+
+import io.github.koszti.trinoarrowgateway.config.GatewaySpoolProperties;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpMessage;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.ToIntFunction;
+
+/**
+ * {@link SegmentTransport} on Apache HttpClient 5, with bounded connection pools.
+ * <p>
+ * Blocking downloads and acks use the classic client, asynchronous downloads the async client; each has its own
+ * pool with the configured total and per-host limits, so a burst of small segments reuses kept-alive connections
+ * (and their TLS sessions) instead of opening, and leaving in TIME_WAIT, one connection per segment. HTTP/2 is
+ * negotiated through ALPN by the async client; the classic client speaks HTTP/1.1.
+ */
+public final class ApacheSegmentTransport implements SegmentTransport {
+    private static final byte[] NO_BODY = new byte[0];
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final PoolingAsyncClientConnectionManager asyncConnectionManager;
+    private final CloseableHttpAsyncClient asyncClient;
+
+    public ApacheSegmentTransport(GatewaySpoolProperties spoolProps) {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(spoolProps.getConnectTimeout()))
+                .build();
+        TimeValue idleTimeout = TimeValue.of(spoolProps.getIdleTimeout());
+
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(spoolProps.getMaxConnections())
+                .setMaxConnPerRoute(spoolProps.getMaxConnectionsPerHost())
+                .setDefaultConnectionConfig(connectionConfig)
+                .build();
+        this.client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictIdleConnections(idleTimeout)
+                .build();
+
+        this.asyncConnectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(spoolProps.getMaxConnections())
+                .setMaxConnPerRoute(spoolProps.getMaxConnectionsPerHost())
+                .setDefaultConnectionConfig(connectionConfig)
+                .setDefaultTlsConfig(TlsConfig.custom()
+                        .setVersionPolicy(spoolProps.isHttp2() ? HttpVersionPolicy.NEGOTIATE : HttpVersionPolicy.FORCE_HTTP_1)
+                        .build())
+                .build();
+        this.asyncClient = HttpAsyncClients.custom()
+                .setConnectionManager(asyncConnectionManager)
+                .evictIdleConnections(idleTimeout)
+                .build();
+        asyncClient.start();
+    }
+
+    @Override
+    public Response get(URI uri, Map<String, String> headers, Duration timeout) throws IOException {
+        HttpGet request = new HttpGet(uri);
+        addHeaders(headers, request);
+        request.setConfig(requestConfig(timeout));
+
+        ClassicHttpResponse response = client.executeOpen(null, request, null);
+        HttpEntity entity = response.getEntity();
+        InputStream content = entity != null ? entity.getContent() : InputStream.nullInputStream();
+        // Closing the body releases the connection back to the pool.
+        InputStream body = new FilterInputStream(content) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    response.close();
+                }
+            }
+        };
+        return new Response(response.getCode(), firstValues(response), body);
+    }
+
+    @Override
+    public CompletableFuture<Response> getAsync(URI uri, Map<String, String> headers, Duration timeout) {
+        SimpleRequestBuilder request = SimpleRequestBuilder.get(uri)
+                .setRequestConfig(requestConfig(timeout));
+        if (headers != null) {
+            headers.forEach((k, v) -> {
+                if (k != null && !k.isBlank() && v != null) {
+                    request.addHeader(k, v);
+                }
+            });
+        }
+
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        Future<SimpleHttpResponse> exchange = asyncClient.execute(request.build(), new FutureCallback<>() {
+            @Override
+            public void completed(SimpleHttpResponse response) {
+                byte[] body = response.getCode() >= 200 && response.getCode() < 300 ? response.getBodyBytes() : null;
+                result.complete(new Response(response.getCode(), firstValues(response),
+                        new ByteArrayInputStream(body != null ? body : NO_BODY)));
+            }
+
+            @Override
+            public void failed(Exception e) {
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+        result.whenComplete((response, failure) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Connections of both pools currently serving a request.
+     */
+    public int leasedConnections() {
+        return stats(connectionManager.getTotalStats(), asyncConnectionManager.getTotalStats(), PoolStats::getLeased);
+    }
+
+    /**
+     * Idle kept-alive connections of both pools.
+     */
+    public int availableConnections() {
+        return stats(connectionManager.getTotalStats(), asyncConnectionManager.getTotalStats(), PoolStats::getAvailable);
+    }
+
+    /**
+     * Requests of both pools waiting for a connection.
+     */
+    public int pendingConnections() {
+        return stats(connectionManager.getTotalStats(), asyncConnectionManager.getTotalStats(), PoolStats::getPending);
+    }
+
+    private static int stats(PoolStats classic, PoolStats async, ToIntFunction<PoolStats> value) {
+        return value.applyAsInt(classic) + value.applyAsInt(async);
+    }
+
+    @Override
+    public void close() {
+        client.close(CloseMode.GRACEFUL);
+        asyncClient.close(CloseMode.GRACEFUL);
+    }
+
+    private static RequestConfig requestConfig(Duration timeout) {
+        return RequestConfig.custom()
+                .setResponseTimeout(Timeout.of(timeout))
+                .build();
+    }
+
+    private static void addHeaders(Map<String, String> headers, HttpMessage request) {
+        if (headers != null) {
+            headers.forEach((k, v) -> {
+                if (k != null && !k.isBlank() && v != null) {
+                    request.addHeader(k, v);
+                }
+            });
+        }
+    }
+
+    private static Map<String, String> firstValues(HttpMessage response) {
+        Map<String, String> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Header header : response.getHeaders()) {
+            values.putIfAbsent(header.getName(), header.getValue());
+        }
+        return values;
+    }
+}
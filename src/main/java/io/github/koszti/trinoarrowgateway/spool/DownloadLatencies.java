@@ -0,0 +1,42 @@
+package io.github.koszti.trinoarrowgateway.spool;
+
+import java.util.Arrays;
+
+/**
+ * Durations of the most recent segment downloads, the basis of the hedging deadline. Thread-safe.
+ */
+final class DownloadLatencies {
+    /** Percentiles are only reported once this many downloads have been seen. */
+    static final int MIN_SAMPLES = 20;
+
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    DownloadLatencies(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    /**
+     * The {@code percentile} (0-100) of the recent durations in nanoseconds, or -1 while fewer than
+     * {@link #MIN_SAMPLES} downloads have been seen.
+     */
+    long percentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
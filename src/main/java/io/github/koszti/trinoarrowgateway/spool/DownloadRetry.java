@@ -0,0 +1,100 @@
+package io.github.koszti.trinoarrowgateway.spool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.time.Instant;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retry budget of one segment download: up to {@code maxRetries} retries with exponential backoff, and none that
+ * would start after the segment expires in the spooling storage. Thread-safe; shared by all requests of the
+ * segment.
+ */
+final class DownloadRetry {
+    private static final Logger log = LoggerFactory.getLogger(DownloadRetry.class);
+
+    private final URI uri;
+    private final int maxRetries;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final Instant expiresAt;
+    private final AtomicInteger retries = new AtomicInteger();
+
+    /**
+     * @param expiresAt when the segment is deleted from the spooling storage, or null if unknown
+     */
+    DownloadRetry(URI uri, int maxRetries, long initialBackoffNanos, long maxBackoffNanos, Instant expiresAt) {
+        this.uri = uri;
+        this.maxRetries = maxRetries;
+        this.initialBackoffNanos = initialBackoffNanos;
+        this.maxBackoffNanos = maxBackoffNanos;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Takes a retry after {@code failure}; returns the nanoseconds to wait before it, or -1 if the failure is
+     * final: not transient, the budget is used up, or the segment would expire before the retry.
+     */
+    long backoffNanos(Throwable failure) {
+        if (!isTransient(failure)) {
+            return -1;
+        }
+        int retry = retries.incrementAndGet();
+        if (retry > maxRetries) {
+            return -1;
+        }
+        long backoff = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(retry - 1, 20));
+        if (expiresAt != null && Instant.now().plusNanos(backoff).isAfter(expiresAt)) {
+            return -1;
+        }
+        log.warn("Retrying spooled segment download in {} ms (retry {} of {}): {} ({})",
+                TimeUnit.NANOSECONDS.toMillis(backoff), retry, maxRetries, uri, failure.getMessage());
+        return backoff;
+    }
+
+    /**
+     * Waits for the next retry after {@code failure}, or rethrows it if it is final.
+     */
+    void await(IOException failure) throws IOException {
+        long backoff = backoffNanos(failure);
+        if (backoff < 0) {
+            throw failure;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(backoff);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted while retrying " + uri);
+            interrupted.initCause(e);
+            throw interrupted;
+        }
+    }
+
+    /**
+     * Whether {@code failure} may be gone on a later attempt: I/O errors and transient HTTP statuses, but not
+     * interruptions.
+     */
+    static boolean isTransient(Throwable failure) {
+        Throwable t = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (t instanceof SegmentStatusException status) {
+            return status.isTransient();
+        }
+        if (!(t instanceof IOException)) {
+            return false;
+        }
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException
+                    || (cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
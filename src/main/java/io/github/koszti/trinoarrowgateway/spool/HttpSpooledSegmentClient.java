@@ -1,74 +1,491 @@
 package io.github.koszti.trinoarrowgateway.spool;
 
+import io.github.koszti.trinoarrowgateway.config.GatewaySpoolProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * Downloads Trino spooled segments over HTTP(S) and acks them via an HTTP GET.
  * <p>
  * Ack must be called after the segment is successfully downloaded/consumed.
+ * <p>
+ * {@link #fetch} streams the body through a blocking {@link InputStream}; {@link #fetchAsync} receives it on the
+ * transport's threads and completes once the whole body is in memory. Requests go through a
+ * {@link SegmentTransport}, which owns the connections.
+ * <p>
+ * Segments whose reported size reaches the ranged download threshold are fetched with concurrent HTTP
+ * {@code Range} requests, so one large segment is not limited to the bandwidth of a single connection.
+ * <p>
+ * Asynchronous downloads given a {@link HedgeBudget} are hedged: a download still running once it is slower than
+ * the configured percentile of recent downloads (and than the throughput floor) gets a duplicate request, the
+ * first response wins and the other request is cancelled.
+ * <p>
+ * Failed requests are retried with exponential backoff while the segment's retry budget lasts and the segment has
+ * not expired. A streamed body that breaks mid-download resumes from the last byte read with a {@code Range}
+ * request, so its reader just sees a continuous stream.
+ * <p>
+ * Consumed segments are acked in the background through the client's {@link SegmentAcker}.
  */
-@Component
-public class HttpSpooledSegmentClient {
+public class HttpSpooledSegmentClient implements AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(HttpSpooledSegmentClient.class);
+    private static final int LATENCY_SAMPLES = 256;
 
-    private final HttpClient httpClient;
+    private final SegmentTransport transport;
+    private final Duration downloadTimeout;
+    private final Duration ackTimeout;
+    private final long rangedThresholdBytes;
+    private final long rangedPartBytes;
+    private final int hedgeMaxPerQuery;
+    private final double hedgePercentile;
+    private final long hedgeMinDelayNanos;
+    private final long hedgeMinBytesPerSecond;
+    private final int downloadRetries;
+    private final long retryInitialBackoffNanos;
+    private final long retryMaxBackoffNanos;
+    private final SegmentAcker acker;
+    private final DownloadLatencies latencies = new DownloadLatencies(LATENCY_SAMPLES);
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
 
     public HttpSpooledSegmentClient() {
-        this.httpClient = HttpClient.newBuilder()
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+        this(new GatewaySpoolProperties());
+    }
+
+    private HttpSpooledSegmentClient(GatewaySpoolProperties spoolProps) {
+        this(new JdkSegmentTransport(spoolProps), spoolProps);
+    }
+
+    public HttpSpooledSegmentClient(SegmentTransport transport, GatewaySpoolProperties spoolProps) {
+        this.transport = Objects.requireNonNull(transport, "transport must not be null");
+        this.downloadTimeout = spoolProps.getDownloadTimeout();
+        this.ackTimeout = spoolProps.getAckTimeout();
+        this.rangedThresholdBytes = spoolProps.getRangedDownloadThresholdBytes();
+        this.rangedPartBytes = spoolProps.getRangedDownloadPartBytes();
+        this.hedgeMaxPerQuery = spoolProps.getHedgeMaxPerQuery();
+        this.hedgePercentile = spoolProps.getHedgePercentile();
+        this.hedgeMinDelayNanos = spoolProps.getHedgeMinDelay().toNanos();
+        this.hedgeMinBytesPerSecond = spoolProps.getHedgeMinBytesPerSecond();
+        this.downloadRetries = spoolProps.getDownloadRetries();
+        this.retryInitialBackoffNanos = spoolProps.getRetryInitialBackoff().toNanos();
+        this.retryMaxBackoffNanos = spoolProps.getRetryMaxBackoff().toNanos();
+        this.acker = new SegmentAcker(this::ackAsync, spoolProps.getAckConcurrency(), spoolProps.getAckRetries(),
+                retryInitialBackoffNanos, retryMaxBackoffNanos, ackTimeout.toNanos());
     }
 
     public FetchedSegment fetch(URI uri, URI ackUri, Map<String, String> headers) throws IOException {
+        return fetch(uri, ackUri, headers, null, null);
+    }
+
+    /**
+     * Like {@link #fetch(URI, URI, Map, Long, Instant)} for a segment without a known expiry.
+     */
+    public FetchedSegment fetch(URI uri, URI ackUri, Map<String, String> headers, Long size) throws IOException {
+        return fetch(uri, ackUri, headers, size, null);
+    }
+
+    /**
+     * Downloads a segment of {@code size} bytes (null if unknown) that is deleted from the spooling storage at
+     * {@code expiresAt} (null if unknown). The body is streamed, and resumed with a range request if the connection
+     * breaks; a segment at or above the ranged download threshold is downloaded with concurrent range requests
+     * instead, and the calling thread waits for all of them.
+     */
+    public FetchedSegment fetch(URI uri, URI ackUri, Map<String, String> headers, Long size, Instant expiresAt)
+            throws IOException {
         Objects.requireNonNull(uri, "uri must not be null");
 
-        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(uri)
-                .timeout(Duration.ofMinutes(5))
-                .GET();
+        DownloadRetry retry = newRetry(uri, expiresAt);
+        if (!ranged(size)) {
+            return new FetchedSegment(uri, ackUri, new ResumableBody(uri, headers, retry));
+        }
+        CompletableFuture<FetchedSegment> download = fetchRanged(uri, ackUri, headers, size, retry);
+        try {
+            return download.get();
+        } catch (InterruptedException e) {
+            download.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading spooled segment: " + uri, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Failed to download spooled segment: " + uri, e.getCause());
+        }
+    }
 
-        if (headers != null && !headers.isEmpty()) {
-            headers.forEach((k, v) -> {
-                if (k != null && !k.isBlank() && v != null) {
-                    requestBuilder.header(k, v);
-                }
-            });
+    /**
+     * Like {@link #fetchAsync(URI, URI, Map)}; a segment of {@code size} bytes (null if unknown) at or above the
+     * ranged download threshold is downloaded with concurrent range requests.
+     */
+    public CompletableFuture<FetchedSegment> fetchAsync(URI uri, URI ackUri, Map<String, String> headers, Long size) {
+        return fetchAsync(uri, ackUri, headers, size, null);
+    }
+
+    /**
+     * Like {@link #fetchAsync(URI, URI, Map, Long)}; a straggling download is hedged while {@code hedgeBudget}
+     * (null for none) has hedges left. Ranged downloads are not hedged.
+     */
+    public CompletableFuture<FetchedSegment> fetchAsync(URI uri, URI ackUri, Map<String, String> headers, Long size,
+            HedgeBudget hedgeBudget) {
+        return fetchAsync(uri, ackUri, headers, size, hedgeBudget, null);
+    }
+
+    /**
+     * Like {@link #fetchAsync(URI, URI, Map, Long, HedgeBudget)} for a segment that is deleted from the spooling
+     * storage at {@code expiresAt} (null if unknown); failed requests are retried until then.
+     */
+    public CompletableFuture<FetchedSegment> fetchAsync(URI uri, URI ackUri, Map<String, String> headers, Long size,
+            HedgeBudget hedgeBudget, Instant expiresAt) {
+        Objects.requireNonNull(uri, "uri must not be null");
+
+        DownloadRetry retry = newRetry(uri, expiresAt);
+        if (ranged(size)) {
+            return fetchRanged(uri, ackUri, headers, size, retry);
         }
+        Supplier<CompletableFuture<FetchedSegment>> request = () -> retrying(() -> fetchAsync(uri, ackUri, headers), retry);
+        long delay = hedgeBudget != null ? hedgeDelayNanos(size) : -1;
+        if (delay < 0) {
+            return request.get();
+        }
+        HedgedDownload download = new HedgedDownload(request);
+        CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> download.hedge(hedgeBudget));
+        return download.result;
+    }
 
-        HttpRequest request = requestBuilder.build();
+    /**
+     * A budget of hedged requests for one query stream.
+     */
+    public HedgeBudget newHedgeBudget() {
+        return new HedgeBudget(hedgeMaxPerQuery);
+    }
+
+    /**
+     * Hedged requests issued so far.
+     */
+    public long hedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * Hedged requests that completed before the request they duplicated.
+     */
+    public long hedgeWins() {
+        return hedgeWins.sum();
+    }
 
-        HttpResponse<InputStream> response;
+    /**
+     * Nanoseconds after which a download of {@code size} bytes (null if unknown) is hedged: the hedge percentile
+     * of recent download durations, but no earlier than the minimum delay and than the time the segment takes at
+     * the throughput floor. -1 if hedging is disabled or too few downloads have been seen.
+     */
+    long hedgeDelayNanos(Long size) {
+        if (hedgeMaxPerQuery == 0) {
+            return -1;
+        }
+        long percentile = latencies.percentile(hedgePercentile);
+        if (percentile < 0) {
+            return -1;
+        }
+        long floor = size != null && size > 0 && hedgeMinBytesPerSecond > 0
+                ? (long) (size * 1e9 / hedgeMinBytesPerSecond)
+                : 0;
+        return Math.max(hedgeMinDelayNanos, Math.max(percentile, floor));
+    }
+
+    private boolean ranged(Long size) {
+        return rangedThresholdBytes > 0 && size != null && size >= rangedThresholdBytes && size > rangedPartBytes;
+    }
+
+    /**
+     * Requests the ranges of a {@code size}-byte segment; the segment body reads the parts back to back. The first
+     * range is requested alone: a server that ignores {@code Range} answers it with the whole segment, which is
+     * then used as it is, so the segment is never downloaded once per part. Only a partial answer starts the
+     * remaining ranges, concurrently.
+     */
+    private CompletableFuture<FetchedSegment> fetchRanged(URI uri, URI ackUri, Map<String, String> headers, long size,
+            DownloadRetry retry) {
+        int parts = (int) ((size + rangedPartBytes - 1) / rangedPartBytes);
+        List<CompletableFuture<SegmentTransport.Response>> requests = new ArrayList<>(parts);
+        requests.add(retrying(() -> rangePart(uri, headers, 0, parts), retry));
+
+        CompletableFuture<FetchedSegment> result = requests.get(0)
+                .thenCompose(first -> {
+                    if (first.statusCode() == 200) {
+                        return CompletableFuture.completedFuture(new FetchedSegment(uri, ackUri, first.body()));
+                    }
+                    synchronized (requests) {
+                        for (int i = 1; i < parts; i++) {
+                            int part = i;
+                            requests.add(retrying(() -> rangePart(uri, headers, part, parts), retry));
+                        }
+                    }
+                    return CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+                        List<InputStream> bodies = new ArrayList<>(parts);
+                        for (int i = 0; i < parts; i++) {
+                            SegmentTransport.Response response = requests.get(i).join();
+                            if (!isPart(response, i, parts)) {
+                                throw new CompletionException(new IOException("Spooled segment ranged download failed: "
+                                        + uri + " (HTTP " + response.statusCode() + ", Content-Range "
+                                        + response.header("Content-Range") + ", Content-Length "
+                                        + response.header("Content-Length") + ")"));
+                            }
+                            bodies.add(response.body());
+                        }
+                        return new FetchedSegment(uri, ackUri, new SequenceInputStream(Collections.enumeration(bodies)));
+                    });
+                })
+                .handle((segment, failure) -> {
+                    if (failure == null) {
+                        return segment;
+                    }
+                    cancelAll(requests);
+                    Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                            ? failure.getCause()
+                            : failure;
+                    throw new CompletionException(new IOException("Failed to download spooled segment: " + uri, cause));
+                });
+        result.whenComplete((segment, failure) -> {
+            if (result.isCancelled()) {
+                cancelAll(requests);
+            }
+        });
+        return result;
+    }
+
+    private static void cancelAll(List<CompletableFuture<SegmentTransport.Response>> requests) {
+        synchronized (requests) {
+            requests.forEach(request -> request.cancel(true));
+        }
+    }
+
+    /**
+     * Whether {@code response} is the partial answer for range {@code part}: its Content-Range must start at the
+     * requested byte and, but for the open-ended last range, end where the range does, and a Content-Length must
+     * match the range.
+     */
+    private boolean isPart(SegmentTransport.Response response, int part, int parts) {
+        if (response.statusCode() != 206) {
+            return false;
+        }
+        String contentRange = response.header("Content-Range");
+        long from = part * rangedPartBytes;
+        long end = rangeEnd(contentRange);
+        if (rangeStart(contentRange) != from || end < from
+                || (part < parts - 1 && end != from + rangedPartBytes - 1)) {
+            return false;
+        }
+        String contentLength = response.header("Content-Length");
         try {
-            response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            return contentLength == null || Long.parseLong(contentLength.trim()) == end - from + 1;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Requests one range of a segment; a non-2xx status fails the future with a {@link SegmentStatusException},
+     * so transient statuses are retried like connection errors.
+     */
+    private CompletableFuture<SegmentTransport.Response> rangePart(URI uri, Map<String, String> headers, int part,
+            int parts) {
+        long from = part * rangedPartBytes;
+        // The last range is open-ended, so a segment larger than reported is still read completely.
+        String range = part == parts - 1 ? "bytes=" + from + "-" : "bytes=" + from + "-" + (from + rangedPartBytes - 1);
+        Map<String, String> rangeHeaders = new HashMap<>(headers != null ? headers : Map.of());
+        rangeHeaders.put("Range", range);
+        return transport.getAsync(uri, rangeHeaders, downloadTimeout).thenApply(response -> {
+            if (!response.isSuccessful()) {
+                closeQuietly(response);
+                throw new CompletionException(new SegmentStatusException("Spooled segment ranged download failed: " + uri
+                        + " (HTTP " + response.statusCode() + ", " + range + ")", response.statusCode()));
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Last byte position of a {@code Content-Range: bytes first-last/length} header, or -1.
+     */
+    static long rangeEnd(String contentRange) {
+        if (rangeStart(contentRange) < 0) {
+            return -1;
+        }
+        int dash = contentRange.indexOf('-', 6);
+        int slash = contentRange.indexOf('/', dash);
+        try {
+            return Long.parseLong(contentRange.substring(dash + 1, slash < 0 ? contentRange.length() : slash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * First byte position of a {@code Content-Range: bytes first-last/length} header, or -1.
+     */
+    static long rangeStart(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+        int dash = contentRange.indexOf('-', 6);
+        if (dash < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(6, dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Downloads a segment without blocking the calling thread. The returned future completes, with the body in
+     * memory, once it has been fully received; it fails with an {@link IOException} like {@link #fetch}.
+     */
+    public CompletableFuture<FetchedSegment> fetchAsync(URI uri, URI ackUri, Map<String, String> headers) {
+        Objects.requireNonNull(uri, "uri must not be null");
+
+        long start = System.nanoTime();
+        CompletableFuture<SegmentTransport.Response> request = transport.getAsync(uri, headers, downloadTimeout);
+        CompletableFuture<FetchedSegment> result = request
+                .handle((response, failure) -> {
+                    if (failure != null) {
+                        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                                ? failure.getCause()
+                                : failure;
+                        throw new CompletionException(new IOException("Failed to download spooled segment: " + uri, cause));
+                    }
+                    if (response.statusCode() != 200) {
+                        throw new CompletionException(new SegmentStatusException(
+                                "Spooled segment download failed: " + uri + " (HTTP " + response.statusCode() + ")",
+                                response.statusCode()));
+                    }
+                    latencies.record(System.nanoTime() - start);
+                    return new FetchedSegment(uri, ackUri, response.body());
+                });
+        result.whenComplete((segment, failure) -> {
+            if (result.isCancelled()) {
+                request.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private DownloadRetry newRetry(URI uri, Instant expiresAt) {
+        return new DownloadRetry(uri, downloadRetries, retryInitialBackoffNanos, retryMaxBackoffNanos, expiresAt);
+    }
+
+    /**
+     * Runs {@code request}, and runs it again after a backoff while it fails transiently and {@code retry} allows.
+     * Cancelling the result cancels the current attempt.
+     */
+    private static <T extends AutoCloseable> CompletableFuture<T> retrying(Supplier<CompletableFuture<T>> request,
+            DownloadRetry retry) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<T>> current = new AtomicReference<>();
+        result.whenComplete((value, failure) -> {
+            CompletableFuture<T> attempt = current.get();
+            if (result.isCancelled() && attempt != null) {
+                attempt.cancel(true);
+            }
+        });
+        new Runnable() {
+            @Override
+            public void run() {
+                if (result.isDone()) {
+                    return;
+                }
+                CompletableFuture<T> attempt = request.get();
+                current.set(attempt);
+                if (result.isCancelled()) {
+                    attempt.cancel(true);
+                    return;
+                }
+                attempt.whenComplete((value, failure) -> {
+                    if (failure == null) {
+                        if (!result.complete(value)) {
+                            closeQuietly(value);
+                        }
+                        return;
+                    }
+                    long backoff = result.isDone() ? -1 : retry.backoffNanos(failure);
+                    if (backoff < 0) {
+                        result.completeExceptionally(failure);
+                    } else {
+                        CompletableFuture.delayedExecutor(backoff, TimeUnit.NANOSECONDS).execute(this);
+                    }
+                });
+            }
+        }.run();
+        return result;
+    }
+
+    /**
+     * Requests the segment from byte {@code position} on. A server that ignores {@code Range} sends the whole
+     * segment, whose first {@code position} bytes are then skipped.
+     */
+    private InputStream openAt(URI uri, Map<String, String> headers, long position) throws IOException {
+        Map<String, String> requestHeaders = headers;
+        if (position > 0) {
+            requestHeaders = new HashMap<>(headers != null ? headers : Map.of());
+            requestHeaders.put("Range", "bytes=" + position + "-");
+        }
+
+        SegmentTransport.Response response;
+        try {
+            response = transport.get(uri, requestHeaders, downloadTimeout);
+        } catch (InterruptedIOException e) {
             throw new IOException("Interrupted while downloading spooled segment: " + uri, e);
         } catch (Exception e) {
             throw new IOException("Failed to download spooled segment: " + uri, e);
         }
 
         int status = response.statusCode();
-        if (status != 200) {
-            try (InputStream body = response.body()) {
-                // best-effort consume/close
+        if (status == 200 || (status == 206 && position > 0 && rangeStart(response.header("Content-Range")) == position)) {
+            if (status == 200 && position > 0) {
+                try {
+                    response.body().skipNBytes(position);
+                } catch (IOException e) {
+                    closeQuietly(response);
+                    throw e;
+                }
             }
-            throw new IOException("Spooled segment download failed: " + uri + " (HTTP " + status + ")");
+            return response.body();
+        }
+        try (response) {
+            // best-effort consume/close
         }
+        throw new SegmentStatusException("Spooled segment download failed: " + uri + " (HTTP " + status + ")", status);
+    }
 
-        return new FetchedSegment(uri, ackUri, response.body());
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+            // in-memory body or already broken connection
+        }
     }
 
     public void ack(URI ackUri, Map<String, String> headers) throws IOException {
@@ -76,32 +493,233 @@ public class HttpSpooledSegmentClient {
             return;
         }
 
-        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(ackUri)
-                .timeout(Duration.ofSeconds(30))
-                .GET();
+        int status;
+        try (SegmentTransport.Response response = transport.get(ackUri, headers, ackTimeout)) {
+            // Drain the body so the connection can be reused.
+            response.body().transferTo(OutputStream.nullOutputStream());
+            status = response.statusCode();
+        } catch (InterruptedIOException e) {
+            throw new IOException("Interrupted while acking spooled segment: " + ackUri, e);
+        } catch (Exception e) {
+            throw new IOException("Failed to ack spooled segment: " + ackUri, e);
+        }
+
+        if (status != 200) {
+            throw new SegmentStatusException("Spooled segment ack failed: " + ackUri + " (HTTP " + status + ")", status);
+        }
+    }
 
-        if (headers != null && !headers.isEmpty()) {
-            headers.forEach((k, v) -> {
-                if (k != null && !k.isBlank() && v != null) {
-                    requestBuilder.header(k, v);
+    /**
+     * Sends one ack without blocking the calling thread; the future fails with an {@link IOException} like
+     * {@link #ack}. Consumed segments are normally acked through {@link #acker()}, which also retries.
+     */
+    public CompletableFuture<Void> ackAsync(URI ackUri, Map<String, String> headers) {
+        if (ackUri == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return transport.getAsync(ackUri, headers, ackTimeout)
+                .handle((response, failure) -> {
+                    if (failure != null) {
+                        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                                ? failure.getCause()
+                                : failure;
+                        throw new CompletionException(new IOException("Failed to ack spooled segment: " + ackUri, cause));
+                    }
+                    closeQuietly(response);
+                    if (response.statusCode() != 200) {
+                        throw new CompletionException(new SegmentStatusException(
+                                "Spooled segment ack failed: " + ackUri + " (HTTP " + response.statusCode() + ")",
+                                response.statusCode()));
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * The background acker of this client.
+     */
+    public SegmentAcker acker() {
+        return acker;
+    }
+
+    /**
+     * Waits for the pending background acks; the transport is closed by its owner.
+     */
+    @Override
+    public void close() {
+        acker.close();
+    }
+
+    /**
+     * Caps the hedged requests of one query stream. Thread-safe.
+     */
+    public static final class HedgeBudget {
+        private final AtomicInteger remaining;
+
+        private HedgeBudget(int hedges) {
+            this.remaining = new AtomicInteger(hedges);
+        }
+
+        boolean tryAcquire() {
+            return remaining.getAndUpdate(n -> Math.max(0, n - 1)) > 0;
+        }
+    }
+
+    /**
+     * A download with at most one hedged duplicate. {@code result} completes with the first successful response,
+     * or with the failure of the last request to finish; the other request is then cancelled.
+     */
+    private final class HedgedDownload {
+        private final Supplier<CompletableFuture<FetchedSegment>> request;
+        private final CompletableFuture<FetchedSegment> result = new CompletableFuture<>();
+        private final List<CompletableFuture<FetchedSegment>> attempts = new ArrayList<>(2);
+        private int running;
+        private boolean won;
+
+        private HedgedDownload(Supplier<CompletableFuture<FetchedSegment>> request) {
+            this.request = request;
+            start(false);
+            result.whenComplete((segment, failure) -> {
+                if (result.isCancelled()) {
+                    cancelAttempts(null);
                 }
             });
         }
 
-        HttpRequest request = requestBuilder.build();
+        private synchronized void hedge(HedgeBudget budget) {
+            if (!result.isDone() && budget.tryAcquire()) {
+                hedges.increment();
+                log.debug("Hedging straggling spooled segment download");
+                start(true);
+            }
+        }
 
-        HttpResponse<Void> response;
-        try {
-            response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("Interrupted while acking spooled segment: " + ackUri, e);
-        } catch (Exception e) {
-            throw new IOException("Failed to ack spooled segment: " + ackUri, e);
+        private synchronized void start(boolean hedge) {
+            CompletableFuture<FetchedSegment> attempt = request.get();
+            attempts.add(attempt);
+            running++;
+            attempt.whenComplete((segment, failure) -> completed(attempt, hedge, segment, failure));
+        }
+
+        private void completed(CompletableFuture<FetchedSegment> attempt, boolean hedge, FetchedSegment segment,
+                Throwable failure) {
+            boolean last;
+            synchronized (this) {
+                last = --running == 0;
+            }
+            if (failure == null) {
+                if (claimWin()) {
+                    // Counted before completing, so a caller woken by the result already sees the win.
+                    if (hedge) {
+                        hedgeWins.increment();
+                    }
+                    if (result.complete(segment)) {
+                        cancelAttempts(attempt);
+                        return;
+                    }
+                }
+                closeQuietly(segment);
+            } else if (last) {
+                result.completeExceptionally(failure);
+            }
+        }
+
+        private synchronized boolean claimWin() {
+            if (won || result.isDone()) {
+                return false;
+            }
+            won = true;
+            return true;
+        }
+
+        private void cancelAttempts(CompletableFuture<FetchedSegment> winner) {
+            List<CompletableFuture<FetchedSegment>> others;
+            synchronized (this) {
+                others = new ArrayList<>(attempts);
+            }
+            others.stream().filter(attempt -> attempt != winner).forEach(attempt -> attempt.cancel(true));
+        }
+    }
+
+    /**
+     * A streamed segment body that resumes after a broken connection: a failed read waits for the next retry and
+     * requests the rest of the segment from the last byte read on.
+     */
+    private final class ResumableBody extends InputStream {
+        private final URI uri;
+        private final Map<String, String> headers;
+        private final DownloadRetry retry;
+        private InputStream body;
+        private long position;
+        private volatile boolean closed;
+
+        private ResumableBody(URI uri, Map<String, String> headers, DownloadRetry retry) throws IOException {
+            this.uri = uri;
+            this.headers = headers;
+            this.retry = retry;
+            this.body = open();
+        }
+
+        private InputStream open() throws IOException {
+            while (true) {
+                try {
+                    return openAt(uri, headers, position);
+                } catch (IOException e) {
+                    retry.await(e);
+                }
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (true) {
+                try {
+                    int b = body.read();
+                    if (b >= 0) {
+                        position++;
+                    }
+                    return b;
+                } catch (IOException e) {
+                    resume(e);
+                }
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (true) {
+                try {
+                    int n = body.read(b, off, len);
+                    if (n > 0) {
+                        position += n;
+                    }
+                    return n;
+                } catch (IOException e) {
+                    resume(e);
+                }
+            }
+        }
+
+        private void resume(IOException failure) throws IOException {
+            if (closed || Thread.currentThread().isInterrupted()) {
+                throw failure;
+            }
+            closeQuietly(body);
+            retry.await(new IOException("Spooled segment download broke off at byte " + position + ": " + uri, failure));
+            log.debug("Resuming spooled segment download {} at byte {}", uri, position);
+            body = open();
+        }
+
+        @Override
+        public int available() throws IOException {
+            return body.available();
         }
 
-        if (response.statusCode() != 200) {
-            throw new IOException("Spooled segment ack failed: " + ackUri + " (HTTP " + response.statusCode() + ")");
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            body.close();
         }
     }
 
@@ -0,0 +1,96 @@
+package io.github.koszti.trinoarrowgateway.spool;
+
+import io.github.koszti.trinoarrowgateway.config.GatewaySpoolProperties;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link SegmentTransport} on {@code java.net.http.HttpClient}.
+ */
+public final class JdkSegmentTransport implements SegmentTransport {
+    private static final byte[] NO_BODY = new byte[0];
+
+    private final HttpClient httpClient;
+
+    public JdkSegmentTransport(GatewaySpoolProperties spoolProps) {
+        this.httpClient = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(spoolProps.getConnectTimeout())
+                .version(spoolProps.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    @Override
+    public Response get(URI uri, Map<String, String> headers, Duration timeout) throws IOException {
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request(uri, headers, timeout), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted while requesting " + uri);
+            interrupted.initCause(e);
+            throw interrupted;
+        }
+        return new Response(response.statusCode(), firstValues(response.headers()), response.body());
+    }
+
+    @Override
+    public CompletableFuture<Response> getAsync(URI uri, Map<String, String> headers, Duration timeout) {
+        HttpResponse.BodyHandler<byte[]> bodyHandler = info -> info.statusCode() >= 200 && info.statusCode() < 300
+                ? HttpResponse.BodySubscribers.ofByteArray()
+                : HttpResponse.BodySubscribers.replacing(NO_BODY);
+        CompletableFuture<HttpResponse<byte[]>> exchange = httpClient.sendAsync(request(uri, headers, timeout), bodyHandler);
+        CompletableFuture<Response> result = exchange
+                .thenApply(response -> new Response(response.statusCode(), firstValues(response.headers()),
+                        new ByteArrayInputStream(response.body())));
+        result.whenComplete((response, failure) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void close() {
+        httpClient.close();
+    }
+
+    private static HttpRequest request(URI uri, Map<String, String> headers, Duration timeout) {
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .GET();
+
+        if (headers != null && !headers.isEmpty()) {
+            headers.forEach((k, v) -> {
+                if (k != null && !k.isBlank() && v != null) {
+                    requestBuilder.header(k, v);
+                }
+            });
+        }
+
+        return requestBuilder.build();
+    }
+
+    private static Map<String, String> firstValues(HttpHeaders headers) {
+        Map<String, String> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.map().forEach((name, list) -> {
+            if (!list.isEmpty()) {
+                values.put(name, list.get(0));
+            }
+        });
+        return values;
+    }
+}
@@ -0,0 +1,184 @@
+package io.github.koszti.trinoarrowgateway.spool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Sends segment acks in the background, so conversion never waits on a round trip to the spooling storage.
+ * <p>
+ * At most {@code concurrency} acks are in flight; the others wait in a FIFO queue. An ack failing with a
+ * connection error or a transient HTTP status is retried with exponential backoff up to {@code retries} times.
+ * An ack that still fails only leaves the segment in the storage until it expires, so it is logged and counted
+ * instead of failing the query. Thread-safe.
+ */
+public final class SegmentAcker implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(SegmentAcker.class);
+
+    private final BiFunction<URI, Map<String, String>, CompletableFuture<Void>> sender;
+    private final int concurrency;
+    private final int retries;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final long closeTimeoutNanos;
+    private final Queue<Ack> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+    /** Acks queued, in flight or waiting for a retry. */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder acks = new LongAdder();
+    private final LongAdder ackNanos = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile boolean closed;
+    /** {@link System#nanoTime()} by which {@link #close} stops waiting; only read once {@code closed} is set. */
+    private volatile long closeDeadline;
+
+    /**
+     * @param sender       sends one ack; the future fails like {@link HttpSpooledSegmentClient#ackAsync}
+     * @param closeTimeout how long {@link #close} waits for pending acks
+     */
+    SegmentAcker(BiFunction<URI, Map<String, String>, CompletableFuture<Void>> sender, int concurrency, int retries,
+            long initialBackoffNanos, long maxBackoffNanos, long closeTimeoutNanos) {
+        this.sender = sender;
+        this.concurrency = Math.max(1, concurrency);
+        this.retries = retries;
+        this.initialBackoffNanos = initialBackoffNanos;
+        this.maxBackoffNanos = maxBackoffNanos;
+        this.closeTimeoutNanos = closeTimeoutNanos;
+    }
+
+    /**
+     * Queues an ack of a consumed segment and returns immediately; a null {@code ackUri} is ignored.
+     */
+    public void submit(URI ackUri, Map<String, String> headers) {
+        if (ackUri == null) {
+            return;
+        }
+        pending.incrementAndGet();
+        queue.add(new Ack(ackUri, headers, 0));
+        dispatch();
+    }
+
+    /**
+     * Sends queued acks while fewer than {@code concurrency} are in flight.
+     */
+    private void dispatch() {
+        while (!queue.isEmpty()) {
+            int n = running.get();
+            if (n >= concurrency) {
+                // A completing ack dispatches again.
+                return;
+            }
+            if (!running.compareAndSet(n, n + 1)) {
+                continue;
+            }
+            Ack ack = queue.poll();
+            if (ack == null) {
+                running.decrementAndGet();
+                continue;
+            }
+            send(ack);
+        }
+    }
+
+    private void send(Ack ack) {
+        long start = System.nanoTime();
+        CompletableFuture<Void> request;
+        try {
+            request = sender.apply(ack.uri(), ack.headers());
+        } catch (RuntimeException e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+        request.whenComplete((ignored, failure) -> {
+            running.decrementAndGet();
+            if (failure == null) {
+                ackNanos.add(System.nanoTime() - start);
+                acks.increment();
+                pending.decrementAndGet();
+            } else {
+                retryOrFail(ack, failure);
+            }
+            dispatch();
+        });
+    }
+
+    private void retryOrFail(Ack ack, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        long backoff = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(ack.attempt(), 20));
+        // While closing, only retries that still fit before the close deadline are worth scheduling.
+        boolean inTime = !closed || System.nanoTime() + backoff - closeDeadline < 0;
+        if (inTime && ack.attempt() < retries && DownloadRetry.isTransient(cause)) {
+            retried.increment();
+            log.debug("Retrying spooled segment ack {} in {} ms: {}", ack.uri(), TimeUnit.NANOSECONDS.toMillis(backoff),
+                    cause.getMessage());
+            CompletableFuture.delayedExecutor(backoff, TimeUnit.NANOSECONDS).execute(() -> {
+                queue.add(new Ack(ack.uri(), ack.headers(), ack.attempt() + 1));
+                dispatch();
+            });
+            return;
+        }
+        failures.increment();
+        pending.decrementAndGet();
+        log.warn("Failed to ack spooled segment {}; it stays in the spooling storage until it expires: {}", ack.uri(),
+                cause.getMessage());
+    }
+
+    /** Acks sent successfully. */
+    public long acks() {
+        return acks.sum();
+    }
+
+    /** Total round-trip time of the successful acks, in nanoseconds. */
+    public long ackNanos() {
+        return ackNanos.sum();
+    }
+
+    /** Ack requests retried after a transient failure. */
+    public long retries() {
+        return retried.sum();
+    }
+
+    /** Acks given up on. */
+    public long failures() {
+        return failures.sum();
+    }
+
+    /** Acks queued, in flight or waiting for a retry. */
+    public int pending() {
+        return pending.get();
+    }
+
+    /**
+     * Waits, up to the close timeout, for the pending acks to be sent. Failed acks keep being retried as long as
+     * the retry falls before the timeout.
+     */
+    @Override
+    public void close() {
+        long deadline = System.nanoTime() + closeTimeoutNanos;
+        closeDeadline = deadline;
+        closed = true;
+        try {
+            while (pending.get() > 0 && System.nanoTime() - deadline < 0) {
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (pending.get() > 0) {
+            log.warn("{} spooled segment acks not sent before shutdown", pending.get());
+        }
+    }
+
+    private record Ack(URI uri, Map<String, String> headers, int attempt) {
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.koszti.trinoarrowgateway.spool;
+
+import java.io.IOException;
+
+/**
+ * A spooling storage request answered with an unexpected HTTP status.
+ */
+final class SegmentStatusException extends IOException {
+    private final int statusCode;
+
+    SegmentStatusException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    int statusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Whether the status may be gone on a later attempt: server errors, request timeouts and throttling.
+     */
+    boolean isTransient() {
+        return statusCode >= 500 || statusCode == 408 || statusCode == 429;
+    }
+}
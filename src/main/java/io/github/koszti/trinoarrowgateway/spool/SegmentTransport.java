@@ -0,0 +1,56 @@
+package io.github.koszti.trinoarrowgateway.spool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * HTTP GET requests against the spooling storage (segment downloads and acks).
+ * Implementations are thread-safe and keep connections alive between requests.
+ */
+public interface SegmentTransport extends AutoCloseable {
+
+    /**
+     * Sends a GET and returns once the response head has arrived; the body is streamed from the connection.
+     * The caller must close the response.
+     *
+     * @throws java.io.InterruptedIOException if the thread is interrupted while waiting
+     */
+    Response get(URI uri, Map<String, String> headers, Duration timeout) throws IOException;
+
+    /**
+     * Sends a GET without blocking the caller. The future completes once the whole body has been received;
+     * bodies of non-2xx responses are discarded.
+     */
+    CompletableFuture<Response> getAsync(URI uri, Map<String, String> headers, Duration timeout);
+
+    @Override
+    void close();
+
+    /**
+     * A response; {@code headers} holds the first value of each header, keyed case-insensitively.
+     */
+    record Response(int statusCode, Map<String, String> headers, InputStream body) implements AutoCloseable {
+        public Response {
+            Objects.requireNonNull(headers, "headers must not be null");
+            Objects.requireNonNull(body, "body must not be null");
+        }
+
+        public boolean isSuccessful() {
+            return statusCode >= 200 && statusCode < 300;
+        }
+
+        public String header(String name) {
+            return headers.get(name);
+        }
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.koszti.trinoarrowgateway.spool;
+
+/**
+ * HTTP client used to download and ack spooled segments.
+ */
+public enum SpoolTransport {
+    /**
+     * {@code java.net.http.HttpClient}: keeps connections alive, but pool size and keep-alive are only tunable
+     * through JVM-wide {@code jdk.httpclient.*} system properties and there are no pool metrics.
+     */
+    JDK,
+    /**
+     * Apache HttpClient 5 with pooled connections, per-host limits, idle eviction and pool metrics.
+     */
+    APACHE
+}
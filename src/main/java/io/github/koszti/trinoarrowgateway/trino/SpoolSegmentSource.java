@@ -0,0 +1,141 @@
+package io.github.koszti.trinoarrowgateway.trino;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Append-only, thread-safe list of spooled segments for a single query.
+ * <p>
+ * When results are collected up-front the source is created already completed. In incremental mode
+ * a background poller appends segments as Trino publishes them and completes (or fails) the source
+ * once the query reaches a terminal state, so consumers can start streaming while Trino is still running.
+ */
+public class SpoolSegmentSource
+{
+    /**
+     * Callbacks are invoked while the source lock is held, in segment order; implementations must not block.
+     */
+    public interface Listener
+    {
+        void onSegment(int index, TrinoQueryHandle.TrinoSpoolSegment segment);
+
+        void onComplete();
+
+        void onFailure(Throwable failure);
+    }
+
+    private final List<TrinoQueryHandle.TrinoSpoolSegment> segments = new ArrayList<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private volatile String encoding;
+    private volatile TrinoQueryHandle.TrinoQueryProgress progress;
+    private boolean completed;
+    private Throwable failure;
+
+    public SpoolSegmentSource() {
+    }
+
+    public static SpoolSegmentSource completed(String encoding, List<TrinoQueryHandle.TrinoSpoolSegment> segments) {
+        SpoolSegmentSource source = new SpoolSegmentSource();
+        source.setEncoding(encoding);
+        segments.forEach(source::add);
+        source.complete();
+        return source;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(String encoding) {
+        if (encoding != null && !encoding.isBlank()) {
+            this.encoding = encoding;
+        }
+    }
+
+    public TrinoQueryHandle.TrinoQueryProgress getProgress() {
+        return progress;
+    }
+
+    public void setProgress(TrinoQueryHandle.TrinoQueryProgress progress) {
+        if (progress != null) {
+            this.progress = progress;
+        }
+    }
+
+    public synchronized void add(TrinoQueryHandle.TrinoSpoolSegment segment) {
+        Objects.requireNonNull(segment, "segment must not be null");
+        if (isDone()) {
+            throw new IllegalStateException("Segment source is already " + (failure != null ? "failed" : "completed"));
+        }
+        int index = segments.size();
+        segments.add(segment);
+        for (Listener listener : List.copyOf(listeners)) {
+            listener.onSegment(index, segment);
+        }
+    }
+
+    public synchronized void complete() {
+        if (isDone()) {
+            return;
+        }
+        completed = true;
+        for (Listener listener : List.copyOf(listeners)) {
+            listener.onComplete();
+        }
+        listeners.clear();
+    }
+
+    public synchronized void fail(Throwable t) {
+        Objects.requireNonNull(t, "failure must not be null");
+        if (isDone()) {
+            return;
+        }
+        failure = t;
+        for (Listener listener : List.copyOf(listeners)) {
+            listener.onFailure(t);
+        }
+        listeners.clear();
+    }
+
+    /**
+     * Replays already known segments to the listener, then delivers new segments as they arrive.
+     * If the source is already done, the terminal callback is delivered immediately.
+     */
+    public synchronized void subscribe(Listener listener) {
+        Objects.requireNonNull(listener, "listener must not be null");
+        for (int i = 0; i < segments.size(); i++) {
+            listener.onSegment(i, segments.get(i));
+        }
+        if (failure != null) {
+            listener.onFailure(failure);
+        } else if (completed) {
+            listener.onComplete();
+        } else {
+            listeners.add(listener);
+        }
+    }
+
+    public synchronized void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized List<TrinoQueryHandle.TrinoSpoolSegment> snapshot() {
+        return List.copyOf(segments);
+    }
+
+    public synchronized int size() {
+        return segments.size();
+    }
+
+    /**
+     * True once the query reached a terminal state (successfully or not) and no more segments will be added.
+     */
+    public synchronized boolean isDone() {
+        return completed || failure != null;
+    }
+
+    public synchronized Throwable getFailure() {
+        return failure;
+    }
+}
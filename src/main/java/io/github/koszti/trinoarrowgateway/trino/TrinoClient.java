@@ -7,4 +7,14 @@ public interface TrinoClient
      * Returns a handle containing the Trino query id and basic column metadata.
      */
     TrinoQueryHandle submitQuery(String sql);
+
+    /**
+     * Submit a SQL query and return as soon as the result columns are known.
+     * Spooled segments keep arriving on the handle's {@link SpoolSegmentSource} while the query runs.
+     * <p>
+     * Defaults to {@link #submitQuery(String)}, i.e. a handle whose segment source is already complete.
+     */
+    default TrinoQueryHandle submitQueryIncremental(String sql) {
+        return submitQuery(sql);
+    }
 }
@@ -1,5 +1,6 @@
 package io.github.koszti.trinoarrowgateway.trino;
 
+import io.github.koszti.trinoarrowgateway.config.GatewayConversionProperties;
 import io.github.koszti.trinoarrowgateway.config.GatewayTrinoProperties;
 import io.github.koszti.trinoarrowgateway.spool.SpooledSegmentHeaders;
 import io.github.koszti.trinoarrowgateway.trino.dto.TrinoStatementResponse;
@@ -8,11 +9,7 @@ import io.github.koszti.trinoarrowgateway.trino.exception.TrinoRequestRejectedEx
 import io.github.koszti.trinoarrowgateway.trino.exception.TrinoUnavailableException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.arrow.vector.types.FloatingPointPrecision;
-import org.apache.arrow.vector.types.DateUnit;
-import org.apache.arrow.vector.types.pojo.ArrowType;
 import org.apache.arrow.vector.types.pojo.Field;
-import org.apache.arrow.vector.types.pojo.FieldType;
 import org.apache.arrow.vector.types.pojo.Schema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,14 +18,15 @@ import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientResponseException;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Comparator;
 import java.util.List;
 import java.util.LinkedHashMap;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -38,13 +36,19 @@ public class TrinoClientImpl implements TrinoClient
 
     private final RestClient restClient;
     private final GatewayTrinoProperties trinoProps;
+    private final TrinoTypeMapper typeMapper;
     private final ObjectMapper objectMapper;
 
+    private static final int MAX_POLL_ITERATIONS = 10_000;   // safety guard
+    private static final long POLL_INTERVAL_MILLIS = 100L;
+
     public TrinoClientImpl(RestClient trinoRestClient,
             GatewayTrinoProperties trinoProps,
+            GatewayConversionProperties conversionProps,
             ObjectMapper objectMapper) {
         this.restClient = trinoRestClient;
         this.trinoProps = trinoProps;
+        this.typeMapper = new TrinoTypeMapper(conversionProps.getStringType());
         this.objectMapper = objectMapper;
     }
 
@@ -78,12 +82,129 @@ public class TrinoClientImpl implements TrinoClient
 
     @Override
     public TrinoQueryHandle submitQuery(String sql) {
-        Objects.requireNonNull(sql, "sql must not be null");
+        if (trinoProps.isIncrementalResults()) {
+            return submitQueryIncremental(sql);
+        }
 
-        log.debug("Submitting query to Trino: {}", sql);
+        TrinoStatementResponse response = postStatement(sql);
+        String queryId = response.getId();
 
         Map<String, TrinoQueryHandle.TrinoSpoolSegment> segmentsByUri = new LinkedHashMap<>();
-        String spoolEncoding = null;
+        String spoolEncoding = updateSpoolState(response, segmentsByUri, null, segment -> {});
+
+        // Follow nextUri chain until FINISHED or FAILED/CANCELED
+        int iterations = 0;
+
+        while (!isFinished(response)) {
+            if (iterations++ > MAX_POLL_ITERATIONS) {
+                throw new IllegalStateException("Trino query " + queryId + " did not reach FINISHED after " + MAX_POLL_ITERATIONS + " polls");
+            }
+
+            response = advance(queryId, response);
+            spoolEncoding = updateSpoolState(response, segmentsByUri, spoolEncoding, segment -> {});
+
+            // Optional: avoid hammering Trino too hard
+            if (!isFinished(response)) {
+                sleepBetweenPolls(queryId);
+            }
+        }
+
+        // At this point we consider the query FINISHED.
+        List<TrinoQueryHandle.TrinoSpoolSegment> segments = segmentsByUri.values().stream()
+                .sorted(Comparator
+                        .comparingLong((TrinoQueryHandle.TrinoSpoolSegment s) -> Optional.ofNullable(s.rowOffset()).orElse(Long.MAX_VALUE))
+                        .thenComparing(s -> s.uri() != null ? s.uri().toString() : ""))
+                .toList();
+
+        List<TrinoStatementResponse.Column> columns =
+                response.getColumns() == null ? List.of() : response.getColumns();
+
+        TrinoQueryHandle handle = new TrinoQueryHandle(response.getId(), toTrinoColumns(columns), toArrowSchema(columns),
+                spoolEncoding, segments);
+        handle.getSegmentSource().setProgress(toProgress(response));
+
+        log.info("Submitted Trino query. id={}, columns={}, spooledSegments={}",
+                handle.getQueryId(), columns.size(), segments.size());
+        return handle;
+    }
+
+    @Override
+    public TrinoQueryHandle submitQueryIncremental(String sql) {
+        TrinoStatementResponse response = postStatement(sql);
+        String queryId = response.getId();
+
+        SpoolSegmentSource source = new SpoolSegmentSource();
+        Map<String, TrinoQueryHandle.TrinoSpoolSegment> segmentsByUri = new LinkedHashMap<>();
+        publishSegments(response, segmentsByUri, source);
+
+        // Only wait until Trino reports the result columns; segments are collected in the background.
+        int iterations = 0;
+        while (response.getColumns() == null && !isFinished(response)) {
+            if (iterations++ > MAX_POLL_ITERATIONS) {
+                throw new IllegalStateException("Trino query " + queryId + " did not report columns after " + MAX_POLL_ITERATIONS + " polls");
+            }
+            response = advance(queryId, response);
+            publishSegments(response, segmentsByUri, source);
+            if (response.getColumns() == null && !isFinished(response)) {
+                sleepBetweenPolls(queryId);
+            }
+        }
+
+        List<TrinoStatementResponse.Column> columns =
+                response.getColumns() == null ? List.of() : response.getColumns();
+
+        TrinoQueryHandle handle = new TrinoQueryHandle(queryId, toTrinoColumns(columns), toArrowSchema(columns), source);
+
+        if (isFinished(response)) {
+            source.complete();
+        } else {
+            TrinoStatementResponse current = response;
+            Thread.ofVirtual()
+                    .name("trino-poller-" + queryId)
+                    .start(() -> pollRemainingSegments(queryId, current, segmentsByUri, source));
+        }
+
+        log.info("Submitted Trino query (incremental). id={}, columns={}, spooledSegmentsSoFar={}",
+                queryId, columns.size(), source.size());
+        return handle;
+    }
+
+    private void pollRemainingSegments(String queryId,
+            TrinoStatementResponse response,
+            Map<String, TrinoQueryHandle.TrinoSpoolSegment> segmentsByUri,
+            SpoolSegmentSource source) {
+        try {
+            int iterations = 0;
+            while (!isFinished(response)) {
+                if (iterations++ > MAX_POLL_ITERATIONS) {
+                    throw new IllegalStateException("Trino query " + queryId + " did not reach FINISHED after " + MAX_POLL_ITERATIONS + " polls");
+                }
+                sleepBetweenPolls(queryId);
+                response = advance(queryId, response);
+                publishSegments(response, segmentsByUri, source);
+            }
+            source.complete();
+            log.info("Trino query finished. id={}, spooledSegments={}", queryId, source.size());
+        } catch (Exception e) {
+            log.info("Background polling failed for Trino query {}: {}", queryId, e.toString());
+            source.fail(e);
+        }
+    }
+
+    private void publishSegments(TrinoStatementResponse response,
+            Map<String, TrinoQueryHandle.TrinoSpoolSegment> segmentsByUri,
+            SpoolSegmentSource source) {
+        List<TrinoQueryHandle.TrinoSpoolSegment> added = new ArrayList<>();
+        source.setProgress(toProgress(response));
+        source.setEncoding(updateSpoolState(response, segmentsByUri, source.getEncoding(), added::add));
+        // Encoding is set before the segments are published so consumers can decode them right away.
+        added.forEach(source::add);
+    }
+
+    private TrinoStatementResponse postStatement(String sql) {
+        Objects.requireNonNull(sql, "sql must not be null");
+
+        log.debug("Submitting query to Trino: {}", sql);
 
         var request = restClient
                 .post()
@@ -115,95 +236,91 @@ public class TrinoClientImpl implements TrinoClient
         if (response == null || response.getId() == null) {
             throw new IllegalStateException("Trino /v1/statement returned no id");
         }
+        return response;
+    }
 
-        String queryId = response.getId();
-        String state = response.getStats() != null ? response.getStats().getState() : null;
-        spoolEncoding = updateSpoolState(response, segmentsByUri, spoolEncoding);
-
-        // Follow nextUri chain until FINISHED or FAILED/CANCELED
-        int maxIterations = 10_000;   // safety guard
-        int iterations = 0;
-        long sleepMillis = 100L;
+    /**
+     * Follows {@code nextUri} once. Fails if the query is in a FAILED/CANCELED state.
+     */
+    private TrinoStatementResponse advance(String queryId, TrinoStatementResponse response) {
+        String state = stateOf(response);
+        if ("FAILED".equalsIgnoreCase(state) || "CANCELED".equalsIgnoreCase(state)) {
+            String msg = response.getError() != null ? response.getError().getMessage() : "(no error message)";
+            throw new TrinoQueryFailedException(queryId, state, msg);
+        }
 
-        while (state != null && !"FINISHED".equalsIgnoreCase(state)) {
-            if ("FAILED".equalsIgnoreCase(state) || "CANCELED".equalsIgnoreCase(state)) {
-                String msg = response.getError() != null ? response.getError().getMessage() : "(no error message)";
-                throw new TrinoQueryFailedException(queryId, state, msg);
-            }
+        String nextUri = response.getNextUri();
+        if (nextUri == null || nextUri.isEmpty()) {
+            throw new IllegalStateException("Trino query " + queryId + " is in state " + state + " but nextUri is null");
+        }
 
-            String nextUri = response.getNextUri();
-            if (nextUri == null || nextUri.isEmpty()) {
-                throw new IllegalStateException("Trino query " + queryId + " is in state " + state + " but nextUri is null");
-            }
+        TrinoStatementResponse next;
+        try {
+            // nextUri is usually absolute (http://trino:8080/v1/statement/...),
+            // so we pass it as-is; RestClient will handle the full URI.
+            next = restClient
+                    .get()
+                    .uri(nextUri)
+                    .retrieve()
+                    .body(TrinoStatementResponse.class);
+        } catch (Exception e) {
+            throw new TrinoUnavailableException(trinoProps.getBaseUrl(), e);
+        }
 
-            if (iterations++ > maxIterations) {
-                throw new IllegalStateException("Trino query " + queryId + " did not reach FINISHED after " + maxIterations + " polls");
-            }
+        if (next == null) {
+            throw new IllegalStateException("Null response while polling Trino for query " + queryId);
+        }
 
-            try {
-                // nextUri is usually absolute (http://trino:8080/v1/statement/...),
-                // so we pass it as-is; RestClient will handle the full URI.
-                response = restClient
-                        .get()
-                        .uri(nextUri)
-                        .retrieve()
-                        .body(TrinoStatementResponse.class);
-            } catch (Exception e) {
-                throw new TrinoUnavailableException(trinoProps.getBaseUrl(), e);
-            }
+        if (!queryId.equals(next.getId())) {
+            // Safety: Trino responses for a query should all carry the same id
+            log.warn("Trino response id changed from {} to {}", queryId, next.getId());
+        }
+        return next;
+    }
 
-            if (response == null) {
-                throw new IllegalStateException("Null response while polling Trino for query " + queryId);
-            }
+    private static String stateOf(TrinoStatementResponse response) {
+        return response.getStats() != null ? response.getStats().getState() : null;
+    }
 
-            if (!queryId.equals(response.getId())) {
-                // Safety: Trino responses for a query should all carry the same id
-                log.warn("Trino response id changed from {} to {}", queryId, response.getId());
-            }
+    private static TrinoQueryHandle.TrinoQueryProgress toProgress(TrinoStatementResponse response) {
+        TrinoStatementResponse.Stats stats = response.getStats();
+        if (stats == null) {
+            return null;
+        }
+        return new TrinoQueryHandle.TrinoQueryProgress(
+                stats.getState(),
+                stats.getProcessedRows(),
+                stats.getProcessedBytes(),
+                stats.getProgressPercentage());
+    }
 
-            state = response.getStats() != null ? response.getStats().getState() : null;
-            spoolEncoding = updateSpoolState(response, segmentsByUri, spoolEncoding);
+    private static boolean isFinished(TrinoStatementResponse response) {
+        String state = stateOf(response);
+        return state == null || "FINISHED".equalsIgnoreCase(state);
+    }
 
-            // Optional: avoid hammering Trino too hard
-            if (!"FINISHED".equalsIgnoreCase(state)) {
-                try {
-                    Thread.sleep(sleepMillis);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    throw new IllegalStateException("Interrupted while polling Trino for query " + queryId, ie);
-                }
-            }
+    private static void sleepBetweenPolls(String queryId) {
+        try {
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while polling Trino for query " + queryId, ie);
         }
+    }
 
-        // At this point we consider the query FINISHED.
-        List<TrinoStatementResponse.Column> columns =
-                response.getColumns() == null ? List.of() : response.getColumns();
-
-        List<TrinoQueryHandle.TrinoColumn> cols = columns.stream()
+    private static List<TrinoQueryHandle.TrinoColumn> toTrinoColumns(List<TrinoStatementResponse.Column> columns) {
+        return columns.stream()
                 .map(c -> new TrinoQueryHandle.TrinoColumn(
                         c.getName(),
                         c.getType()
                 ))
                 .collect(Collectors.toList());
-
-        Schema arrowSchema = toArrowSchema(columns);
-
-        List<TrinoQueryHandle.TrinoSpoolSegment> segments = segmentsByUri.values().stream()
-                .sorted(Comparator
-                        .comparingLong((TrinoQueryHandle.TrinoSpoolSegment s) -> Optional.ofNullable(s.rowOffset()).orElse(Long.MAX_VALUE))
-                        .thenComparing(s -> s.uri() != null ? s.uri().toString() : ""))
-                .toList();
-
-        TrinoQueryHandle handle = new TrinoQueryHandle(response.getId(), cols, arrowSchema, spoolEncoding, segments);
-
-        log.info("Submitted Trino query. id={}, columns={}, spooledSegments={}",
-                handle.getQueryId(), cols.size(), segments.size());
-        return handle;
     }
 
     private String updateSpoolState(TrinoStatementResponse response,
             Map<String, TrinoQueryHandle.TrinoSpoolSegment> segmentsByUri,
-            String spoolEncoding) {
+            String spoolEncoding,
+            Consumer<TrinoQueryHandle.TrinoSpoolSegment> onNewSegment) {
         if (response == null || response.getData() == null) {
             return spoolEncoding;
         }
@@ -238,6 +355,7 @@ public class TrinoClientImpl implements TrinoClient
             Long rowOffset = s.getMetadata() != null ? s.getMetadata().getRowOffset() : null;
             Long rowsCount = s.getMetadata() != null ? s.getMetadata().getRowsCount() : null;
             Long segmentSize = s.getMetadata() != null ? s.getMetadata().getSegmentSize() : null;
+            Long uncompressedSize = s.getMetadata() != null ? s.getMetadata().getUncompressedSize() : null;
             String expiresAt = s.getMetadata() != null ? s.getMetadata().getExpiresAt() : null;
             String type = s.getType();
             Map<String, String> headers = SpooledSegmentHeaders.toSingleValueHeaders(s.getHeaders());
@@ -259,12 +377,13 @@ public class TrinoClientImpl implements TrinoClient
                 URI inlineUri = URI.create("inline://trino/" + response.getId() + "/" +
                         (rowOffset != null ? rowOffset : "unknown"));
 
-                segmentsByUri.putIfAbsent(inlineUri.toString(), new TrinoQueryHandle.TrinoSpoolSegment(
+                addSegment(segmentsByUri, onNewSegment, inlineUri, new TrinoQueryHandle.TrinoSpoolSegment(
                         inlineUri,
                         null,
                         rowOffset,
                         rowsCount,
                         segmentSize,
+                        uncompressedSize,
                         expiresAt,
                         type,
                         Map.of(),
@@ -285,12 +404,13 @@ public class TrinoClientImpl implements TrinoClient
                     continue;
                 }
 
-                segmentsByUri.putIfAbsent(uri.toString(), new TrinoQueryHandle.TrinoSpoolSegment(
+                addSegment(segmentsByUri, onNewSegment, uri, new TrinoQueryHandle.TrinoSpoolSegment(
                         uri,
                         ackUri,
                         rowOffset,
                         rowsCount,
                         segmentSize,
+                        uncompressedSize,
                         expiresAt,
                         type,
                         headers,
@@ -304,36 +424,24 @@ public class TrinoClientImpl implements TrinoClient
         return spoolEncoding;
     }
 
+    private static void addSegment(Map<String, TrinoQueryHandle.TrinoSpoolSegment> segmentsByUri,
+            Consumer<TrinoQueryHandle.TrinoSpoolSegment> onNewSegment,
+            URI key,
+            TrinoQueryHandle.TrinoSpoolSegment segment) {
+        if (segmentsByUri.putIfAbsent(key.toString(), segment) == null) {
+            onNewSegment.accept(segment);
+        }
+    }
+
     private Schema toArrowSchema(List<TrinoStatementResponse.Column> columns) {
         if (columns == null || columns.isEmpty()) {
             return new Schema(List.of());
         }
 
         List<Field> fields = columns.stream()
-                .map(c -> toArrowField(c.getName(), c.getType()))
+                .map(c -> typeMapper.toArrowField(c.getName(), c.getType()))
                 .collect(Collectors.toList());
 
         return new Schema(fields);
     }
-
-    private Field toArrowField(String name, String trinoType) {
-        // Very minimal type mapping for now.
-        String t = trinoType.toUpperCase(Locale.ROOT);
-
-        if (t.startsWith("BIGINT")) {
-            return new Field(name, FieldType.nullable(new ArrowType.Int(64, true)), null);
-        } else if (t.startsWith("INTEGER")) {
-            return new Field(name, FieldType.nullable(new ArrowType.Int(32, true)), null);
-        } else if (t.startsWith("DOUBLE")) {
-            return new Field(name, FieldType.nullable(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)), null);
-        } else if (t.startsWith("VARCHAR") || t.startsWith("CHAR")) {
-            return new Field(name, FieldType.nullable(new ArrowType.Utf8()), null);
-        } else if (t.startsWith("BOOLEAN")) {
-            return new Field(name, FieldType.nullable(new ArrowType.Bool()), null);
-        } else if (t.startsWith("DATE")) {
-            return new Field(name, FieldType.nullable(new ArrowType.Date(DateUnit.DAY)), null);
-        }
-
-        throw new IllegalArgumentException("Unsupported Trino type for now: " + trinoType + " (column " + name + ")");
-    }
 }
@@ -3,6 +3,10 @@ package io.github.koszti.trinoarrowgateway.trino;
 import org.apache.arrow.vector.types.pojo.Schema;
 
 import java.net.URI;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -15,8 +19,7 @@ public class TrinoQueryHandle
     private final String queryId;
     private final List<TrinoColumn> columns;
     private final Schema arrowSchema;
-    private final String spoolEncoding;
-    private final List<TrinoSpoolSegment> spoolSegments;
+    private final SpoolSegmentSource segmentSource;
 
     public TrinoQueryHandle(String queryId,
             List<TrinoColumn> columns,
@@ -29,11 +32,17 @@ public class TrinoQueryHandle
             Schema arrowSchema,
             String spoolEncoding,
             List<TrinoSpoolSegment> spoolSegments) {
+        this(queryId, columns, arrowSchema, SpoolSegmentSource.completed(spoolEncoding, spoolSegments));
+    }
+
+    public TrinoQueryHandle(String queryId,
+            List<TrinoColumn> columns,
+            Schema arrowSchema,
+            SpoolSegmentSource segmentSource) {
         this.queryId = Objects.requireNonNull(queryId, "queryId must not be null");
         this.columns = List.copyOf(columns);
         this.arrowSchema = Objects.requireNonNull(arrowSchema, "arrowSchema must not be null");
-        this.spoolEncoding = spoolEncoding;
-        this.spoolSegments = List.copyOf(spoolSegments);
+        this.segmentSource = Objects.requireNonNull(segmentSource, "segmentSource must not be null");
     }
 
     public String getQueryId() {
@@ -48,24 +57,61 @@ public class TrinoQueryHandle
     }
 
     public String getSpoolEncoding() {
-        return spoolEncoding;
+        return segmentSource.getEncoding();
     }
 
+    /**
+     * Segments known so far. For incrementally submitted queries this grows until the query finishes.
+     */
     public List<TrinoSpoolSegment> getSpoolSegments() {
-        return spoolSegments;
+        return segmentSource.snapshot();
+    }
+
+    public SpoolSegmentSource getSegmentSource() {
+        return segmentSource;
     }
 
     public record TrinoColumn(String name, String type) {}
 
+    /**
+     * Latest progress reported by Trino's {@code stats} while the query runs.
+     */
+    public record TrinoQueryProgress(
+            String state,
+            Long processedRows,
+            Long processedBytes,
+            Double progressPercentage
+    ) {}
+
     public record TrinoSpoolSegment(
             URI uri,
             URI ackUri,
             Long rowOffset,
             Long rowsCount,
             Long segmentSize,
+            Long uncompressedSize,
             String expiresAt,
             String type,
             Map<String, String> headers,
             byte[] inlineData
-    ) {}
+    ) {
+        /**
+         * When the segment is deleted from the spooling storage, or null if Trino did not report it. Trino sends
+         * the time without an offset ({@code 2025-12-12T22:40:54.218171619}), in UTC.
+         */
+        public Instant expiration() {
+            if (expiresAt == null) {
+                return null;
+            }
+            try {
+                return LocalDateTime.parse(expiresAt).toInstant(ZoneOffset.UTC);
+            } catch (DateTimeParseException e) {
+                try {
+                    return Instant.parse(expiresAt);
+                } catch (DateTimeParseException ignored) {
+                    return null;
+                }
+            }
+        }
+    }
 }
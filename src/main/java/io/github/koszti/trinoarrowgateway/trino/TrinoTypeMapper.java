@@ -0,0 +1,235 @@
+package io.github.koszti.trinoarrowgateway.trino;
+
+import io.github.koszti.trinoarrowgateway.convert.SpooledRowsToArrowConverter;
+import io.github.koszti.trinoarrowgateway.convert.StringVectorType;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maps Trino type signatures (the {@code type} of a result column) to Arrow fields.
+ * <p>
+ * Parametric {@code array(T)}, {@code map(K, V)} and {@code row(name T, ...)} signatures are parsed recursively
+ * into List, Map and Struct fields, so nesting works at any depth. ROW fields without a name are called
+ * {@code field0}, {@code field1}, ...
+ */
+final class TrinoTypeMapper {
+    private static final Pattern TIMESTAMP_TYPE = Pattern.compile("TIMESTAMP(?:\\((\\d+)\\))?( WITH TIME ZONE)?");
+    private static final Pattern TIME_TYPE = Pattern.compile("TIME(?:\\((\\d+)\\))?( WITH TIME ZONE)?");
+    private static final int DEFAULT_TIMESTAMP_PRECISION = 3;
+    private static final Pattern DECIMAL_TYPE = Pattern.compile("DECIMAL\\((\\d+)\\s*,\\s*(\\d+)\\)");
+    private static final int MAX_DECIMAL128_PRECISION = 38;
+    /** Words that continue a multi-word type, so {@code row(timestamp with time zone)} is not a field named "timestamp". */
+    private static final Pattern TYPE_SUFFIX = Pattern.compile("(?i)(with|without)\\s.*|precision|(day|year|month|hour|minute)\\s+to\\s.*");
+
+    private final StringVectorType stringType;
+
+    TrinoTypeMapper(StringVectorType stringType) {
+        this.stringType = Objects.requireNonNull(stringType, "stringType must not be null");
+    }
+
+    Field toArrowField(String name, String trinoType) {
+        try {
+            return field(name, trinoType.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported Trino type for now: " + trinoType + " (column " + name + ")", e);
+        }
+    }
+
+    private Field field(String name, String type) {
+        String lower = type.toLowerCase(Locale.ROOT);
+        if (lower.startsWith("array(")) {
+            List<String> arguments = arguments(type, "array".length(), 1);
+            Field element = field("element", arguments.get(0));
+            return new Field(name, FieldType.nullable(ArrowType.List.INSTANCE), List.of(element));
+        }
+        if (lower.startsWith("map(")) {
+            List<String> arguments = arguments(type, "map".length(), 2);
+            Field key = field("key", arguments.get(0));
+            if (!key.getChildren().isEmpty()) {
+                throw new IllegalArgumentException("Unsupported map key type " + arguments.get(0));
+            }
+            // Arrow map keys and entries are never null.
+            key = new Field("key", new FieldType(false, key.getType(), null, key.getMetadata()), null);
+            Field value = field("value", arguments.get(1));
+            Field entries = new Field("entries", FieldType.notNullable(ArrowType.Struct.INSTANCE), List.of(key, value));
+            return new Field(name, FieldType.nullable(new ArrowType.Map(false)), List.of(entries));
+        }
+        if (lower.startsWith("row(")) {
+            List<String> arguments = arguments(type, "row".length(), -1);
+            List<Field> children = new ArrayList<>(arguments.size());
+            for (int i = 0; i < arguments.size(); i++) {
+                children.add(rowField(i, arguments.get(i)));
+            }
+            return new Field(name, FieldType.nullable(ArrowType.Struct.INSTANCE), children);
+        }
+        return new Field(name, scalarType(type), null);
+    }
+
+    /**
+     * Maps one ROW field, {@code name type}, {@code "quoted name" type} or an anonymous {@code type}.
+     */
+    private Field rowField(int position, String argument) {
+        if (argument.startsWith("\"")) {
+            StringBuilder name = new StringBuilder();
+            int i = 1;
+            while (true) {
+                if (i >= argument.length()) {
+                    throw new IllegalArgumentException("Unterminated field name in " + argument);
+                }
+                char c = argument.charAt(i++);
+                if (c == '"') {
+                    if (i < argument.length() && argument.charAt(i) == '"') {
+                        name.append('"');
+                        i++;
+                        continue;
+                    }
+                    break;
+                }
+                name.append(c);
+            }
+            return field(name.toString(), argument.substring(i).trim());
+        }
+        int space = argument.indexOf(' ');
+        int paren = argument.indexOf('(');
+        if (space > 0 && (paren < 0 || space < paren)) {
+            String rest = argument.substring(space + 1).trim();
+            if (!TYPE_SUFFIX.matcher(rest).matches()) {
+                return field(argument.substring(0, space), rest);
+            }
+        }
+        return field("field" + position, argument);
+    }
+
+    /**
+     * Splits the parenthesized arguments following {@code type[0, nameLength)} at top-level commas.
+     *
+     * @param expected number of arguments, or -1 for any non-zero number
+     */
+    private static List<String> arguments(String type, int nameLength, int expected) {
+        if (!type.endsWith(")")) {
+            throw new IllegalArgumentException("Malformed type " + type);
+        }
+        List<String> arguments = new ArrayList<>();
+        int depth = 0;
+        boolean quoted = false;
+        int start = nameLength + 1;
+        int end = type.length() - 1;
+        for (int i = start; i < end; i++) {
+            char c = type.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (quoted) {
+                continue;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                if (--depth < 0) {
+                    throw new IllegalArgumentException("Malformed type " + type);
+                }
+            } else if (c == ',' && depth == 0) {
+                arguments.add(type.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        if (depth != 0 || quoted) {
+            throw new IllegalArgumentException("Malformed type " + type);
+        }
+        arguments.add(type.substring(start, end).trim());
+        if (arguments.stream().anyMatch(String::isEmpty) || (expected >= 0 && arguments.size() != expected)) {
+            throw new IllegalArgumentException("Malformed type " + type);
+        }
+        return arguments;
+    }
+
+    private FieldType scalarType(String trinoType) {
+        String t = trinoType.toUpperCase(Locale.ROOT);
+
+        if (t.equals("BIGINT")) {
+            return FieldType.nullable(new ArrowType.Int(64, true));
+        } else if (t.equals("INTEGER")) {
+            return FieldType.nullable(new ArrowType.Int(32, true));
+        } else if (t.equals("SMALLINT")) {
+            return FieldType.nullable(new ArrowType.Int(16, true));
+        } else if (t.equals("TINYINT")) {
+            return FieldType.nullable(new ArrowType.Int(8, true));
+        } else if (t.equals("DOUBLE")) {
+            return FieldType.nullable(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE));
+        } else if (t.equals("REAL")) {
+            return FieldType.nullable(new ArrowType.FloatingPoint(FloatingPointPrecision.SINGLE));
+        } else if (t.equals("VARBINARY")) {
+            return FieldType.nullable(new ArrowType.Binary());
+        } else if (t.equals("UUID")) {
+            // Canonical Arrow UUID extension, so clients that know it (e.g. pyarrow) expose UUIDs.
+            return new FieldType(true, new ArrowType.FixedSizeBinary(16), null, Map.of(
+                    SpooledRowsToArrowConverter.TRINO_TYPE_METADATA, "uuid",
+                    "ARROW:extension:name", "arrow.uuid",
+                    "ARROW:extension:metadata", ""));
+        } else if (t.equals("IPADDRESS")) {
+            // 16-byte IPv6 form, with IPv4 addresses IPv4-mapped, like Trino stores them.
+            return new FieldType(true, new ArrowType.FixedSizeBinary(16), null,
+                    Map.of(SpooledRowsToArrowConverter.TRINO_TYPE_METADATA, "ipaddress"));
+        } else if (t.startsWith("VARCHAR") || t.startsWith("CHAR")) {
+            return stringType();
+        } else if (t.equals("BOOLEAN")) {
+            return FieldType.nullable(new ArrowType.Bool());
+        } else if (t.equals("DATE")) {
+            return FieldType.nullable(new ArrowType.Date(DateUnit.DAY));
+        } else if (t.startsWith("DECIMAL")) {
+            Matcher m = DECIMAL_TYPE.matcher(t);
+            if (m.matches()) {
+                int precision = Integer.parseInt(m.group(1));
+                int scale = Integer.parseInt(m.group(2));
+                int bitWidth = precision <= MAX_DECIMAL128_PRECISION ? 128 : 256;
+                return FieldType.nullable(new ArrowType.Decimal(precision, scale, bitWidth));
+            }
+        } else if (t.startsWith("TIMESTAMP")) {
+            Matcher m = TIMESTAMP_TYPE.matcher(t);
+            if (m.matches()) {
+                int precision = m.group(1) != null ? Integer.parseInt(m.group(1)) : DEFAULT_TIMESTAMP_PRECISION;
+                // Values with a zone are normalized to UTC instants.
+                String timezone = m.group(2) != null ? "UTC" : null;
+                return FieldType.nullable(new ArrowType.Timestamp(timeUnit(precision), timezone));
+            }
+        } else if (t.startsWith("TIME")) {
+            Matcher m = TIME_TYPE.matcher(t);
+            if (m.matches() && m.group(2) != null) {
+                // Arrow has no time of day with an offset, so the value is kept as Trino prints it.
+                return stringType();
+            }
+            if (m.matches()) {
+                int precision = m.group(1) != null ? Integer.parseInt(m.group(1)) : DEFAULT_TIMESTAMP_PRECISION;
+                TimeUnit unit = timeUnit(precision);
+                int bitWidth = unit == TimeUnit.MILLISECOND ? 32 : 64;
+                return FieldType.nullable(new ArrowType.Time(unit, bitWidth));
+            }
+        }
+
+        throw new IllegalArgumentException("Unsupported Trino type " + trinoType);
+    }
+
+    private FieldType stringType() {
+        ArrowType arrowType = stringType == StringVectorType.UTF8_VIEW
+                ? new ArrowType.Utf8View()
+                : new ArrowType.Utf8();
+        return FieldType.nullable(arrowType);
+    }
+
+    /**
+     * Arrow unit for a Trino fractional-second precision; precision beyond nanoseconds is truncated.
+     */
+    private static TimeUnit timeUnit(int precision) {
+        return precision <= 3 ? TimeUnit.MILLISECOND : precision <= 6 ? TimeUnit.MICROSECOND : TimeUnit.NANOSECOND;
+    }
+}
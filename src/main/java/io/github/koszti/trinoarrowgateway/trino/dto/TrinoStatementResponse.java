@@ -176,6 +176,7 @@ public class TrinoStatementResponse
 
     public static class SegmentMetadata {
         private Long segmentSize;
+        private Long uncompressedSize; // only for compressed encodings
         private Long rowsCount;
         private String expiresAt;
         private Long rowOffset;
@@ -188,6 +189,14 @@ public class TrinoStatementResponse
             this.segmentSize = segmentSize;
         }
 
+        public Long getUncompressedSize() {
+            return uncompressedSize;
+        }
+
+        public void setUncompressedSize(Long uncompressedSize) {
+            this.uncompressedSize = uncompressedSize;
+        }
+
         public Long getRowsCount() {
             return rowsCount;
         }
@@ -215,6 +224,9 @@ public class TrinoStatementResponse
 
     public static class Stats {
         private String state; // QUEUED, RUNNING, FINISHED, FAILED, CANCELED, ...
+        private Long processedRows;
+        private Long processedBytes;
+        private Double progressPercentage; // absent while Trino cannot estimate progress
 
         public String getState() {
             return state;
@@ -223,6 +235,30 @@ public class TrinoStatementResponse
         public void setState(String state) {
             this.state = state;
         }
+
+        public Long getProcessedRows() {
+            return processedRows;
+        }
+
+        public void setProcessedRows(Long processedRows) {
+            this.processedRows = processedRows;
+        }
+
+        public Long getProcessedBytes() {
+            return processedBytes;
+        }
+
+        public void setProcessedBytes(Long processedBytes) {
+            this.processedBytes = processedBytes;
+        }
+
+        public Double getProgressPercentage() {
+            return progressPercentage;
+        }
+
+        public void setProgressPercentage(Double progressPercentage) {
+            this.progressPercentage = progressPercentage;
+        }
     }
 
     public static class TrinoError {
@@ -0,0 +1,129 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.ValueVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryEncoder;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveDictionaryEncoderTest {
+
+    private static final Schema SCHEMA = new Schema(List.of(
+            new Field("orderkey", FieldType.nullable(new ArrowType.Int(64, true)), null),
+            new Field("orderstatus", FieldType.nullable(new ArrowType.Utf8()), null),
+            new Field("comment", FieldType.nullable(new ArrowType.Utf8()), null)
+    ));
+
+    private BufferAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        allocator.close();
+    }
+
+    @Test
+    void canEncodeOnlySchemasWithPlainUtf8Columns() {
+        assertTrue(AdaptiveDictionaryEncoder.canEncode(SCHEMA));
+        assertFalse(AdaptiveDictionaryEncoder.canEncode(new Schema(List.of(
+                new Field("orderkey", FieldType.nullable(new ArrowType.Int(64, true)), null),
+                new Field("comment", FieldType.nullable(new ArrowType.Utf8View()), null)))));
+    }
+
+    @Test
+    void encodesOnlyLowCardinalityVarcharColumns() {
+        try (VectorSchemaRoot sample = batch(100, new String[]{"O", "F", "P"});
+                AdaptiveDictionaryEncoder encoder = AdaptiveDictionaryEncoder.forResult(List.of(sample), 16, allocator)) {
+            assertNotNull(encoder);
+            Schema encoded = encoder.getRoot().getSchema();
+            assertNull(encoded.getFields().get(0).getDictionary());
+            assertNotNull(encoded.getFields().get(1).getDictionary());
+            assertEquals(new ArrowType.Int(8, true), encoded.getFields().get(1).getType());
+            assertNull(encoded.getFields().get(2).getDictionary());
+
+            encoder.encode(sample);
+
+            VectorSchemaRoot out = encoder.getRoot();
+            assertEquals(100, out.getRowCount());
+            assertEquals(42L, ((BigIntVector) out.getVector(0)).get(42));
+            assertEquals("comment 42", ((VarCharVector) out.getVector(2)).getObject(42).toString());
+            long id = encoded.getFields().get(1).getDictionary().getId();
+            Dictionary dictionary = encoder.getProvider().lookup(id);
+            try (ValueVector decoded = DictionaryEncoder.decode(out.getVector(1), dictionary)) {
+                assertEquals("O", ((VarCharVector) decoded).getObject(0).toString());
+                assertTrue(decoded.isNull(3));
+                assertEquals("P", ((VarCharVector) decoded).getObject(5).toString());
+            }
+        }
+    }
+
+    @Test
+    void returnsNullWhenNoColumnQualifies() {
+        try (VectorSchemaRoot sample = batch(2, new String[]{"O", "F"})) {
+            assertNull(AdaptiveDictionaryEncoder.forResult(List.of(sample), 16, allocator));
+            assertNull(AdaptiveDictionaryEncoder.forResult(List.of(), 16, allocator));
+        }
+    }
+
+    @Test
+    void dictionariesCoverTheValuesOfEveryBatch() {
+        try (VectorSchemaRoot first = batch(100, new String[]{"O", "F"});
+                VectorSchemaRoot later = batch(10, new String[]{"O", "X"});
+                AdaptiveDictionaryEncoder encoder = AdaptiveDictionaryEncoder.forResult(List.of(first, later), 16, allocator)) {
+            assertNotNull(encoder);
+            encoder.encode(first);
+            encoder.encode(later);
+
+            VectorSchemaRoot out = encoder.getRoot();
+            long id = out.getSchema().getFields().get(1).getDictionary().getId();
+            try (ValueVector decoded = DictionaryEncoder.decode(out.getVector(1), encoder.getProvider().lookup(id))) {
+                assertEquals("X", ((VarCharVector) decoded).getObject(1).toString());
+            }
+        }
+    }
+
+    /**
+     * Rows cycle through {@code statuses}; every third row has a null status.
+     */
+    private VectorSchemaRoot batch(int rows, String[] statuses) {
+        VectorSchemaRoot root = VectorSchemaRoot.create(SCHEMA, allocator);
+        root.allocateNew();
+        BigIntVector key = (BigIntVector) root.getVector(0);
+        VarCharVector status = (VarCharVector) root.getVector(1);
+        VarCharVector comment = (VarCharVector) root.getVector(2);
+        for (int i = 0; i < rows; i++) {
+            key.setSafe(i, i);
+            if (i % 3 == 0 && i > 0) {
+                status.setNull(i);
+            } else {
+                status.setSafe(i, statuses[i % statuses.length].getBytes(StandardCharsets.UTF_8));
+            }
+            comment.setSafe(i, ("comment " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        root.setRowCount(rows);
+        return root;
+    }
+}
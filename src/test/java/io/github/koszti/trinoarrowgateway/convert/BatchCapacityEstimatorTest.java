@@ -0,0 +1,159 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchCapacityEstimatorTest {
+
+    private static final Schema SCHEMA = new Schema(List.of(
+            new Field("id", FieldType.nullable(new ArrowType.Int(64, true)), null),
+            new Field("s", FieldType.nullable(new ArrowType.Utf8()), null)
+    ));
+    private static final byte[] VALUE = "x".repeat(40).getBytes(StandardCharsets.UTF_8);
+
+    private BufferAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator();
+    }
+
+    @AfterEach
+    void tearDown() {
+        allocator.close();
+    }
+
+    @Test
+    void learnedAveragesLetLaterBatchesFillWithoutReallocation() {
+        BatchCapacityEstimator estimator = new BatchCapacityEstimator(SCHEMA);
+        BatchCapacityEstimator.Segment segment = estimator.forSegment(2_100L, 2_100L * 60);
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(SCHEMA, allocator)) {
+            VarCharVector strings = (VarCharVector) root.getVector("s");
+
+            segment.allocate(root, 1024);
+            fill(root, 1024);
+            segment.completed(root);
+            assertEquals(40 * BatchCapacityEstimator.HEADROOM, estimator.bytesPerValue(1, 0));
+
+            root.clear();
+            segment.allocate(root, 1024);
+            ArrowBuf data = strings.getDataBuffer();
+            ArrowBuf offsets = strings.getOffsetBuffer();
+            fill(root, 1024);
+            assertSame(data, strings.getDataBuffer());
+            assertSame(offsets, strings.getOffsetBuffer());
+            segment.completed(root);
+
+            // 52 rows are left in the segment.
+            root.clear();
+            segment.allocate(root, 1024);
+            assertTrue(root.getVector("id").getValueCapacity() < 1024);
+            assertTrue(strings.getByteCapacity() >= 52 * VALUE.length);
+        }
+    }
+
+    @Test
+    void usesTheSegmentBytesPerRowBeforeAnythingIsLearned() {
+        BatchCapacityEstimator estimator = new BatchCapacityEstimator(SCHEMA);
+        BatchCapacityEstimator.Segment segment = estimator.forSegment(1_000L, 1_000L * 200);
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(SCHEMA, allocator)) {
+            segment.allocate(root, 1024);
+            // 200 JSON bytes per row over two columns.
+            assertTrue(((VarCharVector) root.getVector("s")).getByteCapacity() >= 1_000 * 100);
+            assertTrue(root.getVector("id").getValueCapacity() >= 1_000);
+        }
+    }
+
+    @Test
+    void presizedConversionProducesTheSameBatches() throws Exception {
+        StringBuilder payload = new StringBuilder("[");
+        for (int i = 0; i < 2_500; i++) {
+            payload.append(i == 0 ? "" : ",").append("[").append(i).append(",\"").append("v".repeat(i % 97)).append("\"]");
+        }
+        byte[] bytes = payload.append("]").toString().getBytes(StandardCharsets.UTF_8);
+        SpooledRowsToArrowConverter converter = new SpooledRowsToArrowConverter(allocator);
+        BatchCapacityEstimator estimator = new BatchCapacityEstimator(SCHEMA);
+
+        String expected = contents(converter, bytes, null);
+        assertEquals(expected, contents(converter, bytes, estimator.forSegment(2_500L, (long) bytes.length)));
+        assertEquals(expected, contents(converter, bytes, estimator.forSegment(null, null)));
+    }
+
+    @Test
+    void byteTargetAdaptsRowsPerBatchToTheObservedRowWidth() throws Exception {
+        StringBuilder payload = new StringBuilder("[");
+        for (int i = 0; i < 10_000; i++) {
+            payload.append(i == 0 ? "" : ",").append("[").append(i).append(",\"").append("x".repeat(40)).append("\"]");
+        }
+        byte[] bytes = payload.append("]").toString().getBytes(StandardCharsets.UTF_8);
+        SpooledRowsToArrowConverter converter = new SpooledRowsToArrowConverter(allocator);
+        BatchCapacityEstimator estimator = new BatchCapacityEstimator(SCHEMA, 100_000);
+
+        List<ArrowRecordBatch> batches = new ArrayList<>();
+        converter.convertStreaming(new ByteArrayInputStream(bytes), SCHEMA, 1024, estimator.forSegment(null, null), batches::add);
+        try {
+            // Nothing is known for the first batch; afterwards about 52 Arrow bytes per row.
+            assertEquals(1024, batches.get(0).getLength());
+            int second = batches.get(1).getLength();
+            assertTrue(second > 1800 && second < 2000, "rows in second batch: " + second);
+            assertEquals(10_000, batches.stream().mapToInt(ArrowRecordBatch::getLength).sum());
+        } finally {
+            batches.forEach(ArrowRecordBatch::close);
+        }
+
+        // A fresh estimator starts from the segment's JSON bytes per row.
+        BatchCapacityEstimator.Segment segment = new BatchCapacityEstimator(SCHEMA, 100_000)
+                .forSegment(10_000L, (long) bytes.length);
+        int rows = segment.batchRows(1024);
+        assertTrue(rows > 1024 && rows < 100_000 / 40, "rows from segment metadata: " + rows);
+        assertEquals(1024, new BatchCapacityEstimator(SCHEMA).forSegment(10_000L, (long) bytes.length).batchRows(1024));
+    }
+
+    private static void fill(VectorSchemaRoot root, int rows) {
+        BigIntVector ids = (BigIntVector) root.getVector("id");
+        VarCharVector strings = (VarCharVector) root.getVector("s");
+        for (int i = 0; i < rows; i++) {
+            ids.setSafe(i, i);
+            strings.setSafe(i, VALUE);
+        }
+        root.setRowCount(rows);
+    }
+
+    private String contents(SpooledRowsToArrowConverter converter, byte[] payload, BatchCapacityEstimator.Segment capacity)
+            throws Exception {
+        List<ArrowRecordBatch> batches = new ArrayList<>();
+        converter.convertStreaming(new ByteArrayInputStream(payload), SCHEMA, 1024, capacity, batches::add);
+        StringBuilder out = new StringBuilder();
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(SCHEMA, allocator)) {
+            for (ArrowRecordBatch batch : batches) {
+                try (batch) {
+                    new VectorLoader(root).load(batch);
+                    out.append(root.contentToTSVString()).append("--\n");
+                }
+            }
+        }
+        return out.toString();
+    }
+}
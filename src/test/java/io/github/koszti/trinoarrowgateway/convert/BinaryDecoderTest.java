@@ -0,0 +1,92 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryDecoderTest {
+
+    @Test
+    void decodesBase64LikeTheJdk() throws IOException {
+        BinaryDecoder decoder = new BinaryDecoder();
+        Random random = new Random(3);
+        for (int length = 0; length < 600; length++) {
+            byte[] expected = new byte[length];
+            random.nextBytes(expected);
+            char[] encoded = Base64.getEncoder().encodeToString(expected).toCharArray();
+
+            int decoded = decoder.decodeBase64(encoded, 0, encoded.length);
+            assertArrayEquals(expected, Arrays.copyOf(decoder.buffer(), decoded), "length " + length);
+        }
+    }
+
+    @Test
+    void rejectsInvalidBase64() {
+        BinaryDecoder decoder = new BinaryDecoder();
+        for (String value : new String[] {"abc", "ab!d", "a===", "=abc", "ab=c"}) {
+            assertThrows(IOException.class, () -> decoder.decodeBase64(value.toCharArray(), 0, value.length()), value);
+        }
+    }
+
+    @Test
+    void parsesUuidsInNetworkOrder() throws IOException {
+        BinaryDecoder decoder = new BinaryDecoder();
+        for (int i = 0; i < 100; i++) {
+            UUID uuid = UUID.randomUUID();
+            byte[] expected = ByteBuffer.allocate(16)
+                    .putLong(uuid.getMostSignificantBits())
+                    .putLong(uuid.getLeastSignificantBits())
+                    .array();
+            assertArrayEquals(expected, parseUuid(decoder, uuid.toString()));
+            assertArrayEquals(expected, parseUuid(decoder, uuid.toString().toUpperCase()));
+        }
+        assertThrows(IOException.class, () -> parseUuid(decoder, "123e4567-e89b-12d3-a456-42661417400"));
+        assertThrows(IOException.class, () -> parseUuid(decoder, "123e4567-e89b-12d3-a456-42661417400g"));
+    }
+
+    @Test
+    void parsesIpAddressesIntoSixteenBytes() throws IOException {
+        BinaryDecoder decoder = new BinaryDecoder();
+        for (String address : new String[] {"::", "::1", "1::", "2001:db8::1", "2001:db8:0:0:1:0:0:1", "fe80::1:2:3:4",
+                "1:2:3:4:5:6:7:8", "64:ff9b::192.0.2.33"}) {
+            assertArrayEquals(InetAddress.getByName(address).getAddress(), parseIp(decoder, address), address);
+        }
+        byte[] mapped = new byte[16];
+        mapped[10] = (byte) 0xff;
+        mapped[11] = (byte) 0xff;
+        mapped[12] = (byte) 192;
+        mapped[13] = (byte) 168;
+        mapped[15] = 1;
+        assertArrayEquals(mapped, parseIp(decoder, "192.168.0.1"));
+        assertArrayEquals(mapped, parseIp(decoder, "::ffff:192.168.0.1"));
+    }
+
+    @Test
+    void rejectsInvalidIpAddresses() {
+        BinaryDecoder decoder = new BinaryDecoder();
+        for (String address : new String[] {"", "1.2.3", "1.2.3.256", "1.2.3.4.5", "1::2::3", "1:2:3:4:5:6:7", "12345::",
+                "1:2:3:4:5:6:7:8:9", "::g", "1:", "1:2:3:4:5:6:7::8"}) {
+            assertThrows(IOException.class, () -> parseIp(decoder, address), address);
+        }
+    }
+
+    private static byte[] parseUuid(BinaryDecoder decoder, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        return decoder.parseUuid(bytes, 0, bytes.length).clone();
+    }
+
+    private static byte[] parseIp(BinaryDecoder decoder, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        return decoder.parseIpAddress(bytes, 0, bytes.length).clone();
+    }
+}
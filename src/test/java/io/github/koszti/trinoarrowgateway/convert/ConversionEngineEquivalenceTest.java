@@ -0,0 +1,423 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FixedSizeBinaryVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeMicroVector;
+import org.apache.arrow.vector.TimeMilliVector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.TimeStampMilliVector;
+import org.apache.arrow.vector.TimeStampNanoVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.MapVector;
+import org.apache.arrow.vector.complex.StructVector;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversionEngineEquivalenceTest {
+
+    private static final Schema SCHEMA = new Schema(List.of(
+            new Field("s", FieldType.nullable(new ArrowType.Utf8()), null),
+            new Field("i", FieldType.nullable(new ArrowType.Int(32, true)), null),
+            new Field("l", FieldType.nullable(new ArrowType.Int(64, true)), null),
+            new Field("d", FieldType.nullable(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)), null),
+            new Field("b", FieldType.nullable(new ArrowType.Bool()), null),
+            new Field("dt", FieldType.nullable(new ArrowType.Date(DateUnit.DAY)), null)
+    ));
+
+    private static final Schema VIEW_SCHEMA = new Schema(SCHEMA.getFields().stream()
+            .map(f -> f.getType().getTypeID() == ArrowType.ArrowTypeID.Utf8
+                    ? new Field(f.getName(), FieldType.nullable(new ArrowType.Utf8View()), null)
+                    : f)
+            .toList());
+
+    private static final String ROWS = """
+            [
+              ["a", 1, 10, 1.5, true, "2024-01-02"],
+              [null, null, null, null, null, null],
+              ["short", 3],
+              [],
+              ["tab\\there \\"quoted\\" back\\\\slash \\/ \\b\\f\\n\\r", 0, -9223372036854775808, 0.1, false, "1970-01-01"],
+              ["\\u00e9\\u20ac \\ud83d\\ude00 ünïcødé 😀", -2147483648, 9223372036854775807, -0.0, true, "1900-02-28"],
+              ["", 2147483647, 0, 1.7976931348623157E308, false, "2262-04-11"],
+              ["x", 7, 7, 123456789.123, true, null],
+              ["y", 8, 8, 4.9E-324, false, null],
+              ["z", 9, 9, 1e22, true, null],
+              ["w", 10, 10, 1.0E-7, true, null],
+              ["v", 11, 11, 12345678901234567890, true, null],
+              ["nan", 12, 12, "NaN", true, null],
+              ["inf", 13, 13, "-Infinity", true, null] ,
+              [ "spaced" , 14 , 14 , 2.5e+3 , false , "2000-02-29" ]
+            ]
+            """;
+
+    private static final Schema TIMESTAMP_SCHEMA = new Schema(List.of(
+            new Field("ts", FieldType.nullable(new ArrowType.Timestamp(TimeUnit.MILLISECOND, null)), null),
+            new Field("ts6tz", FieldType.nullable(new ArrowType.Timestamp(TimeUnit.MICROSECOND, "UTC")), null),
+            new Field("ts9", FieldType.nullable(new ArrowType.Timestamp(TimeUnit.NANOSECOND, null)), null)
+    ));
+
+    private static final String TIMESTAMP_ROWS = """
+            [
+              ["2024-01-02 03:04:05.123", "2024-01-02 03:04:05.123456 UTC", "2024-01-02 03:04:05.123456789"],
+              ["1969-12-31 23:59:59.999", "2024-07-01 12:00:00.000001 Europe/Budapest", "1970-01-01 00:00:00.000000001"],
+              [null, "2024-01-02 03:04:05.000000 +05:30", null],
+              ["2024-01-02 03:04:05.000", null]
+            ]
+            """;
+
+    private static final Schema DECIMAL_SCHEMA = new Schema(List.of(
+            new Field("price", FieldType.nullable(new ArrowType.Decimal(12, 2, 128)), null),
+            new Field("big", FieldType.nullable(new ArrowType.Decimal(38, 6, 128)), null),
+            new Field("wide", FieldType.nullable(new ArrowType.Decimal(50, 0, 256)), null)
+    ));
+
+    private static final String DECIMAL_ROWS = """
+            [
+              ["172799.49", "12345678901234567890123456789012.123456", "-12345678901234567890123456789012345678901234567890"],
+              ["-0.01", "-0.000001", "0"],
+              [15.5, 42, 7],
+              [null, null, null]
+            ]
+            """;
+
+    private static final Schema NARROW_SCHEMA = new Schema(List.of(
+            new Field("ti", FieldType.nullable(new ArrowType.Int(8, true)), null),
+            new Field("si", FieldType.nullable(new ArrowType.Int(16, true)), null),
+            new Field("r", FieldType.nullable(new ArrowType.FloatingPoint(FloatingPointPrecision.SINGLE)), null),
+            new Field("bin", FieldType.nullable(new ArrowType.Binary()), null),
+            new Field("id", new FieldType(true, new ArrowType.FixedSizeBinary(16), null,
+                    Map.of(SpooledRowsToArrowConverter.TRINO_TYPE_METADATA, "uuid")), null),
+            new Field("ip", new FieldType(true, new ArrowType.FixedSizeBinary(16), null,
+                    Map.of(SpooledRowsToArrowConverter.TRINO_TYPE_METADATA, "ipaddress")), null),
+            new Field("t", FieldType.nullable(new ArrowType.Time(TimeUnit.MILLISECOND, 32)), null),
+            new Field("t6", FieldType.nullable(new ArrowType.Time(TimeUnit.MICROSECOND, 64)), null)
+    ));
+
+    private static final String NARROW_ROWS = """
+            [
+              [-128, 32767, 1.5, "AAECAwQ=", "123e4567-e89b-12d3-a456-426614174000", "192.168.0.1", "12:34:56.789", "00:00:00.000001"],
+              [127, -32768, "NaN", "", "00000000-0000-0000-0000-000000000000", "2001:db8::1", "00:00:00.000", "23:59:59.999999"],
+              [0, 0, 3.4028235E38, "/w==", null, "::", null, null],
+              [null, null, null, null, null, null, null, null]
+            ]
+            """;
+
+    private static final Schema NESTED_SCHEMA = new Schema(List.of(
+            new Field("tags", FieldType.nullable(ArrowType.List.INSTANCE),
+                    List.of(new Field("element", FieldType.nullable(new ArrowType.Utf8()), null))),
+            new Field("m", FieldType.nullable(new ArrowType.Map(false)), List.of(
+                    new Field("entries", FieldType.notNullable(ArrowType.Struct.INSTANCE), List.of(
+                            new Field("key", FieldType.notNullable(new ArrowType.Utf8()), null),
+                            new Field("value", FieldType.nullable(new ArrowType.Int(64, true)), null))))),
+            new Field("r", FieldType.nullable(ArrowType.Struct.INSTANCE), List.of(
+                    new Field("id", FieldType.nullable(new ArrowType.Int(64, true)), null),
+                    new Field("ts", FieldType.nullable(new ArrowType.Timestamp(TimeUnit.MILLISECOND, null)), null),
+                    new Field("items", FieldType.nullable(ArrowType.List.INSTANCE), List.of(
+                            new Field("element", FieldType.nullable(ArrowType.Struct.INSTANCE), List.of(
+                                    new Field("d", FieldType.nullable(new ArrowType.Decimal(10, 2, 128)), null),
+                                    new Field("b", FieldType.nullable(new ArrowType.Bool()), null))))))),
+            new Field("nn", FieldType.nullable(ArrowType.List.INSTANCE), List.of(
+                    new Field("element", FieldType.nullable(ArrowType.List.INSTANCE),
+                            List.of(new Field("element", FieldType.nullable(new ArrowType.Int(32, true)), null)))))
+    ));
+
+    private static final String NESTED_ROWS = """
+            [
+              [["a", "b"], {"x": 1, "y": null}, [1, "2024-01-02 03:04:05.123", [["1.50", true], null]], [[1, 2], [], null]],
+              [[], {}, null, null],
+              [null, null, [null, null, []], [[3]]],
+              [["c", null]]
+            ]
+            """;
+
+    private static BufferAllocator allocator;
+
+    @BeforeAll
+    static void setUpAllocator() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+    }
+
+    @AfterAll
+    static void tearDownAllocator() {
+        allocator.close();
+    }
+
+    @Test
+    void byteLevelEnginesMatchJackson() throws Exception {
+        String expected = convert(ConversionEngine.JACKSON, stream(ROWS), 4);
+
+        assertEquals(expected, convert(ConversionEngine.BYTES, stream(ROWS), 4));
+        assertEquals(expected, convert(ConversionEngine.SIMD, stream(ROWS), 4));
+    }
+
+    @Test
+    void utf8ViewColumnsHoldTheSameValuesAsUtf8() throws Exception {
+        String expected = convert(ConversionEngine.JACKSON, stream(ROWS), 4);
+
+        for (ConversionEngine engine : ConversionEngine.values()) {
+            for (RowDecoderMode mode : RowDecoderMode.values()) {
+                SpooledRowsToArrowConverter converter = new SpooledRowsToArrowConverter(allocator, engine, mode);
+                assertEquals(expected, convert(converter, stream(ROWS), VIEW_SCHEMA, 4), engine + " " + mode);
+            }
+        }
+    }
+
+    @Test
+    void timestampsMatchAcrossEnginesAndDecoders() throws Exception {
+        SpooledRowsToArrowConverter reference =
+                new SpooledRowsToArrowConverter(allocator, ConversionEngine.JACKSON, RowDecoderMode.INTERPRETED);
+        String expected = convert(reference, stream(TIMESTAMP_ROWS), TIMESTAMP_SCHEMA, 3);
+
+        for (ConversionEngine engine : ConversionEngine.values()) {
+            for (RowDecoderMode mode : RowDecoderMode.values()) {
+                SpooledRowsToArrowConverter converter = new SpooledRowsToArrowConverter(allocator, engine, mode);
+                assertEquals(expected, convert(converter, stream(TIMESTAMP_ROWS), TIMESTAMP_SCHEMA, 3), engine + " " + mode);
+            }
+        }
+        List<ArrowRecordBatch> batches = reference.convert(stream(TIMESTAMP_ROWS), TIMESTAMP_SCHEMA, 8);
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(TIMESTAMP_SCHEMA, allocator);
+             ArrowRecordBatch batch = batches.get(0)) {
+            new VectorLoader(root).load(batch);
+            assertEquals(1_704_164_645_123L, ((TimeStampMilliVector) root.getVector("ts")).get(0));
+            assertEquals(-1L, ((TimeStampMilliVector) root.getVector("ts")).get(1));
+            assertEquals(1_719_828_000_000_001L, ((TimeStampMicroTZVector) root.getVector("ts6tz")).get(1));
+            assertEquals(1_704_164_645_000_000L - 19_800_000_000L, ((TimeStampMicroTZVector) root.getVector("ts6tz")).get(2));
+            assertEquals(1L, ((TimeStampNanoVector) root.getVector("ts9")).get(1));
+        }
+    }
+
+    @Test
+    void decimalsMatchAcrossEnginesAndDecoders() throws Exception {
+        SpooledRowsToArrowConverter reference =
+                new SpooledRowsToArrowConverter(allocator, ConversionEngine.JACKSON, RowDecoderMode.INTERPRETED);
+        String expected = convert(reference, stream(DECIMAL_ROWS), DECIMAL_SCHEMA, 2);
+
+        assertTrue(expected.contains("12345678901234567890123456789012.123456"), expected);
+        assertTrue(expected.contains("-12345678901234567890123456789012345678901234567890"), expected);
+        assertTrue(expected.contains("15.50"), expected);
+        for (ConversionEngine engine : ConversionEngine.values()) {
+            for (RowDecoderMode mode : RowDecoderMode.values()) {
+                SpooledRowsToArrowConverter converter = new SpooledRowsToArrowConverter(allocator, engine, mode);
+                assertEquals(expected, convert(converter, stream(DECIMAL_ROWS), DECIMAL_SCHEMA, 2), engine + " " + mode);
+            }
+        }
+    }
+
+    @Test
+    void narrowNumericBinaryAndTimeTypesMatchAcrossEnginesAndDecoders() throws Exception {
+        SpooledRowsToArrowConverter reference =
+                new SpooledRowsToArrowConverter(allocator, ConversionEngine.JACKSON, RowDecoderMode.INTERPRETED);
+        String expected = convert(reference, stream(NARROW_ROWS), NARROW_SCHEMA, 3);
+
+        for (ConversionEngine engine : ConversionEngine.values()) {
+            for (RowDecoderMode mode : RowDecoderMode.values()) {
+                SpooledRowsToArrowConverter converter = new SpooledRowsToArrowConverter(allocator, engine, mode);
+                assertEquals(expected, convert(converter, stream(NARROW_ROWS), NARROW_SCHEMA, 3), engine + " " + mode);
+            }
+        }
+        List<ArrowRecordBatch> batches = reference.convert(stream(NARROW_ROWS), NARROW_SCHEMA, 8);
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(NARROW_SCHEMA, allocator);
+             ArrowRecordBatch batch = batches.get(0)) {
+            new VectorLoader(root).load(batch);
+            assertEquals(-128, ((TinyIntVector) root.getVector("ti")).get(0));
+            assertEquals(-32768, ((SmallIntVector) root.getVector("si")).get(1));
+            assertTrue(Float.isNaN(((Float4Vector) root.getVector("r")).get(1)));
+            assertArrayEquals(new byte[] {0, 1, 2, 3, 4}, ((VarBinaryVector) root.getVector("bin")).get(0));
+            assertArrayEquals(new byte[] {(byte) 0xff}, ((VarBinaryVector) root.getVector("bin")).get(2));
+            assertEquals(0x12, ((FixedSizeBinaryVector) root.getVector("id")).get(0)[0]);
+            assertEquals((byte) 0xc0, ((FixedSizeBinaryVector) root.getVector("ip")).get(0)[12]);
+            assertEquals(45_296_789, ((TimeMilliVector) root.getVector("t")).get(0));
+            assertEquals(86_399_999_999L, ((TimeMicroVector) root.getVector("t6")).get(1));
+        }
+    }
+
+    @Test
+    void nestedColumnsMatchAcrossEnginesAndDecoders() throws Exception {
+        SpooledRowsToArrowConverter reference =
+                new SpooledRowsToArrowConverter(allocator, ConversionEngine.JACKSON, RowDecoderMode.INTERPRETED);
+        String expected = convert(reference, stream(NESTED_ROWS), NESTED_SCHEMA, 3);
+
+        for (ConversionEngine engine : ConversionEngine.values()) {
+            for (RowDecoderMode mode : RowDecoderMode.values()) {
+                SpooledRowsToArrowConverter converter = new SpooledRowsToArrowConverter(allocator, engine, mode);
+                assertEquals(expected, convert(converter, stream(NESTED_ROWS), NESTED_SCHEMA, 3), engine + " " + mode);
+            }
+        }
+        List<ArrowRecordBatch> batches = reference.convert(stream(NESTED_ROWS), NESTED_SCHEMA, 8);
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(NESTED_SCHEMA, allocator);
+             ArrowRecordBatch batch = batches.get(0)) {
+            new VectorLoader(root).load(batch);
+            ListVector tags = (ListVector) root.getVector("tags");
+            assertEquals(2, tags.getElementEndIndex(0));
+            assertEquals("b", ((VarCharVector) tags.getDataVector()).getObject(1).toString());
+            assertEquals(tags.getElementStartIndex(1), tags.getElementEndIndex(1));
+            assertTrue(tags.isNull(2));
+            assertTrue(((VarCharVector) tags.getDataVector()).isNull(3));
+
+            MapVector m = (MapVector) root.getVector("m");
+            StructVector entries = (StructVector) m.getDataVector();
+            assertEquals("y", entries.getChild("key", VarCharVector.class).getObject(1).toString());
+            assertEquals(1L, entries.getChild("value", BigIntVector.class).get(0));
+            assertTrue(entries.getChild("value", BigIntVector.class).isNull(1));
+            assertFalse(m.isNull(1));
+            assertTrue(m.isNull(2));
+
+            StructVector r = (StructVector) root.getVector("r");
+            assertEquals(1L, r.getChild("id", BigIntVector.class).get(0));
+            assertEquals(1_704_164_645_123L, r.getChild("ts", TimeStampMilliVector.class).get(0));
+            assertTrue(r.isNull(1));
+            assertFalse(r.isNull(2));
+            assertTrue(r.getChild("id", BigIntVector.class).isNull(2));
+            ListVector items = r.getChild("items", ListVector.class);
+            StructVector item = (StructVector) items.getDataVector();
+            assertEquals(new BigDecimal("1.50"), item.getChild("d", DecimalVector.class).getObject(0));
+            assertTrue(item.isNull(1));
+            assertFalse(items.isNull(2));
+            assertEquals(items.getElementStartIndex(2), items.getElementEndIndex(2));
+
+            ListVector nn = (ListVector) root.getVector("nn");
+            ListVector inner = (ListVector) nn.getDataVector();
+            assertEquals(3, nn.getElementEndIndex(0));
+            assertTrue(inner.isNull(2));
+            assertEquals(3, ((IntVector) inner.getDataVector()).get(2));
+            assertTrue(nn.isNull(3));
+        }
+    }
+
+    @Test
+    void escapesAcrossBlockBoundariesMatchJackson() throws Exception {
+        StringBuilder rows = new StringBuilder("[");
+        for (int pad = 0; pad < 140; pad++) {
+            if (pad > 0) {
+                rows.append(',');
+            }
+            rows.append("[\"").append("x".repeat(pad))
+                    .append("\\\\\\\"],[\\\\\", 1, 2, 0.5, true, null],[\"")
+                    .append(",".repeat(pad % 7)).append("\", ").append(pad).append("]");
+        }
+        String payload = rows.append("]").toString();
+        String expected = convert(ConversionEngine.JACKSON, stream(payload), 64);
+
+        assertEquals(expected, convert(ConversionEngine.BYTES, stream(payload), 64));
+        assertEquals(expected, convert(ConversionEngine.SIMD, stream(payload), 64));
+    }
+
+    @Test
+    void bytesEngineHandlesValuesSplitAcrossReads() throws Exception {
+        String expected = convert(ConversionEngine.JACKSON, stream(ROWS), 1024);
+
+        assertEquals(expected, convert(ConversionEngine.BYTES, new OneByteAtATimeInputStream(stream(ROWS)), 1024));
+    }
+
+    @Test
+    void emptyPayloadsProduceNoBatches() throws Exception {
+        for (String payload : List.of("", "[]", "  [ ]  ")) {
+            for (ConversionEngine engine : ConversionEngine.values()) {
+                SpooledRowsToArrowConverter converter = new SpooledRowsToArrowConverter(allocator, engine, RowDecoderMode.GENERATED);
+                assertEquals(0, converter.convert(stream(payload), SCHEMA, 4).size(), engine + " " + payload);
+            }
+        }
+    }
+
+    @Test
+    void bytesEngineRejectsMalformedInput() {
+        for (ConversionEngine engine : List.of(ConversionEngine.BYTES, ConversionEngine.SIMD)) {
+            SpooledRowsToArrowConverter converter =
+                    new SpooledRowsToArrowConverter(allocator, engine, RowDecoderMode.GENERATED);
+            for (String payload : List.of("{}", "[[\"a\", 1", "[[\"a\", 1x]]", "[[\"a\", 1, 2, 3.0, true, null, 7]]",
+                    "[[\"a\", 99999999999999999999]]", "[[\"a\", 1, 2, 3.0, maybe]]", "[[\"unterminated]]")) {
+                assertThrows(IOException.class, () -> convert(converter, stream(payload), 4), engine + " " + payload);
+            }
+        }
+    }
+
+    private static String convert(ConversionEngine engine, InputStream in, int batchSize) throws Exception {
+        return convert(new SpooledRowsToArrowConverter(allocator, engine, RowDecoderMode.GENERATED), in, batchSize);
+    }
+
+    private static String convert(SpooledRowsToArrowConverter converter, InputStream in, int batchSize) throws Exception {
+        return convert(converter, in, SCHEMA, batchSize);
+    }
+
+    private static String convert(SpooledRowsToArrowConverter converter, InputStream in, Schema schema, int batchSize)
+            throws Exception {
+        List<ArrowRecordBatch> batches = converter.convert(in, schema, batchSize);
+        StringBuilder out = new StringBuilder();
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
+            VectorLoader loader = new VectorLoader(root);
+            for (ArrowRecordBatch batch : batches) {
+                try (batch) {
+                    loader.load(batch);
+                    out.append(contents(root)).append("--\n");
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Like {@link VectorSchemaRoot#contentToTSVString()}, but with binary values printed by content.
+     */
+    private static String contents(VectorSchemaRoot root) {
+        StringBuilder out = new StringBuilder();
+        for (int row = 0; row < root.getRowCount(); row++) {
+            for (int column = 0; column < root.getFieldVectors().size(); column++) {
+                Object value = root.getVector(column).getObject(row);
+                out.append(column == 0 ? "" : "\t").append(value instanceof byte[] bytes ? Arrays.toString(bytes) : value);
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    private static InputStream stream(String payload) {
+        return new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class OneByteAtATimeInputStream extends FilterInputStream {
+        OneByteAtATimeInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+}
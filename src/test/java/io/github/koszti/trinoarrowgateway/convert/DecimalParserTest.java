@@ -0,0 +1,101 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.Decimal256Vector;
+import org.apache.arrow.vector.DecimalVector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DecimalParserTest {
+
+    private BufferAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator();
+    }
+
+    @AfterEach
+    void tearDown() {
+        allocator.close();
+    }
+
+    @Test
+    void parsesDecimal128LikeBigDecimal() throws IOException {
+        DecimalParser parser = new DecimalParser();
+        String[] values = {"0", "0.00", "-0.01", "1", "-1", "12.5", "123456789012345678.9", "-99999999999999999999999999999999999.999",
+                "99999999999999999999999999999999999.999", "0000012.340", "18446744073709551616.000", "-9223372036854775808.000"};
+        try (DecimalVector vector = new DecimalVector("d", allocator, 38, 3)) {
+            for (int i = 0; i < values.length; i++) {
+                write(parser, values[i], vector, i);
+            }
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(new BigDecimal(values[i]).setScale(3), vector.getObject(i), values[i]);
+            }
+        }
+    }
+
+    @Test
+    void matchesBigDecimalForRandomValues() throws IOException {
+        DecimalParser parser = new DecimalParser();
+        Random random = new Random(7);
+        try (DecimalVector narrow = new DecimalVector("d", allocator, 38, 10);
+             Decimal256Vector wide = new Decimal256Vector("w", allocator, 76, 20)) {
+            for (int i = 0; i < 2_000; i++) {
+                BigDecimal expected = new BigDecimal(new BigInteger(1 + random.nextInt(126), random), 10);
+                if (random.nextBoolean()) {
+                    expected = expected.negate();
+                }
+                write(parser, expected.toPlainString(), narrow, i);
+                assertEquals(expected, narrow.getObject(i), expected.toPlainString());
+
+                BigDecimal expectedWide = new BigDecimal(new BigInteger(1 + random.nextInt(250), random), 20);
+                if (random.nextBoolean()) {
+                    expectedWide = expectedWide.negate();
+                }
+                write(parser, expectedWide.toPlainString(), wide, i);
+                assertEquals(expectedWide, wide.getObject(i), expectedWide.toPlainString());
+            }
+        }
+    }
+
+    @Test
+    void rejectsValuesOutsideTheColumnType() {
+        DecimalParser parser = new DecimalParser();
+        try (DecimalVector vector = new DecimalVector("d", allocator, 5, 2)) {
+            for (String value : new String[] {"1234.5", "1.234", "", "-", ".", "1.2.3", "12a", "1e2"}) {
+                assertThrows(IOException.class, () -> write(parser, value, vector, 0), value);
+            }
+        }
+    }
+
+    @Test
+    void acceptsTrailingZerosBeyondTheScale() throws IOException {
+        DecimalParser parser = new DecimalParser();
+        try (DecimalVector vector = new DecimalVector("d", allocator, 5, 2)) {
+            write(parser, "123.4500", vector, 0);
+            assertEquals(new BigDecimal("123.45"), vector.getObject(0));
+        }
+    }
+
+    private static void write(DecimalParser parser, String value, DecimalVector vector, int row) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        parser.write(bytes, 0, bytes.length, vector, row);
+    }
+
+    private static void write(DecimalParser parser, String value, Decimal256Vector vector, int row) throws IOException {
+        char[] chars = value.toCharArray();
+        parser.write(chars, 0, chars.length, vector, row);
+    }
+}
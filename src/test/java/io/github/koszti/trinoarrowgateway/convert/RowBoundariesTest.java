@@ -0,0 +1,53 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RowBoundariesTest {
+
+    @Test
+    void splitsAtTopLevelRowBoundaries() {
+        String payload = " [[\"a]\", 1],[\"b\\\"],[\", 2], [\"c\", 3]] ";
+        byte[] data = payload.getBytes(StandardCharsets.UTF_8);
+
+        int[] chunks = RowBoundaries.split(data, 1);
+
+        assertEquals(6, chunks.length);
+        assertEquals("[\"a]\", 1]", slice(data, chunks, 0));
+        assertEquals("[\"b\\\"],[\", 2]", slice(data, chunks, 1));
+        assertEquals("[\"c\", 3]", slice(data, chunks, 2));
+    }
+
+    @Test
+    void groupsRowsUntilChunkSizeIsReached() {
+        byte[] data = "[[1],[2],[3],[4],[5]]".getBytes(StandardCharsets.UTF_8);
+
+        int[] chunks = RowBoundaries.split(data, 6);
+
+        assertEquals(6, chunks.length);
+        assertEquals("[1],[2]", slice(data, chunks, 0));
+        assertEquals("[3],[4]", slice(data, chunks, 1));
+        assertEquals("[5]", slice(data, chunks, 2));
+    }
+
+    @Test
+    void emptyArrayHasNoChunks() {
+        assertArrayEquals(new int[0], RowBoundaries.split("[]".getBytes(StandardCharsets.UTF_8), 1));
+    }
+
+    @Test
+    void malformedPayloadIsNotSplit() {
+        assertNull(RowBoundaries.split("{}".getBytes(StandardCharsets.UTF_8), 1));
+        assertNull(RowBoundaries.split("[[1],[2]".getBytes(StandardCharsets.UTF_8), 1));
+        assertNull(RowBoundaries.split("[[\"unterminated]]".getBytes(StandardCharsets.UTF_8), 1));
+    }
+
+    private static String slice(byte[] data, int[] chunks, int i) {
+        return new String(data, chunks[2 * i], chunks[2 * i + 1] - chunks[2 * i], StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RowDecoderFactoryTest {
+
+    private static final Schema SCHEMA = new Schema(List.of(
+            new Field("s", FieldType.nullable(new ArrowType.Utf8()), null),
+            new Field("i", FieldType.nullable(new ArrowType.Int(32, true)), null),
+            new Field("l", FieldType.nullable(new ArrowType.Int(64, true)), null),
+            new Field("d", FieldType.nullable(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)), null),
+            new Field("b", FieldType.nullable(new ArrowType.Bool()), null),
+            new Field("dt", FieldType.nullable(new ArrowType.Date(DateUnit.DAY)), null)
+    ));
+
+    private static final String ROWS = """
+            [
+              ["a", 1, 10, 1.5, true, "2024-01-02"],
+              [null, null, null, null, null, null],
+              ["short", 3],
+              ["ünïcødé", -4, 9007199254740993, -0.25, false, "1970-01-01"]
+            ]
+            """;
+
+    private static BufferAllocator allocator;
+
+    @BeforeAll
+    static void setUpAllocator() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+    }
+
+    @AfterAll
+    static void tearDownAllocator() {
+        allocator.close();
+    }
+
+    @Test
+    void generatedDecoderIsHiddenClassCachedPerSchema() {
+        RowDecoderFactory factory = new RowDecoderFactory(RowDecoderMode.GENERATED);
+        try (VectorSchemaRoot first = VectorSchemaRoot.create(SCHEMA, allocator);
+                VectorSchemaRoot second = VectorSchemaRoot.create(SCHEMA, allocator)) {
+            RowDecoder a = factory.create(first);
+            RowDecoder b = factory.create(second);
+
+            assertTrue(a.getClass().isHidden());
+            assertSame(a.getClass(), b.getClass());
+        }
+    }
+
+    @Test
+    void schemasWithTheSameColumnKindsShareTheGeneratedClass() {
+        Schema renamed = new Schema(SCHEMA.getFields().stream()
+                .map(field -> new Field(field.getName() + "_renamed", field.getFieldType(), field.getChildren()))
+                .toList());
+        RowDecoderFactory factory = new RowDecoderFactory(RowDecoderMode.GENERATED);
+        try (VectorSchemaRoot first = VectorSchemaRoot.create(SCHEMA, allocator);
+                VectorSchemaRoot second = VectorSchemaRoot.create(renamed, allocator)) {
+            assertSame(factory.create(first).getClass(), factory.create(second).getClass());
+        }
+    }
+
+    @Test
+    void unsupportedTypeFallsBackToInterpretedDecoder() {
+        Schema schema = new Schema(List.of(
+                new Field("t", FieldType.nullable(new ArrowType.Time(org.apache.arrow.vector.types.TimeUnit.MILLISECOND, 32)), null)));
+        RowDecoderFactory factory = new RowDecoderFactory(RowDecoderMode.GENERATED);
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
+            RowDecoder decoder = factory.create(root);
+
+            assertFalse(decoder.getClass().isHidden());
+            assertSame(InterpretedRowDecoder.class, decoder.getClass());
+        }
+    }
+
+    @Test
+    void generatedAndInterpretedDecodersProduceSameBatches() throws Exception {
+        assertEquals(convert(RowDecoderMode.INTERPRETED), convert(RowDecoderMode.GENERATED));
+    }
+
+    private static String convert(RowDecoderMode mode) throws Exception {
+        SpooledRowsToArrowConverter converter = new SpooledRowsToArrowConverter(allocator, ConversionEngine.JACKSON, mode);
+        List<ArrowRecordBatch> batches = converter.convert(
+                new ByteArrayInputStream(ROWS.getBytes(StandardCharsets.UTF_8)), SCHEMA, 3);
+        assertEquals(2, batches.size());
+
+        StringBuilder out = new StringBuilder();
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(SCHEMA, allocator)) {
+            VectorLoader loader = new VectorLoader(root);
+            for (ArrowRecordBatch batch : batches) {
+                try (batch) {
+                    loader.load(batch);
+                    out.append(root.contentToTSVString());
+                }
+            }
+        }
+        return out.toString();
+    }
+}
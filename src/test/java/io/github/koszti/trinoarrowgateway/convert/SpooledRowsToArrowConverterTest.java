@@ -21,8 +21,11 @@ import org.junit.jupiter.api.Test;
 import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SpooledRowsToArrowConverterTest {
@@ -94,5 +97,118 @@ class SpooledRowsToArrowConverterTest {
             assertEquals(3, total);
         }
     }
-}
 
+    @Test
+    void splitSegmentsProduceSameRowsInOrder() throws Exception {
+        Schema schema = new Schema(List.of(
+                new Field("id", FieldType.nullable(new ArrowType.Int(64, true)), null),
+                new Field("name", FieldType.nullable(new ArrowType.Utf8()), null)
+        ));
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            json.append(i == 0 ? "" : ",").append("[").append(i).append(", \"n[").append(i).append("],\"]");
+        }
+        byte[] payload = json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            SpooledRowsToArrowConverter converter = new SpooledRowsToArrowConverter(allocator,
+                    ConversionEngine.JACKSON,
+                    RowDecoderMode.GENERATED,
+                    new SegmentSplitting(executor, 512, 3));
+            List<ArrowRecordBatch> batches = converter.convert(new ByteArrayInputStream(payload), schema, 100);
+
+            assertTrue(batches.size() > 10, "expected the segment to be split into several chunks");
+            try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
+                VectorLoader loader = new VectorLoader(root);
+                long expected = 0;
+                for (ArrowRecordBatch batch : batches) {
+                    try (batch) {
+                        loader.load(batch);
+                        BigIntVector id = (BigIntVector) root.getVector("id");
+                        VarCharVector name = (VarCharVector) root.getVector("name");
+                        for (int row = 0; row < root.getRowCount(); row++, expected++) {
+                            assertEquals(expected, id.get(row));
+                            assertEquals("n[" + expected + "],", name.getObject(row).toString());
+                        }
+                    }
+                }
+                assertEquals(1000, expected);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedSplitSegmentReleasesTheBatchesOfAllChunks() throws Exception {
+        Schema schema = new Schema(List.of(
+                new Field("id", FieldType.nullable(new ArrowType.Int(64, true)), null),
+                new Field("name", FieldType.nullable(new ArrowType.Utf8()), null)
+        ));
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) {
+            json.append(i == 0 ? "" : ",").append("[").append(i).append(", \"name ").append(i).append("\"]");
+        }
+        byte[] payload = json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (BufferAllocator child = allocator.newChildAllocator("split-failure", 0, Long.MAX_VALUE)) {
+            SpooledRowsToArrowConverter converter = new SpooledRowsToArrowConverter(child,
+                    ConversionEngine.JACKSON,
+                    RowDecoderMode.GENERATED,
+                    new SegmentSplitting(executor, 512, 8));
+            assertThrows(IllegalStateException.class, () -> converter.convertStreaming(new ByteArrayInputStream(payload),
+                    schema, 10, batch -> {
+                        batch.close();
+                        throw new IllegalStateException("consumer failed");
+                    }));
+            // Chunks that were converting when the consumer failed have released their batches.
+            assertEquals(0, child.getAllocatedMemory());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * VARCHAR cells are encoded straight from the parser's text buffer; escapes, multi-byte characters and
+     * surrogate pairs must come out as the same UTF-8 a String would produce.
+     */
+    @Test
+    void varcharCellsKeepTheirUtf8Bytes() throws Exception {
+        Schema schema = new Schema(List.of(
+                new Field("id", FieldType.nullable(new ArrowType.Int(64, true)), null),
+                new Field("comment", FieldType.nullable(new ArrowType.Utf8()), null)
+        ));
+        List<String> expected = List.of("", "plain", "say \"hi\"\\", "ünïcødé — ok", "emoji \uD83D\uDE00 end", "é");
+        String json = """
+                [
+                  [0, ""],
+                  [1, "plain"],
+                  [2, "say \\"hi\\"\\\\"],
+                  [3, "ünïcødé — ok"],
+                  [4, "emoji \\uD83D\\uDE00 end"],
+                  [5, "\\u00e9"]
+                ]
+                """;
+
+        SpooledRowsToArrowConverter converter = new SpooledRowsToArrowConverter(allocator);
+        List<ArrowRecordBatch> batches = converter.convert(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), schema, 4);
+
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
+            VectorLoader loader = new VectorLoader(root);
+            int row = 0;
+            for (ArrowRecordBatch batch : batches) {
+                try (batch) {
+                    loader.load(batch);
+                    VarCharVector comment = (VarCharVector) root.getVector("comment");
+                    for (int i = 0; i < root.getRowCount(); i++, row++) {
+                        assertEquals(expected.get(row), new String(comment.get(i), StandardCharsets.UTF_8));
+                    }
+                }
+            }
+            assertEquals(expected.size(), row);
+        }
+    }
+}
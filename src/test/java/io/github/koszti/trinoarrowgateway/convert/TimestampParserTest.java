@@ -0,0 +1,119 @@
+package io.github.koszti.trinoarrowgateway.convert;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TimestampParserTest {
+
+    private static final int MILLIS = 1_000;
+    private static final int MICROS = 1_000_000;
+    private static final int NANOS = 1_000_000_000;
+
+    @Test
+    void parsesTimestampsWithoutZoneAsUtc() throws IOException {
+        TimestampParser parser = new TimestampParser();
+
+        assertEquals(0L, parse(parser, "1970-01-01 00:00:00.000", MILLIS));
+        assertEquals(1_704_164_645_123L, parse(parser, "2024-01-02 03:04:05.123", MILLIS));
+        assertEquals(1_704_164_645_000L, parse(parser, "2024-01-02 03:04:05", MILLIS));
+        assertEquals(1_704_164_645_123_456L, parse(parser, "2024-01-02 03:04:05.123456", MICROS));
+        assertEquals(1_704_164_645_123_456_789L, parse(parser, "2024-01-02 03:04:05.123456789", NANOS));
+        // Picosecond precision is truncated to nanoseconds.
+        assertEquals(1_704_164_645_123_456_789L, parse(parser, "2024-01-02 03:04:05.123456789999", NANOS));
+        assertEquals(-1L, parse(parser, "1969-12-31 23:59:59.999", MILLIS));
+    }
+
+    @Test
+    void appliesZonesAroundDaylightSavingTransitions() throws IOException {
+        TimestampParser parser = new TimestampParser();
+        ZoneId zone = ZoneId.of("America/New_York");
+
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+        // Hourly values over the November 2023 overlap and the March 2024 gap.
+        LocalDateTime start = LocalDateTime.of(2023, 10, 29, 0, 30, 0, 250_000_000);
+        for (int hours = 0; hours < 24 * 180; hours++) {
+            LocalDateTime local = start.plusHours(hours);
+            String text = local.format(format) + " America/New_York";
+            long expected = ZonedDateTime.of(local, zone).toInstant().toEpochMilli();
+            assertEquals(expected, parse(parser, text, MILLIS), text);
+        }
+    }
+
+    @Test
+    void parsesOffsetAndUtcZones() throws IOException {
+        TimestampParser parser = new TimestampParser();
+
+        assertEquals(1_704_164_645_000L, parse(parser, "2024-01-02 03:04:05.000 UTC", MILLIS));
+        assertEquals(1_704_164_645_000L - 19_800_000L, parse(parser, "2024-01-02 03:04:05.000 +05:30", MILLIS));
+        assertEquals(1_704_164_645_000L + 3_600_000L, parse(parser, "2024-01-02 03:04:05.000 -01:00", MILLIS));
+    }
+
+    @Test
+    void keepsResolvingZonesAfterTheCacheIsFull() throws IOException {
+        TimestampParser parser = new TimestampParser();
+
+        for (int round = 0; round < 2; round++) {
+            for (int hours = -12; hours <= 14; hours++) {
+                String offset = String.format("%+03d:00", hours);
+                assertEquals(-hours * 3_600_000L, parse(parser, "1970-01-01 00:00:00.000 " + offset, MILLIS), offset);
+            }
+        }
+    }
+
+    @Test
+    void rejectsMalformedTimestamps() {
+        TimestampParser parser = new TimestampParser();
+
+        for (String text : new String[] {"2024-01-02", "2024-01-02 3:04:05", "2024-01-02 24:00:00", "2024-02-30 00:00:00",
+                "2024-01-02 03:04:05.", "2024-01-02 03:04:05.000 Mars/Olympus_Mons", "2024-01-02 03:04:05.000x"}) {
+            assertThrows(IOException.class, () -> parse(parser, text, MILLIS), text);
+        }
+        assertThrows(IOException.class, () -> parse(parser, "2300-01-01 00:00:00", NANOS));
+    }
+
+    @Test
+    void parsesTimesOfDay() throws IOException {
+        TimestampParser parser = new TimestampParser();
+
+        assertEquals(0L, parseTime(parser, "00:00:00", MILLIS));
+        assertEquals(45_296_789L, parseTime(parser, "12:34:56.789", MILLIS));
+        assertEquals(45_296_789_012L, parseTime(parser, "12:34:56.789012", MICROS));
+        assertEquals(86_399_999_999_999L, parseTime(parser, "23:59:59.999999999", NANOS));
+        for (String text : new String[] {"24:00:00", "12:34", "12:34:56.", "12:34:56 UTC", "12:60:00"}) {
+            assertThrows(IOException.class, () -> parseTime(parser, text, MILLIS), text);
+        }
+    }
+
+    @Test
+    void parsesDatesLikeLocalDate() throws IOException {
+        for (LocalDate date = LocalDate.of(1599, 12, 1); date.isBefore(LocalDate.of(2401, 3, 1)); date = date.plus(3, ChronoUnit.DAYS)) {
+            byte[] text = date.toString().getBytes(StandardCharsets.US_ASCII);
+            assertEquals(date.toEpochDay(), Utf8Values.parseDate(text, 0, text.length), date.toString());
+        }
+        byte[] leapDay = "2000-02-29".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(LocalDate.of(2000, 2, 29).toEpochDay(), Utf8Values.parseDate(leapDay, 0, leapDay.length));
+        byte[] invalid = "1900-02-29".getBytes(StandardCharsets.US_ASCII);
+        assertThrows(IOException.class, () -> Utf8Values.parseDate(invalid, 0, invalid.length));
+    }
+
+    private static long parseTime(TimestampParser parser, String text, int unitsPerSecond) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return parser.parseTime(bytes, 0, bytes.length, unitsPerSecond);
+    }
+
+    private static long parse(TimestampParser parser, String text, int unitsPerSecond) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return parser.parse(bytes, 0, bytes.length, unitsPerSecond);
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.koszti.trinoarrowgateway.flight;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchCoalescerTest {
+
+    private static final Schema SCHEMA = new Schema(List.of(
+            new Field("id", FieldType.nullable(new ArrowType.Int(64, true)), null),
+            new Field("s", FieldType.nullable(new ArrowType.Utf8()), null)
+    ));
+
+    private BufferAllocator allocator;
+    private VectorSchemaRoot received;
+    private final List<Integer> sizes = new ArrayList<>();
+    private final List<String> rows = new ArrayList<>();
+    private int nextId;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator();
+        received = VectorSchemaRoot.create(SCHEMA, allocator);
+    }
+
+    @AfterEach
+    void tearDown() {
+        received.close();
+        allocator.close();
+    }
+
+    @Test
+    void mergesSmallBatchesAndKeepsRowOrder() {
+        try (BatchCoalescer coalescer = new BatchCoalescer(SCHEMA, allocator, 100, 0)) {
+            for (int rows : new int[] {10, 10, 30, 60, 40, 40, 40, 5}) {
+                add(coalescer, rows);
+            }
+            coalescer.flush(this::receive);
+        }
+
+        // 10+10+30 go out before the full-size 60; 40+40+40 reach the target; 5 is flushed at the end.
+        assertEquals(List.of(50, 60, 120, 5), sizes);
+        assertEquals(nextId, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(i + "\tv" + i, rows.get(i));
+        }
+    }
+
+    @Test
+    void coalescesByBodyBytesWithAByteTarget() {
+        try (BatchCoalescer coalescer = new BatchCoalescer(SCHEMA, allocator, 1, 64 * 1024)) {
+            for (int i = 0; i < 20; i++) {
+                add(coalescer, 100);
+            }
+            coalescer.flush(this::receive);
+        }
+
+        assertTrue(sizes.size() < 20, "batches sent: " + sizes);
+        assertEquals(2_000, sizes.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    void rejectsSchemasWithViewColumns() {
+        assertTrue(BatchCoalescer.supports(SCHEMA));
+        assertFalse(BatchCoalescer.supports(new Schema(List.of(
+                new Field("s", FieldType.nullable(new ArrowType.Utf8View()), null)))));
+    }
+
+    private void add(BatchCoalescer coalescer, int rowCount) {
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(SCHEMA, allocator)) {
+            root.allocateNew();
+            BigIntVector ids = (BigIntVector) root.getVector("id");
+            VarCharVector strings = (VarCharVector) root.getVector("s");
+            for (int i = 0; i < rowCount; i++) {
+                int id = nextId++;
+                ids.setSafe(i, id);
+                strings.setSafe(i, ("v" + id).getBytes(StandardCharsets.UTF_8));
+            }
+            root.setRowCount(rowCount);
+            try (ArrowRecordBatch batch = new VectorUnloader(root).getRecordBatch()) {
+                coalescer.add(batch, this::receive);
+            }
+        }
+    }
+
+    private void receive(ArrowRecordBatch batch) {
+        received.clear();
+        new VectorLoader(received).load(batch);
+        sizes.add(received.getRowCount());
+        BigIntVector ids = (BigIntVector) received.getVector("id");
+        VarCharVector strings = (VarCharVector) received.getVector("s");
+        for (int i = 0; i < received.getRowCount(); i++) {
+            rows.add(ids.get(i) + "\t" + strings.getObject(i));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.koszti.trinoarrowgateway.flight;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.IntVector;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BufferPoolTest {
+
+    @Test
+    void releasedMemoryIsReusedForTheSameSize() {
+        try (BufferPool pool = new BufferPool(1 << 20)) {
+            try (BufferAllocator allocator = allocator(pool)) {
+                long address;
+                try (ArrowBuf first = allocator.buffer(4096)) {
+                    address = first.memoryAddress();
+                }
+                assertEquals(4096, pool.pooledBytes());
+                assertEquals(1, pool.pooledBuffers());
+
+                try (ArrowBuf second = allocator.buffer(4096); ArrowBuf other = allocator.buffer(8192)) {
+                    assertEquals(address, second.memoryAddress());
+                    assertEquals(0, pool.pooledBytes());
+                }
+                assertEquals(1, pool.hits());
+                assertEquals(2, pool.misses());
+                assertEquals(4096 + 8192, pool.pooledBytes());
+            }
+        }
+    }
+
+    @Test
+    void keepsAtMostTheConfiguredBytes() {
+        try (BufferPool pool = new BufferPool(6000)) {
+            try (BufferAllocator allocator = allocator(pool)) {
+                ArrowBuf a = allocator.buffer(4096);
+                ArrowBuf b = allocator.buffer(4096);
+                a.close();
+                b.close();
+                assertEquals(4096, pool.pooledBytes());
+                assertEquals(1, pool.pooledBuffers());
+            }
+        }
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedSizeWhenFull() {
+        try (BufferPool pool = new BufferPool(12288)) {
+            try (BufferAllocator allocator = allocator(pool)) {
+                allocator.buffer(4096).close();
+                allocator.buffer(8192).close();
+                assertEquals(12288, pool.pooledBytes());
+
+                // 8192 bytes were used more recently than 4096, so the 4096-byte buffer makes room.
+                allocator.buffer(2048).close();
+                assertEquals(1, pool.evictions());
+                assertEquals(8192 + 2048, pool.pooledBytes());
+                assertEquals(2, pool.pooledBuffers());
+
+                allocator.buffer(8192).close();
+                allocator.buffer(4096).close();
+                assertEquals(2, pool.evictions());
+                assertEquals(8192 + 4096, pool.pooledBytes());
+                assertEquals(1, pool.hits());
+            }
+        }
+    }
+
+    @Test
+    void closeFreesIdleMemory() {
+        BufferPool pool = new BufferPool(64 << 20);
+        try (BufferAllocator allocator = allocator(pool)) {
+            allocator.buffer(4096).close();
+            allocator.buffer(20 << 20).close();
+            assertEquals(2, pool.pooledBuffers());
+        }
+        pool.close();
+        assertEquals(0, pool.pooledBytes());
+        assertEquals(0, pool.pooledBuffers());
+    }
+
+    @Test
+    void recycledVectorsStartEmpty() {
+        try (BufferPool pool = new BufferPool(1 << 20)) {
+            try (BufferAllocator allocator = allocator(pool)) {
+                try (IntVector vector = new IntVector("i", allocator)) {
+                    vector.allocateNew(1024);
+                    for (int i = 0; i < 1024; i++) {
+                        vector.set(i, i);
+                    }
+                }
+                try (IntVector vector = new IntVector("i", allocator)) {
+                    vector.allocateNew(1024);
+                    assertTrue(pool.hits() > 0);
+                    for (int i = 0; i < 1024; i++) {
+                        assertTrue(vector.isNull(i));
+                    }
+                }
+            }
+        }
+    }
+
+    private static BufferAllocator allocator(BufferPool pool) {
+        return new RootAllocator(RootAllocator.configBuilder()
+                .allocationManagerFactory(pool)
+                .maxAllocation(Long.MAX_VALUE)
+                .build());
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.koszti.trinoarrowgateway.flight;
+
+import org.apache.arrow.flight.Ticket;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryTicketTest {
+
+    @Test
+    void plainQueryIdTicketCoversAllSegments() {
+        QueryTicket ticket = QueryTicket.parse(new Ticket("20251212_223954_00001_abcde".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("20251212_223954_00001_abcde", ticket.queryId());
+        assertTrue(ticket.isWholeQuery());
+        assertTrue(ticket.contains(0));
+        assertTrue(ticket.contains(10_000));
+    }
+
+    @Test
+    void segmentRangeRoundTrips() {
+        QueryTicket ticket = QueryTicket.forSegments("q1", 2, 5);
+        QueryTicket parsed = QueryTicket.parse(ticket.toTicket());
+
+        assertEquals(ticket, parsed);
+        assertFalse(parsed.contains(1));
+        assertTrue(parsed.contains(2));
+        assertTrue(parsed.contains(4));
+        assertFalse(parsed.contains(5));
+    }
+
+    @Test
+    void rejectsMalformedTickets() {
+        assertThrows(IllegalArgumentException.class,
+                () -> QueryTicket.parse(new Ticket("q1:x:3".getBytes(StandardCharsets.UTF_8))));
+        assertThrows(IllegalArgumentException.class,
+                () -> QueryTicket.parse(new Ticket("q1:3:3".getBytes(StandardCharsets.UTF_8))));
+        assertThrows(IllegalArgumentException.class,
+                () -> QueryTicket.parse(new Ticket("q1:1".getBytes(StandardCharsets.UTF_8))));
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.koszti.trinoarrowgateway.flight;
+
+import io.github.koszti.trinoarrowgateway.trino.TrinoQueryHandle;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SegmentPartitionerTest {
+
+    @Test
+    void singlePartitionUsesWholeQueryTicket() {
+        List<QueryTicket> tickets = SegmentPartitioner.partition("q1", segments(10, 10, 10), 1);
+
+        assertEquals(List.of(QueryTicket.forQuery("q1")), tickets);
+    }
+
+    @Test
+    void neverCreatesMorePartitionsThanSegments() {
+        List<QueryTicket> tickets = SegmentPartitioner.partition("q1", segments(10, 10), 8);
+
+        assertEquals(List.of(
+                QueryTicket.forSegments("q1", 0, 1),
+                QueryTicket.forSegments("q1", 1, 2)
+        ), tickets);
+    }
+
+    @Test
+    void balancesContiguousRangesBySegmentSize() {
+        // One large segment followed by small ones: the large one gets its own endpoint.
+        List<QueryTicket> tickets = SegmentPartitioner.partition("q1", segments(100, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10), 2);
+
+        assertEquals(List.of(
+                QueryTicket.forSegments("q1", 0, 1),
+                QueryTicket.forSegments("q1", 1, 11)
+        ), tickets);
+    }
+
+    @Test
+    void fallsBackToSegmentCountWhenSizesAreUnknown() {
+        List<TrinoQueryHandle.TrinoSpoolSegment> segments = LongStream.range(0, 6)
+                .mapToObj(i -> segment(i, null))
+                .toList();
+
+        List<QueryTicket> tickets = SegmentPartitioner.partition("q1", segments, 3);
+
+        assertEquals(List.of(
+                QueryTicket.forSegments("q1", 0, 2),
+                QueryTicket.forSegments("q1", 2, 4),
+                QueryTicket.forSegments("q1", 4, 6)
+        ), tickets);
+    }
+
+    private static List<TrinoQueryHandle.TrinoSpoolSegment> segments(long... sizes) {
+        return LongStream.range(0, sizes.length)
+                .mapToObj(i -> segment(i, sizes[(int) i]))
+                .toList();
+    }
+
+    private static TrinoQueryHandle.TrinoSpoolSegment segment(long index, Long size) {
+        return new TrinoQueryHandle.TrinoSpoolSegment(
+                URI.create("http://localhost/download/" + index),
+                URI.create("http://localhost/ack/" + index),
+                index,
+                1L,
+                size,
+                null,
+                null,
+                "spooled",
+                Map.of(),
+                null
+        );
+    }
+}
@@ -6,9 +6,12 @@ import io.github.koszti.trinoarrowgateway.config.GatewayTrinoProperties;
 import io.github.koszti.trinoarrowgateway.convert.SpooledRowsToArrowConverter;
 import io.github.koszti.trinoarrowgateway.spool.HttpSpooledSegmentClient;
 import io.github.koszti.trinoarrowgateway.trino.InMemoryQueryRegistry;
+import io.github.koszti.trinoarrowgateway.trino.SpoolSegmentSource;
 import io.github.koszti.trinoarrowgateway.trino.TrinoClient;
 import io.github.koszti.trinoarrowgateway.trino.TrinoQueryHandle;
+import org.apache.arrow.flight.FlightCallHeaders;
 import org.apache.arrow.flight.FlightProducer;
+import org.apache.arrow.flight.FlightServerMiddleware;
 import org.apache.arrow.flight.Ticket;
 import org.apache.arrow.memory.ArrowBuf;
 import org.apache.arrow.memory.RootAllocator;
@@ -22,14 +25,21 @@ import org.apache.arrow.vector.types.pojo.FieldType;
 import org.apache.arrow.vector.types.pojo.Schema;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -101,10 +111,20 @@ class TrinoFlightProducerInlineSegmentTest {
             throw new AssertionError("fetch should not be called for inline segments");
         }
 
+        @Override
+        public CompletableFuture<FetchedSegment> fetchAsync(URI uri, URI ackUri, Map<String, String> headers) {
+            throw new AssertionError("fetchAsync should not be called for inline segments");
+        }
+
         @Override
         public void ack(URI ackUri, Map<String, String> headers) {
             throw new AssertionError("ack should not be called for inline segments");
         }
+
+        @Override
+        public CompletableFuture<Void> ackAsync(URI ackUri, Map<String, String> headers) {
+            throw new AssertionError("ackAsync should not be called for inline segments");
+        }
     }
 
     @Test
@@ -121,6 +141,7 @@ class TrinoFlightProducerInlineSegmentTest {
                 3L,
                 (long) inlineJson.length,
                 null,
+                null,
                 "inline",
                 Map.of(),
                 inlineJson
@@ -171,4 +192,271 @@ class TrinoFlightProducerInlineSegmentTest {
             }
         }
     }
+
+    @Test
+    void getStream_streamsSegmentsPublishedWhileQueryIsRunning() throws Exception {
+        Schema schema = new Schema(List.of(
+                new Field("id", FieldType.nullable(new ArrowType.Int(64, true)), null)
+        ));
+
+        SpoolSegmentSource source = new SpoolSegmentSource();
+        source.setEncoding("json");
+        source.add(inlineSegment("q2", 0L, "[[1],[2]]"));
+
+        TrinoQueryHandle handle = new TrinoQueryHandle(
+                "q2",
+                List.of(new TrinoQueryHandle.TrinoColumn("id", "bigint")),
+                schema,
+                source
+        );
+
+        InMemoryQueryRegistry registry = new InMemoryQueryRegistry();
+        registry.register(handle);
+
+        TrinoClient unusedClient = sql -> {
+            throw new UnsupportedOperationException();
+        };
+
+        try (RootAllocator allocator = new RootAllocator()) {
+            var executor = Executors.newFixedThreadPool(2);
+            try {
+                TrinoFlightProducer producer = new TrinoFlightProducer(
+                        allocator,
+                        unusedClient,
+                        registry,
+                        new GatewayTrinoProperties(),
+                        new GatewayFlightProperties(),
+                        new FailingHttpSpooledSegmentClient(),
+                        new SpooledRowsToArrowConverter(allocator),
+                        executor,
+                        new GatewayConversionProperties()
+                );
+
+                CapturingServerStreamListener listener = new CapturingServerStreamListener();
+                Thread streamer = new Thread(() ->
+                        producer.getStream(null, new Ticket("q2".getBytes(StandardCharsets.UTF_8)), listener));
+                streamer.start();
+
+                source.add(inlineSegment("q2", 2L, "[[3]]"));
+                source.complete();
+
+                streamer.join(10_000);
+                assertFalse(streamer.isAlive());
+                assertNull(listener.error);
+                assertTrue(listener.completed);
+                assertEquals(List.of(
+                        List.of(1L),
+                        List.of(2L),
+                        List.of(3L)
+                ), listener.rows);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    void getStream_unorderedHeaderStreamsAllSegments() {
+        Schema schema = new Schema(List.of(
+                new Field("id", FieldType.nullable(new ArrowType.Int(64, true)), null)
+        ));
+
+        TrinoQueryHandle handle = new TrinoQueryHandle(
+                "q3",
+                List.of(new TrinoQueryHandle.TrinoColumn("id", "bigint")),
+                schema,
+                "json",
+                List.of(
+                        inlineSegment("q3", 0L, "[[1],[2]]"),
+                        inlineSegment("q3", 2L, "[[3]]"),
+                        inlineSegment("q3", 3L, "[[4],[5]]"))
+        );
+
+        InMemoryQueryRegistry registry = new InMemoryQueryRegistry();
+        registry.register(handle);
+
+        TrinoClient unusedClient = sql -> {
+            throw new UnsupportedOperationException();
+        };
+
+        FlightCallHeaders headers = new FlightCallHeaders();
+        headers.insert(TrinoFlightProducer.RESULT_ORDER_HEADER, "unordered");
+        RequestHeadersMiddleware middleware = new RequestHeadersMiddleware.Factory().onCallStarted(null, headers, null);
+
+        try (RootAllocator allocator = new RootAllocator()) {
+            var executor = Executors.newFixedThreadPool(3);
+            try {
+                TrinoFlightProducer producer = new TrinoFlightProducer(
+                        allocator,
+                        unusedClient,
+                        registry,
+                        new GatewayTrinoProperties(),
+                        new GatewayFlightProperties(),
+                        new FailingHttpSpooledSegmentClient(),
+                        new SpooledRowsToArrowConverter(allocator),
+                        executor,
+                        new GatewayConversionProperties()
+                );
+
+                CapturingServerStreamListener listener = new CapturingServerStreamListener();
+                producer.getStream(new HeadersCallContext(middleware),
+                        new Ticket("q3".getBytes(StandardCharsets.UTF_8)), listener);
+
+                assertNull(listener.error);
+                assertTrue(listener.completed);
+                assertEquals(Set.of(
+                        List.of(1L),
+                        List.of(2L),
+                        List.of(3L),
+                        List.of(4L),
+                        List.of(5L)
+                ), new HashSet<>(listener.rows));
+                assertEquals(5, listener.rows.size());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    void getStream_orderedStreamCompletesWhenLaterSegmentsDownloadFirst() throws Exception {
+        Schema schema = new Schema(List.of(
+                new Field("id", FieldType.nullable(new ArrowType.Int(64, true)), null)
+        ));
+
+        TrinoQueryHandle handle = new TrinoQueryHandle(
+                "q4",
+                List.of(new TrinoQueryHandle.TrinoColumn("id", "bigint")),
+                schema,
+                "json",
+                List.of(
+                        downloadedSegment("q4", 0L),
+                        downloadedSegment("q4", 1L))
+        );
+
+        InMemoryQueryRegistry registry = new InMemoryQueryRegistry();
+        registry.register(handle);
+
+        TrinoClient unusedClient = sql -> {
+            throw new UnsupportedOperationException();
+        };
+
+        // The second segment is downloaded first; the first one completes once the second is waiting to be converted.
+        CompletableFuture<HttpSpooledSegmentClient.FetchedSegment> first = new CompletableFuture<>();
+        HttpSpooledSegmentClient client = new HttpSpooledSegmentClient() {
+            @Override
+            public CompletableFuture<FetchedSegment> fetchAsync(URI uri, URI ackUri, Map<String, String> headers,
+                    Long size, HedgeBudget hedgeBudget, Instant expiresAt) {
+                if (uri.getPath().endsWith("/0")) {
+                    return first;
+                }
+                CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS).execute(() ->
+                        first.complete(fetched(uri, "[[1],[2],[3]]")));
+                return CompletableFuture.completedFuture(fetched(uri, "[[4],[5],[6]]"));
+            }
+        };
+
+        GatewayConversionProperties conversionProps = new GatewayConversionProperties();
+        conversionProps.setBatchSize(1);
+        conversionProps.setCoalesceBatches(false);
+        conversionProps.setMaxInFlightSegments(2);
+        conversionProps.setMaxBufferedBatchesPerSegment(1);
+
+        try (RootAllocator allocator = new RootAllocator()) {
+            // One thread: if the second segment's conversion took it first, it would block on its full queue forever.
+            var executor = Executors.newSingleThreadExecutor();
+            try {
+                TrinoFlightProducer producer = new TrinoFlightProducer(
+                        allocator,
+                        unusedClient,
+                        registry,
+                        new GatewayTrinoProperties(),
+                        new GatewayFlightProperties(),
+                        client,
+                        new SpooledRowsToArrowConverter(allocator),
+                        executor,
+                        conversionProps
+                );
+
+                CapturingServerStreamListener listener = new CapturingServerStreamListener();
+                Thread streamer = new Thread(() ->
+                        producer.getStream(null, new Ticket("q4".getBytes(StandardCharsets.UTF_8)), listener));
+                streamer.start();
+
+                streamer.join(10_000);
+                assertFalse(streamer.isAlive());
+                assertNull(listener.error);
+                assertTrue(listener.completed);
+                assertEquals(List.of(
+                        List.of(1L),
+                        List.of(2L),
+                        List.of(3L),
+                        List.of(4L),
+                        List.of(5L),
+                        List.of(6L)
+                ), listener.rows);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private record HeadersCallContext(RequestHeadersMiddleware middleware) implements FlightProducer.CallContext {
+        @Override
+        public String peerIdentity() {
+            return "";
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends FlightServerMiddleware> T getMiddleware(FlightServerMiddleware.Key<T> key) {
+            return RequestHeadersMiddleware.KEY.equals(key) ? (T) middleware : null;
+        }
+
+        @Override
+        public Map<FlightServerMiddleware.Key<?>, FlightServerMiddleware> getMiddleware() {
+            return Map.of(RequestHeadersMiddleware.KEY, middleware);
+        }
+    }
+
+    private static TrinoQueryHandle.TrinoSpoolSegment downloadedSegment(String queryId, long index) {
+        return new TrinoQueryHandle.TrinoSpoolSegment(
+                URI.create("http://storage/" + queryId + "/" + index),
+                null,
+                index * 3,
+                3L,
+                13L,
+                null,
+                null,
+                "spooled",
+                Map.of(),
+                null
+        );
+    }
+
+    private static HttpSpooledSegmentClient.FetchedSegment fetched(URI uri, String json) {
+        return new HttpSpooledSegmentClient.FetchedSegment(uri, null,
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static TrinoQueryHandle.TrinoSpoolSegment inlineSegment(String queryId, long rowOffset, String json) {
+        byte[] data = json.getBytes(StandardCharsets.UTF_8);
+        return new TrinoQueryHandle.TrinoSpoolSegment(
+                URI.create("inline://trino/" + queryId + "/" + rowOffset),
+                null,
+                rowOffset,
+                null,
+                (long) data.length,
+                null,
+                null,
+                "inline",
+                Map.of(),
+                data
+        );
+    }
 }
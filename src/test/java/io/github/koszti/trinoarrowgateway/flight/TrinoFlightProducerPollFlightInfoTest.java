@@ -0,0 +1,107 @@
+package io.github.koszti.trinoarrowgateway.flight;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.koszti.trinoarrowgateway.config.GatewayConversionProperties;
+import io.github.koszti.trinoarrowgateway.config.GatewayFlightProperties;
+import io.github.koszti.trinoarrowgateway.config.GatewayTrinoProperties;
+import io.github.koszti.trinoarrowgateway.convert.SpooledRowsToArrowConverter;
+import io.github.koszti.trinoarrowgateway.spool.HttpSpooledSegmentClient;
+import io.github.koszti.trinoarrowgateway.trino.InMemoryQueryRegistry;
+import io.github.koszti.trinoarrowgateway.trino.SpoolSegmentSource;
+import io.github.koszti.trinoarrowgateway.trino.TrinoClient;
+import io.github.koszti.trinoarrowgateway.trino.TrinoQueryHandle;
+import org.apache.arrow.flight.FlightDescriptor;
+import org.apache.arrow.flight.PollInfo;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrinoFlightProducerPollFlightInfoTest {
+
+    private static final Schema SCHEMA = new Schema(List.of(
+            new Field("id", FieldType.nullable(new ArrowType.Int(64, true)), null)
+    ));
+
+    @Test
+    void pollFlightInfo_addsEndpointsAsSegmentsArrive() throws Exception {
+        SpoolSegmentSource source = new SpoolSegmentSource();
+        source.setEncoding("json");
+        source.add(segment(0, 2));
+
+        TrinoQueryHandle handle = new TrinoQueryHandle(
+                "q1",
+                List.of(new TrinoQueryHandle.TrinoColumn("id", "bigint")),
+                SCHEMA,
+                source
+        );
+        TrinoClient trinoClient = sql -> handle;
+
+        try (RootAllocator allocator = new RootAllocator()) {
+            var executor = Executors.newSingleThreadExecutor();
+            try {
+                TrinoFlightProducer producer = new TrinoFlightProducer(
+                        allocator,
+                        trinoClient,
+                        new InMemoryQueryRegistry(),
+                        new GatewayTrinoProperties(),
+                        new GatewayFlightProperties(),
+                        new HttpSpooledSegmentClient(),
+                        new SpooledRowsToArrowConverter(allocator),
+                        executor,
+                        new GatewayConversionProperties()
+                );
+
+                PollInfo first = producer.pollFlightInfo(null,
+                        FlightDescriptor.command("SELECT 1".getBytes(StandardCharsets.UTF_8)));
+                assertEquals(1, first.getFlightInfo().getEndpoints().size());
+                assertTrue(first.getFlightDescriptor().isPresent());
+
+                source.add(segment(2, 3));
+                source.complete();
+
+                PollInfo second = producer.pollFlightInfo(null, first.getFlightDescriptor().get());
+                assertEquals(2, second.getFlightInfo().getEndpoints().size());
+                assertEquals(5, second.getFlightInfo().getRecords());
+                assertFalse(second.getFlightDescriptor().isPresent());
+                assertEquals(1.0, second.getProgress().orElseThrow());
+                JsonNode metadata = new ObjectMapper().readTree(second.getFlightInfo().getAppMetadata());
+                assertEquals(2, metadata.get("segments").asInt());
+                assertEquals(5, metadata.get("segmentRows").asLong());
+
+                QueryTicket secondTicket = QueryTicket.parse(second.getFlightInfo().getEndpoints().get(1).getTicket());
+                assertEquals(QueryTicket.forSegments("q1", 1, 2), secondTicket);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static TrinoQueryHandle.TrinoSpoolSegment segment(long rowOffset, long rowsCount) {
+        return new TrinoQueryHandle.TrinoSpoolSegment(
+                URI.create("http://localhost/download/" + rowOffset),
+                URI.create("http://localhost/ack/" + rowOffset),
+                rowOffset,
+                rowsCount,
+                100L,
+                null,
+                null,
+                "spooled",
+                Map.of(),
+                null
+        );
+    }
+}
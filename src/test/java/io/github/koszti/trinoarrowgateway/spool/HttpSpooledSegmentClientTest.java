@@ -1,29 +1,56 @@
 package io.github.koszti.trinoarrowgateway.spool;
 
 import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import io.github.koszti.trinoarrowgateway.config.GatewaySpoolProperties;
 import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class HttpSpooledSegmentClientTest {
 
     private HttpServer server;
+    private ExecutorService serverExecutor;
+
+    @BeforeEach
+    void setUp() {
+        serverExecutor = Executors.newFixedThreadPool(4);
+    }
 
     @AfterEach
     void tearDown() {
         if (server != null) {
             server.stop(0);
         }
+        serverExecutor.shutdownNow();
     }
 
     @Test
@@ -74,6 +101,322 @@ class HttpSpooledSegmentClientTest {
         assertTrue(ackSawHeaders.get());
     }
 
+    @Test
+    void downloadsAsynchronously() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/download", exchange -> {
+            try {
+                assertEquals("v1", exchange.getRequestHeaders().getFirst("X-Test"));
+                respond(exchange, 200, "hello async");
+            } catch (Exception e) {
+                exchange.close();
+                throw new RuntimeException(e);
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            try {
+                respond(exchange, 404, "gone");
+            } catch (Exception e) {
+                exchange.close();
+                throw new RuntimeException(e);
+            }
+        });
+        server.start();
+
+        int port = server.getAddress().getPort();
+        HttpSpooledSegmentClient client = new HttpSpooledSegmentClient();
+        URI downloadUri = URI.create("http://127.0.0.1:" + port + "/download");
+
+        try (HttpSpooledSegmentClient.FetchedSegment seg = client.fetchAsync(downloadUri, null, Map.of("X-Test", "v1")).get()) {
+            assertEquals(downloadUri, seg.uri());
+            assertEquals("hello async", new String(seg.body().readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        URI missingUri = URI.create("http://127.0.0.1:" + port + "/missing");
+        ExecutionException e = assertThrows(ExecutionException.class, () -> client.fetchAsync(missingUri, null, Map.of()).get());
+        assertInstanceOf(IOException.class, e.getCause());
+        assertTrue(e.getCause().getMessage().contains("HTTP 404"));
+    }
+
+    @Test
+    void pooledApacheTransportReusesConnections() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/download", exchange -> {
+            try {
+                respond(exchange, 200, "pooled");
+            } catch (Exception e) {
+                exchange.close();
+                throw new RuntimeException(e);
+            }
+        });
+        server.createContext("/ack", exchange -> {
+            try {
+                respond(exchange, 200, "ok");
+            } catch (Exception e) {
+                exchange.close();
+                throw new RuntimeException(e);
+            }
+        });
+        server.start();
+
+        int port = server.getAddress().getPort();
+        URI downloadUri = URI.create("http://127.0.0.1:" + port + "/download");
+        URI ackUri = URI.create("http://127.0.0.1:" + port + "/ack");
+        GatewaySpoolProperties spoolProps = new GatewaySpoolProperties();
+        spoolProps.setMaxConnectionsPerHost(2);
+
+        try (ApacheSegmentTransport transport = new ApacheSegmentTransport(spoolProps)) {
+            HttpSpooledSegmentClient client = new HttpSpooledSegmentClient(transport, spoolProps);
+            for (int i = 0; i < 5; i++) {
+                try (HttpSpooledSegmentClient.FetchedSegment seg = client.fetch(downloadUri, ackUri, Map.of())) {
+                    assertEquals("pooled", new String(seg.body().readAllBytes(), StandardCharsets.UTF_8));
+                }
+                client.ack(ackUri, Map.of());
+                try (HttpSpooledSegmentClient.FetchedSegment seg = client.fetchAsync(downloadUri, ackUri, Map.of()).get()) {
+                    assertEquals("pooled", new String(seg.body().readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+
+            // Sequential requests are served by one kept-alive connection per pool.
+            int open = transport.leasedConnections() + transport.availableConnections();
+            assertTrue(open >= 1 && open <= 2, "open connections: " + open);
+        }
+    }
+
+    @Test
+    void downloadsLargeSegmentsWithConcurrentRanges() throws Exception {
+        byte[] payload = new byte[100];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean throttled = new AtomicBoolean();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(serverExecutor);
+        server.createContext("/ranged", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (exchange.getRequestURI().getQuery() != null && "bytes=30-59".equals(range) && throttled.compareAndSet(false, true)) {
+                // Like an S3 503 SlowDown: the part is retried.
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            if (range == null) {
+                exchange.sendResponseHeaders(200, payload.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(payload);
+                }
+                return;
+            }
+            ranges.add(range);
+            Matcher m = Pattern.compile("bytes=(\\d+)-(\\d*)").matcher(range);
+            if (!m.matches()) {
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            int from = Integer.parseInt(m.group(1));
+            int to = m.group(2).isEmpty() ? payload.length - 1 : Math.min(payload.length - 1, Integer.parseInt(m.group(2)));
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + from + "-" + to + "/" + payload.length);
+            exchange.sendResponseHeaders(206, to - from + 1);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(payload, from, to - from + 1);
+            }
+        });
+        AtomicInteger wholeRequests = new AtomicInteger();
+        server.createContext("/whole", exchange -> {
+            wholeRequests.incrementAndGet();
+            exchange.sendResponseHeaders(200, payload.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(payload);
+            }
+        });
+        server.createContext("/short", exchange -> {
+            // Every part starts where it should but holds only 10 bytes.
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int from = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + from + "-" + (from + 9) + "/" + payload.length);
+            exchange.sendResponseHeaders(206, 10);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(payload, from, 10);
+            }
+        });
+        server.start();
+
+        GatewaySpoolProperties spoolProps = new GatewaySpoolProperties();
+        spoolProps.setRangedDownloadThresholdBytes(50);
+        spoolProps.setRangedDownloadPartBytes(30);
+        spoolProps.setRetryInitialBackoff(Duration.ofMillis(10));
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        try (JdkSegmentTransport transport = new JdkSegmentTransport(spoolProps)) {
+            HttpSpooledSegmentClient client = new HttpSpooledSegmentClient(transport, spoolProps);
+
+            try (HttpSpooledSegmentClient.FetchedSegment seg = client.fetch(URI.create(base + "/ranged"), null, Map.of(), 100L)) {
+                assertArrayEquals(payload, seg.body().readAllBytes());
+            }
+            assertEquals(Set.of("bytes=0-29", "bytes=30-59", "bytes=60-89", "bytes=90-"), Set.copyOf(ranges));
+
+            try (HttpSpooledSegmentClient.FetchedSegment seg =
+                    client.fetch(URI.create(base + "/ranged?throttled"), null, Map.of(), 100L)) {
+                assertArrayEquals(payload, seg.body().readAllBytes());
+            }
+            assertTrue(throttled.get());
+
+            // Below the threshold: a single plain request.
+            ranges.clear();
+            try (HttpSpooledSegmentClient.FetchedSegment seg = client.fetchAsync(URI.create(base + "/ranged"), null, Map.of(), 40L).get()) {
+                assertArrayEquals(payload, seg.body().readAllBytes());
+            }
+            assertTrue(ranges.isEmpty());
+
+            // A server ignoring Range answers the first part with the whole segment; no other part is requested.
+            try (HttpSpooledSegmentClient.FetchedSegment seg = client.fetchAsync(URI.create(base + "/whole"), null, Map.of(), 100L).get()) {
+                assertArrayEquals(payload, seg.body().readAllBytes());
+            }
+            assertEquals(1, wholeRequests.get());
+
+            IOException e = assertThrows(IOException.class,
+                    () -> client.fetch(URI.create(base + "/short"), null, Map.of(), 100L));
+            assertTrue(e.getCause().getMessage().contains("Content-Range bytes 0-9/100"), e.getCause().getMessage());
+        }
+        assertEquals(-1, HttpSpooledSegmentClient.rangeStart("bytes */100"));
+        assertEquals(30, HttpSpooledSegmentClient.rangeStart("bytes 30-59/100"));
+        assertEquals(59, HttpSpooledSegmentClient.rangeEnd("bytes 30-59/100"));
+        assertEquals(-1, HttpSpooledSegmentClient.rangeEnd("bytes */100"));
+    }
+
+    @Test
+    void hedgesStragglingDownloads() throws Exception {
+        byte[] payload = "segment".getBytes(StandardCharsets.UTF_8);
+        AtomicInteger slowRequests = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(serverExecutor);
+        HttpHandler fast = exchange -> {
+            exchange.sendResponseHeaders(200, payload.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(payload);
+            }
+        };
+        server.createContext("/fast", fast);
+        server.createContext("/slow", exchange -> {
+            if (slowRequests.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(5_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            try {
+                fast.handle(exchange);
+            } catch (IOException ignored) {
+                // the hedge won and this request was cancelled
+            }
+        });
+        server.start();
+
+        GatewaySpoolProperties spoolProps = new GatewaySpoolProperties();
+        spoolProps.setHedgeMaxPerQuery(1);
+        spoolProps.setHedgeMinDelay(Duration.ofMillis(50));
+        spoolProps.setHedgeMinBytesPerSecond(0);
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        try (JdkSegmentTransport transport = new JdkSegmentTransport(spoolProps)) {
+            HttpSpooledSegmentClient client = new HttpSpooledSegmentClient(transport, spoolProps);
+            // No deadline until enough downloads have been seen.
+            assertEquals(-1, client.hedgeDelayNanos(7L));
+            for (int i = 0; i < DownloadLatencies.MIN_SAMPLES; i++) {
+                client.fetchAsync(URI.create(base + "/fast"), null, Map.of()).get().close();
+            }
+            assertTrue(client.hedgeDelayNanos(7L) >= Duration.ofMillis(50).toNanos());
+
+            HttpSpooledSegmentClient.HedgeBudget budget = client.newHedgeBudget();
+            long start = System.nanoTime();
+            try (HttpSpooledSegmentClient.FetchedSegment seg =
+                    client.fetchAsync(URI.create(base + "/slow"), null, Map.of(), 7L, budget).get()) {
+                assertArrayEquals(payload, seg.body().readAllBytes());
+            }
+            assertTrue(System.nanoTime() - start < Duration.ofSeconds(4).toNanos());
+            assertEquals(2, slowRequests.get());
+            assertEquals(1, client.hedges());
+            assertEquals(1, client.hedgeWins());
+            assertFalse(budget.tryAcquire());
+        }
+    }
+
+    @Test
+    void resumesBrokenDownloadsAndRetriesTransientFailures() throws Exception {
+        byte[] payload = "0123456789abcdefghij".getBytes(StandardCharsets.UTF_8);
+        List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger flakyRequests = new AtomicInteger();
+        AtomicInteger unavailableRequests = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(serverExecutor);
+        server.createContext("/broken", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range == null) {
+                // Announce the whole segment but break off after 5 bytes.
+                exchange.sendResponseHeaders(200, payload.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(payload, 0, 5);
+                os.flush();
+                // Closing short of the announced length drops the connection.
+                exchange.close();
+                return;
+            }
+            ranges.add(range);
+            int from = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + from + "-" + (payload.length - 1) + "/" + payload.length);
+            exchange.sendResponseHeaders(206, payload.length - from);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(payload, from, payload.length - from);
+            }
+        });
+        server.createContext("/flaky", exchange -> {
+            int status = flakyRequests.incrementAndGet() % 2 == 1 ? 503 : 200;
+            exchange.sendResponseHeaders(status, payload.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(payload);
+            }
+        });
+        server.createContext("/unavailable", exchange -> {
+            unavailableRequests.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+
+        GatewaySpoolProperties spoolProps = new GatewaySpoolProperties();
+        spoolProps.setRetryInitialBackoff(Duration.ofMillis(10));
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        try (JdkSegmentTransport transport = new JdkSegmentTransport(spoolProps)) {
+            HttpSpooledSegmentClient client = new HttpSpooledSegmentClient(transport, spoolProps);
+
+            try (HttpSpooledSegmentClient.FetchedSegment seg = client.fetch(URI.create(base + "/broken"), null, Map.of())) {
+                assertArrayEquals(payload, seg.body().readAllBytes());
+            }
+            assertEquals(List.of("bytes=5-"), ranges);
+
+            try (HttpSpooledSegmentClient.FetchedSegment seg = client.fetch(URI.create(base + "/flaky"), null, Map.of())) {
+                assertArrayEquals(payload, seg.body().readAllBytes());
+            }
+            try (HttpSpooledSegmentClient.FetchedSegment seg =
+                    client.fetchAsync(URI.create(base + "/flaky"), null, Map.of(), null).get()) {
+                assertArrayEquals(payload, seg.body().readAllBytes());
+            }
+            assertEquals(4, flakyRequests.get());
+
+            IOException e = assertThrows(IOException.class,
+                    () -> client.fetch(URI.create(base + "/unavailable"), null, Map.of(), null, null));
+            assertTrue(e.getMessage().contains("HTTP 503"), e.getMessage());
+            assertEquals(1 + spoolProps.getDownloadRetries(), unavailableRequests.get());
+
+            // No retries once the segment has expired.
+            unavailableRequests.set(0);
+            assertThrows(ExecutionException.class, () -> client.fetchAsync(URI.create(base + "/unavailable"), null, Map.of(),
+                    null, null, Instant.now()).get());
+            assertEquals(1, unavailableRequests.get());
+        }
+    }
+
     private static void respond(HttpExchange exchange, int status, String body) throws Exception {
         byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
         exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
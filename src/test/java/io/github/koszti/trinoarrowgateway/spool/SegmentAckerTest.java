@@ -0,0 +1,68 @@
+package io.github.koszti.trinoarrowgateway.spool;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentAckerTest {
+
+    @Test
+    void pipelinesAcksWithBoundedConcurrency() {
+        List<CompletableFuture<Void>> inFlight = new CopyOnWriteArrayList<>();
+        SegmentAcker acker = new SegmentAcker((uri, headers) -> {
+            CompletableFuture<Void> ack = new CompletableFuture<>();
+            inFlight.add(ack);
+            return ack;
+        }, 2, 0, 0, 0, Duration.ofSeconds(5).toNanos());
+
+        for (int i = 0; i < 5; i++) {
+            acker.submit(URI.create("http://storage/ack/" + i), Map.of());
+        }
+        acker.submit(null, Map.of());
+        assertEquals(2, inFlight.size());
+        assertEquals(5, acker.pending());
+
+        // Every completed ack makes room for the next one.
+        for (int i = 0; i < 5; i++) {
+            inFlight.get(i).complete(null);
+        }
+        assertEquals(5, inFlight.size());
+        assertEquals(5, acker.acks());
+        assertEquals(0, acker.pending());
+        acker.close();
+    }
+
+    @Test
+    void retriesTransientFailuresInTheBackground() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        SegmentAcker acker = new SegmentAcker((uri, headers) -> requests.incrementAndGet() < 3
+                ? CompletableFuture.failedFuture(new IOException("connection reset"))
+                : CompletableFuture.completedFuture(null), 4, 5, TimeUnit.MILLISECONDS.toNanos(5), TimeUnit.MILLISECONDS.toNanos(20), Duration.ofSeconds(5).toNanos());
+
+        acker.submit(URI.create("http://storage/ack/1"), Map.of());
+        acker.close();
+        assertEquals(3, requests.get());
+        assertEquals(1, acker.acks());
+        assertEquals(2, acker.retries());
+        assertTrue(acker.ackNanos() >= 0);
+
+        // Not transient: given up on at once.
+        SegmentAcker gone = new SegmentAcker((uri, headers) -> CompletableFuture.failedFuture(
+                new SegmentStatusException("gone", 404)), 4, 5, 0, 0, 0);
+        gone.submit(URI.create("http://storage/ack/2"), Map.of());
+        assertEquals(1, gone.failures());
+        assertEquals(0, gone.retries());
+        assertEquals(0, gone.pending());
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.koszti.trinoarrowgateway.trino;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TrinoQueryHandleTest {
+
+    @Test
+    void parsesSegmentExpirationAsSentByTrino() {
+        assertEquals(Instant.parse("2025-12-12T22:40:54.218171619Z"), segment("2025-12-12T22:40:54.218171619").expiration());
+        assertEquals(Instant.parse("2025-12-12T22:40:54Z"), segment("2025-12-12T23:40:54+01:00").expiration());
+        assertNull(segment("tomorrow").expiration());
+        assertNull(segment(null).expiration());
+    }
+
+    private static TrinoQueryHandle.TrinoSpoolSegment segment(String expiresAt) {
+        return new TrinoQueryHandle.TrinoSpoolSegment(
+                URI.create("http://localhost/download/0"),
+                null,
+                0L,
+                1L,
+                29L,
+                null,
+                expiresAt,
+                "spooled",
+                Map.of(),
+                null
+        );
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.koszti.trinoarrowgateway.trino;
+
+import io.github.koszti.trinoarrowgateway.convert.StringVectorType;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TrinoTypeMapperTest {
+
+    private final TrinoTypeMapper mapper = new TrinoTypeMapper(StringVectorType.UTF8);
+
+    @Test
+    void mapsArraysToLists() {
+        Field field = mapper.toArrowField("tags", "array(varchar)");
+
+        assertEquals(ArrowType.List.INSTANCE, field.getType());
+        Field element = field.getChildren().get(0);
+        assertEquals("element", element.getName());
+        assertEquals(new ArrowType.Utf8(), element.getType());
+    }
+
+    @Test
+    void mapsMapsWithNonNullableKeys() {
+        Field field = mapper.toArrowField("m", "map(bigint, array(double))");
+
+        assertEquals(new ArrowType.Map(false), field.getType());
+        Field entries = field.getChildren().get(0);
+        assertEquals(ArrowType.Struct.INSTANCE, entries.getType());
+        assertFalse(entries.isNullable());
+        Field key = entries.getChildren().get(0);
+        assertEquals(new ArrowType.Int(64, true), key.getType());
+        assertFalse(key.isNullable());
+        Field value = entries.getChildren().get(1);
+        assertEquals(ArrowType.List.INSTANCE, value.getType());
+        assertEquals(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE), value.getChildren().get(0).getType());
+    }
+
+    @Test
+    void mapsRowsWithNamedQuotedAndAnonymousFields() {
+        Field field = mapper.toArrowField("r",
+                "row(id bigint, \"first, \"\"last\"\" name\" varchar(10), decimal(20, 2), timestamp(6) with time zone)");
+
+        assertEquals(ArrowType.Struct.INSTANCE, field.getType());
+        List<Field> children = field.getChildren();
+        assertEquals(List.of("id", "first, \"last\" name", "field2", "field3"), children.stream().map(Field::getName).toList());
+        assertEquals(new ArrowType.Int(64, true), children.get(0).getType());
+        assertEquals(new ArrowType.Utf8(), children.get(1).getType());
+        assertEquals(new ArrowType.Decimal(20, 2, 128), children.get(2).getType());
+        assertEquals(new ArrowType.Timestamp(TimeUnit.MICROSECOND, "UTC"), children.get(3).getType());
+    }
+
+    @Test
+    void mapsNestingOfAnyDepth() {
+        Field field = mapper.toArrowField("deep", "array(map(varchar, row(time time(3), points array(array(integer)))))");
+
+        Field row = field.getChildren().get(0).getChildren().get(0).getChildren().get(1);
+        assertEquals(ArrowType.Struct.INSTANCE, row.getType());
+        assertEquals("time", row.getChildren().get(0).getName());
+        assertEquals(new ArrowType.Time(TimeUnit.MILLISECOND, 32), row.getChildren().get(0).getType());
+        Field points = row.getChildren().get(1);
+        assertEquals(new ArrowType.Int(32, true), points.getChildren().get(0).getChildren().get(0).getType());
+    }
+
+    @Test
+    void keepsTimeWithTimeZoneAsString() {
+        assertEquals(new ArrowType.Utf8(), mapper.toArrowField("t", "time(3) with time zone").getType());
+        assertEquals(new ArrowType.Utf8View(),
+                new TrinoTypeMapper(StringVectorType.UTF8_VIEW).toArrowField("t", "time with time zone").getType());
+        assertEquals(new ArrowType.Time(TimeUnit.MICROSECOND, 64), mapper.toArrowField("t", "time(6)").getType());
+    }
+
+    @Test
+    void rejectsUnsupportedAndMalformedTypes() {
+        for (String type : new String[] {"map(array(integer), bigint)", "array(interval day to second)", "array(bigint",
+                "map(bigint)", "row()", "bigint_total varchar", "array(bigint))"}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> mapper.toArrowField("c", type), type);
+            assertEquals("Unsupported Trino type for now: " + type + " (column c)", e.getMessage());
+        }
+    }
+}